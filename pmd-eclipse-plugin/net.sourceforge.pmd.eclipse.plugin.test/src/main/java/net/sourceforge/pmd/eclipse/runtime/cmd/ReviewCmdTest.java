@@ -34,12 +34,20 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 
 import name.herlin.command.CommandException;
 import name.herlin.command.UnsetInputPropertiesException;
+import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
+import net.sourceforge.pmd.eclipse.ui.properties.UpdateProjectPropertiesCmd;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -117,6 +125,77 @@ public class ReviewCmdTest {
     Assert.assertTrue("Report size = " + markers.size(), markers.size() > 0);
   }
 
+  /**
+   * A review on several threads must find the same markers as a review on
+   * one thread
+   */
+  @Test
+  public void testReviewCmdParallel() throws Exception {
+    final IFile[] files = createTestSourceFiles(8);
+    final Map<IFile, Set<MarkerInfo2>> serial = review(1, files);
+    final Map<IFile, Set<MarkerInfo2>> parallel = review(4, files);
+
+    Assert.assertTrue("Files not reviewed", parallel.keySet().containsAll(Arrays.asList(files)));
+    Assert.assertEquals(serial, parallel);
+  }
+
+  /**
+   * The review threads must also be able to copy the rules of other plugins,
+   * whose classes PMD cannot load by name
+   */
+  @Test
+  public void testReviewCmdParallelPluginRule() throws Exception {
+    final PluginRule rule = new PluginRule();
+    rule.setName("PluginRule");
+    rule.setMessage("A rule of another plugin");
+    rule.setLanguage(Language.JAVA);
+    final RuleSet ruleSet = new RuleSet();
+    ruleSet.addRule(rule);
+
+    final UpdateProjectPropertiesCmd cmd = new UpdateProjectPropertiesCmd();
+    cmd.setPmdEnabled(true);
+    cmd.setProject(this.testProject);
+    cmd.setProjectRuleSet(ruleSet);
+    cmd.setProjectWorkingSet(null);
+    cmd.setRuleSetStoredInProject(false);
+    cmd.execute();
+
+    final IFile[] files = createTestSourceFiles(4);
+    final Map<IFile, Set<MarkerInfo2>> markers = review(4, files);
+    for (final IFile file : files) {
+      Assert.assertNotNull("No markers for " + file.getName(), markers.get(file));
+      Assert.assertEquals("Markers of " + file.getName(), 1, markers.get(file).size());
+    }
+  }
+
+  /**
+   * A file which didn't change keeps the markers of its last review, unless
+   * the rules use type resolution and a file was changed or added
+   */
+  @Test
+  public void testReviewCmdCache() throws Exception {
+    final IFile[] files = createTestSourceFiles(3);
+    final int fileCount = files.length + 1;
+    reviewWithCache();
+
+    ReviewCodeCmd cmd = reviewWithCache();
+    Assert.assertEquals("Unchanged files", fileCount, cmd.getUnchangedFileCount());
+    final Map<IFile, Set<MarkerInfo2>> cachedMarkers = cmd.getMarkers();
+
+    // the Java rules use type resolution, so all files are reviewed again
+    files[0].touch(null);
+    cmd = reviewWithCache();
+    Assert.assertEquals("Unchanged files after a change", 0, cmd.getUnchangedFileCount());
+    Assert.assertEquals(cachedMarkers, cmd.getMarkers());
+
+    createTestSourceFile("/Added.java");
+    cmd = reviewWithCache();
+    Assert.assertEquals("Unchanged files after an addition", 0, cmd.getUnchangedFileCount());
+
+    cmd = reviewWithCache();
+    Assert.assertEquals("Unchanged files", fileCount + 1, cmd.getUnchangedFileCount());
+  }
+
   /**
    * The ReviewCodeCmd must also work on a ResourceDelta
    * 
@@ -150,4 +229,79 @@ public class ReviewCmdTest {
       ; // cool, success
     }
   }
+
+  /**
+   * Review the test project with a number of threads. The test files are
+   * touched first, so their markers are not taken from the last review.
+   */
+  private Map<IFile, Set<MarkerInfo2>> review(final int threads, final IFile[] files) throws Exception {
+    for (final IFile file : files) {
+      file.touch(null);
+    }
+
+    final IPreferences preferences = PMDPlugin.getDefault().loadPreferences();
+    final int reviewThreads = preferences.getReviewThreads();
+    preferences.setReviewThreads(threads);
+    try {
+      final ReviewCodeCmd cmd = new ReviewCodeCmd();
+      cmd.addResource(this.testProject);
+      cmd.performExecute();
+      cmd.join();
+      return cmd.getMarkers();
+    }
+    finally {
+      preferences.setReviewThreads(reviewThreads);
+    }
+  }
+
+  /**
+   * Review the test project, keeping the markers of the unchanged files
+   */
+  private ReviewCodeCmd reviewWithCache() throws CommandException {
+    final ReviewCodeCmd cmd = new ReviewCodeCmd();
+    cmd.addResource(this.testProject);
+    cmd.setUseCache(true);
+    cmd.performExecute();
+    cmd.join();
+    return cmd;
+  }
+
+  /**
+   * Create test source files, copies of the one created by the setup
+   */
+  private IFile[] createTestSourceFiles(final int count) throws Exception {
+    final IFile[] files = new IFile[count];
+    for (int i = 0; i < count; i++) {
+      files[i] = createTestSourceFile("/Test" + i + ".java");
+    }
+    return files;
+  }
+
+  private IFile createTestSourceFile(final String name) throws Exception {
+    final InputStream is = EclipseUtils.getResourceStream(this.testProject, "/Test.java");
+    try {
+      final IFile file = this.testProject.getFile(name);
+      if (file.exists()) {
+        file.setContents(is, true, false, null);
+      }
+      else {
+        file.create(is, true, null);
+      }
+      return file;
+    }
+    finally {
+      is.close();
+    }
+  }
+
+  /**
+   * A rule whose class is only known to this plugin, with one violation per file
+   */
+  public static class PluginRule extends AbstractJavaRule {
+    @Override
+    public Object visit(final ASTCompilationUnit node, final Object data) {
+      addViolation(data, node);
+      return data;
+    }
+  }
 }
\ No newline at end of file
@@ -89,6 +89,7 @@ public class PMDBuilder extends IncrementalProjectBuilder {
                 ReviewCodeCmd cmd = new ReviewCodeCmd();
                 cmd.setResourceDelta(resourceDelta);
                 cmd.setTaskMarker(false);
+                cmd.setUseCache(true);
                 cmd.setMonitor(monitor);
                 cmd.performExecute(); // a builder is always asynchronous; execute a command synchronously whatever its processor
             } else {
@@ -107,6 +108,7 @@ public class PMDBuilder extends IncrementalProjectBuilder {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
         cmd.addResource(project);
         cmd.setTaskMarker(false);
+        cmd.setUseCache(true);
         cmd.setMonitor(monitor);
         cmd.performExecute(); // a builder is always asynchronous; execute a command synchronously whatever its processor
     }
@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 
 import name.herlin.command.Timer;
 import net.sourceforge.pmd.PMD;
@@ -79,6 +80,10 @@ public class BaseVisitor {
     private Map<IFile, Set<MarkerInfo2>> accumulator;
 //    private PMDEngine pmdEngine;
     private RuleSet ruleSet;
+    private RuleSets ruleSets;
+    private ReviewWorkers workers;
+    private ReviewCache cache;
+    private int pendingReviews;
     private int fileCount;
     private long pmdDuration;
     private IProjectProperties projectProperties;
@@ -214,6 +219,49 @@ public class BaseVisitor {
     public void setRuleSet(final RuleSet ruleSet) {
         ruleSet.addRuleSet(hiddenRules);
         this.ruleSet = ruleSet;
+        this.ruleSets = new RuleSets(ruleSet);
+    }
+
+    /**
+     * Set the threads which review the files. The visitor then only selects
+     * the files, see {@link #awaitReviews()}.
+     *
+     * @param workers
+     *            the threads, or null to review the files while visiting them
+     */
+    void setWorkers(ReviewWorkers workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Set the markers of the previous reviews. The files which didn't change
+     * since get their markers from there and aren't reviewed again.
+     *
+     * @param cache
+     *            the previous reviews, or null to review every file
+     */
+    void setCache(ReviewCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Wait for the reviews of the files submitted to the workers, and update
+     * the progress and the statistics as they finish.
+     */
+    public void awaitReviews() {
+        for (; pendingReviews > 0; pendingReviews--) {
+            if (isCanceled()) {
+                workers.shutdown();
+                pendingReviews = 0;
+                break;
+            }
+            Long duration = workers.take();
+            if (duration != null) {
+                pmdDuration += duration.longValue();
+                fileCount++;
+            }
+            worked(1);
+        }
     }
 
     /**
@@ -252,7 +300,6 @@ public class BaseVisitor {
     	IFile file = (IFile) resource.getAdapter(IFile.class);
     	if (file == null || file.getFileExtension() == null) return;
 
-    	Reader input = null;
     	try {
     		boolean included = isIncluded(file);
     		log.debug("Derived files included: " + projectProperties.isIncludeDerivedFiles());
@@ -274,25 +321,22 @@ public class BaseVisitor {
 
     		final File sourceCodeFile = file.getRawLocation().toFile();
     		if (included && getRuleSet().applies(sourceCodeFile) && isFileInWorkingSet(file) && languageVersion != null) {
+    			Set<MarkerInfo2> cachedMarkers = cache == null ? null : cache.markersOf(file);
+    			if (cachedMarkers != null) {
+    				log.debug("The file " + file.getName() + " didn't change since its last review");
+    				if (getAccumulator() != null) {
+    					getAccumulator().put(file, cachedMarkers);
+    				}
+    				worked(1);
+    				return;
+    			}
+    			if (workers != null) {
+    				submitReview(file, sourceCodeFile, languageVersion);
+    				return;
+    			}
     			subTask("PMD checking: " + file.getName());
 
-
-    			Timer timer = new Timer();
-
-    			RuleContext context = PMD.newRuleContext(file.getName(), sourceCodeFile);
-    			context.setLanguageVersion(languageVersion);
-
-    			input = new InputStreamReader(file.getContents(), file.getCharset());
-    			//                    getPmdEngine().processFile(input, getRuleSet(), context);
-    			//                    getPmdEngine().processFile(sourceCodeFile, getRuleSet(), context);
-
-    			RuleSets rSets = new RuleSets(getRuleSet());
-    			new SourceCodeProcessor(configuration()).processSourceCode(input, rSets, context);
-
-    			timer.stop();
-    			pmdDuration += timer.getDuration();
-
-    			updateMarkers(file, context, isUseTaskMarker());
+    			pmdDuration += review(file, sourceCodeFile, languageVersion, configuration(), ruleSets);
 
     			worked(1);
     			fileCount++;
@@ -308,10 +352,66 @@ public class BaseVisitor {
     		log.error("IO exception visiting " + file.getName(), e); // TODO: 		// complete message
     	} catch (PropertiesException e) {
     		log.error("Properties exception visiting " + file.getName(), e); // TODO:	// complete message
+    	}
+
+    }
+
+    /**
+     * Review a file on one of the workers, with the rule sets of the worker
+     */
+    private void submitReview(final IFile file, final File sourceCodeFile, final LanguageVersion languageVersion) {
+    	pendingReviews++;
+    	workers.submit(new Callable<Long>() {
+    		public Long call() {
+    			PMDConfiguration configuration = new PMDConfiguration();
+    			configuration.setDefaultLanguageVersion(languageVersion);
+    			try {
+    				return Long.valueOf(review(file, sourceCodeFile, languageVersion, configuration, workers.ruleSets()));
+    			} catch (CoreException e) {
+    				log.error("Core exception visiting " + file.getName(), e);
+    			} catch (PMDException e) {
+    				log.error("PMD exception visiting " + file.getName(), e);
+    			} catch (IOException e) {
+    				log.error("IO exception visiting " + file.getName(), e);
+    			} catch (PropertiesException e) {
+    				log.error("Properties exception visiting " + file.getName(), e);
+    			}
+    			return null;
+    		}
+    	});
+    }
+
+    /**
+     * Run PMD against a file and update its markers
+     *
+     * @return the duration of the review in ms
+     */
+    private long review(IFile file, File sourceCodeFile, LanguageVersion languageVersion,
+    		PMDConfiguration configuration, RuleSets rSets)
+    		throws CoreException, PMDException, IOException, PropertiesException {
+
+    	Timer timer = new Timer();
+    	long stamp = file.getModificationStamp();
+
+    	RuleContext context = PMD.newRuleContext(file.getName(), sourceCodeFile);
+    	context.setLanguageVersion(languageVersion);
+
+    	Reader input = null;
+    	try {
+    		input = new InputStreamReader(file.getContents(), file.getCharset());
+    		new SourceCodeProcessor(configuration).processSourceCode(input, rSets, context);
     	} finally {
     		IOUtil.closeQuietly(input);
     	}
 
+    	timer.stop();
+
+    	Set<MarkerInfo2> markers = updateMarkers(file, context, isUseTaskMarker());
+    	if (cache != null) {
+    		cache.put(file, stamp, markers);
+    	}
+
+    	return timer.getDuration();
     }
 
     /**
@@ -373,7 +473,7 @@ public class BaseVisitor {
         }
     }
 
-    private void updateMarkers(IFile file, RuleContext context, boolean fTask)
+    private Set<MarkerInfo2> updateMarkers(IFile file, RuleContext context, boolean fTask)
             throws CoreException, PropertiesException {
     	
         Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
@@ -431,6 +531,7 @@ public class BaseVisitor {
             log.debug("Adding markerSet to accumulator for file " + file.getName());
             accumulator.put(file, markerSet);
         }
+        return markerSet;
     }
 
     /**
@@ -1,7 +1,9 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
@@ -11,7 +13,9 @@ import org.eclipse.core.runtime.CoreException;
  * 
  * @author Brian Remedios
  */
-public class MarkerInfo2 {
+public class MarkerInfo2 implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private final String type;
 	private List<String> names;
@@ -28,9 +32,54 @@ public class MarkerInfo2 {
 		values.add(value);
 	}
 
+	/**
+	 * Describes an existing marker, to compare it with the markers of a review
+	 */
+	public MarkerInfo2(IMarker marker) throws CoreException {
+		this(marker.getType(), 7);
+
+		Map<String, Object> attributes = marker.getAttributes();
+		if (attributes != null) {
+			for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+				add(attribute.getKey(), attribute.getValue());
+			}
+		}
+	}
+
 	public void add(String name, int value) {
 		add(name, Integer.valueOf(value));
 	}
+
+	private Object valueOf(String name) {
+		int index = names.indexOf(name);
+		return index < 0 ? null : values.get(index);
+	}
+
+	/**
+	 * Markers are equal if they have the same type and attributes, in any order
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof MarkerInfo2)) return false;
+		MarkerInfo2 other = (MarkerInfo2) obj;
+		if (!type.equals(other.type) || names.size() != other.names.size()) return false;
+		for (int i = 0; i < names.size(); i++) {
+			Object value = values.get(i);
+			Object otherValue = other.valueOf(names.get(i));
+			if (value == null ? otherValue != null : !value.equals(otherValue)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = type.hashCode();
+		for (int i = 0; i < names.size(); i++) {
+			Object value = values.get(i);
+			hash += names.get(i).hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+		return hash;
+	}
 	
 	public void addAsMarkerTo(IFile file) throws CoreException {
 		
@@ -0,0 +1,266 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
+import net.sourceforge.pmd.eclipse.runtime.writer.WriterException;
+import net.sourceforge.pmd.eclipse.util.IOUtil;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * The markers of the last review of each file of a project, kept across
+ * builds and workspace sessions in the working location of the project.
+ * A file whose modification stamp didn't change since its last review gets
+ * its markers from here instead of being reviewed again.
+ * <p>
+ * The markers are only valid for the rule set and the project settings they
+ * were found with, the store is emptied when these change. Rules using type
+ * resolution also depend on the other files of the project, so for such rule
+ * sets the store is emptied as soon as one of its files changed, or a Java
+ * file was added to or removed from the project.
+ */
+class ReviewCache {
+
+    private static final Logger log = Logger.getLogger(ReviewCache.class);
+
+    private static final String CACHE_FILE = "review.cache";
+    private static final int VERSION = 2;
+
+    private final IProject project;
+    private final File file;
+    private final String ruleSetKey;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private Set<String> javaFiles;
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private volatile boolean changed;
+
+    private ReviewCache(IProject project, String ruleSetKey) {
+        this.project = project;
+        this.file = project.getWorkingLocation(PMDPlugin.PLUGIN_ID).append(CACHE_FILE).toFile();
+        this.ruleSetKey = ruleSetKey;
+    }
+
+    /**
+     * Reads the store of a project, or starts an empty one if it is missing
+     * or was filled with other rules
+     *
+     * @param project the project
+     * @param ruleSet the rules of the review
+     * @param properties the properties of the project
+     */
+    static ReviewCache load(IProject project, RuleSet ruleSet, IProjectProperties properties)
+            throws PropertiesException {
+        ReviewCache cache = new ReviewCache(project, ruleSetKey(project, ruleSet, properties));
+        if (cache.ruleSetKey != null && cache.file.exists()) {
+            cache.read();
+            if (ruleSet.usesTypeResolution(Language.JAVA) && cache.hasChangedFiles()) {
+                log.debug("Files of project " + project.getName() + " changed, their types may have too");
+                cache.entries.clear();
+                cache.changed = true;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return the markers of the last review of the file, or null if it
+     *         changed since or was never reviewed
+     */
+    Set<MarkerInfo2> markersOf(IFile file) {
+        Entry entry = entries.get(keyOf(file));
+        if (entry == null || entry.stamp != file.getModificationStamp()) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.markers;
+    }
+
+    /**
+     * Records the markers of a review
+     *
+     * @param file the reviewed file
+     * @param stamp the modification stamp of the file when its review started
+     * @param markers the markers found by the review
+     */
+    void put(IFile file, long stamp, Set<MarkerInfo2> markers) {
+        entries.put(keyOf(file), new Entry(stamp, markers));
+        changed = true;
+    }
+
+    /**
+     * @return the number of files whose markers were taken from the store
+     */
+    int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Writes the store back if a review changed it. The files which no
+     * longer exist are dropped.
+     */
+    void save() {
+        if (ruleSetKey == null) {
+            return;
+        }
+        for (Iterator<String> i = entries.keySet().iterator(); i.hasNext();) {
+            if (!project.getFile(i.next()).exists()) {
+                i.remove();
+                changed = true;
+            }
+        }
+        Set<String> currentJavaFiles = javaFiles();
+        if (!changed && currentJavaFiles != null && currentJavaFiles.equals(javaFiles)) {
+            return;
+        }
+
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(VERSION);
+            out.writeUTF(ruleSetKey);
+            out.writeObject(new HashMap<String, Entry>(entries));
+            out.writeObject(currentJavaFiles);
+            javaFiles = currentJavaFiles;
+            changed = false;
+        } catch (IOException e) {
+            log.warn("Cannot store the review results of project " + project.getName(), e);
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read() {
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() == VERSION && ruleSetKey.equals(in.readUTF())) {
+                entries.putAll((Map<String, Entry>) in.readObject());
+                javaFiles = (Set<String>) in.readObject();
+            } else {
+                log.debug("The rules of project " + project.getName() + " changed since the last review");
+                changed = true;
+            }
+        } catch (IOException e) {
+            log.warn("Cannot read the review results of project " + project.getName(), e);
+        } catch (ClassNotFoundException e) {
+            log.warn("Cannot read the review results of project " + project.getName(), e);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+    }
+
+    private boolean hasChangedFiles() {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            IFile member = project.getFile(entry.getKey());
+            if (!member.exists() || member.getModificationStamp() != entry.getValue().stamp) {
+                return true;
+            }
+        }
+        // a new file may declare a type the reviewed files use, even if it wasn't reviewed itself
+        Set<String> currentJavaFiles = javaFiles();
+        return currentJavaFiles == null || !currentJavaFiles.equals(javaFiles);
+    }
+
+    /**
+     * @return the project relative paths of all Java files of the project, or
+     *         null if the project cannot be read
+     */
+    private Set<String> javaFiles() {
+        final Set<String> paths = new HashSet<String>();
+        try {
+            project.accept(new IResourceProxyVisitor() {
+                public boolean visit(IResourceProxy proxy) {
+                    if (proxy.getType() == IResource.FILE && proxy.getName().endsWith(".java")) {
+                        paths.add(proxy.requestFullPath().removeFirstSegments(1).toString());
+                    }
+                    return true;
+                }
+            }, IResource.NONE);
+        } catch (CoreException e) {
+            log.warn("Cannot list the files of project " + project.getName(), e);
+            return null;
+        }
+        return paths;
+    }
+
+    private static String keyOf(IFile file) {
+        return file.getProjectRelativePath().toString();
+    }
+
+    /**
+     * Digest of what the markers depend on besides the files: the rules with
+     * their properties, the Java version and the severity settings
+     *
+     * @return the digest, or null if the rule set cannot be written
+     */
+    private static String ruleSetKey(IProject project, RuleSet ruleSet, IProjectProperties properties)
+            throws PropertiesException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            PMDPlugin.getDefault().getRuleSetWriter().write(out, ruleSet);
+            LanguageVersion javaVersion = PMDPlugin.javaVersionFor(project);
+            out.write(String.valueOf(javaVersion == null ? null : javaVersion.getTerseName()).getBytes("UTF-8"));
+            out.write(properties.violationsAsErrors() ? 1 : 0);
+
+            byte[] digest = MessageDigest.getInstance("MD5").digest(out.toByteArray());
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (WriterException e) {
+            log.warn("Cannot write the rule set of project " + project.getName() + ", its review results are not kept", e);
+        } catch (IOException e) {
+            log.warn("Cannot write the rule set of project " + project.getName() + ", its review results are not kept", e);
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("Cannot write the rule set of project " + project.getName() + ", its review results are not kept", e);
+        }
+        return null;
+    }
+
+    /**
+     * The markers of a file and its modification stamp when it was reviewed
+     */
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final long stamp;
+        final Set<MarkerInfo2> markers;
+
+        Entry(long stamp, Set<MarkerInfo2> markers) {
+            this.stamp = stamp;
+            this.markers = markers;
+        }
+    }
+}
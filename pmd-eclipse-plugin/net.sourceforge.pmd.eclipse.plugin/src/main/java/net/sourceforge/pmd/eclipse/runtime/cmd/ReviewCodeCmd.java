@@ -40,10 +40,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import name.herlin.command.CommandException;
 import name.herlin.command.Timer;
@@ -62,6 +64,7 @@ import net.sourceforge.pmd.util.StringUtil;
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
@@ -97,9 +100,13 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
 
     private final List<ISchedulingRule> resources = new ArrayList<ISchedulingRule>();
     private IResourceDelta 				resourceDelta;
-    private Map<IFile, Set<MarkerInfo2>> markersByFile = new HashMap<IFile, Set<MarkerInfo2>>();
+    // filled by the review threads too
+    private Map<IFile, Set<MarkerInfo2>> markersByFile = new ConcurrentHashMap<IFile, Set<MarkerInfo2>>();
     private boolean 					taskMarker;
     private boolean 					openPmdPerspective;
+    private boolean 					useCache;
+    private final Map<IProject, ReviewCache> caches = new HashMap<IProject, ReviewCache>();
+    private int 						unchangedFileCount;
     private int 						ruleCount;
     private int 						fileCount;
     private long 						pmdDuration;
@@ -107,6 +114,9 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
 
     private static final long serialVersionUID = 1L;
 
+    /** The number of files whose markers are updated by one workspace operation */
+    private static final int MARKER_BATCH_SIZE = 500;
+
     private static final Logger log = Logger.getLogger(ReviewCodeCmd.class);
     
     /**
@@ -184,19 +194,13 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             } else {
                 processResources();
             }
+            saveCaches();
 
             // do we really need to do any of the rest of this if 
             // fileCount and ruleCount are both 0?
             
             // Appliquer les marqueurs
-            IWorkspaceRunnable action = new IWorkspaceRunnable() {
-                public void run(IProgressMonitor monitor) throws CoreException {
-                    applyMarkers();
-                }
-            };
-
-            final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-            workspace.run(action, getSchedulingRule(), IWorkspace.AVOID_UPDATE, getMonitor());
+            applyMarkers();
 
             // Switch to the PMD perspective if required
             if (openPmdPerspective) {
@@ -241,6 +245,14 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         return markersByFile;
     }
 
+    /**
+     * @return the number of files which kept the markers of their last review,
+     *         see {@link #setUseCache(boolean)}
+     */
+    public int getUnchangedFileCount() {
+        return unchangedFileCount;
+    }
+
     /**
      * @param resource The resource to set.
      */
@@ -276,6 +288,14 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         this.taskMarker = taskMarker;
     }
 
+    /**
+     * @param useCache Tell whether the files which didn't change since their
+     *            last review keep their markers instead of being reviewed again.
+     */
+    public void setUseCache(boolean useCache) {
+        this.useCache = useCache;
+    }
+
     /**
      * @param openPmdPerspective Tell whether the PMD perspective should be
      *            opened after processing.
@@ -290,7 +310,9 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     @Override
     public void reset() {
         resources.clear();
-        markersByFile = new HashMap<IFile, Set<MarkerInfo2>>();
+        markersByFile = new ConcurrentHashMap<IFile, Set<MarkerInfo2>>();
+        caches.clear();
+        unchangedFileCount = 0;
         setTerminated(false);
         openPmdPerspective = false;
         onErrorIssue = null;
@@ -381,7 +403,15 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     	            visitor.setAccumulator(markersByFile);
     	            visitor.setUseTaskMarker(taskMarker);
     	            visitor.setProjectProperties(properties);
-    	            resource.accept(visitor);
+    	            visitor.setCache(cacheFor(project, ruleSet, properties));
+    	            ReviewWorkers workers = newWorkers(visitor.getRuleSet(), targetCount);
+    	            visitor.setWorkers(workers);
+    	            try {
+    	                resource.accept(visitor);
+    	                visitor.awaitReviews();
+    	            } finally {
+    	                if (workers != null) workers.shutdown();
+    	            }
 
     	            ruleCount = ruleSet.getRules().size();
     	            fileCount += visitor.getProcessedFilesCount();
@@ -502,7 +532,15 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
 	            visitor.setAccumulator(markersByFile);
 	            visitor.setUseTaskMarker(taskMarker);
 	            visitor.setProjectProperties(properties);
-	            resourceDelta.accept(visitor);
+	            visitor.setCache(cacheFor(project, ruleSet, properties));
+	            ReviewWorkers workers = newWorkers(visitor.getRuleSet(), targetCount);
+	            visitor.setWorkers(workers);
+	            try {
+	                resourceDelta.accept(visitor);
+	                visitor.awaitReviews();
+	            } finally {
+	                if (workers != null) workers.shutdown();
+	            }
 	
 	            ruleCount = ruleSet.getRules().size();
 	            fileCount += visitor.getProcessedFilesCount();
@@ -520,39 +558,122 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
     
     /**
-     * Apply PMD markers after the review
+     * Apply PMD markers after the review. The files are updated in batches of
+     * workspace operations, and the markers which didn't change are kept.
      *
      */
-    private void applyMarkers() {
+    private void applyMarkers() throws CoreException {
         log.info("Processing marker directives");
-        int violationCount = 0;
+        // the violations and the unchanged markers
+        final int[] counts = new int[2];
         final Timer timer = new Timer();
 
-        String currentFile = ""; // for logging
-       
         beginTask("PMD Applying markers", markersByFile.size());
-        
-        try {
-            for (IFile file : markersByFile.keySet()) {
-                if (isCanceled()) break;
-                currentFile = file.getName();
-                MarkerUtil.deleteAllMarkersIn(file);
-                Set<MarkerInfo2> markerInfoSet = markersByFile.get(file);
-                for (MarkerInfo2 markerInfo : markerInfoSet) { 
-                    markerInfo.addAsMarkerTo(file);
-                    violationCount++;
-                }
 
-                worked(1);
+        final List<IFile> files = new ArrayList<IFile>(markersByFile.keySet());
+        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        try {
+            for (int start = 0; start < files.size() && !isCanceled(); start += MARKER_BATCH_SIZE) {
+                final List<IFile> batch = files.subList(start, Math.min(start + MARKER_BATCH_SIZE, files.size()));
+                IWorkspaceRunnable action = new IWorkspaceRunnable() {
+                    public void run(IProgressMonitor monitor) {
+                        for (IFile file : batch) {
+                            if (isCanceled()) break;
+                            Set<MarkerInfo2> markerInfoSet = markersByFile.get(file);
+                            try {
+                                counts[1] += applyMarkers(file, markerInfoSet);
+                                counts[0] += markerInfoSet.size();
+                            } catch (CoreException e) {
+                                log.warn("CoreException when setting marker for file " + file.getName() + " : " + e.getMessage()); // TODO:
+                                                                                                                                    // NLS
+                            }
+                            worked(1);
+                        }
+                    }
+                };
+                workspace.run(action, getSchedulingRule(), IWorkspace.AVOID_UPDATE, getMonitor());
             }
-        } catch (CoreException e) {
-            log.warn("CoreException when setting marker for file " + currentFile + " : " + e.getMessage()); // TODO:
-                                                                                                                    // NLS
         } finally {
             timer.stop();
             int count = markersByFile.size();
-            logInfo("" + violationCount + " markers applied on " + count + " files in " + timer.getDuration() + "ms.");
-            log.info("End of processing marker directives. " + violationCount + " violations for " + count + " files.");
+            logInfo("" + counts[0] + " markers applied on " + count + " files in " + timer.getDuration() + "ms, "
+                    + counts[1] + " markers were unchanged.");
+            log.info("End of processing marker directives. " + counts[0] + " violations for " + count + " files.");
+        }
+    }
+
+    /**
+     * Replace the markers of a file. Only the markers which changed are
+     * deleted and created again.
+     *
+     * @param file the file
+     * @param markerInfoSet the markers of the review
+     * @return the number of markers which didn't change
+     */
+    private static int applyMarkers(IFile file, Set<MarkerInfo2> markerInfoSet) throws CoreException {
+        Set<MarkerInfo2> newMarkers = new HashSet<MarkerInfo2>(markerInfoSet);
+        List<IMarker> obsoleteMarkers = new ArrayList<IMarker>();
+        for (IMarker marker : MarkerUtil.findAllMarkers(file)) {
+            if (!newMarkers.remove(new MarkerInfo2(marker))) {
+                obsoleteMarkers.add(marker);
+            }
+        }
+
+        if (!obsoleteMarkers.isEmpty()) {
+            file.getWorkspace().deleteMarkers(obsoleteMarkers.toArray(new IMarker[obsoleteMarkers.size()]));
+        }
+        for (MarkerInfo2 markerInfo : newMarkers) {
+            markerInfo.addAsMarkerTo(file);
+        }
+        return markerInfoSet.size() - newMarkers.size();
+    }
+
+    /**
+     * @return the results of the previous reviews of the project, or null if
+     *         every file is to be reviewed
+     */
+    private ReviewCache cacheFor(IProject project, RuleSet ruleSet, IProjectProperties properties)
+            throws PropertiesException {
+        if (!useCache) return null;
+
+        ReviewCache cache = caches.get(project);
+        if (cache == null) {
+            cache = ReviewCache.load(project, ruleSet, properties);
+            caches.put(project, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Store the results of the reviews for the next builds
+     */
+    private void saveCaches() {
+        for (Map.Entry<IProject, ReviewCache> entry : caches.entrySet()) {
+            ReviewCache cache = entry.getValue();
+            cache.save();
+            unchangedFileCount += cache.getHitCount();
+            log.info(cache.getHitCount() + " files of project " + entry.getKey().getName()
+                    + " didn't change since their last review");
+        }
+    }
+
+    /**
+     * Start the threads which review the files in parallel, if the preferences
+     * ask for more than one.
+     *
+     * @param ruleSet the rule set of the review
+     * @param targetCount the number of resources to review
+     * @return the threads, or null to review the files one after the other
+     */
+    private ReviewWorkers newWorkers(RuleSet ruleSet, int targetCount) {
+        int threads = Math.min(PMDPlugin.getDefault().loadPreferences().getReviewThreads(), targetCount);
+        if (threads <= 1) return null;
+
+        try {
+            return new ReviewWorkers(ruleSet, threads);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot copy the rule set for the review threads, reviewing the files one after the other", e);
+            return null;
         }
     }
 
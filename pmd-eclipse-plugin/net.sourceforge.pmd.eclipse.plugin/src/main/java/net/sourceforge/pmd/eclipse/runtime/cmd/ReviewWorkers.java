@@ -0,0 +1,154 @@
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The threads of a parallel review, see
+ * {@link net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewThreads()}.
+ * The rules keep state while they check a file, so each thread has its own
+ * copy of the rule set.  The copies are made in memory, once per thread and
+ * not once per file, from the classes of the rules themselves: the rules
+ * contributed by other plugins can't be found by name from the PMD classes.
+ */
+class ReviewWorkers {
+
+    private static final Logger log = Logger.getLogger(ReviewWorkers.class);
+
+    private final ExecutorService executor;
+    private final CompletionService<Long> completionService;
+    private final ThreadLocal<RuleSets> ruleSets;
+
+    /**
+     * @param ruleSet the rule set to check the files with
+     * @param threads the number of threads
+     * @throws IllegalArgumentException if a rule of the rule set cannot be copied
+     */
+    ReviewWorkers(RuleSet ruleSet, int threads) {
+        // all copies are made here, the threads never touch the rule set of the review
+        final Queue<RuleSets> copies = new ConcurrentLinkedQueue<RuleSets>();
+        for (int i = 0; i < threads; i++) {
+            copies.add(new RuleSets(copy(ruleSet)));
+        }
+        ruleSets = new ThreadLocal<RuleSets>() {
+            @Override
+            protected RuleSets initialValue() {
+                return copies.poll();
+            }
+        };
+
+        final AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PMD review " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        completionService = new ExecutorCompletionService<Long>(executor);
+    }
+
+    /**
+     * @return the rule sets of the current thread, which must be one of the workers
+     */
+    RuleSets ruleSets() {
+        return ruleSets.get();
+    }
+
+    /**
+     * Reviews a file on one of the threads
+     *
+     * @param review returns the duration of the review, or <code>null</code> if it failed
+     */
+    void submit(Callable<Long> review) {
+        completionService.submit(review);
+    }
+
+    /**
+     * Waits for the next review to finish
+     *
+     * @return the duration of the review, or <code>null</code> if it failed
+     */
+    Long take() {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Review failed", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Stops the threads, the reviews which haven't started yet are dropped
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Copies a rule set and its rules
+     *
+     * @param ruleSet the rule set
+     * @return the copy
+     * @throws IllegalArgumentException if a rule cannot be copied
+     */
+    static RuleSet copy(RuleSet ruleSet) {
+        RuleSet copy = new RuleSet();
+        copy.setName(ruleSet.getName());
+        copy.setFileName(ruleSet.getFileName());
+        copy.setDescription(ruleSet.getDescription());
+        copy.addIncludePatterns(ruleSet.getIncludePatterns());
+        copy.addExcludePatterns(ruleSet.getExcludePatterns());
+        for (Rule rule : ruleSet.getRules()) {
+            copy.addRule(copy(rule));
+        }
+        return copy;
+    }
+
+    /**
+     * Copies a rule with a new instance of its class.  A rule reference
+     * passes its overridden values on to the rule it refers to, so the copy
+     * of that rule already has them.
+     *
+     * @param rule the rule
+     * @return the copy
+     * @throws IllegalArgumentException if the rule cannot be copied
+     */
+    static Rule copy(Rule rule) {
+        if (rule instanceof RuleReference) {
+            RuleReference reference = (RuleReference) rule;
+            return new RuleReference(copy(reference.getRule()), reference.getRuleSetReference());
+        }
+        if (!(rule instanceof AbstractRule)) {
+            throw new IllegalArgumentException("Cannot copy rule " + rule.getName() + " of " + rule.getClass());
+        }
+        try {
+            AbstractRule copy = (AbstractRule) rule.getClass().newInstance();
+            ((AbstractRule) rule).deepCopyValuesTo(copy);
+            return copy;
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Cannot copy rule " + rule.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot copy rule " + rule.getName(), e);
+        }
+    }
+}
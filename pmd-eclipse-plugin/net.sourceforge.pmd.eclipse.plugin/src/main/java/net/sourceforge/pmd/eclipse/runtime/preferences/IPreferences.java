@@ -59,6 +59,7 @@ public interface IPreferences {
     boolean PMD_CHECK_AFTER_SAVE_DEFAULT = false;
     boolean PMD_USE_CUSTOM_PRIORITY_NAMES_DEFAULT = true;
     int MAX_VIOLATIONS_PFPR_DEFAULT = 5;
+    int REVIEW_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
     String REVIEW_ADDITIONAL_COMMENT_DEFAULT = "by {0} on {1}";
     boolean REVIEW_PMD_STYLE_ENABLED_DEFAULT = true;
     int MIN_TILE_SIZE_DEFAULT = 25;
@@ -144,6 +145,18 @@ public interface IPreferences {
      * @param maxViolationPerFilePerRule
      */
     void setMaxViolationsPerFilePerRule(int maxViolationPerFilePerRule);
+
+    /**
+     * Get the number of threads which review the files of a project in parallel.
+     * With a single thread, the files are reviewed one after the other by the job.
+     */
+    int getReviewThreads();
+
+    /**
+     * Set the number of threads which review the files of a project in parallel
+     * @param reviewThreads
+     */
+    void setReviewThreads(int reviewThreads);
     
     /**
      * Get the review additional comment. This comment is a text appended to the
@@ -69,6 +69,7 @@ class PreferencesImpl implements IPreferences {
     private boolean				checkAfterSaveEnabled;
     private boolean				useCustomPriorityNames;
     private int 				maxViolationsPerFilePerRule;
+    private int 				reviewThreads;
     private String 				reviewAdditionalComment;
     private boolean 			reviewPmdStyleEnabled;
     private int 				minTileSize;
@@ -158,6 +159,20 @@ class PreferencesImpl implements IPreferences {
         this.maxViolationsPerFilePerRule = maxViolationPerFilePerRule;
     }
 
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewThreads()
+     */
+    public int getReviewThreads() {
+        return reviewThreads;
+    }
+
+    /**
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#setReviewThreads(int)
+     */
+    public void setReviewThreads(int reviewThreads) {
+        this.reviewThreads = reviewThreads;
+    }
+
     /**
      * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getReviewAdditionalComment()
      */
@@ -100,6 +100,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
     private static final String PMD_PERSPECTIVE_ENABLED     	= PMDPlugin.PLUGIN_ID + ".pmd_perspective_enabled";
     private static final String PMD_CHECK_AFTER_SAVE_ENABLED	= PMDPlugin.PLUGIN_ID + ".pmd_check_after_save_enabled";
     private static final String MAX_VIOLATIONS_PFPR         	= PMDPlugin.PLUGIN_ID + ".max_violations_pfpr";
+    private static final String REVIEW_THREADS              	= PMDPlugin.PLUGIN_ID + ".review_threads";
     private static final String REVIEW_ADDITIONAL_COMMENT 		= PMDPlugin.PLUGIN_ID + ".review_additional_comment";
     private static final String REVIEW_PMD_STYLE_ENABLED    	= PMDPlugin.PLUGIN_ID + ".review_pmd_style_enabled";
     private static final String PMD_USE_CUSTOM_PRIORITY_NAMES   = PMDPlugin.PLUGIN_ID + ".use_custom_priority_names";
@@ -164,6 +165,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
         loadCheckAfterSaveEnabled();
         loadUseCustomPriorityNames();
         loadMaxViolationsPerFilePerRule();
+        loadReviewThreads();
         loadReviewAdditionalComment();
         loadReviewPmdStyleEnabled();
         loadMinTileSize();
@@ -228,6 +230,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storeCheckAfterSaveEnabled();
         storeUseCustomPriorityNames();
         storeMaxViolationsPerFilePerRule();
+        storeReviewThreads();
         storeReviewAdditionalComment();
         storeReviewPmdStyleEnabled();
         storeMinTileSize();
@@ -286,6 +289,11 @@ class PreferencesManagerImpl implements IPreferencesManager {
         preferences.setMaxViolationsPerFilePerRule(loadPreferencesStore.getInt(MAX_VIOLATIONS_PFPR));
     }
 
+    private void loadReviewThreads() {
+        loadPreferencesStore.setDefault(REVIEW_THREADS, IPreferences.REVIEW_THREADS_DEFAULT);
+        preferences.setReviewThreads(loadPreferencesStore.getInt(REVIEW_THREADS));
+    }
+
     private void loadReviewAdditionalComment() {
         loadPreferencesStore.setDefault(REVIEW_ADDITIONAL_COMMENT, IPreferences.REVIEW_ADDITIONAL_COMMENT_DEFAULT);
         preferences.setReviewAdditionalComment(loadPreferencesStore.getString(REVIEW_ADDITIONAL_COMMENT));
@@ -412,6 +420,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storePreferencesStore.setValue(MAX_VIOLATIONS_PFPR, preferences.getMaxViolationsPerFilePerRule());
     }
 
+    private void storeReviewThreads() {
+        storePreferencesStore.setValue(REVIEW_THREADS, preferences.getReviewThreads());
+    }
+
     private void storeReviewAdditionalComment() {
         storePreferencesStore.setValue(REVIEW_ADDITIONAL_COMMENT, preferences.getReviewAdditionalComment());
     }
@@ -84,6 +84,7 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
     private Button		checkCodeOnSave;
     private Button		useCustomPriorityNames;    
     private Spinner		maxViolationsPerFilePerRule;
+    private Spinner		reviewThreads;
     private Button		reviewPmdStyleBox;
     private Text		logFileNameText;
     private Scale		logLevelScale;
@@ -155,6 +156,7 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         checkCodeOnSave = buildCheckCodeOnSaveButton(group);
         Label separator = new Label(group, SWT.SEPARATOR | SWT.SHADOW_IN | SWT.HORIZONTAL);
         maxViolationsPerFilePerRule = buildMaxViolationsPerFilePerRuleText(group);
+        reviewThreads = buildReviewThreadsSpinner(group);
 
         GridData data = new GridData();
         data.horizontalAlignment = GridData.FILL;
@@ -176,6 +178,11 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         data.grabExcessHorizontalSpace = true;
         maxViolationsPerFilePerRule.setLayoutData(data);
 
+        data = new GridData();
+        data.horizontalAlignment = GridData.FILL;
+        data.grabExcessHorizontalSpace = true;
+        reviewThreads.setLayoutData(data);
+
         return group;
     }
   
@@ -626,6 +633,29 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         return spinner;
     }
 
+    /**
+     * Build the spinner for the number of review threads
+     *
+     * @param parent
+     * @return
+     */
+    private Spinner buildReviewThreadsSpinner(Composite parent) {
+
+    	Composite comp = new Composite(parent, 0);
+    	comp.setLayout(new GridLayout(2, false));
+
+        Label label = buildLabel(comp, StringKeys.PREF_GENERAL_LABEL_REVIEW_THREADS);
+        label.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, false, false, 1, 1));
+
+        final Spinner spinner = new Spinner(comp, SWT.BORDER);
+        spinner.setLayoutData( new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING, GridData.VERTICAL_ALIGN_CENTER, true, false, 1, 1));
+        spinner.setMinimum(1);
+        spinner.setMaximum(64);
+        spinner.setSelection(preferences.getReviewThreads());
+        spinner.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_REVIEW_THREADS));
+        return spinner;
+    }
+
     /**
      * Build the check box for enabling PMD review style
      * @param viewGroup the parent composite
@@ -666,6 +696,10 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
             maxViolationsPerFilePerRule.setMinimum(IPreferences.MAX_VIOLATIONS_PFPR_DEFAULT);
         }
 
+        if (reviewThreads != null) {
+            reviewThreads.setSelection(IPreferences.REVIEW_THREADS_DEFAULT);
+        }
+
         setText(logFileNameText, IPreferences.LOG_FILENAME_DEFAULT);
 
         if (logLevelScale != null) {
@@ -775,6 +809,10 @@ System.out.println("updating icons");
             preferences.setMaxViolationsPerFilePerRule(Integer.valueOf(maxViolationsPerFilePerRule.getText()).intValue());
         }
 
+        if (reviewThreads != null) {
+            preferences.setReviewThreads(reviewThreads.getSelection());
+        }
+
         if (reviewPmdStyleBox != null) {
             preferences.setReviewPmdStyleEnabled(reviewPmdStyleBox.getSelection());
         }
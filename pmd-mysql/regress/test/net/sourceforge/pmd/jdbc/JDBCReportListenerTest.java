@@ -25,8 +25,8 @@ import java.util.Properties;
 
 public class JDBCReportListenerTest extends TestCase {
     private MockDriver driver = null;
-    private MockPreparedStatement violInsert = null;
-    private MockPreparedStatement metInsert = null;
+    private BatchingMockPreparedStatement violInsert = null;
+    private BatchingMockPreparedStatement metInsert = null;
 
     public void setUp() {
 	driver = new MockDriver();
@@ -72,16 +72,36 @@ public class JDBCReportListenerTest extends TestCase {
 
     }
 
+    private class BatchingMockPreparedStatement
+	extends MockPreparedStatement
+    {
+	private int rows = 0;
+	private int batchedRows = 0;
+	private int batches = 0;
+
+	public void addBatch() {
+	    rows++;
+	}
+
+	public int[] executeBatch() {
+	    int[] result = new int[rows];
+	    batchedRows += rows;
+	    batches++;
+	    rows = 0;
+	    return result;
+	}
+    }
+
     private class MockPMDConx
 	extends MockConnection
     {
 	public MockPMDConx( int projectId, int runId ) {
 	    super();
 	    setupAddPreparedStatement( new MockInsertPMDRuns( projectId, runId ) );
-	    violInsert = new MockPreparedStatement();
+	    violInsert = new BatchingMockPreparedStatement();
 	    setupAddPreparedStatement( violInsert );
 	    
-	    metInsert = new MockPreparedStatement();
+	    metInsert = new BatchingMockPreparedStatement();
 	    setupAddPreparedStatement( metInsert );
 	}
 
@@ -143,6 +163,8 @@ public class JDBCReportListenerTest extends TestCase {
 
 	IUT.ruleViolationAdded( new RuleViolation( new MockRule("viol1", "Description", "msg" ), 
 						   256, ctx ));
+	IUT.close();
+	assertEquals( 1, violInsert.batchedRows );
     }
 
     public void testMultiViolation() throws Throwable {
@@ -182,6 +204,8 @@ public class JDBCReportListenerTest extends TestCase {
 
 	IUT.ruleViolationAdded( new RuleViolation( new MockRule("viol1a", "Descriptiona", "msga" ), 
 						   2561, ctx ));
+	IUT.close();
+	assertEquals( 2, violInsert.batchedRows );
     }
 
     public void testSingleMetric() throws Throwable {
@@ -198,6 +222,8 @@ public class JDBCReportListenerTest extends TestCase {
 	JDBCReportListener IUT = getIUT( 18 );
 
 	IUT.metricAdded( new Metric("single", 5, 30, 1.0, 6.0, 3.0, 1.5) );
+	IUT.close();
+	assertEquals( 1, metInsert.batchedRows );
     }
 
     public void testMultiMetric() throws Throwable {
@@ -223,6 +249,47 @@ public class JDBCReportListenerTest extends TestCase {
 	metInsert.addExpectedSetParameter( 6, new Double( 1.51 ));
 
 	IUT.metricAdded( new Metric("second", 7, 32.5, 1.01, 6.01, 3.01, 1.51) );
+	IUT.close();
+	assertEquals( 2, metInsert.batchedRows );
+    }
+
+    public void testBatchSize() throws Throwable {
+	MockConnection conx = new MockPMDConx( 18, 378 );
+	driver.setupConnect( conx );
+
+	JDBCReportListener IUT = new JDBCReportListener( "jdbc:mock:testBatchSize",
+							 "tbs_user", "tbs_pw", 18, 10, 1000 );
+	for (int i = 0; i < 95; i++) {
+	    IUT.metricAdded( new Metric("metric" + i, 5, 30, 1.0, 6.0, 3.0, 1.5) );
+	}
+	IUT.close();
+
+	assertEquals( 95, metInsert.batchedRows );
+	assertTrue( "Batches too large.", metInsert.batches >= 10 );
+	assertEquals( 0, violInsert.batches );
+    }
+
+    public void testCloseTwice() throws Throwable {
+	MockConnection conx = new MockPMDConx( 18, 378 );
+	driver.setupConnect( conx );
+
+	JDBCReportListener IUT = getIUT( 18 );
+	IUT.close();
+	IUT.close();
+    }
+
+    public void testAddAfterClose() throws Throwable {
+	MockConnection conx = new MockPMDConx( 18, 378 );
+	driver.setupConnect( conx );
+
+	JDBCReportListener IUT = getIUT( 18 );
+	IUT.close();
+	try {
+	    IUT.metricAdded( new Metric("late", 5, 30, 1.0, 6.0, 3.0, 1.5) );
+	    fail( "Metric added after close." );
+	} catch (IllegalStateException expected) {
+	}
+	assertEquals( 0, metInsert.batchedRows );
     }
 
 }
@@ -11,7 +11,15 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * JDBCReportListener relies on several System Properties
@@ -21,16 +29,28 @@ import java.util.Properties;
  * net.sourceforge.pmd.jdbc.user = Username to log into database with.
  * net.sourceforge.pmd.jdbc.password = Password to use for logging into the database.
  * net.sourceforge.pmd.jdbc.project_id = Identifier of the project being run.
- * 
+ * net.sourceforge.pmd.jdbc.batchsize = Number of rows written with one batch, defaults to 100.
+ * net.sourceforge.pmd.jdbc.queuesize = Number of rows buffered in memory, defaults to 10000.
+ *
  * Naturally, you can just call the apropriate initializer if you don't
  * want to use the System Properties. . .
  *
  * It is up to the outside application to ensure that its JDBC driver
  * is registered with DriverManager.  I believe different drivers register
  * differently, so I don't really want to do this myself.
+ *
+ * Violations and metrics are not written on the thread reporting them.
+ * They are put into a bounded queue and a dedicated writer thread inserts
+ * them with JDBC batches through the same two prepared statements, so the
+ * analysis threads only wait if the queue is full.  Call {@link #close()}
+ * after the analysis to write the remaining rows; it reports any
+ * SQLException the writer thread ran into.  A ReportListener isn't told
+ * when the report is complete, so if close() isn't called, a shutdown hook
+ * writes the remaining rows when the JVM exits.  Rows added after close()
+ * are rejected with an IllegalStateException.
  */
 
-public class JDBCReportListener 
+public class JDBCReportListener
     extends Object
     implements ReportListener {
 
@@ -38,61 +58,85 @@ public class JDBCReportListener
     public static final String JDBC_USER      = "net.sourceforge.pmd.jdbc.user";
     public static final String JDBC_PASSWORD  = "net.sourceforge.pmd.jdbc.password";
     public static final String JDBC_PROJECTID = "net.sourceforge.pmd.jdbc.projectid";
+    public static final String JDBC_BATCHSIZE = "net.sourceforge.pmd.jdbc.batchsize";
+    public static final String JDBC_QUEUESIZE = "net.sourceforge.pmd.jdbc.queuesize";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private static final Logger LOG = Logger.getLogger( JDBCReportListener.class.getName() );
+
+    /** Marks the end of the queue. */
+    private static final Object END = new Object();
 
     private Connection conx;
     private PreparedStatement violStmt;
     private PreparedStatement metricStmt;
 
     private int runId = -1;
+    private int batchSize;
+
+    private BlockingQueue<Object> queue;
+    private Thread writer;
+    private Thread shutdownHook;
+    private volatile SQLException failure;
+    /** Held for reading while a row is enqueued and for writing to close the queue. */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
 
-    public JDBCReportListener() 
+    public JDBCReportListener()
 	throws SQLException
     {
-	if (System.getProperty( JDBC_PROJECTID ) != null) {
-	    initialize( System.getProperty( JDBC_URL ), 
-		        System.getProperty( JDBC_USER ),
-		        System.getProperty( JDBC_PASSWORD ),
-		        Integer.parseInt(System.getProperty( JDBC_PROJECTID )));
-	} else {
-	    initialize( System.getProperty( JDBC_URL ),
-		        System.getProperty( JDBC_USER ),
-		        System.getProperty( JDBC_PASSWORD ),
-		        0 );
-	}
+	this( System.getProperties() );
     }
 
-    public JDBCReportListener(Properties props) 
-	throws SQLException 
+    public JDBCReportListener(Properties props)
+	throws SQLException
     {
+	String projectId = props.getProperty( JDBC_PROJECTID );
 	initialize( props.getProperty( JDBC_URL ),
 		    props.getProperty( JDBC_USER ),
 		    props.getProperty( JDBC_PASSWORD ),
-		    Integer.parseInt(props.getProperty( JDBC_PROJECTID )));
+		    projectId == null ? 0 : Integer.parseInt( projectId ),
+		    Integer.parseInt( props.getProperty( JDBC_BATCHSIZE, String.valueOf( DEFAULT_BATCH_SIZE ))),
+		    Integer.parseInt( props.getProperty( JDBC_QUEUESIZE, String.valueOf( DEFAULT_QUEUE_SIZE ))));
+    }
+
+    public JDBCReportListener( String url,
+			       String user, String password, int projectId )
+	throws SQLException
+    {
+	this( url, user, password, projectId, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE );
     }
 
-    public JDBCReportListener( String url, 
-			       String user, String password, int projectId ) 
+    public JDBCReportListener( String url,
+			       String user, String password, int projectId,
+			       int batchSize, int queueSize )
 	throws SQLException
     {
-	initialize( url, user, password, projectId );
+	initialize( url, user, password, projectId, batchSize, queueSize );
     }
 
-    private void initialize( String url, String user, String password, int projectId ) 
+    private void initialize( String url, String user, String password, int projectId,
+			     int batchSize, int queueSize )
 	throws SQLException
     {
+	if (batchSize < 1 || queueSize < 1) {
+	    throw new IllegalArgumentException( "Batch and queue size must be positive" );
+	}
 	PreparedStatement ins = null;
 	ResultSet keys = null;
 
 	try {
 	    conx = DriverManager.getConnection( url, user, password );
-	    
+
  	    ins = conx.prepareStatement("INSERT INTO PMD_RUNS (PROJECT_ID, RUN_DATE) VALUES (?, ?)",
  					Statement.RETURN_GENERATED_KEYS);
  	    ins.setInt(1, projectId);
  	    ins.setDate(2, new Date( System.currentTimeMillis() ));
 
  	    ins.executeUpdate();
-	    
+
  	    keys = ins.getGeneratedKeys();
 	    keys.next();
 	    runId = keys.getInt(1);
@@ -112,35 +156,186 @@ public class JDBCReportListener
 	    if (keys != null) { keys.close(); }
 	    if (ins != null) { ins.close(); }
 	}
+
+	this.batchSize = batchSize;
+	queue = new ArrayBlockingQueue<Object>( queueSize );
+	writer = new Thread( new Runnable() {
+		public void run() {
+		    write();
+		}
+	    }, "PMD JDBC writer " + runId );
+	writer.setDaemon( true );
+	writer.start();
+
+	shutdownHook = new Thread( new Runnable() {
+		public void run() {
+		    try {
+			close();
+		    } catch (SQLException e) {
+			LOG.log( Level.WARNING, "Could not close the listener of run " + runId, e );
+		    }
+		}
+	    }, "PMD JDBC close " + runId );
+	Runtime.getRuntime().addShutdownHook( shutdownHook );
     }
 
     public void ruleViolationAdded( RuleViolation ruleViolation ) {
+	enqueue( new Violation( ruleViolation ) );
+    }
+
+    public void metricAdded( Metric metric ) {
+	enqueue( metric );
+    }
+
+    /**
+     * No row may follow the end of the queue, the writer thread doesn't take
+     * any rows after it.  The writer keeps draining the queue until then,
+     * so a full queue doesn't block close() for long.
+     */
+    private void enqueue( Object row ) {
+	closeLock.readLock().lock();
 	try {
-	    violStmt.setInt( 1, runId );
-	    violStmt.setString( 2, ruleViolation.getRule().getName() );
-	    violStmt.setString( 3, ruleViolation.getFilename() );
-	    violStmt.setInt( 4, ruleViolation.getLine() );
-	    violStmt.setString( 5, ruleViolation.getPackageName() );
-	    violStmt.setString( 6, ruleViolation.getClassName() );
-	    violStmt.setString( 7, ruleViolation.getDescription() );
-
-	    violStmt.execute();
-	} catch (Exception e) {
+	    if (closed) {
+		throw new IllegalStateException( "The listener of run " + runId + " is closed" );
+	    }
+	    checkFailure();
+	    queue.put( row );
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
 	    throw new RuntimeException( e );
+	} finally {
+	    closeLock.readLock().unlock();
 	}
     }
-    public void metricAdded( Metric metric ) {
+
+    private void checkFailure() {
+	if (failure != null) {
+	    throw new RuntimeException( failure );
+	}
+    }
+
+    /**
+     * Writes the remaining rows, waits for the writer thread and closes
+     * the database connection.
+     *
+     * @throws SQLException if any row couldn't be written
+     */
+    public synchronized void close() throws SQLException {
+	closeLock.writeLock().lock();
 	try {
- 	    metricStmt.setInt( 1, runId );
- 	    metricStmt.setString( 2, metric.getMetricName() );
- 	    metricStmt.setDouble( 3, metric.getLowValue() );
- 	    metricStmt.setDouble( 4, metric.getHighValue() );
- 	    metricStmt.setDouble( 5, metric.getAverage() );
- 	    metricStmt.setDouble( 6, metric.getStandardDeviation() );
-
- 	    metricStmt.execute();
-	} catch (Exception e) {
-	    throw new RuntimeException( e );
+	    if (closed) {
+		return;
+	    }
+	    closed = true;
+	} finally {
+	    closeLock.writeLock().unlock();
+	}
+	if (Thread.currentThread() != shutdownHook) {
+	    try {
+		Runtime.getRuntime().removeShutdownHook( shutdownHook );
+	    } catch (IllegalStateException e) {
+		// the JVM is already shutting down, the hook waits for this close()
+	    }
+	}
+	try {
+	    queue.put( END );
+	    writer.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    writer.interrupt();
+	} finally {
+	    try {
+		violStmt.close();
+		metricStmt.close();
+	    } finally {
+		conx.close();
+	    }
+	}
+	if (failure != null) {
+	    throw failure;
+	}
+    }
+
+    /**
+     * The writer thread: takes the rows from the queue, as many as are
+     * available up to the batch size, and writes them as one batch.
+     */
+    private void write() {
+	List<Object> rows = new ArrayList<Object>( batchSize );
+	boolean done = false;
+	while (!done) {
+	    try {
+		rows.add( queue.take() );
+	    } catch (InterruptedException e) {
+		return;
+	    }
+	    queue.drainTo( rows, batchSize - 1 );
+	    done = rows.remove( END );
+	    if (failure == null && !rows.isEmpty()) {
+		try {
+		    writeBatch( rows );
+		} catch (SQLException e) {
+		    failure = e;
+		}
+	    }
+	    rows.clear();
+	}
+    }
+
+    private void writeBatch( List<Object> rows ) throws SQLException {
+	boolean violations = false;
+	boolean metrics = false;
+	for (Object row : rows) {
+	    if (row instanceof Violation) {
+		Violation v = (Violation) row;
+		violStmt.setInt( 1, runId );
+		violStmt.setString( 2, v.rule );
+		violStmt.setString( 3, v.filename );
+		violStmt.setInt( 4, v.line );
+		violStmt.setString( 5, v.packageName );
+		violStmt.setString( 6, v.className );
+		violStmt.setString( 7, v.description );
+		violStmt.addBatch();
+		violations = true;
+	    } else {
+		Metric metric = (Metric) row;
+		metricStmt.setInt( 1, runId );
+		metricStmt.setString( 2, metric.getMetricName() );
+		metricStmt.setDouble( 3, metric.getLowValue() );
+		metricStmt.setDouble( 4, metric.getHighValue() );
+		metricStmt.setDouble( 5, metric.getAverage() );
+		metricStmt.setDouble( 6, metric.getStandardDeviation() );
+		metricStmt.addBatch();
+		metrics = true;
+	    }
+	}
+	if (violations) {
+	    violStmt.executeBatch();
+	}
+	if (metrics) {
+	    metricStmt.executeBatch();
+	}
+    }
+
+    /**
+     * The columns of a violation, copied on the reporting thread, since
+     * rule violations may refer to the AST of the file being analyzed.
+     */
+    private static class Violation {
+	final String rule;
+	final String filename;
+	final int line;
+	final String packageName;
+	final String className;
+	final String description;
+
+	Violation( RuleViolation ruleViolation ) {
+	    rule = ruleViolation.getRule().getName();
+	    filename = ruleViolation.getFilename();
+	    line = ruleViolation.getLine();
+	    packageName = ruleViolation.getPackageName();
+	    className = ruleViolation.getClassName();
+	    description = ruleViolation.getDescription();
 	}
     }
 }
@@ -0,0 +1,157 @@
+package test.net.sourceforge.pmd.rx;
+
+import org.drools.*;
+import org.drools.rule.*;
+import org.drools.spi.*;
+import org.drools.semantics.java.*;
+
+import net.sourceforge.pmd.rx.*;
+import net.sourceforge.pmd.rx.facts.*;
+
+import test.net.sourceforge.pmd.rx.rules.DroolsRuleTst;
+
+import junit.framework.TestCase;
+
+public class DroolsRuleTest
+    extends TestCase
+{
+    private static String JAVA_FOO =
+	"public class Foo { }";
+
+    private static String JAVA_BAR =
+	"public class Bar { }";
+
+    public DroolsRuleTest(String name) {
+	super( name );
+    }
+
+    public void testOtherFile()
+	throws Throwable
+    {
+	DroolsRule rule = new DroolsRule( new DuplicateClass() );
+
+	// the facts of A are retracted before B is checked
+	assertEquals("Expecting no violations",
+		     0, DroolsRuleTst.check( rule, "A.java", JAVA_FOO ).size() );
+	assertEquals("Expecting no violations",
+		     0, DroolsRuleTst.check( rule, "B.java", JAVA_FOO ).size() );
+	assertEquals("Expecting no facts",
+		     0, rule.getWorkingMemory().getObjects().size() );
+    }
+
+    public void testViolationOfOtherFile()
+	throws Throwable
+    {
+	DroolsRule rule = new DroolsRule( new FirstClass() );
+
+	assertEquals("Expecting no violations",
+		     0, DroolsRuleTst.check( rule, "A.java", JAVA_FOO ).size() );
+	try {
+	    DroolsRuleTst.check( rule, "B.java", JAVA_BAR );
+	    fail("Expecting the violation of A to be rejected");
+	} catch (IllegalStateException ise) {
+	    // expected
+	}
+	assertEquals("Expecting no facts",
+		     0, rule.getWorkingMemory().getObjects().size() );
+    }
+
+    /**
+     * Two top level classes of the same name in different files
+     */
+    private static class DuplicateClass
+	extends org.drools.rule.Rule
+	implements Consequence, Condition
+    {
+	private Declaration req[] = new Declaration[2];
+
+	public DuplicateClass() {
+	    super( "DuplicateClass" );
+
+	    req[0] = new Declaration( new ClassObjectType( ClassFact.class ),
+				      "class-0" );
+	    req[1] = new Declaration( new ClassObjectType( ClassFact.class ),
+				      "class-1" );
+
+	    addParameterDeclaration( req[0] );
+	    addParameterDeclaration( req[1] );
+	    addCondition( this );
+	    setConsequence( this );
+	}
+
+	// Condition
+	public Declaration[] getRequiredTupleMembers() {
+	    return req;
+	}
+
+	public boolean isAllowed( Tuple tuple ) {
+	    ClassFact class0 = (ClassFact) tuple.get( req[0] );
+	    ClassFact class1 = (ClassFact) tuple.get( req[1] );
+
+	    return class0.getACU() != class1.getACU()
+		&& class0.getOuterClass() == null
+		&& class1.getOuterClass() == null
+		&& class0.getClassName() != null
+		&& class0.getClassName().equals( class1.getClassName() );
+	}
+
+	// Consequence
+	public void invoke( Tuple tuple,
+			    WorkingMemory memory ) throws ConsequenceException {
+	    try {
+		memory.assertObject( new RuleViolationFact( tuple.get( req[0] ),
+							    "Duplicate Class" ));
+	    } catch (FactException fe) {
+		throw new ConsequenceException( fe );
+	    }
+	}
+    }
+
+    /**
+     * Remembers the first class it sees, and reports it again for the
+     * classes of later files
+     */
+    private static class FirstClass
+	extends org.drools.rule.Rule
+	implements Consequence, Condition
+    {
+	private Declaration req[] = new Declaration[1];
+	private ClassFact first = null;
+
+	public FirstClass() {
+	    super( "FirstClass" );
+
+	    req[0] = new Declaration( new ClassObjectType( ClassFact.class ),
+				      "class" );
+
+	    addParameterDeclaration( req[0] );
+	    addCondition( this );
+	    setConsequence( this );
+	}
+
+	// Condition
+	public Declaration[] getRequiredTupleMembers() {
+	    return req;
+	}
+
+	public boolean isAllowed( Tuple tuple ) {
+	    return tuple.get( req[0] ) instanceof ClassFact;
+	}
+
+	// Consequence
+	public void invoke( Tuple tuple,
+			    WorkingMemory memory ) throws ConsequenceException {
+	    ClassFact classFact = (ClassFact) tuple.get( req[0] );
+	    if (first == null) {
+		first = classFact;
+		return;
+	    }
+	    try {
+		memory.assertObject( new RuleViolationFact( first,
+							    "First Class" ));
+	    } catch (FactException fe) {
+		throw new ConsequenceException( fe );
+	    }
+	}
+    }
+}
@@ -4,24 +4,21 @@ import java.util.Set;
 import java.util.HashSet;
 import java.util.Iterator;
 
-import java.io.StringReader;
-
 import org.drools.*;
-import org.drools.spi.*;
-import org.drools.semantic.java.*;
+import org.drools.rule.RuleSet;
 
 import net.sourceforge.pmd.*;
 import net.sourceforge.pmd.rx.*;
-import net.sourceforge.pmd.ast.*;
+import net.sourceforge.pmd.lang.java.ast.*;
 import net.sourceforge.pmd.rx.facts.*;
 
+import test.net.sourceforge.pmd.rx.rules.DroolsRuleTst;
+
 import junit.framework.TestCase;
 
 public class DroolsVisitorTest
     extends TestCase
 {
-    private String testName = null;
-
     private static String JAVA_TEST_PACKAGE =
 	"package test;" +
 	"public class HelloWorld { }";
@@ -61,11 +58,9 @@ public class DroolsVisitorTest
 	"  void foo() { Named.bar( new Runnable() { } ); } " +
         "}";
 
-    private ASTCompilationUnit current = null;
 
     public DroolsVisitorTest(String name) {
 	super( name );
-	this.testName = name;
     }
 
     public void testPackage() throws Throwable {
@@ -325,69 +320,48 @@ public class DroolsVisitorTest
 			  Object expected,
 			  Object result ) throws Throwable
     {
-	try {
-	    assertEquals( message, expected, result );
-	} catch (Throwable t) {
-	    current.dump(testName + ": ");
-	    throw t;
-	}
+	assertEquals( message, expected, result );
     }
     
     public void assertEq( String message,
 			  boolean expected,
 			  boolean result ) throws Throwable
     {
-	try {
-	    assertEquals( message, expected, result );
-	} catch (Throwable t) {
-	    current.dump(testName + ": ");
-	    throw t;
-	}
+	assertEquals( message, expected, result );
     }
 
     public void assertEq( String message,
 			  int expected,
 			  int result ) throws Throwable
     {
-	try {
-	    assertEquals( message, expected, result );
-	} catch (Throwable t) {
-	    current.dump(testName + ": ");
-	    throw t;
-	}
+	assertEquals( message, expected, result );
     }
 
     public void assertT( String message,
 			 boolean cond ) throws Throwable
     {
-	try {
-	    assertTrue( message, cond );
-	} catch (Throwable t) {
-	    current.dump(testName + ": ");
-	    throw t;
-	}
+	assertTrue( message, cond );
     }
 
     public Set collectFacts( Class clazz,
 			     String javaCode )
 	throws Throwable
     {
-	RuleBase rules = new RuleBase();
+	RuleSet ruleSet = new RuleSet( "DroolsVisitorTest" );
 	FactCollector collector = new FactCollector( clazz );
 	
-	rules.addRule( collector );
+	ruleSet.addRule( collector );
 
-	JavaParser parser =
-	    new JavaParser( new StringReader( javaCode ));
-	ASTCompilationUnit acu =
-	    parser.CompilationUnit();
+	RuleBaseBuilder builder = new RuleBaseBuilder();
+	builder.addRuleSet( ruleSet );
 
-	current = acu;
+	ASTCompilationUnit acu = DroolsRuleTst.parse( javaCode );
 
-	WorkingMemory memory = rules.createWorkingMemory();
+	WorkingMemory memory = builder.build().newWorkingMemory();
 
 	DroolsVisitor IUT = new DroolsVisitor( memory );
 	IUT.visit( acu, null );
+	memory.fireAllRules();
 
 	return collector.getFacts();
     }
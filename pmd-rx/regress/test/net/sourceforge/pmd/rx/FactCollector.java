@@ -4,12 +4,13 @@ import java.util.Set;
 import java.util.HashSet;
 
 import org.drools.*;
+import org.drools.rule.*;
 import org.drools.spi.*;
-import org.drools.semantic.java.*;
+import org.drools.semantics.java.*;
 
 public class FactCollector
-    extends org.drools.spi.Rule
-    implements Action, FilterCondition
+    extends org.drools.rule.Rule
+    implements Consequence, Condition
 {
     private Class clazz = null;
     private Declaration req[] = new Declaration[1];
@@ -18,21 +19,15 @@ public class FactCollector
     public FactCollector( Class clazz ) {
 	super( "FactCollector" );
 	
-	try {
-	    this.clazz = clazz;
-	    req[0] = new Declaration( new JavaObjectType( clazz ), "item" );
-	    
-	    addParameterDeclaration( req[0] );
-	    addFilterCondition( this );
-	    setAction( this );
-	} catch (DeclarationAlreadyCompleteException dce) {
-	    // This should never happen. . .
-	    dce.printStackTrace();
-	    throw new RuntimeException( dce.getMessage() );
-	}
+	this.clazz = clazz;
+	req[0] = new Declaration( new ClassObjectType( clazz ), "item" );
+
+	addParameterDeclaration( req[0] );
+	addCondition( this );
+	setConsequence( this );
     }
 
-    // FilterCondition . . .
+    // Condition . . .
     public Declaration[] getRequiredTupleMembers() {
 	return req;
     }
@@ -2,13 +2,20 @@ package test.net.sourceforge.pmd.rx.rules;
 
 import java.io.StringReader;
 
+import java.util.Collections;
 import java.util.Set;
 
 import org.drools.*;
-import org.drools.spi.Rule;
+import org.drools.rule.Rule;
+import org.drools.rule.RuleSet;
 
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.rx.*;
-import net.sourceforge.pmd.ast.*;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.java.ast.*;
+import net.sourceforge.pmd.lang.java.symboltable.SymbolFacade;
 import net.sourceforge.pmd.rx.facts.*;
 
 import test.net.sourceforge.pmd.rx.*;
@@ -25,23 +32,52 @@ public class DroolsRuleTst
     public Set collectViolations( Rule IUT, String javaCode ) 
 	throws Throwable
     {
-	RuleBase rules = new RuleBase();
+	RuleSet ruleSet = new RuleSet( "DroolsRuleTst" );
 	FactCollector collector = new FactCollector( RuleViolationFact.class );
 	
-	rules.addRule( collector );
-	rules.addRule( IUT );
+	ruleSet.addRule( collector );
+	ruleSet.addRule( IUT );
 
-	JavaParser parser =
-	    new JavaParser( new StringReader( javaCode ));
-	ASTCompilationUnit acu =
-	    parser.CompilationUnit();
+	RuleBaseBuilder builder = new RuleBaseBuilder();
+	builder.addRuleSet( ruleSet );
 
-	WorkingMemory memory = rules.createWorkingMemory();
+	ASTCompilationUnit acu = parse( javaCode );
+
+	WorkingMemory memory = builder.build().newWorkingMemory();
 
 	DroolsVisitor visitor = new DroolsVisitor( memory );
 	visitor.visit( acu, null );
+	memory.fireAllRules();
 
 	return collector.getFacts();
     }
 
+    public static ASTCompilationUnit parse( String javaCode ) {
+	LanguageVersionHandler handler =
+	    LanguageVersion.JAVA_15.getLanguageVersionHandler();
+	return (ASTCompilationUnit) handler
+	    .getParser( handler.getDefaultParserOptions() )
+	    .parse( null, new StringReader( javaCode ));
+    }
+
+    /**
+     * Checks a file with a PMD rule, as the processors do
+     *
+     * @return the report of the file
+     */
+    public static Report check( DroolsRule rule,
+				String fileName,
+				String javaCode )
+    {
+	RuleContext ctx = new RuleContext();
+	Report report = new Report();
+	ctx.setReport( report );
+	ctx.setSourceCodeFilename( fileName );
+	ctx.setLanguageVersion( LanguageVersion.JAVA_15 );
+	ASTCompilationUnit acu = parse( javaCode );
+	new SymbolFacade().initializeWith( acu );
+	rule.apply( Collections.singletonList( acu ), ctx );
+	return report;
+    }
+
 }
@@ -0,0 +1,110 @@
+package test.net.sourceforge.pmd.rx.rules;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.rule.imports.DuplicateImportsRule;
+import net.sourceforge.pmd.rx.rules.DuplicateImportRule;
+
+/**
+ * Compares the time the Drools rule DuplicateImport takes with the time
+ * of the visitor rule DuplicateImports on the same ASTs.  The files are
+ * parsed before the rules are timed.
+ * <p>
+ * The Drools rule is run twice: ended after each file, as the single
+ * threaded processor does, and ended after the last file, so that it
+ * reuses its working memory, as a thread of the multi threaded processor
+ * does.
+ * <p>
+ * Usage: DuplicateImportBenchmark &lt;source directory&gt; [rounds]
+ */
+public class DuplicateImportBenchmark
+{
+    private static final LanguageVersion VERSION = LanguageVersion.JAVA_17;
+
+    public static void main( String[] args ) throws Exception {
+	if (args.length < 1) {
+	    System.err.println( "Usage: DuplicateImportBenchmark <source directory> [rounds]" );
+	    System.exit( 1 );
+	}
+	int rounds = args.length > 1 ? Integer.parseInt( args[1] ) : 5;
+
+	List<File> files = new ArrayList<File>();
+	collect( new File( args[0] ), files );
+	List<ASTCompilationUnit> acus = new ArrayList<ASTCompilationUnit>();
+	for (File file : files) {
+	    acus.add( parse( file ));
+	}
+	System.out.println( files.size() + " files, " + rounds + " rounds" );
+
+	for (int round = 1; round <= rounds; round++) {
+	    System.out.println( "round " + round + ": "
+				+ time( "visitor", new DuplicateImportsRule(), files, acus, true ) + ", "
+				+ time( "drools per file", new DuplicateImportRule(), files, acus, true ) + ", "
+				+ time( "drools reused", new DuplicateImportRule(), files, acus, false ));
+	}
+    }
+
+    private static String time( String name, Rule rule,
+				List<File> files, List<ASTCompilationUnit> acus,
+				boolean endEachFile ) {
+	RuleContext ctx = new RuleContext();
+	ctx.setLanguageVersion( VERSION );
+	Report report = new Report();
+	ctx.setReport( report );
+
+	long start = System.nanoTime();
+	for (int i = 0; i < acus.size(); i++) {
+	    ctx.setSourceCodeFilename( files.get( i ).getPath() );
+	    if (endEachFile || i == 0) {
+		rule.start( ctx );
+	    }
+	    rule.apply( Collections.singletonList( acus.get( i )), ctx );
+	    if (endEachFile || i == acus.size() - 1) {
+		rule.end( ctx );
+	    }
+	}
+	long millis = (System.nanoTime() - start) / 1000000;
+	return name + " " + millis + " ms (" + report.size() + " violations)";
+    }
+
+    private static ASTCompilationUnit parse( File file ) throws Exception {
+	LanguageVersionHandler handler = VERSION.getLanguageVersionHandler();
+	Reader reader = new InputStreamReader( new FileInputStream( file ), "UTF-8" );
+	try {
+	    ASTCompilationUnit acu = (ASTCompilationUnit) handler
+		.getParser( handler.getDefaultParserOptions() )
+		.parse( file.getPath(), reader );
+	    // neither rule uses type resolution
+	    handler.getSymbolFacade().start( acu );
+	    return acu;
+	} finally {
+	    reader.close();
+	}
+    }
+
+    private static void collect( File dir, List<File> files ) {
+	File[] children = dir.listFiles();
+	if (children == null) {
+	    return;
+	}
+	for (File child : children) {
+	    if (child.isDirectory()) {
+		collect( child, files );
+	    } else if (child.getName().endsWith( ".java" )) {
+		files.add( child );
+	    }
+	}
+    }
+}
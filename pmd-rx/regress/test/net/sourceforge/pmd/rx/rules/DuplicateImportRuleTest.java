@@ -0,0 +1,67 @@
+package test.net.sourceforge.pmd.rx.rules;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.rx.rules.*;
+
+import junit.framework.TestCase;
+
+public class DuplicateImportRuleTest
+    extends TestCase
+{
+    private String JAVA_NO_DUPE =
+	"import java.util.*;" +
+	"public class HelloWorld { }";
+
+    private String JAVA_DUPE =
+	"import java.util.*;\n" +
+	"import java.util.List;\n" +
+	"public class HelloWorld { }";
+
+    public DuplicateImportRuleTest(String name) {
+	super( name );
+    }
+
+    public void testViolations()
+	throws Throwable
+    {
+	DuplicateImportRule rule = new DuplicateImportRule();
+
+	Report report = DroolsRuleTst.check( rule, "Foo.java", JAVA_DUPE );
+	assertEquals("Expecting 2 violations",
+		     2, report.size() );
+	assertEquals("Expecting no violations",
+		     0, DroolsRuleTst.check( rule, "Bar.java", JAVA_NO_DUPE ).size() );
+    }
+
+    public void testChangedFile()
+	throws Throwable
+    {
+	DuplicateImportRule rule = new DuplicateImportRule();
+
+	assertEquals("Expecting 2 violations",
+		     2, DroolsRuleTst.check( rule, "Foo.java", JAVA_DUPE ).size() );
+	// the facts of a file are retracted after it is checked, with their violations
+	assertEquals("Expecting no facts",
+		     0, rule.getWorkingMemory().getObjects().size() );
+	assertEquals("Expecting no violations",
+		     0, DroolsRuleTst.check( rule, "Foo.java", JAVA_NO_DUPE ).size() );
+	assertEquals("Expecting 2 violations",
+		     2, DroolsRuleTst.check( rule, "Foo.java", JAVA_DUPE ).size() );
+	assertEquals("Expecting no facts",
+		     0, rule.getWorkingMemory().getObjects().size() );
+    }
+
+    public void testEnd()
+	throws Throwable
+    {
+	DuplicateImportRule rule = new DuplicateImportRule();
+
+	DroolsRuleTst.check( rule, "Foo.java", JAVA_DUPE );
+	assertNotNull( rule.getWorkingMemory() );
+	rule.end( new RuleContext() );
+	assertNull( rule.getWorkingMemory() );
+	assertEquals("Expecting 2 violations",
+		     2, DroolsRuleTst.check( rule, "Foo.java", JAVA_DUPE ).size() );
+    }
+}
@@ -0,0 +1,119 @@
+package net.sourceforge.pmd.rx;
+
+import org.drools.*;
+import org.drools.rule.RuleSet;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
+import net.sourceforge.pmd.rx.facts.*;
+
+/**
+ * Applies the rules of a Drools rule base as a PMD rule, so they can be
+ * part of a RuleSet.  The rete network evaluates the conditions shared
+ * by the rules only once.
+ * <p>
+ * The working memory only holds the facts of the file being checked.
+ * They are retracted after the rules have fired, together with the
+ * RuleViolationFacts asserted for them.  So the Drools rules can only
+ * match facts of one file: each thread of a multi threaded run has its
+ * own rule instances, and rules matching the facts of several files would
+ * report violations depending on the number of threads.  A
+ * RuleViolationFact of a fact of another file is rejected.
+ */
+public class DroolsRule
+    extends AbstractJavaRule
+{
+    private RuleBase ruleBase = null;
+    private ViolationCollector violations = new ViolationCollector();
+    private WorkingMemory memory = null;
+
+    public DroolsRule( org.drools.rule.Rule... rules ) {
+	RuleSet ruleSet = new RuleSet( getClass().getName() );
+	addDroolsRule( ruleSet, violations );
+	for (org.drools.rule.Rule rule : rules) {
+	    addDroolsRule( ruleSet, rule );
+	}
+
+	RuleBaseBuilder builder = new RuleBaseBuilder();
+	try {
+	    builder.addRuleSet( ruleSet );
+	} catch (RuleIntegrationException rie) {
+	    throw new IllegalArgumentException( "Cannot add rule " + rie.getRule().getName() + ": " + rie.getMessage() );
+	}
+	ruleBase = builder.build();
+    }
+
+    private static void addDroolsRule( RuleSet ruleSet, org.drools.rule.Rule rule ) {
+	try {
+	    ruleSet.addRule( rule );
+	} catch (Exception e) {
+	    throw new IllegalArgumentException( "Cannot add rule " + rule.getName() + ": " + e.getMessage() );
+	}
+    }
+
+    public Object visit(ASTCompilationUnit node, Object data) {
+	RuleContext ctx = (RuleContext) data;
+
+	if (memory == null) {
+	    memory = ruleBase.newWorkingMemory();
+	}
+
+	DroolsVisitor visitor = new DroolsVisitor( memory, ctx.getSourceCodeFilename() );
+	try {
+	    visitor.visit( node, data );
+	    memory.fireAllRules();
+
+	    for (RuleViolationFact violation : violations.takeNewViolations()) {
+		ACUFact acu = ViolationCollector.getACU( violation.getFact() );
+		if (acu != null && acu != visitor.getACU()) {
+		    throw new IllegalStateException( "Rule violation of " + acu.getFileName()
+						     + " while checking " + ctx.getSourceCodeFilename()
+						     + ", the Drools rules may only match the facts of one file" );
+		}
+		int line = getLine( violation, node.getBeginLine() );
+		addViolationWithMessage( data, node, violation.getDescription(), line, line );
+	    }
+	} catch (FactException fe) {
+	    throw new RuntimeException( fe.getMessage() );
+	} finally {
+	    retract( violations.takeHandles() );
+	    visitor.retractFacts();
+	}
+	return data;
+    }
+
+    /**
+     * @return the working memory, which holds no facts between two files,
+     *         or null before the first file and after the end
+     */
+    public WorkingMemory getWorkingMemory() {
+	return memory;
+    }
+
+    /**
+     * Drops the working memory.
+     */
+    public void end(RuleContext ctx) {
+	violations.clear();
+	memory = null;
+	super.end( ctx );
+    }
+
+    private void retract( Iterable<FactHandle> handles ) {
+	try {
+	    for (FactHandle handle : handles) {
+		memory.retractObject( handle );
+	    }
+	} catch (FactException fe) {
+	    throw new RuntimeException( fe.getMessage() );
+	}
+    }
+
+    private static int getLine( RuleViolationFact violation, int defaultLine ) {
+	if (violation.getFact() instanceof ImportFact) {
+	    return ((ImportFact) violation.getFact()).getLineNumber();
+	}
+	return defaultLine;
+    }
+}
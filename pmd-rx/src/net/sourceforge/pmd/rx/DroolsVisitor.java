@@ -1,106 +1,122 @@
 package net.sourceforge.pmd.rx;
 
-import org.drools.WorkingMemory;
-import org.drools.AssertionException;
+import java.util.ArrayList;
+import java.util.List;
 
-import net.sourceforge.pmd.ast.*;
+import org.drools.*;
+
+import net.sourceforge.pmd.lang.java.ast.*;
 import net.sourceforge.pmd.rx.facts.*;
 
+/**
+ * Asserts the facts of a compilation unit into a working memory.  The
+ * handles of the facts are kept, so the facts can be retracted again
+ * when the file changes.
+ */
 public class DroolsVisitor
     extends JavaParserVisitorAdapter
 {
     private WorkingMemory memory = null;
+    private String fileName = null;
+    private List<FactHandle> handles = new ArrayList<FactHandle>();
 
     private ACUFact acu = null;
     private ClassFact currentClass = null;
 
     public DroolsVisitor( WorkingMemory memory ) {
+	this( memory, null );
+    }
+
+    public DroolsVisitor( WorkingMemory memory, String fileName ) {
 	this.memory = memory;
+	this.fileName = fileName;
     }
 
-    public Object visit(ASTCompilationUnit node, Object data) {
+    public ACUFact getACU() {
+	return acu;
+    }
+
+    /**
+     * Retracts the facts asserted by this visitor, together with the
+     * matches of the rules which depend on them.
+     */
+    public void retractFacts() {
 	try {
-	    acu = new ACUFact();
-	    
-	    memory.assertObject( acu );
-	    
-	    node.childrenAccept( this, data );
-	    return null;
-	} catch (AssertionException ase) {
-	    throw new RuntimeException( ase.getMessage() );
+	    for (FactHandle handle : handles) {
+		memory.retractObject( handle );
+	    }
+	    handles.clear();
+	} catch (FactException fe) {
+	    throw new RuntimeException( fe.getMessage() );
 	}
     }
 
-    public Object visit(ASTPackageDeclaration node, Object data) {
+    private void assertFact( Object fact ) {
 	try {
-	    ASTName packageNameNode = (ASTName) node.jjtGetChild( 0 );
-
-	    String packageName = packageNameNode.getImage();
-	    
-	    PackageFact pkg = new PackageFact( acu, packageName );
-	    memory.assertObject( pkg );
-	    
-	    return node.childrenAccept( this, data );
-	} catch (AssertionException ase) {
-	    throw new RuntimeException( ase.getMessage() );
+	    handles.add( memory.assertObject( fact ) );
+	} catch (FactException fe) {
+	    throw new RuntimeException( fe.getMessage() );
 	}
     }
 
+    public Object visit(ASTCompilationUnit node, Object data) {
+	acu = new ACUFact( fileName );
+	assertFact( acu );
+
+	node.childrenAccept( this, data );
+	return null;
+    }
+
+    public Object visit(ASTPackageDeclaration node, Object data) {
+	assertFact( new PackageFact( acu, node.getPackageNameImage() ));
+
+	return node.childrenAccept( this, data );
+    }
+
     public Object visit(ASTImportDeclaration node, Object data ) {
-	try {
-	    ASTName importNameNode = (ASTName) node.jjtGetChild( 0 );
- 
-	    String importName = importNameNode.getImage();
-	    
-	    ImportFact imp = new ImportFact( acu, importName,
-					     node.isImportOnDemand(),
-					     node.getBeginLine());
-	    memory.assertObject( imp );
-	    
-	    return node.childrenAccept( this, data );
-	} catch (AssertionException ase) {
-	    throw new RuntimeException( ase.getMessage() );
-	}
+	assertFact( new ImportFact( acu, node.getImportedName(),
+				    node.isImportOnDemand(),
+				    node.getBeginLine()));
+
+	return node.childrenAccept( this, data );
     }
 
-    public Object visit( ASTClassBody node, Object data) {
-	try {
-	    ClassFact classFact = null;
-
-	    if (node.jjtGetParent() instanceof
-		ASTUnmodifiedClassDeclaration) {
-		ASTUnmodifiedClassDeclaration ucDecl =
-		    (ASTUnmodifiedClassDeclaration) node.jjtGetParent();
-		
-		String className = ucDecl.getClassName();
-		classFact = new ClassFact( acu, 
-					   currentClass,
-					   className );
-		
-		if (ucDecl.jjtGetParent() instanceof AccessNode) {
-		    AccessNode modifiers =
-			(AccessNode) ucDecl.jjtGetParent();
-		    
-		    classFact.setPublic( modifiers.isPublic() );
-		    classFact.setAbstract( modifiers.isAbstract() );
-		    classFact.setFinal( modifiers.isFinal() );
-		    classFact.setStrict( modifiers.isStrict() );
-		    classFact.setStatic( modifiers.isStatic() );
-		    classFact.setProtected( modifiers.isProtected() );
-		    classFact.setPrivate( modifiers.isPrivate() );
-		}
-	    } else {
-		classFact = new ClassFact( acu, currentClass,
-					   null );
+    public Object visit( ASTClassOrInterfaceBody node, Object data) {
+	ClassFact classFact = null;
+
+	if (node.jjtGetParent() instanceof
+	    ASTClassOrInterfaceDeclaration) {
+	    ASTClassOrInterfaceDeclaration decl =
+		(ASTClassOrInterfaceDeclaration) node.jjtGetParent();
+	    if (decl.isInterface()) {
+		return node.childrenAccept( this, data );
 	    }
 
-	    currentClass = classFact;
+	    classFact = new ClassFact( acu,
+				       currentClass,
+				       decl.getImage() );
 
-	    memory.assertObject( classFact );
+	    classFact.setPublic( decl.isPublic() );
+	    classFact.setAbstract( decl.isAbstract() );
+	    classFact.setFinal( decl.isFinal() );
+	    classFact.setStrict( decl.isStrictfp() );
+	    classFact.setStatic( decl.isStatic() );
+	    classFact.setProtected( decl.isProtected() );
+	    classFact.setPrivate( decl.isPrivate() );
+	} else {
+	    // anonymous class
+	    classFact = new ClassFact( acu, currentClass,
+				       null );
+	}
+
+	assertFact( classFact );
 
+	ClassFact outerClass = currentClass;
+	currentClass = classFact;
+	try {
 	    return node.childrenAccept( this, data );
-	} catch (AssertionException ase) {
-	    throw new RuntimeException( ase.getMessage() );
+	} finally {
+	    currentClass = outerClass;
 	}
     }
 }
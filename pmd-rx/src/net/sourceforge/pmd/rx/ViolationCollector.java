@@ -0,0 +1,97 @@
+package net.sourceforge.pmd.rx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.*;
+import org.drools.rule.*;
+import org.drools.spi.*;
+import org.drools.semantics.java.*;
+
+import net.sourceforge.pmd.rx.facts.*;
+
+/**
+ * Collects the RuleViolationFacts asserted by the other rules of a rule
+ * base.  The new violations are handed out once, and the handles of the
+ * violations are kept, so they can be retracted together with the facts
+ * of the checked file.
+ */
+public class ViolationCollector
+    extends org.drools.rule.Rule
+    implements Consequence, Condition
+{
+    private Declaration req[] = new Declaration[1];
+    private List<RuleViolationFact> newViolations =
+	new ArrayList<RuleViolationFact>();
+    private List<FactHandle> handles = new ArrayList<FactHandle>();
+
+    public ViolationCollector() {
+	super( "ViolationCollector" );
+
+	req[0] = new Declaration( new ClassObjectType( RuleViolationFact.class ),
+				  "violation" );
+
+	addParameterDeclaration( req[0] );
+	addCondition( this );
+	setConsequence( this );
+    }
+
+    // Condition
+    public Declaration[] getRequiredTupleMembers() {
+	return req;
+    }
+
+    public boolean isAllowed( Tuple tuple ) {
+	return tuple.get( req[0] ) instanceof RuleViolationFact;
+    }
+
+    // Consequence
+    public void invoke( Tuple tuple,
+			WorkingMemory memory ) {
+	RuleViolationFact violation = (RuleViolationFact) tuple.get( req[0] );
+	handles.add( tuple.getFactHandleForObject( violation ));
+	newViolations.add( violation );
+    }
+
+    /**
+     * @return the violations asserted since the last call
+     */
+    public List<RuleViolationFact> takeNewViolations() {
+	List<RuleViolationFact> taken = newViolations;
+	newViolations = new ArrayList<RuleViolationFact>();
+	return taken;
+    }
+
+    /**
+     * Forgets the violations asserted since the last call, when the facts
+     * of the checked file are retracted
+     *
+     * @return the handles of the violation facts, to be retracted as well
+     */
+    public List<FactHandle> takeHandles() {
+	List<FactHandle> taken = handles;
+	handles = new ArrayList<FactHandle>();
+	return taken;
+    }
+
+    /**
+     * Forgets all violations, when the working memory is dropped
+     */
+    public void clear() {
+	newViolations.clear();
+	handles.clear();
+    }
+
+    public static ACUFact getACU( Object fact ) {
+	if (fact instanceof ACUFact) {
+	    return (ACUFact) fact;
+	} else if (fact instanceof ImportFact) {
+	    return ((ImportFact) fact).getACU();
+	} else if (fact instanceof PackageFact) {
+	    return ((PackageFact) fact).getACU();
+	} else if (fact instanceof ClassFact) {
+	    return ((ClassFact) fact).getACU();
+	}
+	return null;
+    }
+}
@@ -1,7 +1,18 @@
 package net.sourceforge.pmd.rx.facts;
 
 public class ACUFact extends Object {
+    private String fileName = null;
+
     public ACUFact() {
 	super();
     }
+
+    public ACUFact( String fileName ) {
+	super();
+	this.fileName = fileName;
+    }
+
+    public String getFileName() {
+	return fileName;
+    }
 }
@@ -3,39 +3,33 @@ package net.sourceforge.pmd.rx.rules;
 import net.sourceforge.pmd.rx.facts.*;
 
 import org.drools.*;
+import org.drools.rule.*;
 import org.drools.spi.*;
-import org.drools.semantic.java.*;
+import org.drools.semantics.java.*;
 
 public class DuplicateImport
-    extends org.drools.spi.Rule
-    implements Action, FilterCondition
+    extends org.drools.rule.Rule
+    implements Consequence, Condition
 {
     private Declaration req[] = new Declaration[2];
 
     public DuplicateImport() {
 	super("DuplicateImport");
 	    
-	try {
-	    req[0] = new Declaration( new JavaObjectType( ImportFact.class ),
-				      "import-0" );
-	    req[1] = new Declaration( new JavaObjectType( ImportFact.class ),
-				      "import-1" );
-	    
-	    addParameterDeclaration( req[0] );
-	    addParameterDeclaration( req[1] );
-	    
-	    addFilterCondition( this );
+	req[0] = new Declaration( new ClassObjectType( ImportFact.class ),
+				  "import-0" );
+	req[1] = new Declaration( new ClassObjectType( ImportFact.class ),
+				  "import-1" );
 
-	    setAction( this );
+	addParameterDeclaration( req[0] );
+	addParameterDeclaration( req[1] );
 
-	} catch (DeclarationAlreadyCompleteException dce) {
-	    // Shouldn't happen. . .
-	    dce.printStackTrace();
-	    throw new RuntimeException( dce.getMessage() );
-	}
+	addCondition( this );
+
+	setConsequence( this );
     }
 
-    // FilterCondition
+    // Condition
     public Declaration[] getRequiredTupleMembers() {
 	return req;
     }
@@ -58,7 +52,8 @@ public class DuplicateImport
 	    return false;
 	}
 	
-	if (import0.getLineNumber() == import1.getLineNumber()) {
+	// the same import, several imports may be on one line
+	if (import0 == import1) {
 	    return false;
 	}
 
@@ -74,27 +69,21 @@ public class DuplicateImport
     }
 
     public void invoke(Tuple tuple,
-		       WorkingMemory memory ) {
+		       WorkingMemory memory ) throws ConsequenceException {
 	try {
-	    System.err.println("---- invoke ----");
-	    System.err.println( tuple.get(req[0]) );
-	    System.err.println( tuple.get(req[1]) );
-
 	    if (tuple.get(req[0]) == null) return;
 	    if (tuple.get(req[1]) == null) return;
 
 	    if (isAllowed( tuple )) {
+		// the rete matches each pair in both orders, so the
+		// other import gets its violation from the other tuple
 		ImportFact import0 = (ImportFact) tuple.get(req[0]);
-		ImportFact import1 = (ImportFact) tuple.get(req[1]);
 
 		memory.assertObject(new RuleViolationFact( import0,
 						    "Duplicate Import" ));
-		memory.assertObject(new RuleViolationFact( import1,
-						    "Duplicate Import" ));
 	    } else { return; }
-	} catch (AssertionException ase) {
-	    ase.printStackTrace();
-	    throw new RuntimeException( ase.getMessage());
+	} catch (FactException fe) {
+	    throw new ConsequenceException( fe );
 	}
     }
 }
@@ -0,0 +1,15 @@
+package net.sourceforge.pmd.rx.rules;
+
+import net.sourceforge.pmd.rx.DroolsRule;
+
+/**
+ * The Drools rule DuplicateImport as a PMD rule, to be referenced from a
+ * ruleset by its class name.
+ */
+public class DuplicateImportRule
+    extends DroolsRule
+{
+    public DuplicateImportRule() {
+	super( new DuplicateImport() );
+    }
+}
@@ -33,17 +33,21 @@ import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.ParserOptions;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
 import net.sourceforge.pmd.processor.MonoThreadProcessor;
 import net.sourceforge.pmd.processor.MultiThreadProcessor;
+import net.sourceforge.pmd.processor.ProjectIndexer;
+import net.sourceforge.pmd.processor.WatchProcessor;
+import net.sourceforge.pmd.renderers.BinaryRenderer;
+import net.sourceforge.pmd.renderers.BinaryReport;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.FileUtil;
-import net.sourceforge.pmd.util.IOUtil;
 import net.sourceforge.pmd.util.SystemUtils;
 import net.sourceforge.pmd.util.database.DBMSMetadata;
 import net.sourceforge.pmd.util.database.DBURI;
 import net.sourceforge.pmd.util.database.SourceObject;
+import net.sourceforge.pmd.util.database.SourceObjectPrefetcher;
 import net.sourceforge.pmd.util.datasource.DataSource;
-import net.sourceforge.pmd.util.datasource.ReaderDataSource;
 import net.sourceforge.pmd.util.log.ConsoleLogHandler;
 import net.sourceforge.pmd.util.log.ScopedLogHandlersManager;
 
@@ -71,6 +75,19 @@ public class PMD {
      * @see DBURI
      */
     public static List<DataSource> getURIDataSources(String uriString) throws PMDException {
+        return getURIDataSources(uriString, null);
+    }
+
+    /**
+     * Parses the given string as a database uri and returns a list of datasources.
+     * The source code is retrieved in the background, see {@link SourceObjectPrefetcher}.
+     * @param uriString the URI to parse
+     * @param cacheDirectory the directory to cache the source code in, may be <code>null</code>
+     * @return list of data sources
+     * @throws PMDException if the URI couldn't be parsed
+     * @see DBURI
+     */
+    public static List<DataSource> getURIDataSources(String uriString, File cacheDirectory) throws PMDException {
         List<DataSource> dataSources = new ArrayList<DataSource>();
 
         try {
@@ -79,16 +96,10 @@ public class PMD {
             LOG.log(Level.FINE, "DBMSMetadata retrieved");
             List<SourceObject> sourceObjectList = dbmsMetadata.getSourceObjectList();
             LOG.log(Level.FINE, "Located {0} database source objects", sourceObjectList.size());
-            for (SourceObject sourceObject : sourceObjectList) {
-                String falseFilePath = sourceObject.getPseudoFileName();
-                LOG.log(Level.FINEST, "Adding database source object {0}", falseFilePath);
-
-                try {
-                    dataSources.add(new ReaderDataSource(dbmsMetadata.getSourceCode(sourceObject), falseFilePath));
-                } catch (SQLException ex) {
-                    LOG.log(Level.WARNING, "Cannot get SourceCode for " + falseFilePath + "  - skipping ...", ex);
-                }
-            }
+
+            SourceObjectPrefetcher prefetcher = new SourceObjectPrefetcher(dbUri, dbmsMetadata);
+            prefetcher.setCacheDirectory(cacheDirectory);
+            dataSources.addAll(prefetcher.fetch(sourceObjectList));
         } catch (URISyntaxException e) {
             throw new PMDException("Cannot get DataSources from DBURI - \"" + uriString + "\"", e);
         } catch (SQLException e) {
@@ -227,11 +238,10 @@ public class PMD {
 
         long reportStart = System.nanoTime();
         try {
-            Renderer renderer = configuration.createRenderer();
+            Renderer renderer = configuration.createRenderer(true);
             List<Renderer> renderers = new LinkedList<Renderer>();
             renderers.add(renderer);
 
-            renderer.setWriter(IOUtil.createWriter(configuration.getReportFile()));
             renderer.start();
 
             Benchmarker.mark(Benchmark.Reporting, System.nanoTime() - reportStart, 0);
@@ -240,9 +250,22 @@ public class PMD {
 
             processFiles(configuration, ruleSetFactory, files, ctx, renderers);
 
-            reportStart = System.nanoTime();
-            renderer.end();
-            renderer.flush();
+            if (configuration.isWatch()) {
+                if (renderer.getWriter() != null) {
+                    renderer.getWriter().flush();
+                }
+                // ends the renderer, when the watch is interrupted
+                new WatchProcessor(configuration, ruleSetFactory, ruleSets, new LanguageFilenameFilter(languages),
+                        renderers).watch(ctx);
+            } else {
+                reportStart = System.nanoTime();
+                renderer.end();
+                renderer.flush();
+            }
+
+            if (configuration.getBaselineReport() != null) {
+                compareWithBaseline(configuration);
+            }
         } catch (Exception e) {
             String message = e.getMessage();
             if (message != null) {
@@ -257,6 +280,32 @@ public class PMD {
         }
     }
 
+    /**
+     * Compares the binary report of this run with the configured baseline report
+     * and logs the new violations.
+     * 
+     * @param configuration the configuration with the report and baseline files
+     * @throws IOException if the reports can't be read
+     * @see BinaryReport#diff(BinaryReport)
+     */
+    private static void compareWithBaseline(PMDConfiguration configuration) throws IOException {
+        if (!BinaryRenderer.NAME.equals(configuration.getReportFormat()) || configuration.getReportFile() == null) {
+            LOG.warning("A baseline report can only be compared with a binary report written to a file");
+            return;
+        }
+        BinaryReport report = BinaryReport.open(new File(configuration.getReportFile()));
+        BinaryReport baseline = BinaryReport.open(new File(configuration.getBaselineReport()));
+        BinaryReport.Diff diff = report.diff(baseline);
+
+        for (Integer added : diff.getAdded()) {
+            int i = added.intValue();
+            LOG.info("New violation: " + report.getFilename(i) + ":" + report.getBeginLine(i) + ": "
+                    + report.getRuleName(i) + ": " + report.getDescription(i));
+        }
+        LOG.info("Compared to the baseline: " + diff.getAdded().size() + " new, " + diff.getRemoved().size()
+                + " fixed, " + diff.getUnchanged() + " unchanged violations");
+    }
+
     /**
      * Creates a new rule context, initialized with a new, empty report.
      *
@@ -331,6 +380,13 @@ public class PMD {
 
         sortFiles(configuration, files);
 
+        if (configuration.isProjectIndex()) {
+            // a run in watch mode updates the index of the previous run
+            ProjectIndex index = ProjectIndexer.createIndex(configuration, files, ProjectIndex.get(ctx));
+            ctx.removeAttribute(ProjectIndex.ATTRIBUTE);
+            ctx.setAttribute(ProjectIndex.ATTRIBUTE, index);
+        }
+
         /*
          * Check if multithreaded support is available. ExecutorService can also
          * be disabled if threadCount is not positive, e.g. using the
@@ -378,7 +434,8 @@ public class PMD {
         if (null != configuration.getInputUri()) {
             String uriString = configuration.getInputUri();
             try {
-                List<DataSource> dataSources = getURIDataSources(uriString);
+                List<DataSource> dataSources = getURIDataSources(uriString,
+                        configuration.getInputUriCache() == null ? null : new File(configuration.getInputUriCache()));
 
                 files.addAll(dataSources);
             } catch (PMDException ex) {
@@ -11,6 +11,7 @@ import java.util.Properties;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
+import net.sourceforge.pmd.renderers.BinaryRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.renderers.RendererFactory;
 import net.sourceforge.pmd.util.ClasspathClassLoader;
@@ -28,6 +29,13 @@ import net.sourceforge.pmd.util.IOUtil;
  *  <li>The number of threads to create when invoking on multiple files,
  *      defaults one thread per available processor.
  *          {@link #getThreads()}</li>
+ *  <li>The number of groups of thread-safe rules, which are applied
+ *      concurrently to large files, defaults to one group.
+ *          {@link #getRuleGroups()}</li>
+ *  <li>An indicator of whether the Java source files are indexed in a first
+ *      pass, so Rules can look up the type declarations of the other files,
+ *      defaults to <code>false</code>.
+ *          {@link #isProjectIndex()}</li>
  *  <li>A ClassLoader to use when loading classes during Rule processing
  *      (e.g. during type resolution), defaults to ClassLoader of the
  *      Configuration class.
@@ -48,12 +56,17 @@ import net.sourceforge.pmd.util.IOUtil;
  *  <li>A minimum priority threshold when loading Rules from RuleSets,
  *      defaults to {@link RulePriority#LOW}.
  *          {@link #getMinimumPriority()}</li>
+ *  <li>A directory to store precompiled RuleSets in, to avoid parsing the
+ *      RuleSet XML again on each run.
+ *          {@link #getRuleSetCache()}</li>
  *  <li>The character encoding of source files, defaults to the system default
  *      as returned by <code>System.getProperty("file.encoding")</code>.
  *          {@link #getSourceEncoding()}</li>
  *  <li>A comma separated list of input paths to process for source files.
  *      This may include files, directories, archives (e.g. ZIP files), etc.
  *          {@link #getInputPaths()}</li>
+ *  <li>A directory to cache the source code retrieved from the input URI in.
+ *          {@link #getInputUriCache()}</li>
  * </ul>
  * <p>
  * <ul>
@@ -68,6 +81,8 @@ import net.sourceforge.pmd.util.IOUtil;
  *          {@link #getReportProperties()}</li>
  *  <li>An indicator of whether to show suppressed Rule violations in Reports.
  *          {@link #isShowSuppressedViolations()}</li>
+ *  <li>A binary report of a previous run to compare the binary Report against.
+ *          {@link #getBaselineReport()}</li>
  * </ul>
  * <p>
  * The aspects related to special PMD behavior are:
@@ -79,6 +94,9 @@ import net.sourceforge.pmd.util.IOUtil;
  *          {@link #isStressTest()}</li>
  *  <li>An indicator of whether PMD should log benchmarking information.
  *          {@link #isBenchmark()}</li>
+ *  <li>An indicator of whether PMD should keep watching the input paths
+ *          and re-analyze changed files.
+ *          {@link #isWatch()}</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
@@ -86,14 +104,19 @@ public class PMDConfiguration extends AbstractConfiguration {
     // General behavior options
     private String suppressMarker = PMD.SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
+    private int ruleGroups = 1;
+    private int ruleGroupMinLines = 5000;
+    private boolean projectIndex;
     private ClassLoader classLoader = getClass().getClassLoader();
     private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
 
     // Rule and source file options
     private String ruleSets;
     private RulePriority minimumPriority = RulePriority.LOW;
+    private String ruleSetCache;
     private String inputPaths;
     private String inputUri;
+    private String inputUriCache;
 
     // Reporting options
     private String reportFormat;
@@ -101,9 +124,12 @@ public class PMDConfiguration extends AbstractConfiguration {
     private boolean reportShortNames = false;
     private Properties reportProperties = new Properties();
     private boolean showSuppressedViolations = false;
+    private String baselineReport;
 
     private boolean stressTest;
     private boolean benchmark;
+    private boolean watch;
+    private long watchInterval = 500;
 
     /**
      * Get the suppress marker. This the source level marker used to indicate a
@@ -144,6 +170,74 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.threads = threads;
     }
 
+    /**
+     * Get the number of groups into which the thread-safe Rules are split.
+     * The groups are applied concurrently to the AST of a file with at least
+     * {@link #getRuleGroupMinLines()} lines. With one group, all Rules are
+     * applied by the thread processing the file.
+     * 
+     * @return The number of rule groups.
+     * @see net.sourceforge.pmd.lang.rule.AbstractRule#isThreadSafe()
+     */
+    public int getRuleGroups() {
+        return ruleGroups;
+    }
+
+    /**
+     * Set the number of groups into which the thread-safe Rules are split.
+     * 
+     * @param ruleGroups
+     *            The number of rule groups.
+     */
+    public void setRuleGroups(int ruleGroups) {
+        this.ruleGroups = ruleGroups;
+    }
+
+    /**
+     * Get the minimum number of lines of a file, to which the rule groups
+     * are applied concurrently.
+     * 
+     * @return The minimum number of lines.
+     * @see #getRuleGroups()
+     */
+    public int getRuleGroupMinLines() {
+        return ruleGroupMinLines;
+    }
+
+    /**
+     * Set the minimum number of lines of a file, to which the rule groups
+     * are applied concurrently.
+     * 
+     * @param ruleGroupMinLines
+     *            The minimum number of lines.
+     */
+    public void setRuleGroupMinLines(int ruleGroupMinLines) {
+        this.ruleGroupMinLines = ruleGroupMinLines;
+    }
+
+    /**
+     * Get whether the Java source files are indexed in a first pass. The
+     * index is available to the Rules as
+     * {@link net.sourceforge.pmd.lang.java.index.ProjectIndex#get(RuleContext)}.
+     * 
+     * @return <code>true</code> if the files are indexed, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isProjectIndex() {
+        return projectIndex;
+    }
+
+    /**
+     * Set whether the Java source files are indexed in a first pass.
+     * 
+     * @param projectIndex
+     *            The project index indicator to set.
+     * @see #isProjectIndex()
+     */
+    public void setProjectIndex(boolean projectIndex) {
+        this.projectIndex = projectIndex;
+    }
+
     /**
      * Get the ClassLoader being used by PMD when processing Rules.
      * 
@@ -286,6 +380,26 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.minimumPriority = minimumPriority;
     }
 
+    /**
+     * Get the directory to store precompiled RuleSets in.
+     * 
+     * @return The cache directory, or <code>null</code>.
+     */
+    public String getRuleSetCache() {
+        return ruleSetCache;
+    }
+
+    /**
+     * Set the directory to store precompiled RuleSets in. The RuleSets are
+     * only created from XML again if any of their RuleSet files changed.
+     * 
+     * @param ruleSetCache
+     *            The cache directory.
+     */
+    public void setRuleSetCache(String ruleSetCache) {
+        this.ruleSetCache = ruleSetCache;
+    }
+
     /**
      * Get the comma separated list of input paths to process for source files.
      * 
@@ -324,6 +438,26 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.inputUri = inputUri;
     }
 
+    /**
+     * Get the directory to cache the source code objects of the input URI in.
+     * 
+     * @return The cache directory, or <code>null</code>.
+     */
+    public String getInputUriCache() {
+        return inputUriCache;
+    }
+
+    /**
+     * Set the directory to cache the source code objects of the input URI in.
+     * Source code objects are only retrieved again if their revision changed.
+     * 
+     * @param inputUriCache
+     *            The cache directory.
+     */
+    public void setInputUriCache(String inputUriCache) {
+        this.inputUriCache = inputUriCache;
+    }
+
     /**
      * Get whether to use File short names in Reports.
      * 
@@ -364,8 +498,13 @@ public class PMDConfiguration extends AbstractConfiguration {
     public Renderer createRenderer(boolean withReportWriter) {
         Renderer renderer = RendererFactory.createRenderer(reportFormat, reportProperties);
         renderer.setShowSuppressedViolations(showSuppressedViolations);
-        if (withReportWriter)
-            renderer.setWriter(IOUtil.createWriter(reportFile));
+        if (withReportWriter) {
+            if (renderer instanceof BinaryRenderer) {
+                ((BinaryRenderer) renderer).setOutputStream(IOUtil.createOutputStream(reportFile));
+            } else {
+                renderer.setWriter(IOUtil.createWriter(reportFile));
+            }
+        }
         return renderer;
     }
 
@@ -429,6 +568,28 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.showSuppressedViolations = showSuppressedViolations;
     }
 
+    /**
+     * Get the binary report file of a previous run, against which the
+     * binary report of this run is compared.
+     * 
+     * @return The baseline report file, or <code>null</code>.
+     * @see BinaryRenderer
+     */
+    public String getBaselineReport() {
+        return baselineReport;
+    }
+
+    /**
+     * Set the binary report file of a previous run, against which the
+     * binary report of this run is compared.
+     * 
+     * @param baselineReport
+     *            The baseline report file.
+     */
+    public void setBaselineReport(String baselineReport) {
+        this.baselineReport = baselineReport;
+    }
+
     /**
      * Get the Report properties. These are used to create the Renderer.
      * 
@@ -492,4 +653,49 @@ public class PMDConfiguration extends AbstractConfiguration {
     public void setBenchmark(boolean benchmark) {
         this.benchmark = benchmark;
     }
+
+    /**
+     * Return the watch indicator. If this value is <code>true</code> then
+     * PMD will keep watching the input paths after the first run and
+     * re-analyze changed files and their dependents.
+     * 
+     * @return <code>true</code> if watch mode is enabled, <code>false</code>
+     *         otherwise.
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Set the watch indicator.
+     * 
+     * @param watch
+     *            The watch indicator to set.
+     * @see #isWatch()
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Get the interval in milliseconds in which the input paths are checked
+     * for changes in watch mode.
+     * 
+     * @return The watch interval.
+     * @see #isWatch()
+     */
+    public long getWatchInterval() {
+        return watchInterval;
+    }
+
+    /**
+     * Set the interval in milliseconds in which the input paths are checked
+     * for changes in watch mode.
+     * 
+     * @param watchInterval
+     *            The watch interval to set.
+     */
+    public void setWatchInterval(long watchInterval) {
+        this.watchInterval = watchInterval;
+    }
 }
\ No newline at end of file
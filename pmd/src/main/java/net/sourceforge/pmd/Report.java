@@ -115,7 +115,7 @@ public class Report implements Iterable<RuleViolation> {
      * better and faster sort and filter mechanism and to visualize the result
      * as tree. (ide plugins).
      */
-    private final ReportTree violationTree = new ReportTree();
+    private ReportTree violationTree = new ReportTree();
 
     // Note that this and the above data structure are both being maintained for
     // a bit
@@ -241,6 +241,43 @@ public class Report implements Iterable<RuleViolation> {
         }
     }
 
+    /**
+     * Removes the violations, suppressed violations and processing errors of a
+     * file, e.g. when the file has been deleted or is analyzed again.
+     *
+     * @param fileName the name of the file as reported by its violations
+     */
+    public void removeFile(String fileName) {
+        boolean removed = false;
+        for (Iterator<RuleViolation> i = violations.iterator(); i.hasNext();) {
+            if (fileName.equals(i.next().getFilename())) {
+                i.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            violationTree = new ReportTree();
+            for (RuleViolation violation : violations) {
+                violationTree.addRuleViolation(violation);
+            }
+        }
+        for (Iterator<SuppressedViolation> i = suppressedRuleViolations.iterator(); i.hasNext();) {
+            if (fileName.equals(i.next().getRuleViolation().getFilename())) {
+                i.remove();
+            }
+        }
+        if (errors != null) {
+            for (Iterator<ProcessingError> i = errors.iterator(); i.hasNext();) {
+                if (fileName.equals(i.next().getFile())) {
+                    i.remove();
+                }
+            }
+            if (errors.isEmpty()) {
+                errors = null;
+            }
+        }
+    }
+
     public boolean hasMetrics() {
         return !metrics.isEmpty();
     }
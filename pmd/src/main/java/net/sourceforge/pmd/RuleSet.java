@@ -35,7 +35,7 @@ public class RuleSet {
 
     private static final Logger LOG = Logger.getLogger(RuleSet.class.getName());
 
-	private List<Rule> rules = new ArrayList<Rule>();
+	private RuleList rules = new RuleList();
 	private String fileName;
 	private String name = "";
 	private String description = "";
@@ -46,6 +46,12 @@ public class RuleSet {
 
 	private Filter<File> filter;
 
+	/**
+	 * The last file checked by {@link #applies(File)} and the result, as the
+	 * same file is checked once per rule set and per rule chain.
+	 */
+	private volatile FileApplies lastFileApplies;
+
 	/**
 	 * A convenience constructor
 	 * 
@@ -155,6 +161,17 @@ public class RuleSet {
 		rules.add(rule);
 	}
 
+	/**
+	 * The number of times rules were added to or removed from this RuleSet,
+	 * also through {@link #getRules()}, so the tables built from the rules
+	 * know when to select them again.
+	 *
+	 * @return the modification count
+	 */
+	int getModificationCount() {
+		return rules.getModificationCount();
+	}
+
 	/**
 	 * Returns the actual Collection of rules in this ruleset
 	 *
@@ -257,13 +274,27 @@ public class RuleSet {
 	 * @return <code>true</code> if the file should be checked, <code>false</code> otherwise
 	 */
 	public boolean applies(File file) {
+		if (file == null || excludePatterns.isEmpty()) {
+			// without exclude patterns, the include patterns can't reject anything
+			return true;
+		}
+
+		FileApplies last = lastFileApplies;
+		if (last != null && last.file.equals(file)) {
+			return last.applies;
+		}
+
 		// Initialize filter based on patterns
-		if (filter == null) {
+		Filter<File> fileFilter = filter;
+		if (fileFilter == null) {
 			Filter<String> regexFilter = Filters.buildRegexFilterIncludeOverExclude(includePatterns, excludePatterns);
-			filter = Filters.toNormalizedFileFilter(regexFilter);
+			fileFilter = Filters.toNormalizedFileFilter(regexFilter);
+			filter = fileFilter;
 		}
 
-		return file != null ? filter.filter(file) : true;
+		boolean applies = fileFilter.filter(file);
+		lastFileApplies = new FileApplies(file, applies);
+		return applies;
 	}
 
 	public void start(RuleContext ctx) {
@@ -273,15 +304,39 @@ public class RuleSet {
 	}
 
 	public void apply(List<? extends Node> acuList, RuleContext ctx) {
-		long start = System.nanoTime();
+		apply(acuList, ctx, getApplicableRules(ctx.getLanguageVersion()));
+	}
+
+	/**
+	 * Returns the rules which are applied by {@link #apply(List, RuleContext)}
+	 * to a source of the given language version: the rules which apply to it
+	 * and are not applied by the RuleChain.
+	 *
+	 * @param languageVersion The language version.
+	 * @return the applicable rules, in the order of the RuleSet
+	 */
+	List<Rule> getApplicableRules(LanguageVersion languageVersion) {
+		List<Rule> applicableRules = new ArrayList<Rule>();
 		for (Rule rule : rules) {
+			if (!rule.usesRuleChain() && applies(rule, languageVersion)) {
+				applicableRules.add(rule);
+			}
+		}
+		return applicableRules;
+	}
+
+	/**
+	 * Apply the given rules, as returned by {@link #getApplicableRules(LanguageVersion)}
+	 * for the language version of the context.
+	 */
+	void apply(List<? extends Node> acuList, RuleContext ctx, List<Rule> applicableRules) {
+		long start = System.nanoTime();
+		for (Rule rule : applicableRules) {
             try {
-                if (!rule.usesRuleChain() && applies(rule, ctx.getLanguageVersion())) {
-                    rule.apply(acuList, ctx);
-                    long end = System.nanoTime();
-                    Benchmarker.mark(Benchmark.Rule, rule.getName(), end - start, 1);
-                    start = end;
-                }
+                rule.apply(acuList, ctx);
+                long end = System.nanoTime();
+                Benchmarker.mark(Benchmark.Rule, rule.getName(), end - start, 1);
+                start = end;
             } catch (ThreadDeath td) {
                 throw td;
             } catch (Throwable t) {
@@ -421,6 +476,7 @@ public class RuleSet {
 
 	private void patternsChanged() {
 		filter = null;	// ensure we start with one that reflects the current patterns
+		lastFileApplies = null;
 	}
 	
 	/**
@@ -457,5 +513,28 @@ public class RuleSet {
 			}
 		}
 	}
-	
+
+	/**
+	 * The rules, counting their additions and removals.
+	 */
+	private static class RuleList extends ArrayList<Rule> {
+		private static final long serialVersionUID = 1L;
+
+		int getModificationCount() {
+			return modCount;
+		}
+	}
+
+	/**
+	 * A file and whether this RuleSet applies to it.
+	 */
+	private static class FileApplies {
+		private final File file;
+		private final boolean applies;
+
+		FileApplies(File file, boolean applies) {
+			this.file = file;
+			this.applies = applies;
+		}
+	}
 }
@@ -3,14 +3,17 @@
  */
 package net.sourceforge.pmd;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -44,6 +47,9 @@ public class RuleSetFactory {
 	private ClassLoader classLoader = RuleSetFactory.class.getClassLoader();
 	private RulePriority minimumPriority = RulePriority.LOW;
 	private boolean warnDeprecated = false;
+	private File snapshotDirectory;
+	// the RuleSet files read while creating RuleSets for a snapshot
+	private Set<String> sourceFileNames;
 
 	/**
 	 * Set the ClassLoader to use when loading Rules.
@@ -72,6 +78,17 @@ public class RuleSetFactory {
 		this.warnDeprecated = warnDeprecated;
 	}
 
+	/**
+	 * Set the directory to store precompiled RuleSets in, see {@link RuleSetSnapshot}.
+	 * RuleSets created from a reference string are then read from a snapshot,
+	 * unless any RuleSet file they were created from has changed.
+	 *
+	 * @param snapshotDirectory The snapshot directory, or <code>null</code> to always read XML.
+	 */
+	public void setSnapshotDirectory(File snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+
 	/**
 	 * Returns an Iterator of RuleSet objects loaded from descriptions from the
 	 * "rulesets.properties" resource for each Language with Rule support.
@@ -101,14 +118,31 @@ public class RuleSetFactory {
 	 * Create a RuleSets from a comma separated list of RuleSet reference IDs.  This is a
 	 * convenience method which calls {@link RuleSetReferenceId#parse(String)}, and then calls
 	 * {@link #createRuleSets(List)}.
-	 * The currently configured ClassLoader is used.
+	 * The currently configured ClassLoader is used.  If a snapshot directory is
+	 * set, the RuleSets are read from the snapshot of the reference IDs if it is
+	 * up to date, otherwise a new snapshot is written.
 	 *
 	 * @param referenceString A comma separated list of RuleSet reference IDs.
 	 * @return The new RuleSets.
 	 * @throws RuleSetNotFoundException if unable to find a resource.
 	 */
 	public synchronized RuleSets createRuleSets(String referenceString) throws RuleSetNotFoundException {
-		return createRuleSets(RuleSetReferenceId.parse(referenceString));
+		if (snapshotDirectory == null) {
+			return createRuleSets(RuleSetReferenceId.parse(referenceString));
+		}
+		File snapshotFile = RuleSetSnapshot.fileFor(snapshotDirectory, referenceString, minimumPriority);
+		RuleSets ruleSets = RuleSetSnapshot.read(snapshotFile, referenceString, minimumPriority, classLoader);
+		if (ruleSets == null) {
+			sourceFileNames = new LinkedHashSet<String>();
+			try {
+				ruleSets = createRuleSets(RuleSetReferenceId.parse(referenceString));
+				RuleSetSnapshot.write(snapshotFile, referenceString, minimumPriority, sourceFileNames, ruleSets,
+						classLoader);
+			} finally {
+				sourceFileNames = null;
+			}
+		}
+		return ruleSets;
 	}
 
 	/**
@@ -158,6 +192,9 @@ public class RuleSetFactory {
 	 * @throws RuleSetNotFoundException if unable to find a resource.
 	 */
 	public synchronized RuleSet createRuleSet(RuleSetReferenceId ruleSetReferenceId) throws RuleSetNotFoundException {
+		if (sourceFileNames != null) {
+			sourceFileNames.add(ruleSetReferenceId.getRuleSetFileName());
+		}
 		return parseRuleSetNode(ruleSetReferenceId, ruleSetReferenceId.getInputStream(this.classLoader));
 	}
 
@@ -292,8 +329,7 @@ public class RuleSetFactory {
 			}
 		}
 
-		RuleSetFactory ruleSetFactory = new RuleSetFactory();
-		ruleSetFactory.setClassLoader(classLoader);
+		RuleSetFactory ruleSetFactory = createReferencedRuleSetFactory();
 		RuleSet otherRuleSet = ruleSetFactory.createRuleSet(RuleSetReferenceId.parse(ref).get(0));
 		for (Rule rule : otherRuleSet.getRules()) {
 			if (!ruleSetReference.getExcludes().contains(rule.getName())
@@ -311,6 +347,13 @@ public class RuleSetFactory {
 		}
 	}
 
+	private RuleSetFactory createReferencedRuleSetFactory() {
+		RuleSetFactory ruleSetFactory = new RuleSetFactory();
+		ruleSetFactory.setClassLoader(classLoader);
+		ruleSetFactory.sourceFileNames = sourceFileNames;
+		return ruleSetFactory;
+	}
+
 	/**
 	 * Parse a rule node as a single Rule.  The Rule has been fully defined within
 	 * the context of the current RuleSet.
@@ -400,6 +443,10 @@ public class RuleSetFactory {
 			rule.setUsesTypeResolution();
 		}
 
+		if (hasAttributeSetTrue(ruleElement,"threadSafe")) {
+			RuleSets.setThreadSafe(rule);
+		}
+
 		final NodeList nodeList = ruleElement.getChildNodes();
 		for (int i = 0; i < nodeList.getLength(); i++) {
 			Node node = nodeList.item(i);
@@ -447,8 +494,7 @@ public class RuleSetFactory {
 			return;
 		}
 
-		RuleSetFactory ruleSetFactory = new RuleSetFactory();
-		ruleSetFactory.setClassLoader(classLoader);
+		RuleSetFactory ruleSetFactory = createReferencedRuleSetFactory();
 
 		RuleSetReferenceId otherRuleSetReferenceId = RuleSetReferenceId.parse(ref).get(0);
 		if (!otherRuleSetReferenceId.isExternal()) {
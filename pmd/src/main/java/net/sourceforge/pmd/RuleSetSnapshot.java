@@ -0,0 +1,566 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.properties.PropertyDescriptorWrapper;
+import net.sourceforge.pmd.lang.rule.properties.factories.PropertyDescriptorUtil;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A precompiled form of the RuleSets created from a RuleSet reference string.
+ * Creating RuleSets from XML parses every referenced RuleSet file again for
+ * each single Rule reference, a snapshot instead stores the resolved Rules,
+ * RuleReferences and property values in a binary file which is read back
+ * without any XML parsing.
+ * <p>
+ * A snapshot is only used if it was written by the same PMD version, for the
+ * same reference string and minimum priority, and if none of the RuleSet files
+ * read to create it has changed since.  Otherwise the RuleSets are created from
+ * XML again, see {@link RuleSetFactory#setSnapshotDirectory(File)}.
+ */
+public final class RuleSetSnapshot {
+
+	private static final Logger LOG = Logger.getLogger(RuleSetSnapshot.class.getName());
+
+	private static final int MAGIC = 0x504d4452;
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte CONCRETE_RULE = 0;
+	private static final byte RULE_REFERENCE = 1;
+
+	private RuleSetSnapshot() {
+	}
+
+	/**
+	 * Get the snapshot file for a RuleSet reference string in a directory.
+	 *
+	 * @param directory The snapshot directory.
+	 * @param referenceString The RuleSet reference string.
+	 * @param minimumPriority The minimum priority the RuleSets are created with.
+	 * @return The snapshot file.
+	 */
+	public static File fileFor(File directory, String referenceString, RulePriority minimumPriority) {
+		String key = referenceString + '|' + minimumPriority.getPriority();
+		return new File(directory, "ruleset-" + Integer.toHexString(key.hashCode()) + ".snapshot");
+	}
+
+	/**
+	 * Read the RuleSets from a snapshot file.
+	 *
+	 * @param file The snapshot file.
+	 * @param referenceString The RuleSet reference string the snapshot must be written for.
+	 * @param minimumPriority The minimum priority the snapshot must be written for.
+	 * @param classLoader The ClassLoader to load the Rules and RuleSet files with.
+	 * @return The RuleSets, or <code>null</code> if there is no usable snapshot.
+	 */
+	public static RuleSets read(File file, String referenceString, RulePriority minimumPriority,
+			ClassLoader classLoader) {
+		if (!file.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !PMD.VERSION.equals(readString(in))
+					|| !referenceString.equals(readString(in)) || in.readInt() != minimumPriority.getPriority()) {
+				LOG.fine("Ignoring outdated RuleSet snapshot " + file);
+				return null;
+			}
+			int sourceCount = in.readInt();
+			for (int i = 0; i < sourceCount; i++) {
+				String fileName = readString(in);
+				if (in.readLong() != checksum(fileName, classLoader)) {
+					LOG.fine("Ignoring RuleSet snapshot " + file + ", " + fileName + " has changed");
+					return null;
+				}
+			}
+			return new Reader(in, classLoader).readRuleSets();
+		} catch (Exception e) {
+			LOG.log(Level.FINE, "Ignoring unreadable RuleSet snapshot " + file, e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Write the RuleSets to a snapshot file.  Failures are logged, since the
+	 * RuleSets can always be created from XML again.
+	 *
+	 * @param file The snapshot file.
+	 * @param referenceString The RuleSet reference string the RuleSets were created from.
+	 * @param minimumPriority The minimum priority the RuleSets were created with.
+	 * @param sourceFileNames The file names of all RuleSets read to create the RuleSets.
+	 * @param ruleSets The RuleSets.
+	 * @param classLoader The ClassLoader the RuleSet files were loaded with.
+	 */
+	public static void write(File file, String referenceString, RulePriority minimumPriority,
+			Collection<String> sourceFileNames, RuleSets ruleSets, ClassLoader classLoader) {
+		File directory = file.getAbsoluteFile().getParentFile();
+		File tempFile = null;
+		DataOutputStream out = null;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			// written to a temporary file first, concurrent readers never see a partial snapshot
+			tempFile = File.createTempFile("ruleset-", ".tmp", directory);
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			writeString(out, PMD.VERSION);
+			writeString(out, referenceString);
+			out.writeInt(minimumPriority.getPriority());
+			out.writeInt(sourceFileNames.size());
+			for (String fileName : sourceFileNames) {
+				writeString(out, fileName);
+				out.writeLong(checksum(fileName, classLoader));
+			}
+			new Writer(out).writeRuleSets(ruleSets);
+			out.close();
+			out = null;
+			if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+				throw new IOException("Cannot rename " + tempFile + " to " + file);
+			}
+			tempFile = null;
+		} catch (Exception e) {
+			LOG.log(Level.WARNING, "Couldn't write RuleSet snapshot " + file, e);
+		} finally {
+			IOUtils.closeQuietly(out);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private static long checksum(String fileName, ClassLoader classLoader) throws RuleSetNotFoundException,
+			IOException {
+		InputStream in = new RuleSetReferenceId(fileName).getInputStream(classLoader);
+		try {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, count);
+			}
+			return crc.getValue();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Writes the RuleSets.  The Rule wrapped by a RuleReference is written as
+	 * it is after all overrides, the overridden values are restored when the
+	 * RuleReference is read.
+	 */
+	private static class Writer {
+		private final DataOutputStream out;
+		private final Map<RuleSetReference, Integer> ruleSetReferences = new IdentityHashMap<RuleSetReference, Integer>();
+
+		Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		void writeRuleSets(RuleSets ruleSets) throws IOException {
+			RuleSet[] allRuleSets = ruleSets.getAllRuleSets();
+			out.writeInt(allRuleSets.length);
+			for (RuleSet ruleSet : allRuleSets) {
+				writeString(out, ruleSet.getName());
+				writeString(out, ruleSet.getFileName());
+				writeString(out, ruleSet.getDescription());
+				writeStrings(ruleSet.getIncludePatterns());
+				writeStrings(ruleSet.getExcludePatterns());
+				out.writeInt(ruleSet.getRules().size());
+				for (Rule rule : ruleSet.getRules()) {
+					writeRule(rule, new HashSet<String>());
+				}
+			}
+		}
+
+		/**
+		 * @param definedAbove The names of the properties defined by an
+		 * enclosing RuleReference, which are defined again when it is read.
+		 */
+		private void writeRule(Rule rule, Set<String> definedAbove) throws IOException {
+			if (rule instanceof RuleReference) {
+				writeRuleReference((RuleReference) rule, definedAbove);
+				return;
+			}
+			out.writeByte(CONCRETE_RULE);
+			writeString(out, rule.getClass().getName());
+			writeString(out, rule.getRuleClass());
+			writeString(out, rule.getName());
+			writeString(out, rule.getLanguage() == null ? null : rule.getLanguage().getTerseName());
+			writeLanguageVersion(rule.getMinimumLanguageVersion());
+			writeLanguageVersion(rule.getMaximumLanguageVersion());
+			out.writeBoolean(rule.isDeprecated());
+			writeString(out, rule.getSince());
+			writeString(out, rule.getRuleSetName());
+			writeString(out, rule.getMessage());
+			writeString(out, rule.getDescription());
+			writeStrings(rule.getExamples());
+			writeString(out, rule.getExternalInfoUrl());
+			writePriority(rule.getPriority());
+			out.writeBoolean(rule.usesDFA());
+			out.writeBoolean(rule.usesTypeResolution());
+			out.writeBoolean(RuleSets.isThreadSafe(rule));
+			writePropertyDefinitions(rule.getPropertyDescriptors(), definedAbove);
+			writePropertyValues(rule, rule.getPropertiesByPropertyDescriptor(), definedAbove);
+		}
+
+		private void writeRuleReference(RuleReference ruleReference, Set<String> definedAbove) throws IOException {
+			out.writeByte(RULE_REFERENCE);
+			writeRuleSetReference(ruleReference.getRuleSetReference());
+			Set<String> defined = new HashSet<String>(definedAbove);
+			for (PropertyDescriptor<?> descriptor : ruleReference.getOverriddenPropertyDescriptors()) {
+				defined.add(descriptor.name());
+			}
+			writeRule(ruleReference.getRule(), defined);
+
+			Boolean deprecated = ruleReference.isOverriddenDeprecated();
+			out.writeByte(deprecated == null ? -1 : deprecated.booleanValue() ? 1 : 0);
+			writeString(out, ruleReference.getOverriddenName());
+			writeString(out, ruleReference.getOverriddenMessage());
+			writeString(out, ruleReference.getOverriddenDescription());
+			writeStrings(ruleReference.getOverriddenExamples());
+			writeString(out, ruleReference.getOverriddenExternalInfoUrl());
+			writePriority(ruleReference.getOverriddenPriority());
+			writePropertyDefinitions(ruleReference.getOverriddenPropertyDescriptors(), definedAbove);
+			writePropertyValues(ruleReference, ruleReference.getOverriddenPropertiesByPropertyDescriptor(), definedAbove);
+		}
+
+		private void writeRuleSetReference(RuleSetReference ruleSetReference) throws IOException {
+			Integer index = ruleSetReferences.get(ruleSetReference);
+			if (index != null) {
+				out.writeInt(index);
+				return;
+			}
+			// all Rules of an all Rule reference share the RuleSetReference
+			out.writeInt(-1);
+			ruleSetReferences.put(ruleSetReference, ruleSetReferences.size());
+			writeString(out, ruleSetReference.getRuleSetFileName());
+			out.writeBoolean(ruleSetReference.isAllRules());
+			writeStrings(ruleSetReference.getExcludes());
+		}
+
+		private void writePropertyDefinitions(List<PropertyDescriptor<?>> descriptors, Set<String> definedAbove)
+				throws IOException {
+			List<PropertyDescriptor<?>> definitions = new ArrayList<PropertyDescriptor<?>>();
+			for (PropertyDescriptor<?> descriptor : descriptors) {
+				// only the properties defined in XML are wrapped, the others are defined by the Rule class
+				if (descriptor instanceof PropertyDescriptorWrapper && !definedAbove.contains(descriptor.name())) {
+					definitions.add(((PropertyDescriptorWrapper<?>) descriptor).getPropertyDescriptor());
+				}
+			}
+			out.writeInt(definitions.size());
+			for (PropertyDescriptor<?> descriptor : definitions) {
+				String typeId = PropertyDescriptorUtil.typeIdFor(descriptor.type());
+				if (typeId == null) {
+					throw new IOException("No type id for property " + descriptor.name());
+				}
+				writeString(out, typeId);
+				Map<String, String> values = descriptor.attributeValuesById();
+				out.writeInt(values.size());
+				for (Map.Entry<String, String> entry : values.entrySet()) {
+					writeString(out, entry.getKey());
+					writeString(out, entry.getValue());
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void writePropertyValues(Rule rule, Map<PropertyDescriptor<?>, Object> values, Set<String> definedAbove)
+				throws IOException {
+			Map<String, String> stringValues = new TreeMap<String, String>();
+			if (values != null) {
+				for (Map.Entry<PropertyDescriptor<?>, Object> entry : values.entrySet()) {
+					PropertyDescriptor descriptor = entry.getKey();
+					if (!definedAbove.contains(descriptor.name()) && entry.getValue() != null
+							&& (rule instanceof RuleReference || !isDefault(descriptor, entry.getValue()))) {
+						stringValues.put(descriptor.name(), descriptor.asDelimitedString(entry.getValue()));
+					}
+				}
+			}
+			out.writeInt(stringValues.size());
+			for (Map.Entry<String, String> entry : stringValues.entrySet()) {
+				writeString(out, entry.getKey());
+				writeString(out, entry.getValue());
+			}
+		}
+
+		private static boolean isDefault(PropertyDescriptor<?> descriptor, Object value) {
+			Object defaultValue = descriptor.defaultValue();
+			if (value instanceof Object[] && defaultValue instanceof Object[]) {
+				return Arrays.equals((Object[]) value, (Object[]) defaultValue);
+			}
+			return value.equals(defaultValue);
+		}
+
+		private void writeLanguageVersion(LanguageVersion languageVersion) throws IOException {
+			writeString(out, languageVersion == null ? null : languageVersion.getTerseName());
+		}
+
+		private void writePriority(RulePriority priority) throws IOException {
+			out.writeInt(priority == null ? -1 : priority.getPriority());
+		}
+
+		private void writeStrings(Collection<String> strings) throws IOException {
+			if (strings == null) {
+				out.writeInt(-1);
+				return;
+			}
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				writeString(out, s);
+			}
+		}
+	}
+
+	/**
+	 * Reads the RuleSets in the order they were written by {@link Writer}.
+	 */
+	private static class Reader {
+		private final DataInputStream in;
+		private final ClassLoader classLoader;
+		private final List<RuleSetReference> ruleSetReferences = new ArrayList<RuleSetReference>();
+
+		Reader(DataInputStream in, ClassLoader classLoader) {
+			this.in = in;
+			this.classLoader = classLoader;
+		}
+
+		RuleSets readRuleSets() throws IOException, ClassNotFoundException,
+				InstantiationException, IllegalAccessException {
+			RuleSets ruleSets = new RuleSets();
+			int ruleSetCount = in.readInt();
+			for (int i = 0; i < ruleSetCount; i++) {
+				RuleSet ruleSet = new RuleSet();
+				ruleSet.setName(readString(in));
+				ruleSet.setFileName(readString(in));
+				ruleSet.setDescription(readString(in));
+				ruleSet.addIncludePatterns(readStrings());
+				ruleSet.addExcludePatterns(readStrings());
+				int ruleCount = in.readInt();
+				for (int j = 0; j < ruleCount; j++) {
+					ruleSet.addRule(readRule());
+				}
+				ruleSets.addRuleSet(ruleSet);
+			}
+			return ruleSets;
+		}
+
+		private Rule readRule() throws IOException, ClassNotFoundException,
+				InstantiationException, IllegalAccessException {
+			if (in.readByte() == RULE_REFERENCE) {
+				return readRuleReference();
+			}
+			Rule rule = (Rule) classLoader.loadClass(readString(in)).newInstance();
+			rule.setRuleClass(readString(in));
+			rule.setName(readString(in));
+			String languageName = readString(in);
+			Language language = languageName == null ? null : Language.findByTerseName(languageName);
+			if (language != rule.getLanguage()) {
+				rule.setLanguage(language);
+			}
+			rule.setMinimumLanguageVersion(readLanguageVersion());
+			rule.setMaximumLanguageVersion(readLanguageVersion());
+			rule.setDeprecated(in.readBoolean());
+			rule.setSince(readString(in));
+			rule.setRuleSetName(readString(in));
+			rule.setMessage(readString(in));
+			rule.setDescription(readString(in));
+			for (String example : readStrings()) {
+				rule.addExample(example);
+			}
+			rule.setExternalInfoUrl(readString(in));
+			rule.setPriority(readPriority());
+			if (in.readBoolean()) {
+				rule.setUsesDFA();
+			}
+			if (in.readBoolean()) {
+				rule.setUsesTypeResolution();
+			}
+			if (in.readBoolean()) {
+				RuleSets.setThreadSafe(rule);
+			}
+			readPropertyDefinitions(rule);
+			readPropertyValues(rule, null);
+			return rule;
+		}
+
+		/**
+		 * The wrapped Rule already has the overridden values, so it is reset
+		 * to <code>null</code> before each override, otherwise the RuleReference
+		 * wouldn't consider the value as overridden.
+		 */
+		private Rule readRuleReference() throws IOException, ClassNotFoundException,
+				InstantiationException, IllegalAccessException {
+			RuleSetReference ruleSetReference = readRuleSetReference();
+			Rule rule = readRule();
+			Rule baseRule = rule;
+			while (baseRule instanceof RuleReference) {
+				baseRule = ((RuleReference) baseRule).getRule();
+			}
+			RuleReference ruleReference = new RuleReference(rule, ruleSetReference);
+
+			byte deprecated = in.readByte();
+			if (deprecated >= 0) {
+				ruleReference.setDeprecated(deprecated == 1);
+			}
+			String name = readString(in);
+			if (name != null) {
+				baseRule.setName(null);
+				ruleReference.setName(name);
+			}
+			String message = readString(in);
+			if (message != null) {
+				baseRule.setMessage(null);
+				ruleReference.setMessage(message);
+			}
+			String description = readString(in);
+			if (description != null) {
+				baseRule.setDescription(null);
+				ruleReference.setDescription(description);
+			}
+			List<String> examples = readStrings();
+			if (examples != null) {
+				for (String example : examples) {
+					baseRule.getExamples().remove(example);
+					ruleReference.addExample(example);
+				}
+			}
+			String externalInfoUrl = readString(in);
+			if (externalInfoUrl != null) {
+				baseRule.setExternalInfoUrl(null);
+				ruleReference.setExternalInfoUrl(externalInfoUrl);
+			}
+			RulePriority priority = readPriority();
+			if (priority != null) {
+				baseRule.setPriority(null);
+				ruleReference.setPriority(priority);
+			}
+			readPropertyDefinitions(ruleReference);
+			readPropertyValues(ruleReference, baseRule);
+			return ruleReference;
+		}
+
+		private RuleSetReference readRuleSetReference() throws IOException {
+			int index = in.readInt();
+			if (index >= 0) {
+				return ruleSetReferences.get(index);
+			}
+			RuleSetReference ruleSetReference = new RuleSetReference(readString(in));
+			ruleSetReference.setAllRules(in.readBoolean());
+			for (String exclude : readStrings()) {
+				ruleSetReference.addExclude(exclude);
+			}
+			ruleSetReferences.add(ruleSetReference);
+			return ruleSetReference;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void readPropertyDefinitions(Rule rule) throws IOException {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String typeId = readString(in);
+				PropertyDescriptorFactory factory = PropertyDescriptorUtil.factoryFor(typeId);
+				if (factory == null) {
+					throw new IOException("No property descriptor factory for type: " + typeId);
+				}
+				int valueCount = in.readInt();
+				Map<String, String> values = new TreeMap<String, String>();
+				for (int j = 0; j < valueCount; j++) {
+					values.put(readString(in), readString(in));
+				}
+				rule.definePropertyDescriptor(new PropertyDescriptorWrapper(factory.createWith(values)));
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void readPropertyValues(Rule rule, Rule baseRule) throws IOException {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = readString(in);
+				String value = readString(in);
+				PropertyDescriptor descriptor = rule.getPropertyDescriptor(name);
+				if (descriptor == null) {
+					throw new IOException("Cannot set non-existant property '" + name + "' on Rule " + rule.getName());
+				}
+				if (baseRule != null) {
+					baseRule.setProperty(descriptor, null);
+				}
+				rule.setProperty(descriptor, descriptor.valueFrom(value));
+			}
+		}
+
+		private LanguageVersion readLanguageVersion() throws IOException {
+			String terseName = readString(in);
+			return terseName == null ? null : LanguageVersion.findByTerseName(terseName);
+		}
+
+		private RulePriority readPriority() throws IOException {
+			int priority = in.readInt();
+			return priority < 0 ? null : RulePriority.valueOf(priority);
+		}
+
+		private List<String> readStrings() throws IOException {
+			int count = in.readInt();
+			if (count < 0) {
+				return null;
+			}
+			List<String> strings = new ArrayList<String>(count);
+			for (int i = 0; i < count; i++) {
+				strings.add(readString(in));
+			}
+			return strings;
+		}
+	}
+}
@@ -177,14 +177,14 @@ public class RuleSetWriter {
 			List<String> examples = ruleReference.getOverriddenExamples();
 			
 			return createSingleRuleElement(language, minimumLanguageVersion, maximumLanguageVersion, deprecated,
-				name, null, ref, message, externalInfoUrl, null, null, null, description, priority,
+				name, null, ref, message, externalInfoUrl, null, null, null, null, description, priority,
 				propertyDescriptors, propertiesByPropertyDescriptor, examples);
 		    }
 		} else {
 		    return createSingleRuleElement(rule instanceof ImmutableLanguage ? null : rule.getLanguage(), 
 		    	rule.getMinimumLanguageVersion(), rule.getMaximumLanguageVersion(), rule.isDeprecated(),
 			    rule.getName(), rule.getSince(), null, rule.getMessage(), rule.getExternalInfoUrl(),
-			    rule.getRuleClass(), rule.usesDFA(), rule.usesTypeResolution(), rule.getDescription(), 
+			    rule.getRuleClass(), rule.usesDFA(), rule.usesTypeResolution(), RuleSets.isThreadSafe(rule), rule.getDescription(), 
 			    rule.getPriority(), rule.getPropertyDescriptors(), rule.getPropertiesByPropertyDescriptor(),
 			    rule.getExamples());
 		}
@@ -199,7 +199,7 @@ public class RuleSetWriter {
     private Element createSingleRuleElement(Language language, LanguageVersion minimumLanguageVersion,
 	    LanguageVersion maximumLanguageVersion, Boolean deprecated, String name, String since, String ref,
 	    String message, String externalInfoUrl, String clazz, Boolean dfa, Boolean typeResolution,
-	    String description, RulePriority priority, List<PropertyDescriptor<?>> propertyDescriptors,
+	    Boolean threadSafe, String description, RulePriority priority, List<PropertyDescriptor<?>> propertyDescriptors,
 	    Map<PropertyDescriptor<?>, Object> propertiesByPropertyDescriptor, List<String> examples) {
 		Element ruleElement = createRuleElement();
 		if (language != null) {
@@ -221,6 +221,7 @@ public class RuleSetWriter {
 		setIfNonNull(externalInfoUrl, ruleElement,  "externalInfoUrl");
 		setIfNonNull(dfa, 			  ruleElement,  "dfa");
 		setIfNonNull(typeResolution,  ruleElement,  "typeResolution");
+		setIfNonNull(threadSafe,      ruleElement,  "threadSafe");
 	
 		if (description != null) {
 		    Element descriptionElement = createDescriptionElement(description);
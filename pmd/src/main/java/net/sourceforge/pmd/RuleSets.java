@@ -9,10 +9,15 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
+import net.sourceforge.pmd.lang.rule.AbstractRule;
 
 /**
  * Grouping of Rules per Language in a RuleSet.
@@ -30,6 +35,30 @@ public class RuleSets {
      */
     private RuleChain ruleChain = new RuleChain();
 
+    /**
+     * The rules split into groups, created on demand by {@link #getRuleGroups(int)}.
+     */
+    private List<RuleSets> ruleGroups;
+
+    /**
+     * The applicable rules of each RuleSet per language version, in the order
+     * of {@link #ruleSets}, created on demand by {@link #getApplicableRules(LanguageVersion)}.
+     */
+    private final Map<LanguageVersion, List<List<Rule>>> applicableRules = new ConcurrentHashMap<LanguageVersion, List<List<Rule>>>();
+
+    /**
+     * Whether the rules of a language use the DFA layer or type resolution,
+     * created on demand by {@link #usesDFA(Language)} and {@link #usesTypeResolution(Language)}.
+     */
+    private final Map<Language, Boolean> usesDFA = new ConcurrentHashMap<Language, Boolean>();
+    private final Map<Language, Boolean> usesTypeResolution = new ConcurrentHashMap<Language, Boolean>();
+
+    /**
+     * The sum of the modification counts of the RuleSets the RuleChain and
+     * the tables above were built with, see {@link #checkRulesChanged()}.
+     */
+    private volatile int modificationCount;
+
     /**
      * Public constructor.
      */
@@ -56,6 +85,8 @@ public class RuleSets {
     public void addRuleSet(RuleSet ruleSet) {
 		ruleSets.add(ruleSet);
 		ruleChain.add(ruleSet);
+		modificationCount += ruleSet.getModificationCount();
+		rulesChanged();
     }
 
     /**
@@ -119,12 +150,138 @@ public class RuleSets {
      * @param language the Language of the source
      */
     public void apply(List<Node> acuList, RuleContext ctx, Language language) {
+		checkRulesChanged();
 		ruleChain.apply(acuList, ctx, language);
+		Iterator<List<Rule>> rules = getApplicableRules(ctx.getLanguageVersion()).iterator();
+		for (RuleSet ruleSet : ruleSets) {
+		    List<Rule> ruleSetRules = rules.next();
+		    if (!ruleSetRules.isEmpty() && ruleSet.applies(ctx.getSourceCodeFile())) {
+			ruleSet.apply(acuList, ctx, ruleSetRules);
+		    }
+		}
+    }
+
+    /**
+     * The rules of each RuleSet which are applied to a source of the given
+     * language version outside of the RuleChain. They are only selected once
+     * and not for each source.
+     */
+    private List<List<Rule>> getApplicableRules(LanguageVersion languageVersion) {
+		List<List<Rule>> rules = languageVersion == null ? null : applicableRules.get(languageVersion);
+		if (rules == null) {
+		    rules = new ArrayList<List<Rule>>(ruleSets.size());
+		    for (RuleSet ruleSet : ruleSets) {
+			rules.add(ruleSet.getApplicableRules(languageVersion));
+		    }
+		    if (languageVersion != null) {
+			applicableRules.put(languageVersion, rules);
+		    }
+		}
+		return rules;
+    }
+
+    /**
+     * Rules may still be added to or removed from a RuleSet after it was
+     * added here.  The RuleChain and the tables selected from the rules are
+     * then built again.
+     */
+    private void checkRulesChanged() {
+		int count = 0;
+		for (RuleSet ruleSet : ruleSets) {
+		    count += ruleSet.getModificationCount();
+		}
+		if (count != modificationCount) {
+		    RuleChain newRuleChain = new RuleChain();
+		    for (RuleSet ruleSet : ruleSets) {
+			newRuleChain.add(ruleSet);
+		    }
+		    ruleChain = newRuleChain;
+		    modificationCount = count;
+		    rulesChanged();
+		}
+    }
+
+    private void rulesChanged() {
+		ruleGroups = null;
+		applicableRules.clear();
+		usesDFA.clear();
+		usesTypeResolution.clear();
+    }
+
+    /**
+     * Split the rules into groups, which can be applied to the same AST
+     * concurrently. The thread-safe rules are distributed over the first
+     * <code>count</code> groups, the last group contains the rules which
+     * aren't thread-safe and have to be applied after the others. The groups
+     * share the rule instances, so they are started and ended by this RuleSets.
+     *
+     * @param count the number of groups of thread-safe rules
+     * @return <code>count + 1</code> groups, some of them may be empty
+     * @see AbstractRule#isThreadSafe()
+     */
+    public List<RuleSets> getRuleGroups(int count) {
+		checkRulesChanged();
+		if (ruleGroups != null && ruleGroups.size() == count + 1) {
+		    return ruleGroups;
+		}
+		List<RuleSets> groups = new ArrayList<RuleSets>(count + 1);
+		for (int i = 0; i <= count; i++) {
+		    groups.add(new RuleSets());
+		}
+		int next = 0;
 		for (RuleSet ruleSet : ruleSets) {
-		    if (ruleSet.applies(ctx.getSourceCodeFile())) {
-			ruleSet.apply(acuList, ctx);
+		    RuleSet[] groupRuleSets = new RuleSet[count + 1];
+		    for (Rule rule : ruleSet.getRules()) {
+			// the thread-safe rules are assigned in turn, as their cost isn't known
+			int group = count;
+			if (isThreadSafe(rule)) {
+			    group = next;
+			    next = (next + 1) % count;
+			}
+			if (groupRuleSets[group] == null) {
+			    groupRuleSets[group] = copyWithoutRules(ruleSet);
+			}
+			groupRuleSets[group].addRule(rule);
+		    }
+		    for (int i = 0; i <= count; i++) {
+			if (groupRuleSets[i] != null) {
+			    groups.get(i).addRuleSet(groupRuleSets[i]);
+			}
 		    }
 		}
+		ruleGroups = groups;
+		return groups;
+    }
+
+    /**
+     * Only {@link AbstractRule} and {@link AbstractDelegateRule} know whether
+     * they are thread-safe, other Rules are applied after the rule groups.
+     */
+    static boolean isThreadSafe(Rule rule) {
+		if (rule instanceof AbstractRule) {
+		    return ((AbstractRule) rule).isThreadSafe();
+		} else if (rule instanceof AbstractDelegateRule) {
+		    return ((AbstractDelegateRule) rule).isThreadSafe();
+		}
+		return false;
+    }
+
+    static void setThreadSafe(Rule rule) {
+		if (rule instanceof AbstractRule) {
+		    ((AbstractRule) rule).setThreadSafe();
+		} else if (rule instanceof AbstractDelegateRule) {
+		    ((AbstractDelegateRule) rule).setThreadSafe();
+		}
+    }
+
+    private static RuleSet copyWithoutRules(RuleSet ruleSet) {
+		RuleSet copy = new RuleSet();
+		copy.setName(ruleSet.getName());
+		copy.setFileName(ruleSet.getFileName());
+		copy.setDescription(ruleSet.getDescription());
+		copy.setIncludePatterns(ruleSet.getIncludePatterns());
+		copy.setExcludePatterns(ruleSet.getExcludePatterns());
+		return copy;
     }
 
     /**
@@ -144,12 +301,19 @@ public class RuleSets {
      * @return true if any rule in the RuleSet needs the DFA layer
      */
     public boolean usesDFA(Language language) {
-		for (RuleSet ruleSet : ruleSets) {
-		    if (ruleSet.usesDFA(language)) {
-			return true;
+		checkRulesChanged();
+		Boolean uses = usesDFA.get(language);
+		if (uses == null) {
+		    uses = Boolean.FALSE;
+		    for (RuleSet ruleSet : ruleSets) {
+			if (ruleSet.usesDFA(language)) {
+			    uses = Boolean.TRUE;
+			    break;
+			}
 		    }
+		    usesDFA.put(language, uses);
 		}
-		return false;
+		return uses.booleanValue();
     }
 
     /**
@@ -171,13 +335,27 @@ public class RuleSets {
 		return rule;
     }
 
+    /**
+     * Check if the rules that apply to a source of the given language
+     * use type resolution.
+     *
+     * @param language the language of a source
+     * @return true if any rule in the RuleSet needs type resolution
+     */
     public boolean usesTypeResolution(Language language) {
-		for (RuleSet ruleSet : ruleSets) {
-		    if (ruleSet.usesTypeResolution(language)) {
-			return true;
+		checkRulesChanged();
+		Boolean uses = usesTypeResolution.get(language);
+		if (uses == null) {
+		    uses = Boolean.FALSE;
+		    for (RuleSet ruleSet : ruleSets) {
+			if (ruleSet.usesTypeResolution(language)) {
+			    uses = Boolean.TRUE;
+			    break;
+			}
 		    }
+		    usesTypeResolution.put(language, uses);
 		}
-		return false;
+		return uses.booleanValue();
     }
     
 	/**
@@ -190,5 +368,6 @@ public class RuleSets {
 		for (RuleSet ruleSet : ruleSets) {
 		   ruleSet.removeDysfunctionalRules(collector);
 		}
+		checkRulesChanged();
 	}
 }
@@ -3,6 +3,7 @@
  */
 package net.sourceforge.pmd;
 
+import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +36,9 @@ public final class RulesetsFactoryUtils {
 		RuleSetFactory ruleSetFactory = new RuleSetFactory();
 		ruleSetFactory.setMinimumPriority(configuration.getMinimumPriority());
 		ruleSetFactory.setWarnDeprecated(true);
+		if (configuration.getRuleSetCache() != null) {
+			ruleSetFactory.setSnapshotDirectory(new File(configuration.getRuleSetCache()));
+		}
 		return ruleSetFactory;
 	}
 
@@ -8,10 +8,18 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.sourceforge.pmd.benchmark.Benchmark;
 import net.sourceforge.pmd.benchmark.Benchmarker;
+import net.sourceforge.pmd.lang.AbstractParser;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
@@ -20,16 +28,41 @@ import net.sourceforge.pmd.lang.VisitorStarter;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.ParseException;
 import net.sourceforge.pmd.lang.xpath.Initializer;
+import net.sourceforge.pmd.stat.Metric;
+import net.sourceforge.pmd.util.StringUtil;
 
 import org.apache.commons.io.IOUtils;
 
 public class SourceCodeProcessor {
 
+    /**
+     * The reusable parsers of the current thread, by language version.
+     */
+    private static final ThreadLocal<Map<LanguageVersion, Parser>> PARSERS = new ThreadLocal<Map<LanguageVersion, Parser>>() {
+	@Override
+	protected Map<LanguageVersion, Parser> initialValue() {
+	    return new HashMap<LanguageVersion, Parser>();
+	}
+    };
+
     private final PMDConfiguration configuration;
+    private ExecutorService ruleGroupExecutor;
 
     public SourceCodeProcessor(PMDConfiguration configuration) {
     	this.configuration = configuration;
     }
+
+    /**
+     * Sets the executor applying the rule groups of large files. It is created
+     * once per run and shared by the files, see
+     * {@link net.sourceforge.pmd.processor.AbstractPMDProcessor#createRuleGroupExecutor()}.
+     * Without one, the rule groups are not applied concurrently.
+     *
+     * @param ruleGroupExecutor the executor, or <code>null</code>
+     */
+    public void setRuleGroupExecutor(ExecutorService ruleGroupExecutor) {
+    	this.ruleGroupExecutor = ruleGroupExecutor;
+    }
     
     
     /**
@@ -137,7 +170,7 @@ public class SourceCodeProcessor {
     private void processSource(Reader sourceCode, RuleSets ruleSets, RuleContext ctx) {
 		LanguageVersion languageVersion = ctx.getLanguageVersion();
 		LanguageVersionHandler languageVersionHandler = languageVersion.getLanguageVersionHandler();		
-		Parser parser = PMD.parserFor(languageVersion, configuration);
+		Parser parser = parserFor(languageVersion);
 		
 		Node rootNode = parse(ctx, sourceCode, parser);
 		symbolFacade(rootNode, languageVersionHandler);
@@ -147,10 +180,85 @@ public class SourceCodeProcessor {
 		
 		List<Node> acus = new ArrayList<Node>();
 		acus.add(rootNode);
-		ruleSets.apply(acus, ctx, language);		
+		if (ruleGroupExecutor != null && configuration.getRuleGroups() > 1
+				&& rootNode.getEndLine() >= configuration.getRuleGroupMinLines()) {
+			applyRuleGroups(acus, ruleSets, ctx, language);
+		} else {
+			ruleSets.apply(acus, ctx, language);
+		}
 	}
 
+	/**
+	 * Applies the groups of thread-safe rules concurrently to the AST, each
+	 * with its own report, and then the rules which aren't thread-safe. The
+	 * violations are added to the report of the context in the current thread.
+	 */
+	private void applyRuleGroups(final List<Node> acus, RuleSets ruleSets, RuleContext ctx, final Language language) {
+		List<RuleSets> groups = ruleSets.getRuleGroups(configuration.getRuleGroups());
+		List<Callable<Report>> tasks = new ArrayList<Callable<Report>>();
+		for (final RuleSets group : groups.subList(0, groups.size() - 1)) {
+			final RuleContext groupCtx = new RuleContext(ctx);
+			// the listeners are notified when the report is merged
+			groupCtx.setReport(new Report());
+			groupCtx.setSourceCodeFile(ctx.getSourceCodeFile());
+			groupCtx.setSourceCodeFilename(ctx.getSourceCodeFilename());
+			groupCtx.setLanguageVersion(ctx.getLanguageVersion());
+			groupCtx.setIgnoreExceptions(ctx.isIgnoreExceptions());
+			tasks.add(new Callable<Report>() {
+				public Report call() {
+					group.apply(acus, groupCtx, language);
+					return groupCtx.getReport();
+				}
+			});
+		}
+		try {
+			for (Future<Report> future : ruleGroupExecutor.invokeAll(tasks)) {
+				merge(future.get(), ctx.getReport());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while applying the rules", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		groups.get(groups.size() - 1).apply(acus, ctx, language);
+	}
 
+	private static void merge(Report groupReport, Report report) {
+		// the violations are added one by one, so that they are suppressed by the suppress marker
+		for (RuleViolation violation : groupReport) {
+			report.addRuleViolation(violation);
+		}
+		report.getSuppressedRuleViolations().addAll(groupReport.getSuppressedRuleViolations());
+		for (Iterator<Metric> i = groupReport.metrics(); i.hasNext();) {
+			report.addMetric(i.next());
+		}
+		for (Iterator<Report.ProcessingError> i = groupReport.errors(); i.hasNext();) {
+			report.addError(i.next());
+		}
+	}
+
+
+
+	/**
+	 * Returns the parser of the current thread for the language version, if it
+	 * is reusable and has the suppress marker of the configuration, or a new one.
+	 */
+	private Parser parserFor(LanguageVersion languageVersion) {
+		Map<LanguageVersion, Parser> parsers = PARSERS.get();
+		Parser parser = parsers.get(languageVersion);
+		String suppressMarker = configuration.getSuppressMarker();
+		if (parser == null || !StringUtil.isSame(suppressMarker, parser.getParserOptions().getSuppressMarker(), false, false, false)) {
+			parser = PMD.parserFor(languageVersion, configuration);
+			if (parser instanceof AbstractParser && ((AbstractParser) parser).isReusable()) {
+				parsers.put(languageVersion, parser);
+			}
+		}
+		return parser;
+	}
 
 	private void determineLanguage(RuleContext ctx) {
 		// If LanguageVersion of the source file is not known, make a determination
@@ -5,8 +5,10 @@ package net.sourceforge.pmd.ant;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -14,6 +16,7 @@ import java.util.List;
 import java.util.Properties;
 
 import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.renderers.BinaryRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.renderers.RendererFactory;
 import net.sourceforge.pmd.util.StringUtil;
@@ -51,6 +54,8 @@ public class Formatter {
 
     private Writer writer;
 
+    private OutputStream outputStream;
+
     private Renderer renderer;
 
     public Renderer getRenderer() {
@@ -59,13 +64,17 @@ public class Formatter {
 
     public void start(String baseDir) {
         try {
+            renderer = createRenderer();
+            if (renderer instanceof BinaryRenderer) {
+                startBinary(baseDir);
+                return;
+            }
             if (toConsole) {
                 writer = new BufferedWriter(new OutputStreamWriter(System.out));
             }
             if (toFile != null) {
                 writer = getToFileWriter(baseDir);
             }
-            renderer = createRenderer();
             renderer.setWriter(writer);
             renderer.start();
         } catch (IOException ioe) {
@@ -73,11 +82,25 @@ public class Formatter {
         }
     }
 
+    /**
+     * The binary renderer writes bytes, not characters, and only to a file.
+     */
+    private void startBinary(String baseDir) throws IOException {
+        if (toFile == null) {
+            throw new BuildException("The " + BinaryRenderer.NAME + " formatter needs toFile, it can't write to the console");
+        }
+        outputStream = new FileOutputStream(resolveToFile(baseDir));
+        ((BinaryRenderer) renderer).setOutputStream(outputStream);
+        renderer.start();
+    }
+
     public void end(Report errorReport) {
         try {
             renderer.renderFileReport(errorReport);
             renderer.end();
-            if (toConsole) {
+            if (outputStream != null) {
+                outputStream.close();
+            } else if (toConsole) {
                 writer.flush();
             } else {
                 writer.close();
@@ -134,9 +157,13 @@ public class Formatter {
     }
 
     private Writer getToFileWriter(String baseDir) throws IOException {
+        return new BufferedWriter(new FileWriter(resolveToFile(baseDir)));
+    }
+
+    private File resolveToFile(String baseDir) {
         if (!toFile.isAbsolute()) {
-            return new BufferedWriter(new FileWriter(new File(baseDir + System.getProperty("file.separator") + toFile.getPath())));
+            return new File(baseDir + System.getProperty("file.separator") + toFile.getPath());
         }
-        return new BufferedWriter(new FileWriter(toFile));
+        return toFile;
     }
 }
@@ -6,6 +6,7 @@ package net.sourceforge.pmd.benchmark;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -79,7 +80,11 @@ public class Benchmarker {
     public static void main(String[] args) throws RuleSetNotFoundException, IOException, PMDException {
 
         String targetjdk = findOptionalStringValue(args, "--targetjdk", "1.4");
-        Language language = Language.JAVA;
+        Language language = Language.findByTerseName(findOptionalStringValue(args, "--language", "java"));
+        if (language == null) {
+            throw new IllegalArgumentException("Unknown language, use one of: "
+                    + Language.commaSeparatedTerseNames(Arrays.asList(Language.values())));
+        }
         LanguageVersion languageVersion = language.getVersion(targetjdk);
         if (languageVersion == null) {
         	languageVersion = language.getDefaultVersion();
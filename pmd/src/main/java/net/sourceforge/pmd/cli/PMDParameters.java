@@ -21,9 +21,15 @@ public class PMDParameters {
     @Parameter(names = { "-rulesets", "-R" }, description = "comma separated list of rulesets name to use", required = true)
     private String rulesets;
 
+    @Parameter(names = "-rulesetcache", description = "directory to store precompiled rulesets in, they are read from XML again only if changed")
+    private String rulesetCache;
+
     @Parameter(names = { "-uri", "-u" }, description = "Database URI for sources", required = false)
     private String uri;
 
+    @Parameter(names = "-uricache", description = "directory to cache the database sources (-uri) in, they are retrieved again only if changed")
+    private String uriCache;
+
     @Parameter(names = { "-dir", "-d" }, description = "root directory for sources", required = false)
     private String sourceDir;
 
@@ -42,12 +48,27 @@ public class PMDParameters {
     @Parameter(names = { "-threads", "-t" }, description = "set the number of threads used by PMD", validateWith = PositiveInteger.class)
     private Integer threads = 1;
 
+    @Parameter(names = "-rulegroups", description = "number of groups of thread-safe rules, which are applied concurrently to large files", validateWith = PositiveInteger.class)
+    private Integer ruleGroups = 1;
+
+    @Parameter(names = "-rulegroupminlines", description = "minimum number of lines of a file, to which the rule groups are applied concurrently", validateWith = PositiveInteger.class)
+    private Integer ruleGroupMinLines = 5000;
+
     @Parameter(names = { "-benchmark", "-b" }, description = "Benchmark mode - output a benchmark report upon completion; default to System.err")
     private boolean benchmark = false;
 
     @Parameter(names = { "-stress", "-S" }, description = "performs a stress test")
     private boolean stress = false;
 
+    @Parameter(names = "-watch", description = "keep watching the source directory and re-analyze changed files")
+    private boolean watch = false;
+
+    @Parameter(names = "-watchinterval", description = "interval in milliseconds to check for changed files in watch mode", validateWith = PositiveInteger.class)
+    private Integer watchInterval = 500;
+
+    @Parameter(names = "-projectindex", description = "index the type declarations of all Java files first, so rules can look across files")
+    private boolean projectIndex = false;
+
     @Parameter(names = "-shortnames", description = "prints shortened filenames in the report")
     private boolean shortnames = false;
 
@@ -66,6 +87,9 @@ public class PMDParameters {
     @Parameter(names = { "-reportfile", "-r" }, description = "send report output to a file; default to System.out")
     private String reportfile = null;
 
+    @Parameter(names = "-baseline", description = "binary report of a previous run to compare the binary report (-f binary) against")
+    private String baseline;
+
     @Parameter(names = { "-version", "-v" }, description = "specify version of a language PMD should use")
     private String version = Language.getDefaultLanguage().getDefaultVersion().getVersion();
 
@@ -117,19 +141,27 @@ public class PMDParameters {
         PMDConfiguration configuration = new PMDConfiguration();
         configuration.setInputPaths(params.getSourceDir());
         configuration.setInputUri(params.getUri());
+        configuration.setInputUriCache(params.getUriCache());
         configuration.setReportFormat(params.getFormat());
         configuration.setBenchmark(params.isBenchmark());
         configuration.setDebug(params.isDebug());
         configuration.setMinimumPriority(params.getMinimumPriority());
         configuration.setReportFile(params.getReportfile());
+        configuration.setBaselineReport(params.getBaseline());
         configuration.setReportProperties(params.getProperties());
         configuration.setReportShortNames(params.isShortnames());
         configuration.setRuleSets(params.getRulesets());
+        configuration.setRuleSetCache(params.getRulesetCache());
         configuration.setShowSuppressedViolations(params.isShowsuppressed());
         configuration.setSourceEncoding(params.getEncoding());
         configuration.setStressTest(params.isStress());
         configuration.setSuppressMarker(params.getSuppressmarker());
         configuration.setThreads(params.getThreads());
+        configuration.setRuleGroups(params.getRuleGroups());
+        configuration.setRuleGroupMinLines(params.getRuleGroupMinLines());
+        configuration.setWatch(params.isWatch());
+        configuration.setWatchInterval(params.getWatchInterval());
+        configuration.setProjectIndex(params.isProjectIndex());
         for (LanguageVersion language : LanguageVersion.findVersionsForLanguageTerseName(params.getLanguage())) {
 
             LanguageVersion languageVersion = language.getLanguage().getVersion(params.getVersion());
@@ -163,6 +195,14 @@ public class PMDParameters {
         return threads;
     }
 
+    public Integer getRuleGroups() {
+        return ruleGroups;
+    }
+
+    public Integer getRuleGroupMinLines() {
+        return ruleGroupMinLines;
+    }
+
     public boolean isBenchmark() {
         return benchmark;
     }
@@ -171,6 +211,18 @@ public class PMDParameters {
         return stress;
     }
 
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public Integer getWatchInterval() {
+        return watchInterval;
+    }
+
+    public boolean isProjectIndex() {
+        return projectIndex;
+    }
+
     public boolean isShortnames() {
         return shortnames;
     }
@@ -195,6 +247,10 @@ public class PMDParameters {
         return reportfile;
     }
 
+    public String getBaseline() {
+        return baseline;
+    }
+
     public String getVersion() {
         return version;
     }
@@ -233,4 +289,18 @@ public class PMDParameters {
         this.uri = uri;
     }
 
+    /**
+     * @return the directory to cache the database sources in.
+     */
+    public String getUriCache() {
+        return uriCache;
+    }
+
+    /**
+     * @return the directory to store precompiled rulesets in.
+     */
+    public String getRulesetCache() {
+        return rulesetCache;
+    }
+
 }
@@ -5,6 +5,8 @@ package net.sourceforge.pmd.cpd;
 
 import java.util.List;
 
+import net.sourceforge.pmd.PMD;
+
 /**
  *
  * @author Zev Blut zb@ubit.com
@@ -20,7 +22,8 @@ public abstract class AbstractTokenizer implements Tokenizer {
 	protected List<String> ignorableStmt; 		// List<String>, should be set by sub classes
 	protected char oneLineCommentChar = '#'; // Most script languages ( shell, ruby, python,...) use this symbol for comment line
 
-	private List<String> code;
+	private StringBuilder code;
+	private int nextLineStart;
 	private int lineNumber = 0;
 	private String currentLine;
 
@@ -29,10 +32,10 @@ public abstract class AbstractTokenizer implements Tokenizer {
 	private boolean downcaseString = true;
 
     public void tokenize(SourceCode tokens, Tokens tokenEntries) {
-        code = tokens.getCode();
+        code = tokens.getCodeBuffer();
+        nextLineStart = 0;
 
-        for ( lineNumber = 0; lineNumber < code.size(); lineNumber++ ) {
-        	currentLine = code.get(lineNumber);
+        for ( lineNumber = -1; nextLine(); ) {
             int loc = 0;
             while ( loc < currentLine.length() ) {
                 StringBuilder token = new StringBuilder();
@@ -54,6 +57,22 @@ public abstract class AbstractTokenizer implements Tokenizer {
             }
         }
         tokenEntries.add(TokenEntry.getEOF());
+        code = null;
+    }
+
+    /**
+     * Moves to the next line of the code buffer, which ends every line with {@link PMD#EOL}.
+     * @return <code>false</code> at the end of the code
+     */
+    private boolean nextLine() {
+        if (nextLineStart >= code.length()) {
+            return false;
+        }
+        int lineEnd = code.indexOf(PMD.EOL, nextLineStart);
+        currentLine = code.substring(nextLineStart, lineEnd);
+        nextLineStart = lineEnd + PMD.EOL.length();
+        lineNumber++;
+        return true;
     }
 
     private int getTokenFromLine(StringBuilder token, int loc) {
@@ -109,10 +128,8 @@ public abstract class AbstractTokenizer implements Tokenizer {
         if ( 	! done &&	// ... we didn't find the end of the string
         		loc >= currentLine.length() && // ... we have reach the end of the line ( the String is incomplete, for the moment at least)
         		spanMultipleLinesString && // ... the language allow multiple line span Strings
-        		lineNumber < code.size() - 1 // ... there is still more lines to parse
+        		nextLine() // ... there is still more lines to parse
         	) {
-        	// parsing new line
-        	currentLine = code.get(++lineNumber);
         	// Warning : recursive call !
         	loc = parseString(token, loc, stringDelimiter);
         }
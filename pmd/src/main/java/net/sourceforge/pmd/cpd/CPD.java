@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -21,6 +22,7 @@ import net.sourceforge.pmd.util.FileFinder;
 import net.sourceforge.pmd.util.database.DBMSMetadata;
 import net.sourceforge.pmd.util.database.DBURI;
 import net.sourceforge.pmd.util.database.SourceObject;
+import net.sourceforge.pmd.util.database.SourceObjectPrefetcher;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -33,23 +35,70 @@ public class CPD {
     private CPDListener listener = new CPDNullListener();
     private Tokens tokens = new Tokens();
     private MatchAlgorithm matchAlgorithm;
+    private NearMatchAlgorithm nearMatchAlgorithm;
+    private CPDIndex index;
 
     public CPD(CPDConfiguration theConfiguration) {
     	configuration = theConfiguration;
         // before we start any tokenizing (add(File...)), we need to reset the static TokenEntry status
         TokenEntry.clearImages();
+        if (configuration.getIndexFile() != null) {
+            File indexFile = new File(configuration.getIndexFile());
+            if (configuration.getPreviousIndexFile() != null) {
+                index = CPDIndex.open(indexFile,
+                        Arrays.asList(new File(configuration.getPreviousIndexFile()), indexFile), configuration);
+            } else {
+                index = CPDIndex.open(indexFile, configuration);
+            }
+        }
     }
 
     public void setCpdListener(CPDListener cpdListener) {
         this.listener = cpdListener;
     }
 
+    /**
+     * Replaces the index, e.g. by the shards of the worker processes.  Must
+     * be called before any file is added.
+     */
+    void setIndex(CPDIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Writes the index with the files added so far, if there is one.
+     */
+    void writeIndex() {
+        if (index != null) {
+            index.write();
+        }
+    }
+
     public void go() {
+        writeIndex();
+        Set<String> changedFiles = null;
+        if (configuration.getChangedFiles() != null) {
+            changedFiles = new HashSet<String>();
+            for (String fileName : configuration.getChangedFiles()) {
+                changedFiles.add(new File(fileName).getAbsolutePath());
+            }
+        }
+        if (configuration.getMinimumSimilarity() < 1) {
+            nearMatchAlgorithm = new NearMatchAlgorithm(source, tokens, configuration.getMinimumTileSize(),
+                    configuration.getMinimumSimilarity(), listener);
+            nearMatchAlgorithm.setChangedFiles(changedFiles);
+            nearMatchAlgorithm.findMatches();
+            return;
+        }
         matchAlgorithm = new MatchAlgorithm(source, tokens,configuration.getMinimumTileSize(),listener);
+        matchAlgorithm.setChangedFiles(changedFiles);
         matchAlgorithm.findMatches();
     }
 
     public Iterator<Match> getMatches() {
+        if (nearMatchAlgorithm != null) {
+            return nearMatchAlgorithm.matches();
+        }
         return matchAlgorithm.matches();
     }
 
@@ -101,7 +150,24 @@ public class CPD {
         }
 
         SourceCode sourceCode = configuration.sourceCodeFor(file);
+        if (!configuration.isInShard(sourceCode.getFileName())) {
+            return;
+        }
+        if (index == null) {
+            add(sourceCode);
+            return;
+        }
+        long checksum = CPDIndex.checksum(file);
+        if (index.restore(sourceCode.getFileName(), checksum, tokens)) {
+            listener.addedFile(1, file);
+            source.put(sourceCode.getFileName(), sourceCode);
+            return;
+        }
+        int start = tokens.size();
         add(sourceCode);
+        if (tokens.size() > start) {
+            index.record(sourceCode.getFileName(), checksum, tokens.getTokens(), start);
+        }
     }
 
     public void add(DBURI dburi) throws IOException {
@@ -113,13 +179,15 @@ public class CPD {
         List<SourceObject> sourceObjectList = dbmsmetadata.getSourceObjectList ();
         LOGGER.log(Level.FINER, "Located {0} database source objects", sourceObjectList.size());
 
-        for (SourceObject sourceObject: sourceObjectList )
+        // tokenize the first source objects while the others are still being retrieved
+        SourceObjectPrefetcher prefetcher = new SourceObjectPrefetcher(dburi, dbmsmetadata);
+        for (SourceObjectPrefetcher.PrefetchedSource source: prefetcher.fetch(sourceObjectList) )
         {
           // Add DBURI as a faux-file 
-          String falseFilePath =  sourceObject.getPseudoFileName();
+          String falseFilePath =  source.getPseudoFileName();
           LOGGER.log(Level.FINEST, "Adding database source object {0}", falseFilePath);
 
-          SourceCode sourceCode = configuration.sourceCodeFor( dbmsmetadata.getSourceCode(sourceObject) 
+          SourceCode sourceCode = configuration.sourceCodeFor( source.getReader() 
                                                                ,falseFilePath
                                                              );
           add(sourceCode);
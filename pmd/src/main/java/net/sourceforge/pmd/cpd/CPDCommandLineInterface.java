@@ -3,13 +3,20 @@
  */
 package net.sourceforge.pmd.cpd;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import java.net.URISyntaxException;
 import java.util.logging.Logger;
+import net.sourceforge.pmd.PMD;
 import net.sourceforge.pmd.util.database.DBURI;
 
 public class CPDCommandLineInterface {
@@ -22,6 +29,8 @@ public class CPDCommandLineInterface {
 
 	private static final String progName = "cpd";
 
+	private static final Pattern SHARD_PATTERN = Pattern.compile("(\\d+)/(\\d+)");
+
 	public static void setStatusCodeOrExit(int status) {
 		if (isExitAfterRunSet())
 			System.exit(status);
@@ -54,6 +63,10 @@ public class CPDCommandLineInterface {
 				setStatusCodeOrExit(1);
 				return;
 			}
+			checkShard(arguments);
+			if (arguments.getMinimumSimilarity() <= 0 || arguments.getMinimumSimilarity() > 1) {
+				throw new ParameterException("--minimum-similarity must be greater than 0 and at most 1");
+			}
 		} catch (ParameterException e) {
 			jcommander.usage();
 			System.out.println(buildUsageText());
@@ -66,6 +79,15 @@ public class CPDCommandLineInterface {
 		// implementation to retrieve their associate values...
 		CPDConfiguration.setSystemProperties(arguments);
 		CPD cpd = new CPD(arguments);
+		// the workers only tokenize files, the database sources are tokenized here
+		if (arguments.getWorkers() > 0 && arguments.getShard() == null
+				&& null != arguments.getFiles() && !arguments.getFiles().isEmpty()) {
+			try {
+				cpd.setIndex(CPDWorkers.tokenize(arguments, args));
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 
                 //Add files 
                 if ( null != arguments.getFiles() && ! arguments.getFiles().isEmpty() )
@@ -79,13 +101,51 @@ public class CPDCommandLineInterface {
                   addSourceURIToCPD(arguments.getURI(),cpd);
                 }
 
+		if (arguments.getShard() != null) {
+			// a worker process, the duplicates are found by the process which started it
+			cpd.writeIndex();
+			return;
+		}
+
 		cpd.go();
 		if (cpd.getMatches().hasNext()) {
-			System.out.println(arguments.getRenderer().render(cpd.getMatches()));
+			Renderer renderer = arguments.getRenderer();
+			if (renderer instanceof CPDRenderer) {
+				renderTo(System.out, (CPDRenderer) renderer, cpd);
+			} else {
+				System.out.println(renderer.render(cpd.getMatches()));
+			}
 			setStatusCodeOrExit(DUPLICATE_CODE_FOUND);
 		}
 	}
 
+	private static void checkShard(CPDConfiguration arguments) {
+		String shard = arguments.getShard();
+		if (shard == null) {
+			return;
+		}
+		if (arguments.getIndexFile() == null) {
+			throw new ParameterException("--shard requires --index");
+		}
+		Matcher matcher = SHARD_PATTERN.matcher(shard);
+		if (!matcher.matches() || Integer.parseInt(matcher.group(1)) < 1
+				|| Integer.parseInt(matcher.group(1)) > Integer.parseInt(matcher.group(2))) {
+			throw new ParameterException("Invalid shard " + shard + ", expected e.g. 2/4");
+		}
+	}
+
+	private static void renderTo(PrintStream out, CPDRenderer renderer, CPD cpd) {
+		try {
+			// not closed, the stream is System.out
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+			renderer.render(cpd.getMatches(), writer);
+			writer.write(PMD.EOL);
+			writer.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private static void addSourcesFilesToCPD(List<String> files, CPD cpd, boolean recursive) {
 		try {
 			for (String file : files)
@@ -135,6 +195,12 @@ public class CPDCommandLineInterface {
 		helpText += "or: " + EOL;
 
 		helpText += " java net.sourceforge.pmd.cpd.CPD --minimum-tokens 100 --encoding UTF-16LE --files /path/to/java/code --format xml" + EOL;
+		helpText += "or: " + EOL;
+
+		helpText += " java net.sourceforge.pmd.cpd.CPD --minimum-tokens 100 --files /path/to/java/code --workers 4" + EOL;
+		helpText += "or: " + EOL;
+
+		helpText += " java net.sourceforge.pmd.cpd.CPD --minimum-tokens 100 --files /path/to/java/code --minimum-similarity 0.8" + EOL;
 		return helpText;
 	}
 
@@ -35,6 +35,9 @@ public class CPDConfiguration extends AbstractConfiguration {
 	@Parameter(names = "--minimum-tokens", description = "The minimum token length which should be reported as a duplicate.", required = true)
 	private int minimumTileSize;
 
+	@Parameter(names = "--minimum-similarity", description = "Also report near-miss duplicates, whose tokens are at least this similar, e.g. 0.8. Default value is 1, only exact duplicates", required = false)
+	private double minimumSimilarity = 1;
+
 	@Parameter(names = "--skip-duplicate-files", description = "Ignore multiple copies of files of the same name and length in comparison", required = false)
 	private boolean skipDuplicates;
 
@@ -75,6 +78,21 @@ public class CPDConfiguration extends AbstractConfiguration {
 	@Parameter(names = "--uri", description = "URI to process", required = false)
 	private String uri;
 
+	@Parameter(names = "--index", description = "File to keep the tokens of the files in, only the files changed since the previous run are tokenized again", required = false)
+	private String indexFile;
+
+	@Parameter(names = "--changed-files", variableArity = true, description = "Only report duplicates with at least one occurrence in these files", required = false)
+	private List<String> changedFiles;
+
+	@Parameter(names = "--workers", description = "Number of worker processes which tokenize the files, 0 to tokenize them in this process", required = false)
+	private int workers;
+
+	@Parameter(names = "--shard", description = "Only tokenize the files of this shard, e.g. 2/4, into the index file, without finding duplicates", required = false, hidden = true)
+	private String shard;
+
+	@Parameter(names = "--previous-index", description = "Index file to restore the unchanged files from, it isn't written", required = false, hidden = true)
+	private String previousIndexFile;
+
 	@Parameter(names = { "--help", "-h" }, description = "Print help text", required = false, help = true)
 	private boolean help;
 
@@ -190,6 +208,21 @@ public class CPDConfiguration extends AbstractConfiguration {
 		this.minimumTileSize = minimumTileSize;
 	}
 
+	public double getMinimumSimilarity() {
+		return minimumSimilarity;
+	}
+
+	/**
+	 * Sets the minimum similarity of the tokens of a duplicate.  Below 1, the
+	 * duplicates are found by the {@link NearMatchAlgorithm}, and may differ
+	 * by at most (1 - similarity) times the minimum tile size edits.
+	 *
+	 * @param minimumSimilarity the similarity, between 0 and 1
+	 */
+	public void setMinimumSimilarity(double minimumSimilarity) {
+		this.minimumSimilarity = minimumSimilarity;
+	}
+
 	public boolean isSkipDuplicates() {
 		return skipDuplicates;
 	}
@@ -303,6 +336,94 @@ public class CPDConfiguration extends AbstractConfiguration {
 		this.uri = uri;
 	}
 
+	public String getIndexFile() {
+		return indexFile;
+	}
+
+	/**
+	 * Sets the file of the {@link CPDIndex}, to keep the tokens of the files
+	 * for the next run.
+	 *
+	 * @param indexFile the index file, or <code>null</code> to tokenize all files
+	 */
+	public void setIndexFile(String indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	public String getPreviousIndexFile() {
+		return previousIndexFile;
+	}
+
+	/**
+	 * Sets the index of the previous run, from which a worker process restores
+	 * the unchanged files of its shard.  Only the process which started the
+	 * workers writes it.
+	 *
+	 * @param previousIndexFile the index file, or <code>null</code> to only read the index file
+	 */
+	public void setPreviousIndexFile(String previousIndexFile) {
+		this.previousIndexFile = previousIndexFile;
+	}
+
+	public List<String> getChangedFiles() {
+		return changedFiles;
+	}
+
+	/**
+	 * Sets the files of which the duplicates are reported, e.g. the files
+	 * changed by a pull request.
+	 *
+	 * @param changedFiles the files, or <code>null</code> to report all duplicates
+	 */
+	public void setChangedFiles(List<String> changedFiles) {
+		this.changedFiles = changedFiles;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Sets the number of worker processes, which tokenize the files of a
+	 * shard each.  The files are assigned to the shards by the hash code of
+	 * their path.
+	 *
+	 * @param workers the number of worker processes, or 0 to tokenize the files in this process
+	 */
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	public String getShard() {
+		return shard;
+	}
+
+	/**
+	 * Sets the shard of a worker process, which only tokenizes the files of
+	 * its shard and writes their tokens to the index file.
+	 *
+	 * @param shard the shard, e.g. "2/4" for the second of four shards, or <code>null</code>
+	 */
+	public void setShard(String shard) {
+		this.shard = shard;
+	}
+
+	/**
+	 * Checks whether a file is in the shard of this process.
+	 *
+	 * @param fileName the file name, as returned by {@link SourceCode#getFileName()}
+	 * @return <code>true</code> if there is no shard or the file is in it
+	 */
+	public boolean isInShard(String fileName) {
+		if (shard == null) {
+			return true;
+		}
+		int separator = shard.indexOf('/');
+		int index = Integer.parseInt(shard.substring(0, separator).trim());
+		int count = Integer.parseInt(shard.substring(separator + 1).trim());
+		return (fileName.hashCode() & Integer.MAX_VALUE) % count == index - 1;
+	}
+
 	public List<String> getExcludes() {
 	    return excludes;
 	}
@@ -0,0 +1,328 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import net.sourceforge.pmd.PMD;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A persistent index of the tokens of the source files, so CPD only tokenizes
+ * the files which changed since the previous run.  For each file the index
+ * stores a checksum of its content and its token identifiers and lines,
+ * together with the images the identifiers refer to.
+ * <p>
+ * An index is only used if it was written by the same PMD version, for the
+ * same language and tokenizer options.  Otherwise all files are tokenized
+ * again, see {@link CPDConfiguration#setIndexFile(String)}.  The hashes of
+ * the token sequences depend on the minimum tile size, they are not stored:
+ * computing them is cheap compared to tokenizing.
+ */
+public class CPDIndex {
+
+    private static final Logger LOG = Logger.getLogger(CPDIndex.class.getName());
+
+    private static final int MAGIC = 0x43504449;
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final String options;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new TreeMap<String, Entry>();
+
+    private CPDIndex(File file, String options, Map<String, Entry> previous) {
+        this.file = file;
+        this.options = options;
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the index of the previous run, and adds its images to the image
+     * table, so the stored identifiers can be mapped to the current ones.
+     *
+     * @param file the index file, which need not exist
+     * @param configuration the configuration
+     * @return the index, empty if there is no usable index file
+     */
+    public static CPDIndex open(File file, CPDConfiguration configuration) {
+        return open(file, Collections.singletonList(file), configuration);
+    }
+
+    /**
+     * Reads several indexes as one, e.g. the shards written by the worker
+     * processes of a distributed run, see {@link CPDConfiguration#setShard(String)}.
+     * If a file is in more than one of them, the last one wins.
+     *
+     * @param file the index file to write, or <code>null</code> to not write the index
+     * @param inputs the index files to read, which need not exist
+     * @param configuration the configuration
+     * @return the index, empty if there is no usable index file
+     */
+    public static CPDIndex open(File file, List<File> inputs, CPDConfiguration configuration) {
+        String options = optionsOf(configuration);
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        for (File input : inputs) {
+            read(input, options, entries);
+        }
+        return new CPDIndex(file, options, entries);
+    }
+
+    private static void read(File file, String options, Map<String, Entry> entries) {
+        if (!file.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !options.equals(readString(in))) {
+                LOG.fine("Ignoring outdated CPD index " + file);
+                return;
+            }
+            int imageCount = in.readInt();
+            // the identifiers of the index, mapped to those of the current image table
+            int[] identifiers = new int[imageCount + 1];
+            for (int i = 1; i <= imageCount; i++) {
+                identifiers[i] = TokenEntry.getIdentifier(readString(in));
+            }
+            int fileCount = in.readInt();
+            Map<String, Entry> read = new HashMap<String, Entry>(fileCount * 2);
+            for (int i = 0; i < fileCount; i++) {
+                String fileName = readString(in);
+                read.put(fileName, Entry.read(in, identifiers));
+            }
+            entries.putAll(read);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Ignoring unreadable CPD index " + file, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static String optionsOf(CPDConfiguration configuration) {
+        return PMD.VERSION + '|' + configuration.getLanguage().getClass().getName() + '|'
+                + configuration.isIgnoreLiterals() + '|' + configuration.isIgnoreIdentifiers() + '|'
+                + configuration.isIgnoreAnnotations() + '|' + configuration.getSourceEncoding();
+    }
+
+    /**
+     * Computes the checksum of the content of a file, which identifies the
+     * file in the index together with its name.
+     *
+     * @param file the file
+     * @return the CRC32 of the content, and the length in the upper 32 bits
+     * @throws IOException if the file can't be read
+     */
+    public static long checksum(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            long length = 0;
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+                length += count;
+            }
+            return length << 32 | crc.getValue();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds the tokens of a file from the index of the previous run, if the
+     * file hasn't changed since.
+     *
+     * @param fileName the file name, as returned by {@link SourceCode#getFileName()}
+     * @param checksum the checksum of the content
+     * @param tokens the tokens to add to
+     * @return <code>true</code> if the tokens were added, <code>false</code> if the file has to be tokenized
+     */
+    public boolean restore(String fileName, long checksum, Tokens tokens) {
+        Entry entry = previous.get(fileName);
+        if (entry == null || entry.checksum != checksum) {
+            return false;
+        }
+        for (int i = 0; i < entry.identifiers.length; i++) {
+            int identifier = entry.identifiers[i];
+            tokens.add(identifier == 0 ? TokenEntry.getEOF() : new TokenEntry(identifier, fileName, entry.lines[i]));
+        }
+        current.put(fileName, entry);
+        return true;
+    }
+
+    /**
+     * Records the tokens of a file which was tokenized.
+     *
+     * @param fileName the file name, as returned by {@link SourceCode#getFileName()}
+     * @param checksum the checksum of the content
+     * @param tokens all tokens
+     * @param start the index of the first token of the file
+     */
+    public void record(String fileName, long checksum, List<TokenEntry> tokens, int start) {
+        int count = tokens.size() - start;
+        int[] identifiers = new int[count];
+        int[] lines = new int[count];
+        for (int i = 0; i < count; i++) {
+            TokenEntry token = tokens.get(start + i);
+            identifiers[i] = token == TokenEntry.EOF ? 0 : token.getIdentifier();
+            lines[i] = token.getBeginLine();
+        }
+        current.put(fileName, new Entry(checksum, identifiers, lines));
+    }
+
+    /**
+     * Writes the index with the files added in this run.  Only the images
+     * these files use are written, so the index doesn't grow with the images
+     * of deleted files.  Failures are logged, since the files can always be
+     * tokenized again.
+     */
+    public void write() {
+        if (file == null) {
+            return;
+        }
+        List<String> images = TokenEntry.getImages();
+        int[] newIdentifiers = new int[images.size() + 1];
+        List<String> usedImages = new ArrayList<String>();
+        for (Entry entry : current.values()) {
+            for (int identifier : entry.identifiers) {
+                if (identifier != 0 && newIdentifiers[identifier] == 0) {
+                    usedImages.add(images.get(identifier - 1));
+                    newIdentifiers[identifier] = usedImages.size();
+                }
+            }
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            // written to a temporary file first, concurrent readers never see a partial index
+            tempFile = File.createTempFile("cpd-", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, options);
+            out.writeInt(usedImages.size());
+            for (String image : usedImages) {
+                writeString(out, image);
+            }
+            out.writeInt(current.size());
+            for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                writeString(out, entry.getKey());
+                entry.getValue().write(out, newIdentifiers);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Cannot rename " + tempFile + " to " + file);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Couldn't write CPD index " + file, e);
+        } finally {
+            IOUtils.closeQuietly(out);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * The tokens of a file, an EOF token has the identifier 0.
+     */
+    private static class Entry {
+        private final long checksum;
+        private final int[] identifiers;
+        private final int[] lines;
+
+        Entry(long checksum, int[] identifiers, int[] lines) {
+            this.checksum = checksum;
+            this.identifiers = identifiers;
+            this.lines = lines;
+        }
+
+        void write(DataOutputStream out, int[] newIdentifiers) throws IOException {
+            out.writeLong(checksum);
+            out.writeInt(identifiers.length);
+            int line = 0;
+            for (int i = 0; i < identifiers.length; i++) {
+                writeVarInt(out, newIdentifiers[identifiers[i]]);
+                // the lines don't decrease, except for the EOF token
+                writeVarInt(out, lines[i] - line);
+                line = lines[i];
+            }
+        }
+
+        static Entry read(DataInputStream in, int[] newIdentifiers) throws IOException {
+            long checksum = in.readLong();
+            int count = in.readInt();
+            int[] identifiers = new int[count];
+            int[] lines = new int[count];
+            int line = 0;
+            for (int i = 0; i < count; i++) {
+                identifiers[i] = newIdentifiers[readVarInt(in)];
+                line += readVarInt(in);
+                lines[i] = line;
+            }
+            return new Entry(checksum, identifiers, lines);
+        }
+    }
+
+    // the chars are written as they are, an image may contain unpaired surrogates UTF-8 can't encode
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        writeVarInt(out, s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[readVarInt(in)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            out.writeByte(v & 0x7f | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
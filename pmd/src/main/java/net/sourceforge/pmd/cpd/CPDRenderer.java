@@ -0,0 +1,25 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * A renderer which writes the matches one by one, instead of building the
+ * whole report in memory first.  The duplicated code of a match is read
+ * from its source file when the match is written, and not kept afterwards.
+ */
+public interface CPDRenderer {
+
+    /**
+     * Writes the report.  The writer is not closed.
+     *
+     * @param matches the matches
+     * @param writer the writer, whose encoding should be the one of the report
+     * @throws IOException if the report can't be written
+     */
+    void render(Iterator<Match> matches, Writer writer) throws IOException;
+}
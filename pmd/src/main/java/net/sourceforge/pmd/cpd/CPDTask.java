@@ -103,7 +103,7 @@ public class CPDTask extends Task {
         if (!cpd.getMatches().hasNext()) {
             log("No duplicates over " + minimumTokenCount + " tokens found", Project.MSG_INFO);
         }
-        Renderer renderer = createRenderer();
+        CPDRenderer renderer = createRenderer();
         FileReporter reporter;
         if (outputFile == null) {
         	reporter = new FileReporter(encoding);
@@ -112,7 +112,7 @@ public class CPDTask extends Task {
         } else {
             reporter = new FileReporter(new File(getProject().getBaseDir(), outputFile.toString()), encoding);
         }
-        reporter.report(renderer.render(cpd.getMatches()));
+        reporter.report(renderer, cpd.getMatches());
     }
 
     private void tokenizeFiles(CPD cpd) throws IOException {
@@ -134,7 +134,7 @@ public class CPDTask extends Task {
         return stop - start;
     }
 
-    private Renderer createRenderer() {
+    private CPDRenderer createRenderer() {
         if (format.equals(TEXT_FORMAT)) {
             return new SimpleRenderer();
         } else if (format.equals(CSV_FORMAT)) {
@@ -0,0 +1,166 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Tokenizes the files in worker processes, see {@link CPDConfiguration#setWorkers(int)}.
+ * Each worker is started with the JVM options and the command line of this
+ * process, and only tokenizes the files of its shard into an index file, see
+ * {@link CPDConfiguration#setShard(String)}.  The database sources are not
+ * sharded, they are only tokenized by this process.  Nothing is shared but these
+ * files and the index of the previous run, from which the workers restore the
+ * unchanged files, see {@link CPDConfiguration#setPreviousIndexFile(String)}.
+ * The tokens of all shards are merged into one {@link CPDIndex}, from which the
+ * files are then restored in the usual order.  So the matches are the same as
+ * without workers.
+ */
+final class CPDWorkers {
+
+    private static final Logger LOG = Logger.getLogger(CPDWorkers.class.getName());
+
+    private CPDWorkers() {
+    }
+
+    /**
+     * Runs the worker processes, and waits for them.
+     *
+     * @param configuration the configuration
+     * @param args the command line arguments
+     * @return the tokens of all shards, which are written to the index file of
+     *         the configuration, if any
+     * @throws IOException if a worker process can't be started
+     */
+    static CPDIndex tokenize(CPDConfiguration configuration, String[] args) throws IOException {
+        long start = System.nanoTime();
+        int workers = configuration.getWorkers();
+        File directory = File.createTempFile("cpd-shards", "");
+        directory.delete();
+        if (!directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        try {
+            List<String> jvmArgs = jvmArgs(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            List<String> workerArgs = workerArgs(args);
+            List<File> shards = new ArrayList<File>(workers);
+            List<Process> processes = new ArrayList<Process>(workers);
+            try {
+                for (int i = 1; i <= workers; i++) {
+                    File shard = new File(directory, "shard-" + i + ".index");
+                    shards.add(shard);
+                    processes.add(start(jvmArgs, workerArgs, i + "/" + workers, shard, configuration.getIndexFile()));
+                }
+                for (int i = 0; i < workers; i++) {
+                    int exitCode = processes.get(i).waitFor();
+                    if (exitCode != 0) {
+                        throw new IllegalStateException("Worker " + (i + 1) + " failed with exit code " + exitCode);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the workers", e);
+            } finally {
+                for (Process process : processes) {
+                    process.destroy();
+                }
+            }
+            String indexFile = configuration.getIndexFile();
+            CPDIndex index = CPDIndex.open(indexFile == null ? null : new File(indexFile), shards, configuration);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Tokenized the files in " + workers + " workers in " + (System.nanoTime() - start) / 1000000
+                        + " ms");
+            }
+            return index;
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * The JVM options of this process, e.g. the heap size and the system
+     * properties, without the ones of a debugger, whose port is already taken.
+     */
+    static List<String> jvmArgs(List<String> inputArguments) {
+        List<String> result = new ArrayList<String>(inputArguments.size());
+        for (String arg : inputArguments) {
+            if (!arg.startsWith("-agentlib:jdwp") && !arg.startsWith("-Xrunjdwp") && !arg.equals("-Xdebug")) {
+                result.add(arg);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The arguments of this process without the ones for the workers, the
+     * index file, which is the shard of each worker and passed as its previous
+     * index instead, and the database URI, whose sources are only fetched and
+     * tokenized once, by this process.
+     */
+    static List<String> workerArgs(String[] args) {
+        List<String> result = new ArrayList<String>(Arrays.asList(args));
+        for (String option : new String[] { "--workers", "--index", "--uri" }) {
+            int i = result.indexOf(option);
+            if (i >= 0) {
+                result.subList(i, Math.min(i + 2, result.size())).clear();
+            }
+        }
+        return result;
+    }
+
+    private static Process start(List<String> jvmArgs, List<String> args, String shard, File shardFile,
+            String previousIndexFile) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CPD.class.getName());
+        command.addAll(args);
+        command.add("--shard");
+        command.add(shard);
+        command.add("--index");
+        command.add(shardFile.getPath());
+        if (previousIndexFile != null) {
+            command.add("--previous-index");
+            command.add(previousIndexFile);
+        }
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        pipe(process.getInputStream());
+        return process;
+    }
+
+    /**
+     * Copies the output of a worker, e.g. the skipped files, to the error
+     * stream of this process, so the worker never blocks on a full pipe.
+     */
+    private static void pipe(final InputStream in) {
+        Thread thread = new Thread("CPD worker output") {
+            @Override
+            public void run() {
+                try {
+                    IOUtils.copy(in, System.err);
+                } catch (IOException e) {
+                    LOG.log(Level.FINE, "Couldn't copy the output of a worker", e);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
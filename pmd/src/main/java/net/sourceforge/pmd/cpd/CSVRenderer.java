@@ -5,10 +5,13 @@ package net.sourceforge.pmd.cpd;
 
 import net.sourceforge.pmd.PMD;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 
 
-public class CSVRenderer implements Renderer {
+public class CSVRenderer implements Renderer, CPDRenderer {
 
 	private char separator;
 	
@@ -23,13 +26,25 @@ public class CSVRenderer implements Renderer {
 	}
 	
     public String render(Iterator<Match> matches) {
+        StringWriter writer = new StringWriter(1000);
+        try {
+            render(matches, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    public void render(Iterator<Match> matches, Writer writer) throws IOException {
         StringBuilder rpt = new StringBuilder(1000);
         rpt.append("lines").append(separator);
         rpt.append("tokens").append(separator);
         rpt.append("occurrences");
         rpt.append(PMD.EOL);
-        
+        writer.write(rpt.toString());
+
         while (matches.hasNext()) {
+            rpt.setLength(0);
             Match match = matches.next();
             rpt.append(match.getLineCount()).append(separator);
             rpt.append(match.getTokenCount()).append(separator);
@@ -43,7 +58,7 @@ public class CSVRenderer implements Renderer {
                 }
             }
             rpt.append(PMD.EOL);
+            writer.write(rpt.toString());
         }
-        return rpt.toString();
     }
 }
\ No newline at end of file
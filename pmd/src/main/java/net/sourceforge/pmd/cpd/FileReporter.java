@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.Iterator;
 
 import org.apache.commons.io.IOUtils;
 
@@ -37,13 +38,7 @@ public class FileReporter {
         try {
             Writer writer = null;
             try {
-            	OutputStream outputStream;
-            	if (reportFile == null) {
-            		outputStream = System.out;
-            	} else {
-            		outputStream = new FileOutputStream(reportFile);
-            	}
-                writer = new BufferedWriter(new OutputStreamWriter(outputStream, encoding));
+                writer = createWriter();
                 writer.write(content);
             } finally {
                 IOUtils.closeQuietly(writer);
@@ -52,4 +47,37 @@ public class FileReporter {
             throw new ReportException(ioe);
         }
     }
+
+    /**
+     * Writes the report while it is rendered, so it is never held in memory
+     * as a whole.
+     *
+     * @param renderer the renderer
+     * @param matches the matches
+     * @throws ReportException if the report can't be written
+     */
+    public void report(CPDRenderer renderer, Iterator<Match> matches) throws ReportException {
+        try {
+            Writer writer = null;
+            try {
+                writer = createWriter();
+                renderer.render(matches, writer);
+                writer.flush();
+            } finally {
+                IOUtils.closeQuietly(writer);
+            }
+        } catch (IOException ioe) {
+            throw new ReportException(ioe);
+        }
+    }
+
+    private Writer createWriter() throws IOException {
+        OutputStream outputStream;
+        if (reportFile == null) {
+            outputStream = System.out;
+        } else {
+            outputStream = new FileOutputStream(reportFile);
+        }
+        return new BufferedWriter(new OutputStreamWriter(outputStream, encoding));
+    }
 }
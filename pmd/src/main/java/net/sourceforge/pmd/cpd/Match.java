@@ -16,6 +16,7 @@ public class Match implements Comparable<Match> {
     private int lineCount;
     private Set<TokenEntry> markSet = new TreeSet<TokenEntry>();    
     private String code;    
+    private SourceCode sourceCode;
     private String label;
     
     public static final Comparator<Match> MATCHES_COMPARATOR = new Comparator<Match>() {
@@ -70,7 +71,28 @@ public class Match implements Comparable<Match> {
         return this.tokenCount;
     }
 
-    public String getSourceCodeSlice() {
+    /**
+     * Returns the duplicated code. If only the source code has been set, the
+     * slice is read from it on the first call.
+     */
+    public synchronized String getSourceCodeSlice() {
+        if (this.code == null && this.sourceCode != null) {
+            this.code = readSourceCodeSlice();
+            this.sourceCode = null;
+        }
+        return this.code;
+    }
+
+    /**
+     * Returns the duplicated code like {@link #getSourceCodeSlice()}, but
+     * doesn't keep a slice read from the source code, so a renderer writing
+     * the matches one by one doesn't hold all slices in memory.
+     */
+    synchronized String readSourceCodeSlice() {
+        if (this.code == null && this.sourceCode != null) {
+            int start = getFirstMark().getBeginLine();
+            return sourceCode.getSlice(start, start + getLineCount() - 1);
+        }
         return this.code;
     }
 
@@ -78,6 +100,14 @@ public class Match implements Comparable<Match> {
         this.code = code;
     }
 
+    /**
+     * Sets the source code of the first mark, from which the duplicated code is
+     * read lazily by {@link #getSourceCodeSlice()}.
+     */
+    void setSourceCode(SourceCode sourceCode) {
+        this.sourceCode = sourceCode;
+    }
+
     public Iterator<TokenEntry> iterator() {
         return markSet.iterator();
     }
@@ -9,10 +9,22 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MatchAlgorithm {
 
     private final static int MOD = 37;
+
+    /** Below this number of mark groups, matches are collected on the calling thread. */
+    private final static int MIN_GROUPS_PER_THREAD = 1000;
+
+    /** Above this number of marks, a mark group is collected by sorting its marks, see {@link MatchCollector}. */
+    private final static int LARGE_GROUP_SIZE = 256;
     private int lastHash;
     private int lastMod = 1;
 
@@ -22,6 +34,10 @@ public class MatchAlgorithm {
     private List<TokenEntry> code;
     private CPDListener cpdListener;
     private int min;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int largeGroupSize = LARGE_GROUP_SIZE;
+    private TokenHashes tokenHashes;
+    private Set<String> changedFiles;
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
         this(sourceCode, tokens, min, new CPDNullListener());
@@ -42,6 +58,49 @@ public class MatchAlgorithm {
         this.cpdListener = listener;
     }
 
+    /**
+     * Sets the number of threads used to collect the matches, defaults to the
+     * number of available processors.
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the number of marks above which a mark group is collected by
+     * sorting its marks instead of comparing every pair, for testing.
+     * @param largeGroupSize the number of marks
+     */
+    void setLargeGroupSize(int largeGroupSize) {
+        this.largeGroupSize = largeGroupSize;
+    }
+
+    int getLargeGroupSize() {
+        return largeGroupSize;
+    }
+
+    /**
+     * Returns the prefix hashes of the tokens, which are only computed if
+     * there is a large mark group.
+     */
+    synchronized TokenHashes getTokenHashes() {
+        if (tokenHashes == null) {
+            tokenHashes = new TokenHashes(code);
+        }
+        return tokenHashes;
+    }
+
+    /**
+     * Restricts the matches to those with at least one occurrence in the
+     * given files, e.g. the files changed by a pull request.  The mark groups
+     * without such an occurrence are not collected at all.
+     * @param changedFiles the file names, as returned by {@link SourceCode#getFileName()}
+     */
+    public void setChangedFiles(Set<String> changedFiles) {
+        this.changedFiles = changedFiles;
+    }
+
     public Iterator<Match> matches() {
         return matches.iterator();
     }
@@ -59,33 +118,102 @@ public class MatchAlgorithm {
         Map<TokenEntry, Object> markGroups = hash();
 
         cpdListener.phaseUpdate(CPDListener.MATCH);
-        MatchCollector matchCollector = new MatchCollector(this);
+        // All marks of a group share the same hash and a match only ever joins marks
+        // of the same group, so the groups can be collected independently by hash.
+        int shardCount = Math.max(1, Math.min(threads, markGroups.size() / MIN_GROUPS_PER_THREAD));
+        List<Shard> shards = new ArrayList<Shard>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard());
+        }
         for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
             Object o = i.next();
-            if (o instanceof List) {
+            if (o instanceof List && isChanged(((List<TokenEntry>) o).iterator())) {
                 List<TokenEntry> l = (List<TokenEntry>) o;
-                Collections.reverse(l);
-                matchCollector.collect(l);
+                shards.get((l.get(0).hashCode() & Integer.MAX_VALUE) % shardCount).groups.add(l);
             }
             i.remove();
         }
-        cpdListener.phaseUpdate(CPDListener.GROUPING);
-        matches = matchCollector.getMatches();
-        matchCollector = null;
-        for (Match match : matches) {
-            Iterator<TokenEntry> occurrences = match.iterator();
-            if (occurrences.hasNext()) {
-                TokenEntry mark = occurrences.next();
-                match.setLineCount(tokens.getLineCount(mark, match));
-                int start = mark.getBeginLine();
-                int end = start + match.getLineCount() - 1;
-                SourceCode sourceCode = source.get(mark.getTokenSrcID());
-                match.setSourceCodeSlice(sourceCode.getSlice(start, end));
+
+        List<Match> result = new ArrayList<Match>();
+        for (List<Match> shardMatches : collect(shards)) {
+            for (Match match : shardMatches) {
+                if (isChanged(match.iterator())) {
+                    result.add(match);
+                }
             }
         }
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        // the order of the matches is total, so the result doesn't depend on the sharding
+        Collections.sort(result);
+        matches = result;
+        tokenHashes = null;
         cpdListener.phaseUpdate(CPDListener.DONE);
     }
 
+    private boolean isChanged(Iterator<TokenEntry> marks) {
+        if (changedFiles == null) {
+            return true;
+        }
+        while (marks.hasNext()) {
+            if (changedFiles.contains(marks.next().getTokenSrcID())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<List<Match>> collect(List<Shard> shards) {
+        List<List<Match>> results = new ArrayList<List<Match>>(shards.size());
+        if (shards.size() == 1) {
+            results.add(shards.get(0).call());
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            for (Future<List<Match>> future : executor.invokeAll(shards)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while collecting matches", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * The mark groups of one hash range, collected with their own {@link MatchCollector}.
+     */
+    private class Shard implements Callable<List<Match>> {
+        private final List<List<TokenEntry>> groups = new ArrayList<List<TokenEntry>>();
+
+        public List<Match> call() {
+            MatchCollector matchCollector = new MatchCollector(MatchAlgorithm.this);
+            for (List<TokenEntry> l : groups) {
+                Collections.reverse(l);
+                matchCollector.collect(l);
+            }
+            groups.clear();
+            List<Match> shardMatches = matchCollector.getMatches();
+            for (Match match : shardMatches) {
+                Iterator<TokenEntry> occurrences = match.iterator();
+                if (occurrences.hasNext()) {
+                    TokenEntry mark = occurrences.next();
+                    match.setLineCount(tokens.getLineCount(mark, match));
+                    // the slice is only read if the match is rendered with its code
+                    match.setSourceCode(source.get(mark.getTokenSrcID()));
+                }
+            }
+            return shardMatches;
+        }
+    }
+
     @SuppressWarnings("PMD.JumbledIncrementer")
     private Map<TokenEntry, Object> hash() {
         Map<TokenEntry, Object> markGroups = new HashMap<TokenEntry, Object>(tokens.size());
@@ -4,7 +4,9 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -19,6 +21,10 @@ public class MatchCollector {
     }
 
     public void collect(List<TokenEntry> marks) {
+        if (marks.size() > ma.getLargeGroupSize()) {
+            collectLargeGroup(marks);
+            return;
+        }
         //first get a pairwise collection of all maximal matches
         for (int i = 0; i < marks.size() - 1; i++) {
             TokenEntry mark1 = marks.get(i);
@@ -46,6 +52,132 @@ public class MatchCollector {
         }
     }
 
+    /**
+     * Collects a large mark group, e.g. of generated code with thousands of
+     * identical rows, without comparing every pair of marks.  The marks are
+     * sorted by the code following them, with {@link TokenHashes}, so the
+     * marks which share at least L tokens form an interval of the sorted
+     * marks.  The intervals are walked bottom up: a mark joins the match of
+     * an interval of length L if it has a partner in another child interval
+     * (so they share exactly L tokens), with another preceding token (so the
+     * duplicate can't be extended backwards) and far enough away to not
+     * overlap.  Each interval keeps the extent of its marks, so a partner is
+     * found in constant time.
+     */
+    private void collectLargeGroup(List<TokenEntry> marks) {
+        final TokenHashes hashes = ma.getTokenHashes();
+        int n = marks.size();
+        TokenEntry[] sorted = marks.toArray(new TokenEntry[n]);
+        Arrays.sort(sorted, new Comparator<TokenEntry>() {
+            public int compare(TokenEntry mark1, TokenEntry mark2) {
+                return hashes.compare(mark1.getIndex(), mark2.getIndex());
+            }
+        });
+        int[] previous = new int[n];
+        for (int k = 0; k < n; k++) {
+            TokenEntry mark = sorted[k];
+            if (mark.getIndex() == 0 || ma.tokenAt(-1, mark) == TokenEntry.EOF) {
+                // no preceding token, it differs from all others
+                previous[k] = -k - 1;
+            } else {
+                previous[k] = ma.tokenAt(-1, mark).getIdentifier();
+            }
+        }
+        // the next sorted mark with another preceding token
+        int[] nextOther = new int[n + 1];
+        nextOther[n] = n;
+        for (int k = n - 1; k >= 0; k--) {
+            nextOther[k] = k + 1 < n && previous[k + 1] != previous[k] ? k + 1 : nextOther[k + 1];
+        }
+
+        List<Interval> stack = new ArrayList<Interval>();
+        stack.add(new Interval(0, 0));
+        for (int k = 1; k <= n; k++) {
+            int length = k < n ? hashes.commonPrefix(sorted[k - 1].getIndex(), sorted[k].getIndex()) : -1;
+            int start = k - 1;
+            Interval last = null;
+            while (!stack.isEmpty() && length < stack.get(stack.size() - 1).length) {
+                last = stack.remove(stack.size() - 1);
+                last.end = k - 1;
+                closeInterval(last, sorted, previous, nextOther);
+                start = last.start;
+                if (!stack.isEmpty() && length <= stack.get(stack.size() - 1).length) {
+                    stack.get(stack.size() - 1).children.add(last);
+                    last = null;
+                }
+            }
+            if (!stack.isEmpty() && length > stack.get(stack.size() - 1).length) {
+                Interval interval = new Interval(length, start);
+                if (last != null) {
+                    interval.children.add(last);
+                }
+                stack.add(interval);
+            }
+        }
+    }
+
+    private void closeInterval(Interval interval, TokenEntry[] sorted, int[] previous, int[] nextOther) {
+        // the child intervals and the single marks between them
+        List<Interval> segments = new ArrayList<Interval>();
+        int k = interval.start;
+        for (Interval child : interval.children) {
+            for (; k < child.start; k++) {
+                segments.add(Interval.single(k, sorted[k].getIndex(), previous[k]));
+            }
+            segments.add(child);
+            k = child.end + 1;
+        }
+        for (; k <= interval.end; k++) {
+            segments.add(Interval.single(k, sorted[k].getIndex(), previous[k]));
+        }
+        interval.children = null;
+
+        int count = segments.size();
+        Extent[] before = new Extent[count + 1];
+        Extent[] after = new Extent[count + 1];
+        before[0] = new Extent();
+        after[count] = new Extent();
+        for (int i = 0; i < count; i++) {
+            before[i + 1] = before[i].with(segments.get(i).extent);
+            after[count - i - 1] = after[count - i].with(segments.get(count - i - 1).extent);
+        }
+        interval.extent = before[count];
+
+        int length = interval.length;
+        if (length < ma.getMinimumTileSize()) {
+            return;
+        }
+        List<TokenEntry> participants = new ArrayList<TokenEntry>();
+        for (int i = 0; i < count; i++) {
+            Interval segment = segments.get(i);
+            Extent others = before[i].with(after[i + 1]);
+            Extent own = segment.extent;
+            if (others.min > own.max - length && others.max < own.min + length) {
+                // all others overlap
+                continue;
+            }
+            // if the others share one preceding token, only the marks with another one can be partners
+            boolean skip = others.otherMin == Integer.MAX_VALUE;
+            for (int m = segment.start; m <= segment.end;) {
+                if (skip && previous[m] == others.minPrevious) {
+                    m = nextOther[m];
+                    continue;
+                }
+                if (others.hasPartner(sorted[m].getIndex(), previous[m], length)) {
+                    participants.add(sorted[m]);
+                }
+                m++;
+            }
+        }
+        if (participants.size() > 1) {
+            Match match = new Match(length, participants.get(0), participants.get(1));
+            for (int i = 2; i < participants.size(); i++) {
+                match.addTokenEntry(participants.get(i));
+            }
+            matchList.add(match);
+        }
+    }
+
     private void reportMatch(TokenEntry mark1, TokenEntry mark2, int dupes) {
         Map<Integer, Match> matches = matchTree.get(dupes);
         if (matches == null) {            
@@ -99,4 +231,114 @@ public class MatchCollector {
     private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
         return token1.getIdentifier() != token2.getIdentifier() || token1 == TokenEntry.EOF || token2 == TokenEntry.EOF;
     }
+
+    /**
+     * An interval of the sorted marks of a large group, whose marks share at
+     * least <code>length</code> tokens.
+     */
+    private static final class Interval {
+        private final int length;
+        private final int start;
+        private int end;
+        private List<Interval> children = new ArrayList<Interval>();
+        private Extent extent;
+
+        Interval(int length, int start) {
+            this.length = length;
+            this.start = start;
+        }
+
+        static Interval single(int position, int index, int previous) {
+            Interval interval = new Interval(Integer.MAX_VALUE, position);
+            interval.end = position;
+            interval.children = null;
+            interval.extent = new Extent().with(index, previous);
+            return interval;
+        }
+    }
+
+    /**
+     * The lowest and highest token index of a set of marks, and the lowest
+     * and highest index of the marks with another preceding token than
+     * these, which is enough to find a partner with another preceding token.
+     */
+    private static final class Extent {
+        private int min = Integer.MAX_VALUE;
+        private int minPrevious;
+        private int otherMin = Integer.MAX_VALUE;
+        private int otherMinPrevious;
+        private int max = Integer.MIN_VALUE;
+        private int maxPrevious;
+        private int otherMax = Integer.MIN_VALUE;
+        private int otherMaxPrevious;
+
+        Extent with(Extent extent) {
+            Extent result = copy();
+            if (extent.min != Integer.MAX_VALUE) {
+                result.add(extent.min, extent.minPrevious);
+                result.add(extent.max, extent.maxPrevious);
+            }
+            if (extent.otherMin != Integer.MAX_VALUE) {
+                result.add(extent.otherMin, extent.otherMinPrevious);
+                result.add(extent.otherMax, extent.otherMaxPrevious);
+            }
+            return result;
+        }
+
+        Extent with(int index, int previous) {
+            Extent result = copy();
+            result.add(index, previous);
+            return result;
+        }
+
+        private Extent copy() {
+            Extent copy = new Extent();
+            copy.min = min;
+            copy.minPrevious = minPrevious;
+            copy.otherMin = otherMin;
+            copy.otherMinPrevious = otherMinPrevious;
+            copy.max = max;
+            copy.maxPrevious = maxPrevious;
+            copy.otherMax = otherMax;
+            copy.otherMaxPrevious = otherMaxPrevious;
+            return copy;
+        }
+
+        private void add(int index, int previous) {
+            if (index < min) {
+                if (min != Integer.MAX_VALUE && previous != minPrevious) {
+                    otherMin = min;
+                    otherMinPrevious = minPrevious;
+                }
+                min = index;
+                minPrevious = previous;
+            } else if (index > min && previous != minPrevious && index < otherMin) {
+                otherMin = index;
+                otherMinPrevious = previous;
+            }
+            if (index > max) {
+                if (max != Integer.MIN_VALUE && previous != maxPrevious) {
+                    otherMax = max;
+                    otherMaxPrevious = maxPrevious;
+                }
+                max = index;
+                maxPrevious = previous;
+            } else if (index < max && previous != maxPrevious && index > otherMax) {
+                otherMax = index;
+                otherMaxPrevious = previous;
+            }
+        }
+
+        /**
+         * Whether there is a mark with another preceding token, whose
+         * duplicate of the given length doesn't overlap the one of the mark,
+         * though it may follow it immediately.
+         */
+        boolean hasPartner(int index, int previous, int length) {
+            int lowest = previous != minPrevious ? min : otherMin;
+            int highest = previous != maxPrevious ? max : otherMax;
+            return lowest != Integer.MAX_VALUE && lowest <= index - length
+                    || highest != Integer.MIN_VALUE && highest >= index + length;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,450 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds near-miss duplicates, whose tokens differ by a few insertions,
+ * deletions or replacements, e.g. a statement added to a copy.  Comparing
+ * every pair of code fragments is out of the question, so the code is cut
+ * into overlapping windows of about the minimum tile size:
+ * <ol>
+ * <li>A MinHash signature of each window is computed from the hashes of its
+ * shingles, i.e. of the sequences of {@value #SHINGLE_SIZE} tokens.  The
+ * windows start at the blocks of {@link #getBlockSize()} shingles, and the
+ * minimum hashes are computed once per block.</li>
+ * <li>The signatures are split into bands, windows with an equal band are
+ * candidates (locality-sensitive hashing).  The windows of a band are sorted
+ * by their band, so no pair is compared which doesn't share one.</li>
+ * <li>A candidate is verified by the edit distance of its tokens, which
+ * must be at most the window size times (1 - similarity).</li>
+ * <li>The pairs of consecutive windows are joined into one match.</li>
+ * </ol>
+ * Each step is linear in the number of tokens, as the number of candidates
+ * per window is limited.  Unlike {@link MatchAlgorithm}, a match has exactly
+ * two occurrences, the token count is the one of the first.
+ */
+public class NearMatchAlgorithm {
+
+    /** The number of tokens of a shingle. */
+    private static final int SHINGLE_SIZE = 4;
+
+    /** The number of blocks of a window, a window starts at every block. */
+    private static final int BLOCKS_PER_WINDOW = 4;
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+
+    /** The number of windows following a window in a bucket which are verified with it. */
+    private static final int MAX_BUCKET_PARTNERS = 16;
+
+    private static final int[] SEEDS = new int[HASHES];
+    static {
+        int seed = 0x2545F491;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final Map<String, SourceCode> source;
+    private final Tokens tokens;
+    private final List<TokenEntry> code;
+    private final double similarity;
+    private final int blockSize;
+    private final int windowSize;
+    private final int maxDistance;
+    private CPDListener cpdListener;
+    private Set<String> changedFiles;
+    private List<Match> matches;
+
+    private int[] identifiers;
+    private int windowCount;
+    /** The index of the first token of each window. */
+    private int[] windowStarts;
+    /** The file of each window, as a running number. */
+    private int[] windowFiles;
+    /** The bounds of the files. */
+    private int[] fileStarts;
+    private int[] fileEnds;
+    /** The bands of each window, {@link #BANDS} per window. */
+    private int[] bands;
+
+    public NearMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, double similarity) {
+        this(sourceCode, tokens, min, similarity, new CPDNullListener());
+    }
+
+    /**
+     * @param sourceCode the source code by file name
+     * @param tokens the tokens of all files
+     * @param min the minimum number of tokens of a duplicate, which is about the size of the windows
+     * @param similarity the minimum similarity of the tokens of a duplicate, between 0 and 1
+     * @param listener the listener
+     */
+    public NearMatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min, double similarity,
+            CPDListener listener) {
+        this.source = sourceCode;
+        this.tokens = tokens;
+        this.code = tokens.getTokens();
+        this.similarity = similarity;
+        this.cpdListener = listener;
+        blockSize = Math.max(1, (min - SHINGLE_SIZE + 1) / BLOCKS_PER_WINDOW);
+        windowSize = blockSize * BLOCKS_PER_WINDOW + SHINGLE_SIZE - 1;
+        maxDistance = (int) Math.floor(windowSize * (1 - similarity) + 1e-9);
+    }
+
+    public void setListener(CPDListener listener) {
+        this.cpdListener = listener;
+    }
+
+    /**
+     * Restricts the matches to those with an occurrence in the given files,
+     * see {@link MatchAlgorithm#setChangedFiles(Set)}.
+     * @param changedFiles the file names, as returned by {@link SourceCode#getFileName()}
+     */
+    public void setChangedFiles(Set<String> changedFiles) {
+        this.changedFiles = changedFiles;
+    }
+
+    public Iterator<Match> matches() {
+        return matches.iterator();
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * Returns the number of shingles of a block, the windows start every
+     * block and span {@value #BLOCKS_PER_WINDOW} blocks.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void findMatches() {
+        cpdListener.phaseUpdate(CPDListener.HASH);
+        identifiers = new int[code.size()];
+        for (int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = code.get(i).getIdentifier();
+        }
+        computeSignatures();
+
+        cpdListener.phaseUpdate(CPDListener.MATCH);
+        long[] pairs = findPairs();
+
+        cpdListener.phaseUpdate(CPDListener.GROUPING);
+        List<Match> result = join(pairs);
+        Collections.sort(result);
+        matches = result;
+        identifiers = null;
+        windowStarts = null;
+        windowFiles = null;
+        bands = null;
+        cpdListener.phaseUpdate(CPDListener.DONE);
+    }
+
+    /**
+     * Cuts the files into windows and computes their bands.
+     */
+    private void computeSignatures() {
+        int expectedWindows = code.size() / blockSize + 1;
+        windowStarts = new int[expectedWindows];
+        windowFiles = new int[expectedWindows];
+        bands = new int[expectedWindows * BANDS];
+        fileStarts = new int[16];
+        fileEnds = new int[16];
+        int fileCount = 0;
+        int[] blockMinimums = new int[0];
+        int[] signature = new int[HASHES];
+
+        int start = 0;
+        for (int end = 0; end < identifiers.length; end++) {
+            if (code.get(end) != TokenEntry.EOF) {
+                continue;
+            }
+            int blocks = (end - start - SHINGLE_SIZE + 1) / blockSize;
+            if (blocks >= BLOCKS_PER_WINDOW) {
+                if (fileCount == fileStarts.length) {
+                    fileStarts = Arrays.copyOf(fileStarts, fileCount * 2);
+                    fileEnds = Arrays.copyOf(fileEnds, fileCount * 2);
+                }
+                fileStarts[fileCount] = start;
+                fileEnds[fileCount] = end;
+                if (blockMinimums.length < blocks * HASHES) {
+                    blockMinimums = new int[blocks * HASHES];
+                }
+                computeBlockMinimums(start, blocks, blockMinimums);
+                for (int window = 0; window + BLOCKS_PER_WINDOW <= blocks; window++) {
+                    Arrays.fill(signature, Integer.MAX_VALUE);
+                    for (int block = window; block < window + BLOCKS_PER_WINDOW; block++) {
+                        for (int h = 0; h < HASHES; h++) {
+                            signature[h] = Math.min(signature[h], blockMinimums[block * HASHES + h]);
+                        }
+                    }
+                    addWindow(start + window * blockSize, fileCount, signature);
+                }
+                fileCount++;
+            }
+            start = end + 1;
+        }
+    }
+
+    private void computeBlockMinimums(int start, int blocks, int[] blockMinimums) {
+        Arrays.fill(blockMinimums, 0, blocks * HASHES, Integer.MAX_VALUE);
+        for (int block = 0; block < blocks; block++) {
+            int offset = block * HASHES;
+            for (int shingle = start + block * blockSize, end = shingle + blockSize; shingle < end; shingle++) {
+                int hash = identifiers[shingle];
+                for (int i = 1; i < SHINGLE_SIZE; i++) {
+                    hash = hash * 31 + identifiers[shingle + i];
+                }
+                for (int h = 0; h < HASHES; h++) {
+                    int value = mix(hash ^ SEEDS[h]);
+                    if (value < blockMinimums[offset + h]) {
+                        blockMinimums[offset + h] = value;
+                    }
+                }
+            }
+        }
+    }
+
+    private void addWindow(int start, int file, int[] signature) {
+        if (windowCount == windowStarts.length) {
+            windowStarts = Arrays.copyOf(windowStarts, windowCount * 2);
+            windowFiles = Arrays.copyOf(windowFiles, windowCount * 2);
+            bands = Arrays.copyOf(bands, windowCount * 2 * BANDS);
+        }
+        windowStarts[windowCount] = start;
+        windowFiles[windowCount] = file;
+        for (int band = 0; band < BANDS; band++) {
+            int hash = band;
+            for (int row = 0; row < ROWS; row++) {
+                hash = mix(hash * 31 + signature[band * ROWS + row]);
+            }
+            bands[windowCount * BANDS + band] = hash;
+        }
+        windowCount++;
+    }
+
+    /**
+     * Finds the candidates band by band, and returns the verified ones, the
+     * index of the first window in the upper half of each long.
+     */
+    private long[] findPairs() {
+        long[] pairs = new long[64];
+        int pairCount = 0;
+        long[] bucket = new long[windowCount];
+        int[] previousRow = new int[windowSize + blockSize + 2];
+        int[] currentRow = new int[previousRow.length];
+        for (int band = 0; band < BANDS; band++) {
+            for (int window = 0; window < windowCount; window++) {
+                bucket[window] = (long) bands[window * BANDS + band] << 32 | window;
+            }
+            Arrays.sort(bucket);
+            for (int first = 0; first < windowCount;) {
+                int key = (int) (bucket[first] >> 32);
+                int end = first + 1;
+                while (end < windowCount && (int) (bucket[end] >> 32) == key) {
+                    end++;
+                }
+                for (int i = first; i < end; i++) {
+                    int window1 = (int) bucket[i];
+                    int partners = 0;
+                    for (int j = i + 1; j < end && partners < MAX_BUCKET_PARTNERS; j++) {
+                        int window2 = (int) bucket[j];
+                        if (overlap(window1, window2)) {
+                            continue;
+                        }
+                        partners++;
+                        // a pair sharing several bands is only verified for the first one
+                        if (!sharesEarlierBand(window1, window2, band)
+                                && isSimilar(window1, window2, previousRow, currentRow)) {
+                            if (pairCount == pairs.length) {
+                                pairs = Arrays.copyOf(pairs, pairCount * 2);
+                            }
+                            pairs[pairCount++] = (long) window1 << 32 | window2;
+                        }
+                    }
+                }
+                first = end;
+            }
+        }
+        pairs = Arrays.copyOf(pairs, pairCount);
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    private boolean overlap(int window1, int window2) {
+        return windowFiles[window1] == windowFiles[window2]
+                && windowStarts[window2] - windowStarts[window1] < windowSize;
+    }
+
+    private boolean sharesEarlierBand(int window1, int window2, int band) {
+        for (int i = 0; i < band; i++) {
+            if (bands[window1 * BANDS + i] == bands[window2 * BANDS + i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the tokens of the first window can be turned into a
+     * part of the tokens around the second window with at most
+     * {@link #maxDistance} edits.  The second window is extended by half a
+     * block on both sides, since the windows start at the blocks, and a
+     * duplicate needn't.  Only the diagonals which can be reached with these
+     * edits are computed, the other cells are beyond the maximum distance.
+     */
+    private boolean isSimilar(int window1, int window2, int[] previousRow, int[] currentRow) {
+        int start1 = windowStarts[window1];
+        if (isEqual(start1, windowStarts[window2])) {
+            return true;
+        }
+        int file2 = windowFiles[window2];
+        int slack = (blockSize + 1) / 2;
+        int start2 = Math.max(fileStarts[file2], windowStarts[window2] - slack);
+        int end2 = Math.min(fileEnds[file2], windowStarts[window2] + windowSize + slack);
+        int length2 = end2 - start2;
+        int offset = windowStarts[window2] - start2;
+        int beyond = maxDistance + 1;
+
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        // the part of the second window may start anywhere
+        int high = Math.min(length2, offset + slack + maxDistance);
+        Arrays.fill(previous, 0, high + 1, 0);
+        if (high < length2) {
+            previous[high + 1] = beyond;
+        }
+        for (int i = 1; i <= windowSize; i++) {
+            int token = identifiers[start1 + i - 1];
+            int low = Math.max(1, i + offset - slack - maxDistance);
+            high = Math.min(length2, i + offset + slack + maxDistance);
+            if (low > high) {
+                return false;
+            }
+            current[low - 1] = low == 1 ? i : beyond;
+            int rowMinimum = beyond;
+            for (int j = low; j <= high; j++) {
+                int distance = previous[j - 1] + (token == identifiers[start2 + j - 1] ? 0 : 1);
+                distance = Math.min(distance, previous[j] + 1);
+                distance = Math.min(distance, current[j - 1] + 1);
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            if (rowMinimum > maxDistance) {
+                return false;
+            }
+            if (high < length2) {
+                current[high + 1] = beyond;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        // and end anywhere
+        for (int j = Math.max(0, windowSize + offset - slack - maxDistance); j <= high; j++) {
+            if (previous[j] <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks for exact duplicates first, which are common and don't need the
+     * edit distance.
+     */
+    private boolean isEqual(int start1, int start2) {
+        for (int i = 0; i < windowSize; i++) {
+            if (identifiers[start1 + i] != identifiers[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Joins the pairs of consecutive windows, whose second windows are
+     * consecutive too, give or take a window for an insertion or deletion.
+     */
+    private List<Match> join(long[] pairs) {
+        // the chains by their last pair, a chain is the first and the last pair
+        Map<Long, long[]> chains = new HashMap<Long, long[]>();
+        List<long[]> result = new ArrayList<long[]>();
+        long previousPair = -1;
+        for (long pair : pairs) {
+            int window1 = (int) (pair >>> 32);
+            int window2 = (int) pair;
+            boolean shifted = previousPair == pair - 1 && windowFiles[window2 - 1] == windowFiles[window2];
+            previousPair = pair;
+            if (shifted) {
+                // the same occurrence, found by the next window too
+                continue;
+            }
+            long[] chain = null;
+            if (window1 > 0 && windowFiles[window1 - 1] == windowFiles[window1]) {
+                for (int delta = 1; delta >= -1 && chain == null; delta--) {
+                    int previous2 = window2 - 1 + delta;
+                    if (previous2 >= 0 && windowFiles[previous2] == windowFiles[window2]) {
+                        chain = chains.remove(Long.valueOf((long) (window1 - 1) << 32 | previous2));
+                    }
+                }
+            }
+            if (chain == null) {
+                chain = new long[] { pair, pair };
+                result.add(chain);
+            }
+            chain[1] = pair;
+            chains.put(Long.valueOf(pair), chain);
+        }
+
+        List<Match> joined = new ArrayList<Match>(result.size());
+        for (long[] chain : result) {
+            int start1 = windowStarts[(int) (chain[0] >>> 32)];
+            int start2 = windowStarts[(int) chain[0]];
+            int end1 = windowStarts[(int) (chain[1] >>> 32)] + windowSize;
+            TokenEntry mark1 = code.get(start1);
+            TokenEntry mark2 = code.get(start2);
+            if (changedFiles != null && !changedFiles.contains(mark1.getTokenSrcID())
+                    && !changedFiles.contains(mark2.getTokenSrcID())) {
+                continue;
+            }
+            Match match = new Match(end1 - start1, mark1, mark2);
+            match.setLineCount(tokens.getLineCount(mark1, match));
+            match.setSourceCode(source.get(mark1.getTokenSrcID()));
+            match.setLabel("similarity " + similarity);
+            joined.add(match);
+        }
+        return joined;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, which spreads the bits of the value.
+     */
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -3,20 +3,23 @@
  */
 package net.sourceforge.pmd.cpd;
 
-import java.util.List;
+import net.sourceforge.pmd.PMD;
 
 public class PHPTokenizer implements Tokenizer {
 
     public void tokenize(SourceCode tokens, Tokens tokenEntries) {
-	List<String> code = tokens.getCode();
-	for (int i = 0; i < code.size(); i++) {
-	    String currentLine = code.get(i);
-	    for (int j = 0; j < currentLine.length(); j++) {
-		char tok = currentLine.charAt(j);
+	// every line of the buffer ends with PMD.EOL
+	StringBuilder code = tokens.getCodeBuffer();
+	int lineStart = 0;
+	for (int i = 0; lineStart < code.length(); i++) {
+	    int lineEnd = code.indexOf(PMD.EOL, lineStart);
+	    for (int j = lineStart; j < lineEnd; j++) {
+		char tok = code.charAt(j);
 		if (!Character.isWhitespace(tok) && tok != '{' && tok != '}' && tok != ';') {
 		    tokenEntries.add(new TokenEntry(String.valueOf(tok), tokens.getFileName(), i + 1));
 		}
 	    }
+	    lineStart = lineEnd + PMD.EOL.length();
 	}
 	tokenEntries.add(TokenEntry.getEOF());
     }
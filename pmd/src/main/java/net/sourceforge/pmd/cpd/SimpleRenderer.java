@@ -6,9 +6,12 @@ package net.sourceforge.pmd.cpd;
 import net.sourceforge.pmd.PMD;
 import net.sourceforge.pmd.util.StringUtil;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 
-public class SimpleRenderer implements Renderer {
+public class SimpleRenderer implements Renderer, CPDRenderer {
 
 	private String separator;
 	private boolean trimLeadingWhitespace;
@@ -28,18 +31,18 @@ public class SimpleRenderer implements Renderer {
 		separator = theSeparator;
 	}
 	
-	private void renderOn(StringBuilder rpt, Match match) {
+	private void renderOn(Writer rpt, Match match) throws IOException {
 		
-          rpt.append("Found a ").append(match.getLineCount()).append(" line (").append(match.getTokenCount()).append(" tokens) duplication in the following files: ").append(PMD.EOL);
+          rpt.append("Found a ").append(String.valueOf(match.getLineCount())).append(" line (").append(String.valueOf(match.getTokenCount())).append(" tokens) duplication in the following files: ").append(PMD.EOL);
           
           for (Iterator<TokenEntry> occurrences = match.iterator(); occurrences.hasNext();) {
               TokenEntry mark = occurrences.next();
-              rpt.append("Starting at line ").append(mark.getBeginLine()).append(" of ").append(mark.getTokenSrcID()).append(PMD.EOL);
+              rpt.append("Starting at line ").append(String.valueOf(mark.getBeginLine())).append(" of ").append(mark.getTokenSrcID()).append(PMD.EOL);
           }
           
           rpt.append(PMD.EOL);	// add a line to separate the source from the desc above
           
-          String source = match.getSourceCodeSlice();
+          String source = match.readSourceCodeSlice();
 
           if (trimLeadingWhitespace) {
               String[] lines = source.split("[" + PMD.EOL + "]");
@@ -58,8 +61,16 @@ public class SimpleRenderer implements Renderer {
 	
 	
     public String render(Iterator<Match> matches) {
-    	
-    	StringBuilder rpt = new StringBuilder(300);
+        StringWriter writer = new StringWriter(300);
+        try {
+            render(matches, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    public void render(Iterator<Match> matches, Writer rpt) throws IOException {
         
         if (matches.hasNext()) {
         	renderOn(rpt, matches.next());
@@ -72,6 +83,5 @@ public class SimpleRenderer implements Renderer {
             renderOn(rpt, match);
           
         }
-        return rpt.toString();
     }
 }
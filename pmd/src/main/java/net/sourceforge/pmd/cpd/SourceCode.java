@@ -3,14 +3,17 @@
  */
 package net.sourceforge.pmd.cpd;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import net.sourceforge.pmd.PMD;
@@ -21,8 +24,14 @@ public class SourceCode {
 
     public static abstract class CodeLoader {
 	private SoftReference<List<String>> code;
-
-	public List<String> getCode() {
+	/**
+	 * The offsets of the lines in the reader, followed by its length.  They
+	 * are recorded while the code is read for the tokenizer, so a slice
+	 * can be read without keeping the lines of the file.
+	 */
+	private int[] lineOffsets;
+
+	public synchronized List<String> getCode() {
 	    List<String> c = null;
 	    if (code != null) {
 		c = code.get();
@@ -34,6 +43,65 @@ public class SourceCode {
 	    return code.get();
 	}
 
+	/**
+	 * Reads the code with {@link PMD#EOL} after each line, and records the
+	 * offsets of the lines.
+	 */
+	public synchronized StringBuilder getCodeBuffer() {
+	    StringBuilder sb = new StringBuilder();
+	    read(sb);
+	    return sb;
+	}
+
+	/**
+	 * Reads the lines <code>startLine</code> to <code>endLine</code>
+	 * (1-based, inclusive) separated by {@link PMD#EOL}.  Only these
+	 * lines are read, since the offsets of the lines are known.
+	 */
+	public synchronized String getSlice(int startLine, int endLine) {
+	    if (lineOffsets == null) {
+		read(null);
+	    }
+	    int first = startLine == 0 ? startLine : startLine - 1;
+	    int last = Math.min(endLine, lineOffsets.length - 1);
+	    if (first >= last) {
+		return "";
+	    }
+	    Reader reader = null;
+	    try {
+		reader = getReader();
+		skipFully(reader, lineOffsets[first]);
+		char[] chars = new char[lineOffsets[last] - lineOffsets[first]];
+		int count = IOUtils.read(reader, chars);
+		StringBuilder sb = new StringBuilder(chars.length + 16);
+		boolean afterTerminator = false;
+		boolean afterCr = false;
+		for (int i = 0; i < count; i++) {
+		    char c = chars[i];
+		    if (afterCr && c == '\n') {
+			afterCr = false;
+			continue;
+		    }
+		    afterCr = c == '\r';
+		    afterTerminator = afterCr || c == '\n';
+		    if (afterTerminator) {
+			sb.append(PMD.EOL);
+		    } else {
+			sb.append(c);
+		    }
+		}
+		// the separator after the last line
+		if (afterTerminator) {
+		    sb.setLength(sb.length() - PMD.EOL.length());
+		}
+		return sb.toString();
+	    } catch (Exception e) {
+		throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage(), e);
+	    } finally {
+		IOUtils.closeQuietly(reader);
+	    }
+	}
+
 	public abstract String getFileName();
 
 	protected abstract Reader getReader() throws Exception;
@@ -55,6 +123,71 @@ public class SourceCode {
 	    	IOUtils.closeQuietly(lnr);
 	    }
 	}
+
+	/**
+	 * Reads the code, splitting the lines like {@link LineNumberReader},
+	 * and records the offsets of the lines.
+	 *
+	 * @param sb the buffer to append the lines to, or <code>null</code>
+	 */
+	private void read(StringBuilder sb) {
+	    Reader reader = null;
+	    try {
+		reader = new BufferedReader(getReader());
+		int[] offsets = new int[256];
+		int lineCount = 0;
+		int offset = 0;
+		boolean inLine = false;
+		boolean afterCr = false;
+		char[] buffer = new char[8192];
+		int count;
+		while ((count = reader.read(buffer)) != -1) {
+		    for (int i = 0; i < count; i++, offset++) {
+			char c = buffer[i];
+			if (afterCr && c == '\n') {
+			    afterCr = false;
+			    continue;
+			}
+			afterCr = c == '\r';
+			if (!inLine) {
+			    if (lineCount + 1 == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			    }
+			    offsets[lineCount++] = offset;
+			    inLine = true;
+			}
+			if (afterCr || c == '\n') {
+			    inLine = false;
+			    if (sb != null) {
+				sb.append(PMD.EOL);
+			    }
+			} else if (sb != null) {
+			    sb.append(c);
+			}
+		    }
+		}
+		if (inLine && sb != null) {
+		    sb.append(PMD.EOL);
+		}
+		offsets[lineCount] = offset;
+		lineOffsets = Arrays.copyOf(offsets, lineCount + 1);
+	    } catch (Exception e) {
+		throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage(), e);
+	    } finally {
+		IOUtils.closeQuietly(reader);
+	    }
+	}
+
+	private static void skipFully(Reader reader, long count) throws IOException {
+	    long remaining = count;
+	    while (remaining > 0) {
+		long skipped = reader.skip(remaining);
+		if (skipped <= 0) {
+		    throw new IOException("Unexpected end of the code");
+		}
+		remaining -= skipped;
+	    }
+	}
     }
 
     public static class FileCodeLoader extends CodeLoader {
@@ -111,6 +244,8 @@ public class SourceCode {
 
 	    private Reader code;
 
+	    private String content;
+
 	    private String name;
 
 	    public ReaderCodeLoader(Reader code) {
@@ -122,9 +257,17 @@ public class SourceCode {
 		this.name = name;
 	    }
 
+	    /**
+	     * The reader can only be read once, its content is kept for the
+	     * slices.
+	     */
 	    @Override
-	    public Reader getReader() {
-		return code;
+	    public synchronized Reader getReader() throws IOException {
+		if (content == null) {
+		    content = IOUtils.toString(code);
+		    IOUtils.closeQuietly(code);
+		}
+		return new StringReader(content);
 	    }
 
 	    @Override
@@ -146,24 +289,11 @@ public class SourceCode {
     }
 
     public StringBuilder getCodeBuffer() {
-	StringBuilder sb = new StringBuilder();
-	List<String> lines = cl.getCode();
-	for (String line : lines) {
-	    sb.append(line).append(PMD.EOL);
-	}
-	return sb;
+	return cl.getCodeBuffer();
     }
 
     public String getSlice(int startLine, int endLine) {
-	StringBuilder sb = new StringBuilder();
-	List<String> lines = cl.getCode();
-        for (int i = startLine == 0 ? startLine :startLine - 1; i < endLine && i < lines.size(); i++) {
-            if (sb.length() != 0) {
-		sb.append(PMD.EOL);
-	    }
-	    sb.append(lines.get(i));
-	}
-	return sb.toString();
+	return cl.getSlice(startLine, endLine);
     }
 
     public String getFileName() {
@@ -4,6 +4,7 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,12 +39,18 @@ public class TokenEntry implements Comparable<TokenEntry> {
     }
 
     public TokenEntry(String image, String tokenSrcID, int beginLine) {
-        Integer i = TOKENS.get().get(image);
-        if (i == null) {
-            i = TOKENS.get().size() + 1;
-            TOKENS.get().put(image, i);
-        }
-        this.identifier = i.intValue();
+        this.identifier = getIdentifier(image);
+        this.tokenSrcID = tokenSrcID;
+        this.beginLine = beginLine;
+        this.index = tokenCount.get().getAndIncrement();
+    }
+
+    /**
+     * Creates a token with an identifier of the current image table, e.g.
+     * one returned by {@link #getIdentifier(String)}.
+     */
+    TokenEntry(int identifier, String tokenSrcID, int beginLine) {
+        this.identifier = identifier;
         this.tokenSrcID = tokenSrcID;
         this.beginLine = beginLine;
         this.index = tokenCount.get().getAndIncrement();
@@ -59,6 +66,33 @@ public class TokenEntry implements Comparable<TokenEntry> {
         TOKENS.remove();
         tokenCount.remove();
     }
+
+    /**
+     * Returns the images of the tokens created so far, the image of the
+     * identifier <code>i</code> at index <code>i - 1</code>.
+     */
+    static List<String> getImages() {
+        Map<String, Integer> tokens = TOKENS.get();
+        String[] images = new String[tokens.size()];
+        for (Map.Entry<String, Integer> entry : tokens.entrySet()) {
+            images[entry.getValue().intValue() - 1] = entry.getKey();
+        }
+        return Arrays.asList(images);
+    }
+
+    /**
+     * Returns the identifier of an image, which is added to the image table
+     * if it isn't known yet.
+     */
+    static int getIdentifier(String image) {
+        Map<String, Integer> tokens = TOKENS.get();
+        Integer i = tokens.get(image);
+        if (i == null) {
+            i = tokens.size() + 1;
+            tokens.put(image, i);
+        }
+        return i.intValue();
+    }
     /**
      * Helper class to preserve and restore the current state
      * of the token entries.
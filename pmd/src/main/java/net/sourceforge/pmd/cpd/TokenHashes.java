@@ -0,0 +1,106 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import java.util.List;
+
+/**
+ * Prefix hashes of the token sequence, to find the common prefix of two
+ * suffixes with a binary search instead of walking them token by token.
+ * The hashes are computed modulo two primes, so a wrong length needs a
+ * collision of both.  Like in {@link MatchCollector}, an EOF token never
+ * matches, not even another EOF token.
+ */
+final class TokenHashes {
+
+    private static final long MOD1 = 2147483647L;
+    private static final long MOD2 = 2147483629L;
+    private static final long BASE1 = 1000003L;
+    private static final long BASE2 = 999979L;
+
+    private final List<TokenEntry> code;
+    private final int maxIdentifier;
+    private final int[] hash1;
+    private final int[] hash2;
+    private final int[] power1;
+    private final int[] power2;
+
+    TokenHashes(List<TokenEntry> code) {
+        this.code = code;
+        int size = code.size();
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, code.get(i).getIdentifier());
+        }
+        maxIdentifier = max;
+        hash1 = new int[size + 1];
+        hash2 = new int[size + 1];
+        power1 = new int[size + 1];
+        power2 = new int[size + 1];
+        power1[0] = 1;
+        power2[0] = 1;
+        for (int i = 0; i < size; i++) {
+            long value = valueAt(i);
+            hash1[i + 1] = (int) ((hash1[i] * BASE1 + value % MOD1) % MOD1);
+            hash2[i + 1] = (int) ((hash2[i] * BASE2 + value % MOD2) % MOD2);
+            power1[i + 1] = (int) (power1[i] * BASE1 % MOD1);
+            power2[i + 1] = (int) (power2[i] * BASE2 % MOD2);
+        }
+    }
+
+    /**
+     * The value of a token: its identifier, or a value of its own for an EOF token.
+     */
+    private long valueAt(int index) {
+        TokenEntry token = code.get(index);
+        return token == TokenEntry.EOF ? (long) maxIdentifier + 1 + index : token.getIdentifier();
+    }
+
+    /**
+     * Returns the number of equal tokens at the start of the two suffixes,
+     * the same as walking them until the first different or EOF token.
+     */
+    int commonPrefix(int index1, int index2) {
+        int low = 0;
+        int high = code.size() - Math.max(index1, index2);
+        while (low < high) {
+            int length = (low + high + 1) >>> 1;
+            if (equal(index1, index2, length)) {
+                low = length;
+            } else {
+                high = length - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the two suffixes lexicographically, an EOF token by its position.
+     */
+    int compare(int index1, int index2) {
+        if (index1 == index2) {
+            return 0;
+        }
+        int length = commonPrefix(index1, index2);
+        if (index1 + length == code.size()) {
+            return -1;
+        }
+        if (index2 + length == code.size()) {
+            return 1;
+        }
+        long value1 = valueAt(index1 + length);
+        long value2 = valueAt(index2 + length);
+        return value1 < value2 ? -1 : value1 > value2 ? 1 : 0;
+    }
+
+    private boolean equal(int index1, int index2, int length) {
+        return hash(hash1, power1, MOD1, index1, length) == hash(hash1, power1, MOD1, index2, length)
+                && hash(hash2, power2, MOD2, index1, length) == hash(hash2, power2, MOD2, index2, length);
+    }
+
+    private static long hash(int[] hash, int[] power, long mod, int index, int length) {
+        long value = (hash[index + length] - (long) hash[index] * power[length] % mod) % mod;
+        return value < 0 ? value + mod : value;
+    }
+}
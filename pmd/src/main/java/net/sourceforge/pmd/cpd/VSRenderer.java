@@ -5,16 +5,30 @@ package net.sourceforge.pmd.cpd;
 
 import net.sourceforge.pmd.PMD;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 
-public class VSRenderer implements Renderer {
+public class VSRenderer implements Renderer, CPDRenderer {
 
     public String render(Iterator<Match> matches) {
-    	
+        StringWriter writer = new StringWriter(300);
+        try {
+            render(matches, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    public void render(Iterator<Match> matches, Writer writer) throws IOException {
+
         StringBuilder buffer = new StringBuilder(300);
-        
+
         for (Match match; matches.hasNext();) {
             match = matches.next();
+            buffer.setLength(0);
             TokenEntry mark;
             for (Iterator<TokenEntry> iterator = match.iterator(); iterator.hasNext();) {
                 mark = iterator.next();
@@ -22,7 +36,7 @@ public class VSRenderer implements Renderer {
                 buffer.append('(').append(mark.getBeginLine()).append("):");
                 buffer.append(" Between lines " + mark.getBeginLine() + " and " + (mark.getBeginLine()+match.getLineCount()) + PMD.EOL);
             }
+            writer.write(buffer.toString());
         }
-        return buffer.toString();
     }
-}
+}
\ No newline at end of file
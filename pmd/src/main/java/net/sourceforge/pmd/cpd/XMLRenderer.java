@@ -3,28 +3,25 @@
  */
 package net.sourceforge.pmd.cpd;
 
+import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import net.sourceforge.pmd.PMD;
 
 /**
  * @author Philippe T'Seyen - original implementation
- * @author Romain Pelisse - javax.xml implementation 
- * 
+ * @author Romain Pelisse - javax.xml implementation
+ *
  */
-public final class XMLRenderer implements Renderer {
+public final class XMLRenderer implements Renderer, CPDRenderer {
+
+	private static final String INDENT = "   ";
 
 	private final String encoding;
 
@@ -43,71 +40,71 @@ public final class XMLRenderer implements Renderer {
 		this.encoding = encoding;
 	}
 
-	private Document createDocument() {
-    	try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder parser = factory.newDocumentBuilder();
-			return parser.newDocument();
-		} catch (ParserConfigurationException e) {
-			throw new IllegalStateException(e);
-		}
-	}
-	
-	private String xmlDocToString(Document doc) {
-        try {
-	        TransformerFactory tf = TransformerFactory.newInstance();
-	        Transformer transformer = tf.newTransformer();
-	        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-	        transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
-	        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-	        transformer.setOutputProperty(OutputKeys.CDATA_SECTION_ELEMENTS, "codefragment");
-	        StringWriter writer = new StringWriter();
-	        transformer.transform(new DOMSource(doc), new StreamResult(writer));
-	        return writer.getBuffer().toString();
-        }  catch (TransformerException e) {
-        	throw new IllegalStateException(e);
-		}
-	}
-	
     public String render(Iterator<Match> matches) {
-    	Document doc = createDocument();
-		Element root = doc.createElement("pmd-cpd");
-		doc.appendChild(root);
-
-        Match match;
-        while (matches.hasNext()) {
-            match = matches.next();
-            root.appendChild( addCodeSnippet(doc, addFilesToDuplicationElement(doc, createDuplicationElement(doc, match), match), match ) );
+        StringWriter writer = new StringWriter();
+        try {
+            render(matches, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
-        return xmlDocToString(doc);
+        return writer.toString();
     }
-    
-    private Element addFilesToDuplicationElement(Document doc, Element duplication, Match match) {
-    	TokenEntry mark;
-        for (Iterator<TokenEntry> iterator = match.iterator(); iterator.hasNext();) {
-            mark = iterator.next();
-            Element file = doc.createElement("file");
-            file.setAttribute("line", String.valueOf(mark.getBeginLine()));
-            file.setAttribute("path", mark.getTokenSrcID());
-            duplication.appendChild(file);
+
+    /**
+     * Writes the report with StAX, one duplication element after the other.
+     */
+    public void render(Iterator<Match> matches, Writer writer) throws IOException {
+        try {
+            XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            xml.writeStartDocument(encoding, "1.0");
+            xml.writeCharacters(PMD.EOL);
+            xml.writeStartElement("pmd-cpd");
+            while (matches.hasNext()) {
+                writeDuplication(xml, matches.next());
+            }
+            xml.writeCharacters(PMD.EOL);
+            xml.writeEndElement();
+            xml.writeCharacters(PMD.EOL);
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
         }
-        return duplication;
     }
 
-    private Element addCodeSnippet(Document doc, Element duplication, Match match) {
-        String codeSnipet = match.getSourceCodeSlice();
+    private void writeDuplication(XMLStreamWriter xml, Match match) throws XMLStreamException {
+        xml.writeCharacters(PMD.EOL + INDENT);
+        xml.writeStartElement("duplication");
+        xml.writeAttribute("lines", String.valueOf(match.getLineCount()));
+        xml.writeAttribute("tokens", String.valueOf(match.getTokenCount()));
+        for (Iterator<TokenEntry> iterator = match.iterator(); iterator.hasNext();) {
+            TokenEntry mark = iterator.next();
+            xml.writeCharacters(PMD.EOL + INDENT + INDENT);
+            xml.writeEmptyElement("file");
+            xml.writeAttribute("line", String.valueOf(mark.getBeginLine()));
+            xml.writeAttribute("path", mark.getTokenSrcID());
+        }
+        String codeSnipet = match.readSourceCodeSlice();
         if (codeSnipet != null) {
-        	Element codefragment = doc.createElement("codefragment");
-            codefragment.appendChild(doc.createCDATASection(codeSnipet));
-            duplication.appendChild(codefragment);
+            xml.writeCharacters(PMD.EOL + INDENT + INDENT);
+            xml.writeStartElement("codefragment");
+            writeCData(xml, codeSnipet);
+            xml.writeEndElement();
         }
-        return duplication;
+        xml.writeCharacters(PMD.EOL + INDENT);
+        xml.writeEndElement();
     }
-    
-    private Element createDuplicationElement(Document doc, Match match) {
-        Element duplication = doc.createElement("duplication");
-        duplication.setAttribute("lines", String.valueOf(match.getLineCount()));
-        duplication.setAttribute("tokens", String.valueOf(match.getTokenCount()));
-        return duplication;
+
+    /**
+     * A CDATA section can't contain "]]>", so it is split between the
+     * brackets, like the DOM serializer did.
+     */
+    private static void writeCData(XMLStreamWriter xml, String text) throws XMLStreamException {
+        int start = 0;
+        for (int end = text.indexOf("]]>"); end >= 0; end = text.indexOf("]]>", start)) {
+            xml.writeCData(text.substring(start, end + 2));
+            start = end + 2;
+        }
+        xml.writeCData(text.substring(start));
     }
 }
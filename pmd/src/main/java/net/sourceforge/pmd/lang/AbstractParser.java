@@ -21,6 +21,17 @@ public abstract class AbstractParser implements Parser {
 	return parserOptions;
     }
 
+    /**
+     * Indicates if this parser can be used again to parse another source, after
+     * the suppress map of the previous one has been retrieved. Reusable parsers
+     * are kept per thread, see {@link net.sourceforge.pmd.SourceCodeProcessor}.
+     * A reusable parser must not keep a reference to the AST of the last source.
+     * Not part of {@link Parser}, so that other implementations still compile.
+     */
+    public boolean isReusable() {
+	return false;
+    }
+
     public TokenManager getTokenManager(String fileName, Reader source) {
 	TokenManager tokenManager = createTokenManager(source);
 	tokenManager.setFileName(fileName);
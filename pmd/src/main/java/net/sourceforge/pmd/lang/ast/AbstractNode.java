@@ -22,6 +22,15 @@ import org.w3c.dom.Element;
 
 public abstract class AbstractNode implements Node {
 
+    /**
+     * Index of the data flow node in the rarely set fields.
+     */
+    protected static final int DATA_FLOW_NODE_FIELD = 0;
+    /**
+     * Index of the user data in the rarely set fields.
+     */
+    protected static final int USER_DATA_FIELD = 1;
+
     protected Node parent;
     protected Node[] children;
     protected int id;
@@ -31,8 +40,11 @@ public abstract class AbstractNode implements Node {
     protected int endLine;
     protected int beginColumn = -1;
     protected int endColumn;
-    private DataFlowNode dataFlowNode;
-    private Object userData;
+    /**
+     * Fields which are set on few nodes only. They are allocated on demand, so
+     * that they don't take space in every node.
+     */
+    private Object[] rareFields;
 
     public AbstractNode(int id) {
     	this.id = id;
@@ -150,7 +162,8 @@ public abstract class AbstractNode implements Node {
     }
 
     public DataFlowNode getDataFlowNode() {
-	if (this.dataFlowNode == null) {
+	DataFlowNode dataFlowNode = (DataFlowNode) getRareField(DATA_FLOW_NODE_FIELD);
+	if (dataFlowNode == null) {
 	    if (this.parent != null) {
 		return parent.getDataFlowNode();
 	    }
@@ -160,7 +173,41 @@ public abstract class AbstractNode implements Node {
     }
 
     public void setDataFlowNode(DataFlowNode dataFlowNode) {
-	this.dataFlowNode = dataFlowNode;
+	setRareField(DATA_FLOW_NODE_FIELD, dataFlowNode);
+    }
+
+    /**
+     * Returns the value of a field, which is set on few nodes only.
+     *
+     * @param index the index of the field, e.g. {@link #USER_DATA_FIELD}
+     * @return the value or <code>null</code> if it isn't set.
+     */
+    protected Object getRareField(int index) {
+	if (rareFields == null || index >= rareFields.length) {
+	    return null;
+	}
+	return rareFields[index];
+    }
+
+    /**
+     * Sets the value of a field, which is set on few nodes only. Subclasses
+     * use indexes following {@link #USER_DATA_FIELD} for their own fields.
+     *
+     * @param index the index of the field
+     * @param value the new value
+     */
+    protected void setRareField(int index, Object value) {
+	if (rareFields == null || index >= rareFields.length) {
+	    if (value == null) {
+		return;
+	    }
+	    Object[] newFields = new Object[index + 1];
+	    if (rareFields != null) {
+		System.arraycopy(rareFields, 0, newFields, 0, rareFields.length);
+	    }
+	    rareFields = newFields;
+	}
+	rareFields[index] = value;
     }
 
     /**
@@ -378,13 +425,13 @@ public abstract class AbstractNode implements Node {
      * {@inheritDoc}
      */
     public Object getUserData() {
-        return userData;
+        return getRareField(USER_DATA_FIELD);
     }
 
     /**
      * {@inheritDoc}
      */
     public void setUserData(Object userData) {
-        this.userData = userData;
+        setRareField(USER_DATA_FIELD, userData);
     }
 }
@@ -33,4 +33,11 @@ public abstract class AbstractTokenManager {
     public Map<Integer, String> getSuppressMap() {
 	return suppressMap;
     }
+
+    /**
+     * Starts a new suppress map, when the token manager is reused for another source.
+     */
+    protected void resetSuppressMap() {
+	suppressMap = new HashMap<Integer, String>();
+    }
 }
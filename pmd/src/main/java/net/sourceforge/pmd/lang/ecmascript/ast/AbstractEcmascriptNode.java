@@ -16,15 +16,18 @@ public abstract class AbstractEcmascriptNode<T extends AstNode> extends Abstract
 	this.node = node;
     }
 
+    /**
+     * @param startOffset The absolute position of the node, passed in as Rhino
+     * calculates it by walking up to the root.
+     */
     /* package private */
-    void calculateLineNumbers(SourceCodePositioner positioner) {
-	int startOffset = node.getAbsolutePosition();
+    void calculateLineNumbers(SourceCodePositioner positioner, int startOffset) {
 	int endOffset = startOffset + node.getLength();
 
 	this.beginLine = positioner.lineNumberFromOffset(startOffset);
-	this.beginColumn = positioner.columnFromOffset(startOffset);
+	this.beginColumn = positioner.columnFromOffset(beginLine, startOffset);
 	this.endLine = positioner.lineNumberFromOffset(endOffset);
-	this.endColumn = positioner.columnFromOffset(endOffset) - 1; // end column is inclusive
+	this.endColumn = positioner.columnFromOffset(endLine, endOffset) - 1; // end column is inclusive
 	if (this.endColumn < 0) {
 	    this.endColumn = 0;
 	}
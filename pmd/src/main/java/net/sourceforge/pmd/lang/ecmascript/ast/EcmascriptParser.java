@@ -22,6 +22,16 @@ import org.mozilla.javascript.ast.ErrorCollector;
 import org.mozilla.javascript.ast.ParseProblem;
 
 public class EcmascriptParser {
+    /**
+     * A parser is created for each file, the compiler environment is reused per thread.
+     */
+    private static final ThreadLocal<CompilerEnvirons> COMPILER_ENVIRONS = new ThreadLocal<CompilerEnvirons>() {
+	@Override
+	protected CompilerEnvirons initialValue() {
+	    return new CompilerEnvirons();
+	}
+    };
+
     protected final EcmascriptParserOptions parserOptions;
 
     private Map<Integer, String> suppressMap;
@@ -35,7 +45,7 @@ public class EcmascriptParser {
     }
 
     protected AstRoot parseEcmascript(final String sourceCode, final List<ParseProblem> parseProblems) throws ParseException {
-	final CompilerEnvirons compilerEnvirons = new CompilerEnvirons();
+	final CompilerEnvirons compilerEnvirons = COMPILER_ENVIRONS.get();
 	compilerEnvirons.setRecordingComments(parserOptions.isRecordingComments());
 	compilerEnvirons.setRecordingLocalJsDocComments(parserOptions.isRecordingLocalJsDocComments());
 	compilerEnvirons.setLanguageVersion(parserOptions.getRhinoLanguageVersion().getVersion());
@@ -3,8 +3,7 @@
  */
 package net.sourceforge.pmd.lang.ecmascript.ast;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,67 +66,265 @@ import org.mozilla.javascript.ast.XmlString;
 
 public final class EcmascriptTreeBuilder implements NodeVisitor {
 
-    private static final Map<Class<? extends AstNode>, Constructor<? extends EcmascriptNode<?>>> NODE_TYPE_TO_NODE_ADAPTER_TYPE = new HashMap<Class<? extends AstNode>, Constructor<? extends EcmascriptNode<?>>>();
+    /**
+     * Creates the adapter of a Rhino node. A factory per node type is used instead of
+     * reflection, as this is done for every node of the AST.
+     */
+    private interface NodeAdapterFactory<T extends AstNode> {
+	EcmascriptNode<T> create(T node);
+    }
+
+    private static final Map<Class<? extends AstNode>, NodeAdapterFactory<?>> NODE_TYPE_TO_NODE_ADAPTER_FACTORY = new HashMap<Class<? extends AstNode>, NodeAdapterFactory<?>>();
     static {
-	register(ArrayComprehension.class, ASTArrayComprehension.class);
-	register(ArrayComprehensionLoop.class, ASTArrayComprehensionLoop.class);
-	register(ArrayLiteral.class, ASTArrayLiteral.class);
-	register(Assignment.class, ASTAssignment.class);
-	register(AstRoot.class, ASTAstRoot.class);
-	register(Block.class, ASTBlock.class);
-	register(BreakStatement.class, ASTBreakStatement.class);
-	register(CatchClause.class, ASTCatchClause.class);
-	register(Comment.class, ASTComment.class);
-	register(ConditionalExpression.class, ASTConditionalExpression.class);
-	register(ContinueStatement.class, ASTContinueStatement.class);
-	register(DoLoop.class, ASTDoLoop.class);
-	register(ElementGet.class, ASTElementGet.class);
-	register(EmptyExpression.class, ASTEmptyExpression.class);
-	register(ExpressionStatement.class, ASTExpressionStatement.class);
-	register(ForInLoop.class, ASTForInLoop.class);
-	register(ForLoop.class, ASTForLoop.class);
-	register(FunctionCall.class, ASTFunctionCall.class);
-	register(FunctionNode.class, ASTFunctionNode.class);
-	register(IfStatement.class, ASTIfStatement.class);
-	register(InfixExpression.class, ASTInfixExpression.class);
-	register(KeywordLiteral.class, ASTKeywordLiteral.class);
-	register(Label.class, ASTLabel.class);
-	register(LabeledStatement.class, ASTLabeledStatement.class);
-	register(LetNode.class, ASTLetNode.class);
-	register(Name.class, ASTName.class);
-	register(NewExpression.class, ASTNewExpression.class);
-	register(NumberLiteral.class, ASTNumberLiteral.class);
-	register(ObjectLiteral.class, ASTObjectLiteral.class);
-	register(ObjectProperty.class, ASTObjectProperty.class);
-	register(ParenthesizedExpression.class, ASTParenthesizedExpression.class);
-	register(PropertyGet.class, ASTPropertyGet.class);
-	register(RegExpLiteral.class, ASTRegExpLiteral.class);
-	register(ReturnStatement.class, ASTReturnStatement.class);
-	register(Scope.class, ASTScope.class);
-	register(StringLiteral.class, ASTStringLiteral.class);
-	register(SwitchCase.class, ASTSwitchCase.class);
-	register(SwitchStatement.class, ASTSwitchStatement.class);
-	register(ThrowStatement.class, ASTThrowStatement.class);
-	register(TryStatement.class, ASTTryStatement.class);
-	register(UnaryExpression.class, ASTUnaryExpression.class);
-	register(VariableDeclaration.class, ASTVariableDeclaration.class);
-	register(VariableInitializer.class, ASTVariableInitializer.class);
-	register(WhileLoop.class, ASTWhileLoop.class);
-	register(WithStatement.class, ASTWithStatement.class);
-	register(XmlDotQuery.class, ASTXmlDotQuery.class);
-	register(XmlExpression.class, ASTXmlExpression.class);
-	register(XmlMemberGet.class, ASTXmlMemberGet.class);
-	register(XmlString.class, ASTXmlString.class);
+	register(ArrayComprehension.class, new NodeAdapterFactory<ArrayComprehension>() {
+	    public EcmascriptNode<ArrayComprehension> create(ArrayComprehension node) {
+		return new ASTArrayComprehension(node);
+	    }
+	});
+	register(ArrayComprehensionLoop.class, new NodeAdapterFactory<ArrayComprehensionLoop>() {
+	    public EcmascriptNode<ArrayComprehensionLoop> create(ArrayComprehensionLoop node) {
+		return new ASTArrayComprehensionLoop(node);
+	    }
+	});
+	register(ArrayLiteral.class, new NodeAdapterFactory<ArrayLiteral>() {
+	    public EcmascriptNode<ArrayLiteral> create(ArrayLiteral node) {
+		return new ASTArrayLiteral(node);
+	    }
+	});
+	register(Assignment.class, new NodeAdapterFactory<Assignment>() {
+	    public EcmascriptNode<Assignment> create(Assignment node) {
+		return new ASTAssignment(node);
+	    }
+	});
+	register(AstRoot.class, new NodeAdapterFactory<AstRoot>() {
+	    public EcmascriptNode<AstRoot> create(AstRoot node) {
+		return new ASTAstRoot(node);
+	    }
+	});
+	register(Block.class, new NodeAdapterFactory<Block>() {
+	    public EcmascriptNode<Block> create(Block node) {
+		return new ASTBlock(node);
+	    }
+	});
+	register(BreakStatement.class, new NodeAdapterFactory<BreakStatement>() {
+	    public EcmascriptNode<BreakStatement> create(BreakStatement node) {
+		return new ASTBreakStatement(node);
+	    }
+	});
+	register(CatchClause.class, new NodeAdapterFactory<CatchClause>() {
+	    public EcmascriptNode<CatchClause> create(CatchClause node) {
+		return new ASTCatchClause(node);
+	    }
+	});
+	register(Comment.class, new NodeAdapterFactory<Comment>() {
+	    public EcmascriptNode<Comment> create(Comment node) {
+		return new ASTComment(node);
+	    }
+	});
+	register(ConditionalExpression.class, new NodeAdapterFactory<ConditionalExpression>() {
+	    public EcmascriptNode<ConditionalExpression> create(ConditionalExpression node) {
+		return new ASTConditionalExpression(node);
+	    }
+	});
+	register(ContinueStatement.class, new NodeAdapterFactory<ContinueStatement>() {
+	    public EcmascriptNode<ContinueStatement> create(ContinueStatement node) {
+		return new ASTContinueStatement(node);
+	    }
+	});
+	register(DoLoop.class, new NodeAdapterFactory<DoLoop>() {
+	    public EcmascriptNode<DoLoop> create(DoLoop node) {
+		return new ASTDoLoop(node);
+	    }
+	});
+	register(ElementGet.class, new NodeAdapterFactory<ElementGet>() {
+	    public EcmascriptNode<ElementGet> create(ElementGet node) {
+		return new ASTElementGet(node);
+	    }
+	});
+	register(EmptyExpression.class, new NodeAdapterFactory<EmptyExpression>() {
+	    public EcmascriptNode<EmptyExpression> create(EmptyExpression node) {
+		return new ASTEmptyExpression(node);
+	    }
+	});
+	register(ExpressionStatement.class, new NodeAdapterFactory<ExpressionStatement>() {
+	    public EcmascriptNode<ExpressionStatement> create(ExpressionStatement node) {
+		return new ASTExpressionStatement(node);
+	    }
+	});
+	register(ForInLoop.class, new NodeAdapterFactory<ForInLoop>() {
+	    public EcmascriptNode<ForInLoop> create(ForInLoop node) {
+		return new ASTForInLoop(node);
+	    }
+	});
+	register(ForLoop.class, new NodeAdapterFactory<ForLoop>() {
+	    public EcmascriptNode<ForLoop> create(ForLoop node) {
+		return new ASTForLoop(node);
+	    }
+	});
+	register(FunctionCall.class, new NodeAdapterFactory<FunctionCall>() {
+	    public EcmascriptNode<FunctionCall> create(FunctionCall node) {
+		return new ASTFunctionCall(node);
+	    }
+	});
+	register(FunctionNode.class, new NodeAdapterFactory<FunctionNode>() {
+	    public EcmascriptNode<FunctionNode> create(FunctionNode node) {
+		return new ASTFunctionNode(node);
+	    }
+	});
+	register(IfStatement.class, new NodeAdapterFactory<IfStatement>() {
+	    public EcmascriptNode<IfStatement> create(IfStatement node) {
+		return new ASTIfStatement(node);
+	    }
+	});
+	register(InfixExpression.class, new NodeAdapterFactory<InfixExpression>() {
+	    public EcmascriptNode<InfixExpression> create(InfixExpression node) {
+		return new ASTInfixExpression(node);
+	    }
+	});
+	register(KeywordLiteral.class, new NodeAdapterFactory<KeywordLiteral>() {
+	    public EcmascriptNode<KeywordLiteral> create(KeywordLiteral node) {
+		return new ASTKeywordLiteral(node);
+	    }
+	});
+	register(Label.class, new NodeAdapterFactory<Label>() {
+	    public EcmascriptNode<Label> create(Label node) {
+		return new ASTLabel(node);
+	    }
+	});
+	register(LabeledStatement.class, new NodeAdapterFactory<LabeledStatement>() {
+	    public EcmascriptNode<LabeledStatement> create(LabeledStatement node) {
+		return new ASTLabeledStatement(node);
+	    }
+	});
+	register(LetNode.class, new NodeAdapterFactory<LetNode>() {
+	    public EcmascriptNode<LetNode> create(LetNode node) {
+		return new ASTLetNode(node);
+	    }
+	});
+	register(Name.class, new NodeAdapterFactory<Name>() {
+	    public EcmascriptNode<Name> create(Name node) {
+		return new ASTName(node);
+	    }
+	});
+	register(NewExpression.class, new NodeAdapterFactory<NewExpression>() {
+	    public EcmascriptNode<NewExpression> create(NewExpression node) {
+		return new ASTNewExpression(node);
+	    }
+	});
+	register(NumberLiteral.class, new NodeAdapterFactory<NumberLiteral>() {
+	    public EcmascriptNode<NumberLiteral> create(NumberLiteral node) {
+		return new ASTNumberLiteral(node);
+	    }
+	});
+	register(ObjectLiteral.class, new NodeAdapterFactory<ObjectLiteral>() {
+	    public EcmascriptNode<ObjectLiteral> create(ObjectLiteral node) {
+		return new ASTObjectLiteral(node);
+	    }
+	});
+	register(ObjectProperty.class, new NodeAdapterFactory<ObjectProperty>() {
+	    public EcmascriptNode<ObjectProperty> create(ObjectProperty node) {
+		return new ASTObjectProperty(node);
+	    }
+	});
+	register(ParenthesizedExpression.class, new NodeAdapterFactory<ParenthesizedExpression>() {
+	    public EcmascriptNode<ParenthesizedExpression> create(ParenthesizedExpression node) {
+		return new ASTParenthesizedExpression(node);
+	    }
+	});
+	register(PropertyGet.class, new NodeAdapterFactory<PropertyGet>() {
+	    public EcmascriptNode<PropertyGet> create(PropertyGet node) {
+		return new ASTPropertyGet(node);
+	    }
+	});
+	register(RegExpLiteral.class, new NodeAdapterFactory<RegExpLiteral>() {
+	    public EcmascriptNode<RegExpLiteral> create(RegExpLiteral node) {
+		return new ASTRegExpLiteral(node);
+	    }
+	});
+	register(ReturnStatement.class, new NodeAdapterFactory<ReturnStatement>() {
+	    public EcmascriptNode<ReturnStatement> create(ReturnStatement node) {
+		return new ASTReturnStatement(node);
+	    }
+	});
+	register(Scope.class, new NodeAdapterFactory<Scope>() {
+	    public EcmascriptNode<Scope> create(Scope node) {
+		return new ASTScope(node);
+	    }
+	});
+	register(StringLiteral.class, new NodeAdapterFactory<StringLiteral>() {
+	    public EcmascriptNode<StringLiteral> create(StringLiteral node) {
+		return new ASTStringLiteral(node);
+	    }
+	});
+	register(SwitchCase.class, new NodeAdapterFactory<SwitchCase>() {
+	    public EcmascriptNode<SwitchCase> create(SwitchCase node) {
+		return new ASTSwitchCase(node);
+	    }
+	});
+	register(SwitchStatement.class, new NodeAdapterFactory<SwitchStatement>() {
+	    public EcmascriptNode<SwitchStatement> create(SwitchStatement node) {
+		return new ASTSwitchStatement(node);
+	    }
+	});
+	register(ThrowStatement.class, new NodeAdapterFactory<ThrowStatement>() {
+	    public EcmascriptNode<ThrowStatement> create(ThrowStatement node) {
+		return new ASTThrowStatement(node);
+	    }
+	});
+	register(TryStatement.class, new NodeAdapterFactory<TryStatement>() {
+	    public EcmascriptNode<TryStatement> create(TryStatement node) {
+		return new ASTTryStatement(node);
+	    }
+	});
+	register(UnaryExpression.class, new NodeAdapterFactory<UnaryExpression>() {
+	    public EcmascriptNode<UnaryExpression> create(UnaryExpression node) {
+		return new ASTUnaryExpression(node);
+	    }
+	});
+	register(VariableDeclaration.class, new NodeAdapterFactory<VariableDeclaration>() {
+	    public EcmascriptNode<VariableDeclaration> create(VariableDeclaration node) {
+		return new ASTVariableDeclaration(node);
+	    }
+	});
+	register(VariableInitializer.class, new NodeAdapterFactory<VariableInitializer>() {
+	    public EcmascriptNode<VariableInitializer> create(VariableInitializer node) {
+		return new ASTVariableInitializer(node);
+	    }
+	});
+	register(WhileLoop.class, new NodeAdapterFactory<WhileLoop>() {
+	    public EcmascriptNode<WhileLoop> create(WhileLoop node) {
+		return new ASTWhileLoop(node);
+	    }
+	});
+	register(WithStatement.class, new NodeAdapterFactory<WithStatement>() {
+	    public EcmascriptNode<WithStatement> create(WithStatement node) {
+		return new ASTWithStatement(node);
+	    }
+	});
+	register(XmlDotQuery.class, new NodeAdapterFactory<XmlDotQuery>() {
+	    public EcmascriptNode<XmlDotQuery> create(XmlDotQuery node) {
+		return new ASTXmlDotQuery(node);
+	    }
+	});
+	register(XmlExpression.class, new NodeAdapterFactory<XmlExpression>() {
+	    public EcmascriptNode<XmlExpression> create(XmlExpression node) {
+		return new ASTXmlExpression(node);
+	    }
+	});
+	register(XmlMemberGet.class, new NodeAdapterFactory<XmlMemberGet>() {
+	    public EcmascriptNode<XmlMemberGet> create(XmlMemberGet node) {
+		return new ASTXmlMemberGet(node);
+	    }
+	});
+	register(XmlString.class, new NodeAdapterFactory<XmlString>() {
+	    public EcmascriptNode<XmlString> create(XmlString node) {
+		return new ASTXmlString(node);
+	    }
+	});
     }
 
-    private static <T extends AstNode> void register(Class<T> nodeType, Class<? extends EcmascriptNode<T>> nodeAdapterType) {
-	try {
-	    NODE_TYPE_TO_NODE_ADAPTER_TYPE.put(nodeType, nodeAdapterType.getConstructor(nodeType));
-	} catch (SecurityException e) {
-	    throw new RuntimeException(e);
-	} catch (NoSuchMethodException e) {
-	    throw new RuntimeException(e);
-	}
+    private static <T extends AstNode> void register(Class<T> nodeType, NodeAdapterFactory<T> nodeAdapterFactory) {
+	NODE_TYPE_TO_NODE_ADAPTER_FACTORY.put(nodeType, nodeAdapterFactory);
     }
 
     protected List<ParseProblem> parseProblems;
@@ -139,6 +336,13 @@ public final class EcmascriptTreeBuilder implements NodeVisitor {
     // The Rhino nodes with children to build.
     protected Stack<AstNode> parents = new Stack<AstNode>();
 
+    // The children built so far of the nodes having children built. They are
+    // added once all are known, as the children array grows with each added child.
+    protected List<Node> children = new ArrayList<Node>();
+
+    // The absolute positions of the Rhino nodes with children to build.
+    protected Stack<Integer> positions = new Stack<Integer>();
+
     private final SourceCodePositioner sourceCodePositioner;
 
     public EcmascriptTreeBuilder(String sourceCode, List<ParseProblem> parseProblems) {
@@ -147,29 +351,19 @@ public final class EcmascriptTreeBuilder implements NodeVisitor {
     }
 
     static <T extends AstNode> EcmascriptNode<T> createNodeAdapter(T node) {
-	try {
-	    @SuppressWarnings("unchecked") // the register function makes sure only EcmascriptNode<T> can be added,
-	    // where T is "T extends AstNode".
-	    Constructor<? extends EcmascriptNode<T>> constructor = (Constructor<? extends EcmascriptNode<T>>) NODE_TYPE_TO_NODE_ADAPTER_TYPE.get(node.getClass());
-	    if (constructor == null) {
-		throw new IllegalArgumentException("There is no Node adapter class registered for the Node class: "
-			+ node.getClass());
-	    }
-	    return constructor.newInstance(node);
-	} catch (InstantiationException e) {
-	    throw new RuntimeException(e);
-	} catch (IllegalAccessException e) {
-	    throw new RuntimeException(e);
-	} catch (InvocationTargetException e) {
-	    throw new RuntimeException(e.getTargetException());
+	@SuppressWarnings("unchecked") // the register function makes sure only NodeAdapterFactory<T> can be added,
+	// where T is "T extends AstNode".
+	NodeAdapterFactory<T> factory = (NodeAdapterFactory<T>) NODE_TYPE_TO_NODE_ADAPTER_FACTORY.get(node.getClass());
+	if (factory == null) {
+	    throw new IllegalArgumentException("There is no Node adapter class registered for the Node class: "
+		    + node.getClass());
 	}
+	return factory.create(node);
     }
 
     public <T extends AstNode> EcmascriptNode<T> build(T astNode) {
 	EcmascriptNode<T> node = buildInternal(astNode);
 
-	calculateLineNumbers(node);
-
 	// Set all the trailing comma nodes
 	for (TrailingCommaNode trailingCommaNode : parseProblemToNode.values()) {
 	    trailingCommaNode.setTrailingComma(true);
@@ -182,21 +376,38 @@ public final class EcmascriptTreeBuilder implements NodeVisitor {
 	// Create a Node
 	EcmascriptNode<T> node = createNodeAdapter(astNode);
 
+	// Rhino's positions are relative to the parent
+	int position;
+	if (!parents.isEmpty() && astNode.getParent() == parents.peek()) {
+	    position = positions.peek() + astNode.getPosition();
+	} else {
+	    position = astNode.getAbsolutePosition();
+	}
+	((AbstractEcmascriptNode<T>) node).calculateLineNumbers(sourceCodePositioner, position);
+
 	// Append to parent
 	Node parent = nodes.isEmpty() ? null : nodes.peek();
 	if (parent != null) {
-	    parent.jjtAddChild(node, parent.jjtGetNumChildren());
+	    children.add(node);
 	    node.jjtSetParent(parent);
 	}
 	
-	handleParseProblems(node);
+	handleParseProblems(node, position);
 
 	// Build the children...
 	nodes.push(node);
 	parents.push(astNode);
+	positions.push(position);
+	int firstChild = children.size();
 	astNode.visit(this);
 	nodes.pop();
 	parents.pop();
+	positions.pop();
+
+	// ... and add them, the last one first, so that the array is only created once
+	for (int i = children.size() - 1; i >= firstChild; i--) {
+	    node.jjtAddChild(children.remove(i), i - firstChild);
+	}
 
 	return node;
     }
@@ -210,10 +421,9 @@ public final class EcmascriptTreeBuilder implements NodeVisitor {
 	}
     }
 
-    private void handleParseProblems(EcmascriptNode<? extends AstNode> node) {
+    private void handleParseProblems(EcmascriptNode<? extends AstNode> node, int nodeStart) {
 	if (node instanceof TrailingCommaNode) {
 	    TrailingCommaNode trailingCommaNode = (TrailingCommaNode) node;
-	    int nodeStart = node.getNode().getAbsolutePosition();
 	    int nodeEnd = nodeStart + node.getNode().getLength() - 1;
 	    for (ParseProblem parseProblem : parseProblems) {
 		// The node overlaps the comma (i.e. end of the problem)?
@@ -232,15 +442,4 @@ public final class EcmascriptTreeBuilder implements NodeVisitor {
 	    }
 	}
     }
-
-    private void calculateLineNumbers(EcmascriptNode<?> node) {
-	EcmascriptParserVisitorAdapter visitor = new EcmascriptParserVisitorAdapter() {
-	    @Override
-	    public Object visit(EcmascriptNode node, Object data) {
-	        ((AbstractEcmascriptNode<?>)node).calculateLineNumbers(sourceCodePositioner);
-	        return super.visit(node, data); // also visit the children
-	    }
-	};
-	node.jjtAccept(visitor, null);
-    }
 }
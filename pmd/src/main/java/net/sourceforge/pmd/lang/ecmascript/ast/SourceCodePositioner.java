@@ -19,19 +19,27 @@ public class SourceCodePositioner {
 	analyzeLineOffsets(sourceCode);
     }
 
+    /**
+     * Scans the characters once instead of splitting the source code into lines.
+     * Like with <code>String.split("\n")</code>, trailing empty lines are not counted.
+     */
     private void analyzeLineOffsets(String sourceCode) {
-	String[] lines = sourceCode.split("\n");
-	
-	int startOffset = 0;
-	int lineNumber = 0;
-	
-	lineOffsets = new int[lines.length];
-	
-	for (String line : lines) {
-	    lineOffsets[lineNumber] = startOffset;
-	    lineNumber++;
-	    startOffset += line.length() + 1; // +1 for the "\n" character
+	int end = sourceCode.length() - 1;
+	while (end >= 0 && sourceCode.charAt(end) == '\n') {
+	    end--;
 	}
+
+	int[] offsets = new int[16];
+	int lineCount = 1; // the first line starts at offset 0
+	for (int i = 0; i < end; i++) {
+	    if (sourceCode.charAt(i) == '\n') {
+		if (lineCount == offsets.length) {
+		    offsets = Arrays.copyOf(offsets, lineCount * 2);
+		}
+		offsets[lineCount++] = i + 1; // the next line starts after the "\n" character
+	    }
+	}
+	lineOffsets = Arrays.copyOf(offsets, lineCount);
     }
 
     public int lineNumberFromOffset(int offset) {
@@ -49,7 +57,13 @@ public class SourceCodePositioner {
     }
     
     public int columnFromOffset(int offset) {
-	int lineNumber = lineNumberFromOffset(offset);
+	return columnFromOffset(lineNumberFromOffset(offset), offset);
+    }
+
+    /**
+     * Same as {@link #columnFromOffset(int)}, for an offset whose line number is already known.
+     */
+    public int columnFromOffset(int lineNumber, int offset) {
 	int columnOffset = offset - lineOffsets[lineNumber - 1];
 	return columnOffset + 1; // 1-based column offsets
     }
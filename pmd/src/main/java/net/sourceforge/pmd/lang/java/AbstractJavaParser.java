@@ -18,13 +18,15 @@ import net.sourceforge.pmd.lang.java.ast.ParseException;
 /**
  * This is a generic Java specific implementation of the Parser interface. It
  * creates a JavaParser instance, and sets the exclude marker. It also exposes
- * the exclude map from the JavaParser instance.
+ * the exclude map from the JavaParser instance. The JavaParser instance is
+ * reused for the following sources.
  *
  * @see AbstractParser
  * @see JavaParser
  */
 public abstract class AbstractJavaParser extends AbstractParser {
     private JavaParser parser;
+    private JavaCharStream charStream;
 
     public AbstractJavaParser(ParserOptions parserOptions) {
 	super(parserOptions);
@@ -39,7 +41,14 @@ public abstract class AbstractJavaParser extends AbstractParser {
      * Subclass should override this method to modify the JavaParser as needed.
      */
     protected JavaParser createJavaParser(Reader source) throws ParseException {
-	parser = new JavaParser(new JavaCharStream(source));
+	if (parser == null) {
+	    charStream = new JavaCharStream(source);
+	    parser = new JavaParser(charStream);
+	} else {
+	    // Reuse the parser, its token manager and the buffers of the char stream
+	    charStream.ReInit(source);
+	    parser.reset(charStream);
+	}
 	String suppressMarker = getParserOptions().getSuppressMarker();
 	if (suppressMarker != null) {
 	    parser.setSuppressMarker(suppressMarker);
@@ -51,9 +60,20 @@ public abstract class AbstractJavaParser extends AbstractParser {
 	return true;
     }
 
+    @Override
+    public boolean isReusable() {
+	return true;
+    }
+
     public Node parse(String fileName, Reader source) throws ParseException {
 	AbstractTokenManager.setFileName(fileName);
-	return createJavaParser(source).CompilationUnit();
+	JavaParser javaParser = createJavaParser(source);
+	try {
+	    return javaParser.CompilationUnit();
+	} finally {
+	    // the parser is kept for the next source, but not the AST
+	    javaParser.releaseAST();
+	}
     }
 
     public Map<Integer, String> getSuppressMap() {
@@ -25,6 +25,7 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
     }
 
     private List<Comment> comments;
+    private CommentIndex commentIndex;
 
     public List<Comment> getComments() {
         return comments;
@@ -32,6 +33,18 @@ public class ASTCompilationUnit extends AbstractJavaTypeNode implements RootNode
 
     public void setComments(List<Comment> comments) {
         this.comments = comments;
+        this.commentIndex = null;
+    }
+
+    /**
+     * Get the index of the comments, which is created on first use. Creating
+     * it assigns the formal comments to the declarations they belong to.
+     */
+    public synchronized CommentIndex getCommentIndex() {
+        if (commentIndex == null) {
+            commentIndex = new CommentIndex(this);
+        }
+        return commentIndex;
     }
 
     /**
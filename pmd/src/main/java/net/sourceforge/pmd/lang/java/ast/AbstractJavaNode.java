@@ -4,14 +4,16 @@
 package net.sourceforge.pmd.lang.java.ast;
 
 import net.sourceforge.pmd.lang.ast.AbstractNode;
+import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.symboltable.Scope;
 
 public abstract class AbstractJavaNode extends AbstractNode implements JavaNode {
 
+    private static final int COMMENT_FIELD = USER_DATA_FIELD + 1;
+
     protected JavaParser parser;
     private Scope scope;
-    private Comment comment;
-    
+
     public AbstractJavaNode(int id) {
         super(id);
     }
@@ -37,6 +39,24 @@ public abstract class AbstractJavaNode extends AbstractNode implements JavaNode
 	}
 	endLine = parser.token.endLine;
 	endColumn = parser.token.endColumn;
+
+	// The children aren't changed by the parser anymore, the AST shouldn't
+	// keep it with its tokens and buffers alive
+	if (children != null) {
+	    for (Node child : children) {
+		if (child instanceof AbstractJavaNode) {
+		    ((AbstractJavaNode) child).parser = null;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Equal images are shared while the source is parsed.
+     */
+    @Override
+    public void setImage(String image) {
+	super.setImage(parser == null || image == null ? image : parser.intern(image));
     }
 
     /**
@@ -70,11 +90,11 @@ public abstract class AbstractJavaNode extends AbstractNode implements JavaNode
     }
 
     public void comment(Comment theComment) {
-    	comment = theComment;
+    	setRareField(COMMENT_FIELD, theComment);
     }
     
     public Comment comment() {
-    	return comment;
+    	return (Comment) getRareField(COMMENT_FIELD);
     }
     
     public String toString() {
@@ -5,14 +5,18 @@ package net.sourceforge.pmd.lang.java.ast;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import net.sourceforge.pmd.lang.ast.AbstractNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.javadoc.JavadocTag;
+import net.sourceforge.pmd.util.StringUtil;
 
 public abstract class Comment extends AbstractNode {
 
+    private String filteredComment;
+
     protected Comment(Token t) {
     	super(-1, t.beginLine, t.endLine, t.beginColumn, t.endColumn);
 
@@ -26,6 +30,38 @@ public abstract class Comment extends AbstractNode {
     	return getImage();
     }
 
+    /**
+     * Get the text of this comment without the comment markup and blank lines.
+     * It is computed once and then shared by all rules.
+     *
+     * @return The filtered comment text.
+     */
+    public String getFilteredComment() {
+    	if (filteredComment == null) {
+    		filteredComment = filter(getImage().trim());
+    	}
+    	return filteredComment;
+    }
+
+    /**
+     * Remove the comment markup of the trimmed comment image.
+     */
+    protected String filter(String trimmedImage) {
+    	return trimmedImage;
+    }
+
+    protected static String asSingleString(List<String> lines) {
+
+    	StringBuilder sb = new StringBuilder();
+    	for (String line : lines) {
+    		if (StringUtil.isEmpty(line))
+    			continue;
+    		sb.append(line).append('\n');
+    	}
+
+    	return sb.toString().trim();
+    }
+
     private void findJavadocs(String commentText) {
 
     	Collection<JavadocElement> kids = new ArrayList<JavadocElement>();
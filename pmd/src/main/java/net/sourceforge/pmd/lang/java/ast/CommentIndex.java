@@ -0,0 +1,155 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * The comments of a compilation unit, ordered by position, and the
+ * declarations the formal comments belong to.  The index is created once per
+ * compilation unit, see {@link ASTCompilationUnit#getCommentIndex()}, so the
+ * comments rules and the <code>getCommentOn()</code> XPath function don't
+ * have to search the comments again for each node.
+ */
+public class CommentIndex {
+
+    private static final Comparator<Node> BY_POSITION = new Comparator<Node>() {
+        public int compare(Node n1, Node n2) {
+            long p1 = position(n1);
+            long p2 = position(n2);
+            return p1 < p2 ? -1 : p1 == p2 ? 0 : 1;
+        }
+    };
+
+    private final Comment[] comments;
+    private final Map<Comment, AbstractJavaAccessNode> owners = new IdentityHashMap<Comment, AbstractJavaAccessNode>();
+
+    /**
+     * Create the index, and assign each formal comment to the declaration it
+     * directly precedes, see {@link AbstractJavaNode#comment()}.
+     *
+     * @param cUnit The compilation unit.
+     */
+    public CommentIndex(ASTCompilationUnit cUnit) {
+        List<Comment> commentList = cUnit.getComments();
+        comments = commentList == null ? new Comment[0] : commentList.toArray(new Comment[commentList.size()]);
+
+        List<AbstractJavaAccessNode> declarations = new ArrayList<AbstractJavaAccessNode>();
+        addDeclarations(cUnit, declarations);
+        // already in order for any regular AST, sorting is then linear
+        Collections.sort(declarations, BY_POSITION);
+        assignComments(declarations);
+    }
+
+    private static void addDeclarations(Node node, List<AbstractJavaAccessNode> declarations) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            Node child = node.jjtGetChild(i);
+            if (child instanceof ASTClassOrInterfaceDeclaration || child instanceof ASTFieldDeclaration
+                    || child instanceof ASTMethodDeclaration || child instanceof ASTConstructorDeclaration
+                    || child instanceof ASTEnumDeclaration) {
+                declarations.add((AbstractJavaAccessNode) child);
+            }
+            addDeclarations(child, declarations);
+        }
+    }
+
+    /**
+     * Walks the comments and declarations in the order of their positions, a
+     * formal comment belongs to the next declaration, unless the comment is
+     * within the previous declaration (other than a type declaration).
+     */
+    private void assignComments(List<AbstractJavaAccessNode> declarations) {
+        FormalComment lastComment = null;
+        AbstractJavaAccessNode lastNode = null;
+        int c = 0;
+        for (AbstractJavaAccessNode node : declarations) {
+            long position = position(node);
+            for (; c < comments.length && position(comments[c]) < position; c++) {
+                if (comments[c] instanceof FormalComment) {
+                    lastComment = (FormalComment) comments[c];
+                }
+            }
+            if (lastComment != null && isCommentNotWithin(lastComment, lastNode) && isCommentBefore(lastComment, node)) {
+                node.comment(lastComment);
+                owners.put(lastComment, node);
+                lastComment = null;
+            }
+            if (!(node instanceof AbstractJavaAccessTypeNode)) {
+                lastNode = node;
+            }
+        }
+    }
+
+    private static long position(Node node) {
+        return ((long) node.getBeginLine() << 32) + node.getBeginColumn();
+    }
+
+    private static boolean isCommentNotWithin(FormalComment n1, Node n2) {
+        if (n1 == null || n2 == null) {
+            return true;
+        }
+        return !(n1.getEndLine() < n2.getEndLine()
+                || n1.getEndLine() == n2.getEndLine() && n1.getEndColumn() < n2.getEndColumn());
+    }
+
+    private static boolean isCommentBefore(FormalComment n1, Node n2) {
+        return n1.getEndLine() < n2.getBeginLine()
+                || n1.getEndLine() == n2.getBeginLine() && n1.getEndColumn() < n2.getBeginColumn();
+    }
+
+    /**
+     * Get the declaration a formal comment belongs to.
+     *
+     * @param comment The comment.
+     * @return The declaration, or <code>null</code> if the comment doesn't document a declaration.
+     */
+    public AbstractJavaAccessNode getOwner(Comment comment) {
+        return owners.get(comment);
+    }
+
+    /**
+     * Get the first comment which begins on the begin line or ends on the end
+     * line of a node.
+     *
+     * @param node The node.
+     * @return The comment, or <code>null</code>.
+     */
+    public Comment getCommentOn(Node node) {
+        int first = firstIndex(node.getBeginLine(), true);
+        if (first < comments.length && comments[first].getBeginLine() != node.getBeginLine()) {
+            first = comments.length;
+        }
+        int last = firstIndex(node.getEndLine(), false);
+        if (last < comments.length && comments[last].getEndLine() == node.getEndLine() && last < first) {
+            first = last;
+        }
+        return first < comments.length ? comments[first] : null;
+    }
+
+    /**
+     * Binary search for the first comment beginning or ending on or after a line,
+     * both are ascending since comments don't overlap.
+     */
+    private int firstIndex(int line, boolean begin) {
+        int low = 0;
+        int high = comments.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int middleLine = begin ? comments[middle].getBeginLine() : comments[middle].getEndLine();
+            if (middleLine < line) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
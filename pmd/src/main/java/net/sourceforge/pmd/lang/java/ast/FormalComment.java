@@ -3,10 +3,41 @@
  */
 package net.sourceforge.pmd.lang.java.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class FormalComment extends Comment {
 
     public FormalComment(Token t) {
         super(t);
     }
 
+    @Override
+    protected String filter(String trimmedImage) {
+
+        String[] lines = trimmedImage.split("\n");
+        List<String> filteredLines = new ArrayList<String>(lines.length);
+
+        for (String line : lines) {
+            line = line.trim();
+
+            if (line.endsWith("*/")) {
+                filteredLines.add(line.substring(0, line.length() - 2));
+                continue;
+            }
+
+            if (line.length() > 0 && line.charAt(0) == '*') {
+                filteredLines.add(line.substring(1));
+                continue;
+            }
+            if (line.startsWith("/**")) {
+                filteredLines.add(line.substring(3));
+                continue;
+            }
+
+        }
+
+        return asSingleString(filteredLines);
+    }
+
 }
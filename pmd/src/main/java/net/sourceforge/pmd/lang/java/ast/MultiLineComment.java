@@ -3,10 +3,44 @@
  */
 package net.sourceforge.pmd.lang.java.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MultiLineComment extends Comment {
 
     public MultiLineComment(Token t) {
         super(t);
     }
 
+    @Override
+    protected String filter(String trimmedImage) {
+
+        String[] lines = trimmedImage.split("\n");
+        List<String> filteredLines = new ArrayList<String>(lines.length);
+
+        for (String rawLine : lines) {
+            String line = rawLine.trim();
+
+            if (line.endsWith("*/")) {
+                int end = line.length() - 2;
+                int start = line.startsWith("/*") ? 2 : 0;
+                filteredLines.add(line.substring(start, end));
+                continue;
+            }
+
+            if (line.length() > 0 && line.charAt(0) == '*') {
+                filteredLines.add(line.substring(1));
+                continue;
+            }
+
+            if (line.startsWith("/*")) {
+                filteredLines.add(line.substring(2));
+                continue;
+            }
+
+        }
+
+        return asSingleString(filteredLines);
+    }
+
 }
@@ -9,4 +9,12 @@ public class SingleLineComment extends Comment {
         super(t);
     }
 
+    @Override
+    protected String filter(String trimmedImage) {
+        if (trimmedImage.startsWith("//"))
+            return trimmedImage.substring(2);
+
+        return trimmedImage;
+    }
+
 }
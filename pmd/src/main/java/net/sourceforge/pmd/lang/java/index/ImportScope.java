@@ -0,0 +1,71 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTImportDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTPackageDeclaration;
+
+/**
+ * The package and the type imports of a compilation unit, which are needed
+ * to resolve the type names used in it.
+ */
+final class ImportScope {
+
+    private final String packageName;
+    private final Map<String, String> singleTypeImports;
+    private final List<String> onDemandImports;
+
+    ImportScope(ASTCompilationUnit cUnit) {
+        String pkg = "";
+        Map<String, String> single = new HashMap<String, String>();
+        List<String> onDemand = new ArrayList<String>();
+        for (int i = 0; i < cUnit.jjtGetNumChildren(); i++) {
+            Node child = cUnit.jjtGetChild(i);
+            if (child instanceof ASTPackageDeclaration) {
+                pkg = ((ASTPackageDeclaration) child).getPackageNameImage();
+            } else if (child instanceof ASTImportDeclaration) {
+                ASTImportDeclaration importDeclaration = (ASTImportDeclaration) child;
+                if (importDeclaration.isStatic()) {
+                    continue;
+                }
+                String importedName = importDeclaration.getImportedName();
+                if (importDeclaration.isImportOnDemand()) {
+                    onDemand.add(importedName);
+                } else {
+                    single.put(importedName.substring(importedName.lastIndexOf('.') + 1), importedName);
+                }
+            }
+        }
+        packageName = pkg;
+        singleTypeImports = Collections.unmodifiableMap(single);
+        onDemandImports = Collections.unmodifiableList(onDemand);
+    }
+
+    String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @return The qualified name of a top level type declared in this compilation unit.
+     */
+    String qualify(String simpleName) {
+        return packageName.length() == 0 ? simpleName : packageName + '.' + simpleName;
+    }
+
+    String getSingleTypeImport(String simpleName) {
+        return singleTypeImports.get(simpleName);
+    }
+
+    List<String> getOnDemandImports() {
+        return onDemandImports;
+    }
+}
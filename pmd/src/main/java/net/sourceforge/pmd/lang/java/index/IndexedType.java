@@ -0,0 +1,127 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.index;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The declaration of a class, interface, enum or annotation type of the
+ * project, as stored in the {@link ProjectIndex}.  Nested types are indexed
+ * with their canonical name, e.g. <code>foo.Outer.Inner</code>.
+ */
+public final class IndexedType {
+
+    /**
+     * The kinds of type declarations.
+     */
+    public enum Kind {
+        CLASS, INTERFACE, ENUM, ANNOTATION
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final String enclosingName;
+    private final String fileName;
+    private final List<String> declaredSuperTypes;
+    private final List<String> methods;
+    private final List<String> fields;
+    private final ImportScope scope;
+    private final List<String> superTypes;
+
+    IndexedType(String name, Kind kind, String enclosingName, String fileName, List<String> declaredSuperTypes,
+            List<String> methods, List<String> fields, ImportScope scope) {
+        this.name = name;
+        this.kind = kind;
+        this.enclosingName = enclosingName;
+        this.fileName = fileName;
+        this.declaredSuperTypes = Collections.unmodifiableList(declaredSuperTypes);
+        this.methods = Collections.unmodifiableList(methods);
+        this.fields = Collections.unmodifiableList(fields);
+        this.scope = scope;
+        this.superTypes = this.declaredSuperTypes;
+    }
+
+    /**
+     * Copy a type declaration, with its super types resolved.
+     */
+    IndexedType(IndexedType type, List<String> superTypes) {
+        this.name = type.name;
+        this.kind = type.kind;
+        this.enclosingName = type.enclosingName;
+        this.fileName = type.fileName;
+        this.declaredSuperTypes = type.declaredSuperTypes;
+        this.methods = type.methods;
+        this.fields = type.fields;
+        this.scope = type.scope;
+        this.superTypes = Collections.unmodifiableList(superTypes);
+    }
+
+    /**
+     * @return The qualified name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getPackageName() {
+        return scope.getPackageName();
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return The qualified name of the enclosing type, or <code>null</code> for a top level type.
+     */
+    public String getEnclosingName() {
+        return enclosingName;
+    }
+
+    /**
+     * @return The name of the source file which declares the type.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get the extended class and the implemented or extended interfaces.
+     * The names are qualified if they could be resolved, either to a type of
+     * the project or by a single type import.
+     *
+     * @return The names of the direct super types.
+     */
+    public List<String> getSuperTypes() {
+        return superTypes;
+    }
+
+    /**
+     * @return The methods, as name and parameter types, e.g. <code>foo(String,int[])</code>.
+     */
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return The names of the fields.
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    List<String> getDeclaredSuperTypes() {
+        return declaredSuperTypes;
+    }
+
+    ImportScope getScope() {
+        return scope;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + name;
+    }
+}
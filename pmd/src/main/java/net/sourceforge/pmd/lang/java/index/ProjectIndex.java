@@ -0,0 +1,476 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTAnnotationMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTAnnotationTypeBody;
+import net.sourceforge.pmd.lang.java.ast.ASTAnnotationTypeDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTAnnotationTypeMemberDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceBody;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceBodyDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTEnumBody;
+import net.sourceforge.pmd.lang.java.ast.ASTEnumDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTExtendsList;
+import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTFormalParameter;
+import net.sourceforge.pmd.lang.java.ast.ASTFormalParameters;
+import net.sourceforge.pmd.lang.java.ast.ASTImplementsList;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclarator;
+import net.sourceforge.pmd.lang.java.ast.ASTTypeDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclarator;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
+
+/**
+ * The type declarations of all Java source files of a PMD run, so rules can
+ * look up the types of the other files, e.g. the super types of a project
+ * class which isn't on the auxiliary classpath.
+ * <p>
+ * The index is created in a first pass over the files, see
+ * {@link net.sourceforge.pmd.PMDConfiguration#isProjectIndex()}, and is read-only afterwards.
+ * It is available to the rules as an attribute of the {@link RuleContext},
+ * see {@link #get(RuleContext)}.
+ */
+public final class ProjectIndex {
+
+    /**
+     * The name of the {@link RuleContext} attribute which holds the index.
+     */
+    public static final String ATTRIBUTE = ProjectIndex.class.getName();
+
+    private static final Object NOT_FOUND = new Object();
+
+    private final Map<String, IndexedType> types;
+    private final Map<String, List<IndexedType>> typesByPackage = new HashMap<String, List<IndexedType>>();
+    private final ClassLoader classLoader;
+    // the classes outside of the project, each name is looked up only once
+    private final ConcurrentMap<String, Object> classes = new ConcurrentHashMap<String, Object>();
+
+    private ProjectIndex(Map<String, IndexedType> types, ClassLoader classLoader) {
+        this.types = types;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Get the index of the current PMD run.
+     *
+     * @param ctx The rule context.
+     * @return The index, or <code>null</code> if the files haven't been indexed.
+     */
+    public static ProjectIndex get(RuleContext ctx) {
+        return (ProjectIndex) ctx.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * @param name The qualified name.
+     * @return The type, or <code>null</code> if it isn't a type of the project.
+     */
+    public IndexedType getType(String name) {
+        return types.get(name);
+    }
+
+    public Collection<IndexedType> getTypes() {
+        return Collections.unmodifiableCollection(types.values());
+    }
+
+    /**
+     * @param packageName The package name, the empty string for the default package.
+     * @return The types of the package.
+     */
+    public List<IndexedType> getTypes(String packageName) {
+        List<IndexedType> packageTypes = typesByPackage.get(packageName);
+        return packageTypes == null ? Collections.<IndexedType> emptyList() : Collections.unmodifiableList(packageTypes);
+    }
+
+    public Set<String> getPackageNames() {
+        return Collections.unmodifiableSet(typesByPackage.keySet());
+    }
+
+    /**
+     * Resolve a type name as it is used in a source file, e.g. the image of
+     * a <code>ClassOrInterfaceType</code>, to the qualified name: by the
+     * member types of the enclosing types, the single type imports, the
+     * types of the same package and the on demand imports.
+     *
+     * @param node The node where the name is used.
+     * @param name The type name.
+     * @return The qualified name, or the name itself if it couldn't be resolved.
+     */
+    public String resolve(Node node, String name) {
+        ASTCompilationUnit cUnit = node instanceof ASTCompilationUnit ? (ASTCompilationUnit) node : node
+                .getFirstParentOfType(ASTCompilationUnit.class);
+        if (cUnit == null) {
+            return name;
+        }
+        ImportScope scope = new ImportScope(cUnit);
+        return resolve(name, scope, getEnclosingTypeName(node, scope));
+    }
+
+    /**
+     * Get the qualified name of the innermost named type which declares a
+     * node, or the node itself if it is a type declaration.
+     *
+     * @param node The node.
+     * @return The qualified name, or <code>null</code> if the node is outside of any type.
+     */
+    public String getEnclosingTypeName(Node node) {
+        ASTCompilationUnit cUnit = node.getFirstParentOfType(ASTCompilationUnit.class);
+        return cUnit == null ? null : getEnclosingTypeName(node, new ImportScope(cUnit));
+    }
+
+    private static String getEnclosingTypeName(Node node, ImportScope scope) {
+        List<String> names = new ArrayList<String>();
+        for (Node n = node; n != null; n = n.jjtGetParent()) {
+            if (isTypeDeclaration(n)) {
+                if (isMemberOrTopLevel(n)) {
+                    names.add(n.getImage());
+                } else {
+                    // the types in a local class are not indexed
+                    names.clear();
+                }
+            } else if (n instanceof ASTClassOrInterfaceBody && !isTypeDeclaration(n.jjtGetParent())) {
+                // neither are those in an anonymous class
+                names.clear();
+            }
+        }
+        if (names.isEmpty()) {
+            return null;
+        }
+        StringBuilder name = new StringBuilder(scope.qualify(names.get(names.size() - 1)));
+        for (int i = names.size() - 2; i >= 0; i--) {
+            name.append('.').append(names.get(i));
+        }
+        return name.toString();
+    }
+
+    private String resolve(String name, ImportScope scope, String enclosingName) {
+        int dot = name.indexOf('.');
+        String first = dot < 0 ? name : name.substring(0, dot);
+        String rest = dot < 0 ? "" : name.substring(dot);
+
+        for (String outer = enclosingName; outer != null;) {
+            String nested = findMemberType(outer, first, new HashSet<String>());
+            if (nested != null) {
+                return nested + rest;
+            }
+            IndexedType outerType = types.get(outer);
+            outer = outerType == null ? null : outerType.getEnclosingName();
+        }
+        String imported = scope.getSingleTypeImport(first);
+        if (imported != null) {
+            return imported + rest;
+        }
+        String samePackage = scope.qualify(first);
+        if (types.containsKey(samePackage)) {
+            return samePackage + rest;
+        }
+        for (String pkg : scope.getOnDemandImports()) {
+            String candidate = pkg + '.' + first;
+            if (types.containsKey(candidate)) {
+                return candidate + rest;
+            }
+        }
+        if (dot >= 0) {
+            // already qualified
+            return name;
+        }
+        if (loadClass(samePackage) != null) {
+            return samePackage;
+        }
+        for (String pkg : scope.getOnDemandImports()) {
+            String candidate = pkg + '.' + first;
+            if (loadClass(candidate) != null) {
+                return candidate;
+            }
+        }
+        String javaLang = "java.lang." + first;
+        return loadClass(javaLang) != null ? javaLang : name;
+    }
+
+    /**
+     * Find a member type, declared by a type or inherited from its super types.
+     */
+    private String findMemberType(String typeName, String simpleName, Set<String> visited) {
+        String nested = typeName + '.' + simpleName;
+        if (types.containsKey(nested)) {
+            return nested;
+        }
+        IndexedType type = types.get(typeName);
+        if (type != null && visited.add(typeName)) {
+            for (String superType : type.getSuperTypes()) {
+                nested = findMemberType(superType, simpleName, visited);
+                if (nested != null) {
+                    return nested;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return whether a type is the same as, or extends or implements another
+     * type, directly or indirectly.  The super types outside of the project
+     * are checked with the classes on the auxiliary classpath.
+     *
+     * @param name The qualified name of the type.
+     * @param superName The qualified name of the super type.
+     * @return <code>true</code> if it is a sub type, <code>false</code> if not or unknown.
+     */
+    public boolean isSubtype(String name, String superName) {
+        return isSubtype(name, superName, null, new HashSet<String>());
+    }
+
+    /**
+     * Return whether a type is the same as, or extends or implements a class,
+     * see {@link #isSubtype(String, String)}.
+     *
+     * @param name The qualified name of the type.
+     * @param superClass The super class.
+     * @return <code>true</code> if it is a sub type, <code>false</code> if not or unknown.
+     */
+    public boolean isSubtype(String name, Class<?> superClass) {
+        String superName = superClass.getCanonicalName();
+        return isSubtype(name, superName == null ? superClass.getName() : superName, superClass, new HashSet<String>());
+    }
+
+    private boolean isSubtype(String name, String superName, Class<?> superClass, Set<String> visited) {
+        if (name.equals(superName)) {
+            return true;
+        }
+        if (!visited.add(name)) {
+            return false;
+        }
+        IndexedType type = types.get(name);
+        if (type == null) {
+            Class<?> clazz = loadClass(name);
+            Class<?> superClazz = superClass == null ? loadClass(superName) : superClass;
+            return clazz != null && superClazz != null && superClazz.isAssignableFrom(clazz);
+        }
+        for (String superType : type.getSuperTypes()) {
+            if (isSubtype(superType, superName, superClass, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Class<?> loadClass(String name) {
+        if (classLoader == null) {
+            return null;
+        }
+        Object clazz = classes.get(name);
+        if (clazz == null) {
+            clazz = NOT_FOUND;
+            // nested classes are tried with their binary name, too
+            for (String binaryName = name; clazz == NOT_FOUND && binaryName.indexOf('.') >= 0;) {
+                try {
+                    clazz = Class.forName(binaryName, false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    int lastDot = binaryName.lastIndexOf('.');
+                    binaryName = binaryName.substring(0, lastDot) + '$' + binaryName.substring(lastDot + 1);
+                } catch (LinkageError e) {
+                    break;
+                }
+            }
+            classes.put(name, clazz);
+        }
+        return clazz == NOT_FOUND ? null : (Class<?>) clazz;
+    }
+
+    private static boolean isTypeDeclaration(Node node) {
+        return node instanceof ASTClassOrInterfaceDeclaration || node instanceof ASTEnumDeclaration
+                || node instanceof ASTAnnotationTypeDeclaration;
+    }
+
+    private static boolean isMemberOrTopLevel(Node node) {
+        Node parent = node.jjtGetParent();
+        return parent instanceof ASTTypeDeclaration || parent instanceof ASTClassOrInterfaceBodyDeclaration
+                || parent instanceof ASTAnnotationTypeMemberDeclaration;
+    }
+
+    /**
+     * Collects the type declarations of the compilation units, which can be
+     * added concurrently, and creates the index.
+     */
+    public static final class Builder {
+
+        private final ProjectIndex base;
+        private final ClassLoader classLoader;
+        private final Set<String> fileNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Queue<IndexedType> types = new ConcurrentLinkedQueue<IndexedType>();
+
+        /**
+         * @param classLoader The class loader of the classes outside of the project, may be <code>null</code>.
+         */
+        public Builder(ClassLoader classLoader) {
+            this(null, classLoader);
+        }
+
+        /**
+         * Create a builder to update an index: the types of the files which
+         * are added replace the types of these files in the base index.
+         *
+         * @param base The index to update.
+         * @param classLoader The class loader of the classes outside of the project, may be <code>null</code>.
+         */
+        public Builder(ProjectIndex base, ClassLoader classLoader) {
+            this.base = base;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * Add the type declarations of a compilation unit.
+         *
+         * @param fileName The name of the source file.
+         * @param cUnit The compilation unit.
+         */
+        public void add(String fileName, ASTCompilationUnit cUnit) {
+            fileNames.add(fileName);
+            ImportScope scope = new ImportScope(cUnit);
+            for (int i = 0; i < cUnit.jjtGetNumChildren(); i++) {
+                Node child = cUnit.jjtGetChild(i);
+                if (child instanceof ASTTypeDeclaration) {
+                    for (int j = 0; j < child.jjtGetNumChildren(); j++) {
+                        Node declaration = child.jjtGetChild(j);
+                        if (isTypeDeclaration(declaration)) {
+                            addType(declaration, scope.qualify(declaration.getImage()), null, fileName, scope);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void addType(Node declaration, String name, String enclosingName, String fileName, ImportScope scope) {
+            List<String> superTypes = new ArrayList<String>();
+            List<String> methods = new ArrayList<String>();
+            List<String> fields = new ArrayList<String>();
+            for (int i = 0; i < declaration.jjtGetNumChildren(); i++) {
+                Node child = declaration.jjtGetChild(i);
+                if (child instanceof ASTExtendsList || child instanceof ASTImplementsList) {
+                    for (int j = 0; j < child.jjtGetNumChildren(); j++) {
+                        superTypes.add(child.jjtGetChild(j).getImage());
+                    }
+                } else if (child instanceof ASTClassOrInterfaceBody || child instanceof ASTEnumBody
+                        || child instanceof ASTAnnotationTypeBody) {
+                    for (int j = 0; j < child.jjtGetNumChildren(); j++) {
+                        Node member = child.jjtGetChild(j);
+                        for (int k = 0; k < member.jjtGetNumChildren(); k++) {
+                            addMember(member.jjtGetChild(k), name, fileName, scope, methods, fields);
+                        }
+                    }
+                }
+            }
+            types.add(new IndexedType(name, kindOf(declaration), enclosingName, fileName, superTypes, methods, fields,
+                    scope));
+        }
+
+        private void addMember(Node member, String typeName, String fileName, ImportScope scope, List<String> methods,
+                List<String> fields) {
+            if (member instanceof ASTMethodDeclaration) {
+                methods.add(signature((ASTMethodDeclaration) member));
+            } else if (member instanceof ASTAnnotationMethodDeclaration) {
+                methods.add(member.getImage() + "()");
+            } else if (member instanceof ASTFieldDeclaration) {
+                for (ASTVariableDeclarator declarator : member.findChildrenOfType(ASTVariableDeclarator.class)) {
+                    fields.add(declarator.getFirstChildOfType(ASTVariableDeclaratorId.class).getImage());
+                }
+            } else if (isTypeDeclaration(member)) {
+                addType(member, typeName + '.' + member.getImage(), typeName, fileName, scope);
+            }
+        }
+
+        private static String signature(ASTMethodDeclaration method) {
+            StringBuilder signature = new StringBuilder(method.getMethodName()).append('(');
+            ASTFormalParameters parameters = method.getFirstChildOfType(ASTMethodDeclarator.class).getFirstChildOfType(
+                    ASTFormalParameters.class);
+            for (int i = 0; i < parameters.jjtGetNumChildren(); i++) {
+                ASTFormalParameter parameter = (ASTFormalParameter) parameters.jjtGetChild(i);
+                if (i > 0) {
+                    signature.append(',');
+                }
+                signature.append(parameter.getTypeNode().getTypeImage());
+                int dimensions = parameter.getArrayDepth() + (parameter.isVarargs() ? 1 : 0);
+                for (int d = 0; d < dimensions; d++) {
+                    signature.append("[]");
+                }
+            }
+            return signature.append(')').toString();
+        }
+
+        private static IndexedType.Kind kindOf(Node declaration) {
+            if (declaration instanceof ASTEnumDeclaration) {
+                return IndexedType.Kind.ENUM;
+            } else if (declaration instanceof ASTAnnotationTypeDeclaration) {
+                return IndexedType.Kind.ANNOTATION;
+            }
+            return ((ASTClassOrInterfaceDeclaration) declaration).isInterface() ? IndexedType.Kind.INTERFACE
+                    : IndexedType.Kind.CLASS;
+        }
+
+        /**
+         * Create the index, and resolve the super types of its types.  The
+         * builder must not be used afterwards.
+         *
+         * @return The index.
+         */
+        public ProjectIndex build() {
+            Map<String, IndexedType> declared = new HashMap<String, IndexedType>();
+            if (base != null) {
+                for (IndexedType type : base.types.values()) {
+                    if (!fileNames.contains(type.getFileName())) {
+                        declared.put(type.getName(), type);
+                    }
+                }
+            }
+            for (IndexedType type : types) {
+                if (!declared.containsKey(type.getName())) {
+                    declared.put(type.getName(), type);
+                }
+            }
+
+            ProjectIndex index = new ProjectIndex(declared, classLoader);
+            // the enclosing types first, the names of their inherited member types are used by the nested types
+            List<IndexedType> ordered = new ArrayList<IndexedType>(declared.values());
+            Collections.sort(ordered, new Comparator<IndexedType>() {
+                public int compare(IndexedType left, IndexedType right) {
+                    return left.getName().length() - right.getName().length();
+                }
+            });
+            for (IndexedType type : ordered) {
+                List<String> superTypes = new ArrayList<String>(type.getDeclaredSuperTypes().size());
+                for (String superType : type.getDeclaredSuperTypes()) {
+                    superTypes.add(index.resolve(superType, type.getScope(), type.getEnclosingName()));
+                }
+                IndexedType resolved = new IndexedType(type, superTypes);
+                declared.put(type.getName(), resolved);
+
+                List<IndexedType> packageTypes = index.typesByPackage.get(type.getPackageName());
+                if (packageTypes == null) {
+                    packageTypes = new ArrayList<IndexedType>();
+                    index.typesByPackage.put(type.getPackageName(), packageTypes);
+                }
+                packageTypes.add(resolved);
+            }
+            return index;
+        }
+    }
+}
@@ -25,6 +25,7 @@ public abstract class AbstractStatisticalJavaRule extends AbstractJavaRule imple
 
     @Override
     public void apply(List<? extends Node> nodes, RuleContext ctx) {
+	helper.start();
 	super.apply(nodes, ctx);
 	helper.apply(ctx);
     }
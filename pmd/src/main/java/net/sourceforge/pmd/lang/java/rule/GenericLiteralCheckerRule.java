@@ -8,6 +8,7 @@ import java.util.regex.Pattern;
 import net.sourceforge.pmd.lang.java.ast.ASTLiteral;
 import net.sourceforge.pmd.lang.java.rule.regex.RegexHelper;
 import net.sourceforge.pmd.lang.rule.properties.StringProperty;
+import net.sourceforge.pmd.util.PatternCache;
 
 
 /**
@@ -35,7 +36,7 @@ public class GenericLiteralCheckerRule extends AbstractJavaRule {
 			String stringPattern = super.getProperty(REGEX_PROPERTY);
 			// Compile the pattern only once
 			if ( stringPattern != null && stringPattern.length() > 0 ) {
-				pattern = Pattern.compile(stringPattern);
+				pattern = PatternCache.compile(stringPattern);
 			} else {
 				throw new IllegalArgumentException("Must provide a value for the '" + PROPERTY_NAME + "' property.");
 			}
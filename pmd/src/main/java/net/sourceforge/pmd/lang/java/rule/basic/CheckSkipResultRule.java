@@ -5,6 +5,7 @@ package net.sourceforge.pmd.lang.java.rule.basic;
 
 import java.io.InputStream;
 
+import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.ast.ASTExpression;
 import net.sourceforge.pmd.lang.java.ast.ASTPrimaryExpression;
@@ -12,6 +13,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTPrimaryPrefix;
 import net.sourceforge.pmd.lang.java.ast.ASTStatementExpression;
 import net.sourceforge.pmd.lang.java.ast.ASTType;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclaratorId;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 import net.sourceforge.pmd.lang.java.symboltable.JavaNameOccurrence;
 import net.sourceforge.pmd.lang.java.typeresolution.TypeHelper;
@@ -22,7 +24,7 @@ public class CheckSkipResultRule extends AbstractJavaRule {
     @Override
     public Object visit(ASTVariableDeclaratorId node, Object data) {
         ASTType typeNode = node.getTypeNode();
-        if (typeNode == null || !TypeHelper.isA(typeNode, InputStream.class)) {
+        if (typeNode == null || !TypeHelper.isA(typeNode, InputStream.class, ProjectIndex.get((RuleContext) data))) {
             return data;
         }
         for (NameOccurrence occ : node.getUsages()) {
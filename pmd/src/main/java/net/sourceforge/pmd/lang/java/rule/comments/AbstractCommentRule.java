@@ -6,7 +6,6 @@ package net.sourceforge.pmd.lang.java.rule.comments;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -17,14 +16,8 @@ import net.sourceforge.pmd.lang.java.ast.ASTConstructorDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTEnumDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
-import net.sourceforge.pmd.lang.java.ast.AbstractJavaAccessNode;
-import net.sourceforge.pmd.lang.java.ast.AbstractJavaAccessTypeNode;
 import net.sourceforge.pmd.lang.java.ast.Comment;
-import net.sourceforge.pmd.lang.java.ast.FormalComment;
-import net.sourceforge.pmd.lang.java.ast.MultiLineComment;
-import net.sourceforge.pmd.lang.java.ast.SingleLineComment;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
-import net.sourceforge.pmd.util.StringUtil;
 
 /**
  * 
@@ -54,146 +47,19 @@ public abstract class AbstractCommentRule extends AbstractJavaRule {
 		return ints;
 	}
 
+	/**
+	 * @return The comment text without markup, see {@link Comment#getFilteredComment()}.
+	 */
 	protected String filteredCommentIn(Comment comment) {
-
-		String trimmed = comment.getImage().trim();
-
-		if (comment instanceof SingleLineComment) {
-			return singleLineIn(trimmed);
-		}
-		if (comment instanceof MultiLineComment) {
-			return multiLinesIn(trimmed);
-		}
-		if (comment instanceof FormalComment) {
-			return formalLinesIn(trimmed);
-		}
-
-		return trimmed; // should never reach here
-	}
-
-	private String singleLineIn(String comment) {
-
-		if (comment.startsWith("//"))
-			return comment.substring(2);
-
-		return comment;
-	}
-
-	private static String asSingleString(List<String> lines) {
-
-		StringBuilder sb = new StringBuilder();
-		for (String line : lines) {
-			if (StringUtil.isEmpty(line))
-				continue;
-			sb.append(line).append('\n');
-		}
-
-		return sb.toString().trim();
-	}
-
-	private static String multiLinesIn(String comment) {
-
-		String[] lines = comment.split("\n");
-		List<String> filteredLines = new ArrayList<String>(lines.length);
-
-		for (String rawLine : lines) {
-			String line = rawLine.trim();
-
-			if (line.endsWith("*/")) {
-				int end = line.length() - 2;
-				int start = line.startsWith("/*") ? 2 : 0;
-				filteredLines.add(line.substring(start, end));
-				continue;
-			}
-
-			if (line.length() > 0 && line.charAt(0) == '*') {
-				filteredLines.add(line.substring(1));
-				continue;
-			}
-
-			if (line.startsWith("/*")) {
-				filteredLines.add(line.substring(2));
-				continue;
-			}
-
-		}
-
-		return asSingleString(filteredLines);
-	}
-
-	private String formalLinesIn(String comment) {
-
-		String[] lines = comment.split("\n");
-		List<String> filteredLines = new ArrayList<String>(lines.length);
-
-		for (String line : lines) {
-			line = line.trim();
-
-			if (line.endsWith("*/")) {
-				filteredLines.add(line.substring(0, line.length() - 2));
-				continue;
-			}
-
-			if (line.length() > 0 && line.charAt(0) == '*') {
-				filteredLines.add(line.substring(1));
-				continue;
-			}
-			if (line.startsWith("/**")) {
-				filteredLines.add(line.substring(3));
-				continue;
-			}
-
-		}
-
-		return asSingleString(filteredLines);
+		return comment.getFilteredComment();
 	}
 
+	/**
+	 * Assign the formal comments to the declarations they belong to, this is
+	 * only done once per compilation unit, see {@link ASTCompilationUnit#getCommentIndex()}.
+	 */
 	protected void assignCommentsToDeclarations(ASTCompilationUnit cUnit) {
-				
-		SortedMap<Integer, Node> itemsByLineNumber = orderedCommentsAndDeclarations(cUnit);
-		FormalComment lastComment = null;
-		AbstractJavaAccessNode lastNode = null;
-
-		for (Entry<Integer, Node> entry : itemsByLineNumber.entrySet()) {
-			Node value = entry.getValue();
-
-			if (value instanceof AbstractJavaAccessNode) {
-				AbstractJavaAccessNode node = (AbstractJavaAccessNode) value;
-
-				// maybe the last comment is within the last node
-				if (lastComment != null && isCommentNotWithin(lastComment, lastNode) && isCommentBefore(lastComment, node)) {
-				    node.comment(lastComment);
-				    lastComment = null;
-				}
-				if (!(node instanceof AbstractJavaAccessTypeNode)) {
-				    lastNode = node;
-				}
-			} else
-			if (value instanceof FormalComment) {
-				lastComment = (FormalComment) value;
-			}				
-		}	
-	}
-
-    private boolean isCommentNotWithin(FormalComment n1, Node n2) {
-        if (n1 == null || n2 == null) {
-            return true;
-        }
-        if ((n1.getEndLine() < n2.getEndLine())
-                || (n1.getEndLine() == n2.getEndLine() && n1.getEndColumn() < n2.getEndColumn())) {
-            return false;
-        } else {
-            return true;
-        }
-    }
-
-    private boolean isCommentBefore(FormalComment n1, Node n2) {
-        if ((n1.getEndLine() < n2.getBeginLine())
-                || (n1.getEndLine() == n2.getBeginLine() && n1.getEndColumn() < n2.getBeginColumn())) {
-            return true;
-        } else {
-            return false;
-        }
+		cUnit.getCommentIndex();
 	}
 
     protected SortedMap<Integer, Node> orderedCommentsAndDeclarations(ASTCompilationUnit cUnit) {
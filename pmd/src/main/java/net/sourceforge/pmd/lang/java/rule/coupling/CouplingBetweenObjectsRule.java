@@ -6,6 +6,7 @@ package net.sourceforge.pmd.lang.java.rule.coupling;
 import java.util.HashSet;
 import java.util.Set;
 
+import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceType;
@@ -17,6 +18,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTReferenceType;
 import net.sourceforge.pmd.lang.java.ast.ASTResultType;
 import net.sourceforge.pmd.lang.java.ast.ASTType;
 import net.sourceforge.pmd.lang.java.ast.JavaNode;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
 import net.sourceforge.pmd.lang.java.rule.AbstractJavaRule;
 import net.sourceforge.pmd.lang.java.symboltable.ClassScope;
 import net.sourceforge.pmd.lang.rule.properties.IntegerProperty;
@@ -35,6 +37,7 @@ public class CouplingBetweenObjectsRule extends AbstractJavaRule {
 
     private int couplingCount;
     private Set<String> typesFoundSoFar;
+    private ProjectIndex index;
 
     private static final IntegerProperty THRESHOLD_DESCRIPTOR = new IntegerProperty(
     	"threshold", "Unique type reporting threshold", 2, 100, 20, 1.0f
@@ -48,6 +51,7 @@ public class CouplingBetweenObjectsRule extends AbstractJavaRule {
     public Object visit(ASTCompilationUnit cu, Object data) {
         typesFoundSoFar = new HashSet<String>();
         couplingCount = 0;
+        index = ProjectIndex.get((RuleContext) data);
 
         Object returnObj = cu.childrenAccept(this, data);
 
@@ -138,15 +142,32 @@ public class CouplingBetweenObjectsRule extends AbstractJavaRule {
         //if the field is of any type other than the class type
         //increment the count
         ClassScope clzScope = ((JavaNode)nameNode).getScope().getEnclosingScope(ClassScope.class);
-        if (!clzScope.getClassName().equals(variableType) && !this.filterTypes(variableType) && !this.typesFoundSoFar.contains(variableType)) {
+        if (!clzScope.getClassName().equals(variableType) && !this.filterTypes(variableType) && !this.typesFoundSoFar.contains(variableType)
+                && !this.isSuperType(nameNode, variableType)) {
             couplingCount++;
             typesFoundSoFar.add(variableType);
         }
     }
 
+    /**
+     * With a project index, the super types of the class are not counted:
+     * a class is coupled to them anyway.
+     *
+     * @param nameNode The node which uses the type.
+     * @param variableType The variable type.
+     * @return boolean true if variableType is a super type of the enclosing class
+     */
+    private boolean isSuperType(Node nameNode, String variableType) {
+        if (index == null || variableType == null) {
+            return false;
+        }
+        String className = index.getEnclosingTypeName(nameNode);
+        return className != null && index.isSubtype(className, index.resolve(nameNode, variableType));
+    }
+
     /**
      * Filters variable type - we don't want primatives, wrappers, strings, etc.
-     * This needs more work. I'd like to filter out super types and perhaps interfaces
+     * This needs more work. I'd like to filter out perhaps interfaces
      *
      * @param variableType The variable type.
      * @return boolean true if variableType is not what we care about
@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.sourceforge.pmd.util.PatternCache;
+
 /**
  * A simple helper class to regroup a bunch of method generally used by rules
  * using regex.
@@ -35,7 +37,7 @@ public final class RegexHelper {
             patterns = new ArrayList<Pattern>(list.size());
             for (String stringPattern : list) {
                 if (stringPattern != null && !"".equals(stringPattern)) {
-                    patterns.add(Pattern.compile(stringPattern));
+                    patterns.add(PatternCache.compile(stringPattern));
                 }
             }
         } else {
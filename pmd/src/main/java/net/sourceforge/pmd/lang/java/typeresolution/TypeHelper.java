@@ -7,7 +7,9 @@ import java.util.Arrays;
 import java.util.List;
 
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTType;
 import net.sourceforge.pmd.lang.java.ast.TypeNode;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
 import net.sourceforge.pmd.lang.java.symboltable.TypedNameDeclaration;
 
 public class TypeHelper {
@@ -16,6 +18,24 @@ public class TypeHelper {
 		return subclasses(n, clazz);
 	}
 
+	/**
+	 * Like {@link #isA(TypeNode, Class)}, but if the type couldn't be resolved
+	 * it is looked up in the project index, so subclasses declared in the
+	 * other source files are recognized, too.
+	 *
+	 * @param index the project index, may be <code>null</code>
+	 */
+	public static boolean isA(TypeNode n, Class<?> clazz, ProjectIndex index) {
+		if (subclasses(n, clazz)) {
+			return true;
+		}
+		if (index == null || n.getType() != null) {
+			return false;
+		}
+		String image = n instanceof ASTType ? ((ASTType) n).getTypeImage() : ((Node) n).getImage();
+		return image != null && index.isSubtype(index.resolve((Node) n, image), clazz);
+	}
+
 	public static boolean isEither(TypeNode n, Class<?> class1, Class<?> class2) {
 		return subclasses(n, class1) || subclasses(n, class2);
 	}
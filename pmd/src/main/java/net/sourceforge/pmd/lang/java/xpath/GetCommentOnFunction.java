@@ -35,14 +35,11 @@ public class GetCommentOnFunction implements Function {
         }
         Node n = (Node) context.getNodeSet().get(0);
         if (n instanceof AbstractNode) {
-            int codeBeginLine = ((AbstractNode) n).getBeginLine();
-            int codeEndLine = ((AbstractNode) n).getEndLine();
-
-            List<Comment> commentList = ((AbstractNode)n).getFirstParentOfType(ASTCompilationUnit.class).getComments();
-            for (Comment comment : commentList) {
-                if (comment.getBeginLine() == codeBeginLine || comment.getEndLine() == codeEndLine) {
-                    return comment.getImage();
-                }
+            ASTCompilationUnit cUnit = n instanceof ASTCompilationUnit ? (ASTCompilationUnit) n
+                    : ((AbstractNode) n).getFirstParentOfType(ASTCompilationUnit.class);
+            Comment comment = cUnit.getCommentIndex().getCommentOn(n);
+            if (comment != null) {
+                return comment.getImage();
             }
         }
         return Boolean.FALSE;
@@ -191,6 +191,29 @@ public abstract class AbstractDelegateRule implements Rule {
 		 return rule.usesTypeResolution();
 	 }
 
+	 /**
+	  * @see AbstractRule#setThreadSafe()
+	  */
+	 public void setThreadSafe() {
+		 if (rule instanceof AbstractRule) {
+			 ((AbstractRule) rule).setThreadSafe();
+		 } else if (rule instanceof AbstractDelegateRule) {
+			 ((AbstractDelegateRule) rule).setThreadSafe();
+		 }
+	 }
+
+	 /**
+	  * @see AbstractRule#isThreadSafe()
+	  */
+	 public boolean isThreadSafe() {
+		 if (rule instanceof AbstractRule) {
+			 return ((AbstractRule) rule).isThreadSafe();
+		 } else if (rule instanceof AbstractDelegateRule) {
+			 return ((AbstractDelegateRule) rule).isThreadSafe();
+		 }
+		 return false;
+	 }
+
 	 public boolean usesRuleChain() {
 		 return rule.usesRuleChain();
 	 }
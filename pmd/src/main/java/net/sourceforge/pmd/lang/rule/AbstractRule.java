@@ -39,6 +39,7 @@ public abstract class AbstractRule extends AbstractPropertySource implements Rul
 	private RulePriority priority = RulePriority.LOW;
 	private boolean usesDFA;
 	private boolean usesTypeResolution;
+	private boolean threadSafe;
 	private List<String> ruleChainVisits = new ArrayList<String>();
 
 	public AbstractRule() {
@@ -64,6 +65,7 @@ public abstract class AbstractRule extends AbstractPropertySource implements Rul
 		otherRule.propertyValuesByDescriptor = copyPropertyValues();
 		otherRule.usesDFA = usesDFA;
 		otherRule.usesTypeResolution = usesTypeResolution;
+		otherRule.threadSafe = threadSafe;
 		otherRule.ruleChainVisits = copyRuleChainVisits();
 	}
 
@@ -303,6 +305,25 @@ public abstract class AbstractRule extends AbstractPropertySource implements Rul
 		 return usesTypeResolution;
 	 }
 
+	 /**
+	  * Sets that this Rule may be applied to an AST concurrently with other
+	  * Rules, as it doesn't change the AST and doesn't share state with other
+	  * Rules.
+	  */
+	 public void setThreadSafe() {
+		 threadSafe = true;
+	 }
+
+	 /**
+	  * Gets whether this Rule may be applied to an AST concurrently with other
+	  * Rules.
+	  *
+	  * @return <code>true</code> if the Rule is thread-safe.
+	  */
+	 public boolean isThreadSafe() {
+		 return threadSafe;
+	 }
+
 	 /**
 	  * @see Rule#usesRuleChain()
 	  */
@@ -11,12 +11,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.benchmark.Benchmark;
 import net.sourceforge.pmd.benchmark.Benchmarker;
+import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
 
 /**
@@ -35,6 +37,12 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
      */
     protected Map<String, List<Node>> nodeNameToNodes;
 
+    /**
+     * The rules of {@link #ruleSetRules} which apply to each language version,
+     * see {@link RuleSet#applies(Rule, LanguageVersion)}.
+     */
+    private final Map<LanguageVersion, Map<RuleSet, List<Rule>>> applicableRuleSetRules = new ConcurrentHashMap<LanguageVersion, Map<RuleSet, List<Rule>>>();
+
     /**
      * @see RuleChainVisitor#add(RuleSet, Rule)
      */
@@ -44,6 +52,7 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
 		    ruleSetRules.put(ruleSet, new ArrayList<Rule>());
 		}
 		ruleSetRules.get(ruleSet).add(rule);
+		applicableRuleSetRules.clear();
     }
 
     /**
@@ -61,7 +70,7 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
         Benchmarker.mark(Benchmark.RuleChainVisit, end - start, 1);
 
         // For each RuleSet, only if this source file applies
-        for (Map.Entry<RuleSet, List<Rule>> entry : ruleSetRules.entrySet()) {
+        for (Map.Entry<RuleSet, List<Rule>> entry : getApplicableRuleSetRules(ctx.getLanguageVersion()).entrySet()) {
         	RuleSet ruleSet = entry.getKey();
             if (!ruleSet.applies(ctx.getSourceCodeFile())) {
 	        	continue;
@@ -71,9 +80,6 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
             start = System.nanoTime();
             for (Rule rule: entry.getValue()) {
                 int visits = 0;
-	        	if (!RuleSet.applies(rule, ctx.getLanguageVersion())) {
-	        	    continue;
-	        	}
                 final List<String> nodeNames = rule.getRuleChainVisits();
                 for (int j = 0; j < nodeNames.size(); j++) {
                     List<Node> ns = nodeNameToNodes.get(nodeNames.get(j));
@@ -93,6 +99,32 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
         }
     }
 
+    /**
+     * Select the rules which apply to a language version, once for all the
+     * ASTs of that version. The RuleSets without such rules are left out.
+     */
+    private Map<RuleSet, List<Rule>> getApplicableRuleSetRules(LanguageVersion languageVersion) {
+        Map<RuleSet, List<Rule>> applicable = languageVersion == null ? null : applicableRuleSetRules.get(languageVersion);
+        if (applicable == null) {
+            applicable = new LinkedHashMap<RuleSet, List<Rule>>();
+            for (Map.Entry<RuleSet, List<Rule>> entry : ruleSetRules.entrySet()) {
+                List<Rule> rules = new ArrayList<Rule>();
+                for (Rule rule : entry.getValue()) {
+                    if (RuleSet.applies(rule, languageVersion)) {
+                        rules.add(rule);
+                    }
+                }
+                if (!rules.isEmpty()) {
+                    applicable.put(entry.getKey(), rules);
+                }
+            }
+            if (languageVersion != null) {
+                applicableRuleSetRules.put(languageVersion, applicable);
+            }
+        }
+        return applicable;
+    }
+
     /**
      * Visit the given rule to the given node.
      */
@@ -38,6 +38,8 @@ public class XPathRule extends AbstractRule {
 	public XPathRule() {
 		definePropertyDescriptor(XPATH_DESCRIPTOR);
 		definePropertyDescriptor(VERSION_DESCRIPTOR);
+		// XPath queries only read the AST
+		setThreadSafe();
 	}
 
 	public XPathRule(String xPath) {
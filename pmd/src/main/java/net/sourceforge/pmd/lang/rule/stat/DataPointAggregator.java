@@ -0,0 +1,187 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.rule.stat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.sourceforge.pmd.stat.DataPoint;
+
+/**
+ * Aggregates the data points of a statistical rule as they arrive.  The count,
+ * total, lowest, highest, mean and standard deviation are computed in a single
+ * pass, see Welford's algorithm, and only the points which can still be
+ * reported are kept: those above a threshold which is known in advance, and
+ * only the points with the highest scores if the number of reported points is
+ * limited.
+ * <p>
+ * Aggregators of several files, e.g. of a package or module, can be combined
+ * with {@link #merge(DataPointAggregator)}.
+ *
+ * @see StatisticalRuleHelper
+ */
+public class DataPointAggregator {
+
+    private final double lowerBound;
+    private final Integer topScore;
+
+    // in ascending order, the head is the first point to drop
+    private final PriorityQueue<DataPoint> points = new PriorityQueue<DataPoint>();
+
+    private int count;
+    private double total;
+    private double lowest = Double.POSITIVE_INFINITY;
+    private double highest = Double.NEGATIVE_INFINITY;
+    private double mean;
+    private double squaredDeviations;
+
+    /**
+     * Create an aggregator which keeps all points.
+     */
+    public DataPointAggregator() {
+        this(null, null, null);
+    }
+
+    /**
+     * Create an aggregator which keeps only the points which can be selected
+     * with these settings, see {@link #select(Double, Double, Integer)}.
+     *
+     * @param sigma The sigma, or <code>null</code>.
+     * @param minimum The minimum, or <code>null</code>.
+     * @param topScore The top score, or <code>null</code>.
+     */
+    public DataPointAggregator(Double sigma, Double minimum, Integer topScore) {
+        if (sigma == null) {
+            lowerBound = threshold(sigma, minimum, 0, 0);
+        } else {
+            // the threshold depends on the mean and standard deviation of all points
+            lowerBound = minimum == null ? Double.NEGATIVE_INFINITY : minimum.doubleValue();
+        }
+        this.topScore = topScore;
+    }
+
+    /**
+     * Add a data point.
+     *
+     * @param point The data point.
+     */
+    public void add(DataPoint point) {
+        double score = point.getScore();
+        count++;
+        total += score;
+        lowest = Math.min(lowest, score);
+        highest = Math.max(highest, score);
+        double delta = score - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (score - mean);
+        keep(point);
+    }
+
+    private void keep(DataPoint point) {
+        if (point.getScore() > lowerBound - StatisticalRuleHelper.DELTA) {
+            points.add(point);
+            if (topScore != null && points.size() > Math.max(topScore.intValue(), 0)) {
+                points.poll();
+            }
+        }
+    }
+
+    /**
+     * Add the data points of another aggregator, which must keep at least the
+     * points this one keeps, i.e. it was created with the same settings or
+     * keeps all points.
+     *
+     * @param other The other aggregator.
+     */
+    public void merge(DataPointAggregator other) {
+        if (other.count == 0) {
+            return;
+        }
+        int newCount = count + other.count;
+        double delta = other.mean - mean;
+        squaredDeviations += other.squaredDeviations + delta * delta * count * other.count / newCount;
+        mean += delta * other.count / newCount;
+        count = newCount;
+        total += other.total;
+        lowest = Math.min(lowest, other.lowest);
+        highest = Math.max(highest, other.highest);
+        for (DataPoint point : other.points) {
+            keep(point);
+        }
+    }
+
+    /**
+     * Select the points to report: those above the sigma and the minimum, and
+     * of these the top scores.  With the settings of the constructor this
+     * gives the same points as if all points had been kept.
+     *
+     * @param sigma The sigma, or <code>null</code>.
+     * @param minimum The minimum, or <code>null</code>.
+     * @param topScore The top score, or <code>null</code>.
+     * @return The selected points, in ascending order.
+     */
+    public List<DataPoint> select(Double sigma, Double minimum, Integer topScore) {
+        double threshold = threshold(sigma, minimum, getMean(), getStandardDeviation()) - StatisticalRuleHelper.DELTA;
+        List<DataPoint> selected = new ArrayList<DataPoint>(points.size());
+        for (DataPoint point : points) {
+            if (point.getScore() > threshold) {
+                selected.add(point);
+            }
+        }
+        Collections.sort(selected);
+        if (topScore != null && selected.size() >= topScore.intValue()) {
+            selected = selected.subList(selected.size() - Math.max(topScore.intValue(), 0), selected.size());
+        }
+        return selected;
+    }
+
+    private static double threshold(Double sigma, Double minimum, double mean, double deviation) {
+        double threshold = 0.0;
+        if (sigma != null) {
+            threshold = mean + sigma.doubleValue() * deviation;
+        }
+        if (minimum != null && minimum.doubleValue() > threshold) {
+            threshold = minimum.doubleValue();
+        }
+        return threshold;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The lowest score, or 0 if there are no points.
+     */
+    public double getLowest() {
+        return count == 0 ? 0.0 : lowest;
+    }
+
+    /**
+     * @return The highest score, or 0 if there are no points.
+     */
+    public double getHighest() {
+        return count == 0 ? 0.0 : highest;
+    }
+
+    /**
+     * @return The mean score, or {@link Double#NaN} if there are no points.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return The sample standard deviation, or {@link Double#NaN} if there are less than 2 points.
+     */
+    public double getStandardDeviation() {
+        return count < 2 ? Double.NaN : Math.sqrt(squaredDeviations / (count - 1));
+    }
+}
@@ -7,9 +7,7 @@ import static net.sourceforge.pmd.lang.rule.stat.StatisticalRule.MINIMUM_DESCRIP
 import static net.sourceforge.pmd.lang.rule.stat.StatisticalRule.SIGMA_DESCRIPTOR;
 import static net.sourceforge.pmd.lang.rule.stat.StatisticalRule.TOP_SCORE_DESCRIPTOR;
 
-import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.List;
 
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
@@ -29,10 +27,7 @@ public class StatisticalRuleHelper {
     
     private AbstractRule rule;
 
-    private SortedSet<DataPoint> dataPoints = new TreeSet<DataPoint>();
-
-    private int count = 0;
-    private double total = 0.0;
+    private DataPointAggregator aggregator = new DataPointAggregator();
 
     public StatisticalRuleHelper(AbstractRule rule) {
     	this.rule = rule;
@@ -41,96 +36,36 @@ public class StatisticalRuleHelper {
     	rule.definePropertyDescriptor(TOP_SCORE_DESCRIPTOR);
     }
 
+    /**
+     * Start collecting the data points of a file with the current properties
+     * of the rule, so only the points which can be reported are kept.
+     * Without it all points are kept until {@link #apply(RuleContext)}.
+     */
+    public void start() {
+        DataPointAggregator bounded = new DataPointAggregator(rule.getProperty(SIGMA_DESCRIPTOR),
+                rule.getProperty(MINIMUM_DESCRIPTOR), rule.getProperty(TOP_SCORE_DESCRIPTOR));
+        bounded.merge(aggregator);
+        aggregator = bounded;
+    }
+
     public void addDataPoint(DataPoint point) {
-        count++;
-        total += point.getScore();
-        dataPoints.add(point);
+        aggregator.add(point);
     }
 
     public void apply(RuleContext ctx) {
 
-        double deviation;
-        double minimum = 0.0;
-
-        if (rule.getProperty(SIGMA_DESCRIPTOR) != null) {	// TODO - need to come up with a good default value
-            deviation = getStdDev();
-            double sigma = rule.getProperty(SIGMA_DESCRIPTOR);
-            minimum = getMean() + (sigma * deviation);
-        }
-
-        if (rule.getProperty(MINIMUM_DESCRIPTOR) != null) {	// TODO - need to come up with a good default value
-            double mMin = rule.getProperty(MINIMUM_DESCRIPTOR);
-            if (mMin > minimum) {
-                minimum = mMin;
-            }
-        }
-
-        SortedSet<DataPoint> newPoints = applyMinimumValue(dataPoints, minimum);
-
-        if (rule.getProperty(TOP_SCORE_DESCRIPTOR) != null) {	// TODO - need to come up with a good default value
-            int topScore = rule.getProperty(TOP_SCORE_DESCRIPTOR);
-            if (newPoints.size() >= topScore) {
-                newPoints = applyTopScore(newPoints, topScore);
-            }
-        }
+        List<DataPoint> newPoints = aggregator.select(rule.getProperty(SIGMA_DESCRIPTOR), rule.getProperty(MINIMUM_DESCRIPTOR),
+                rule.getProperty(TOP_SCORE_DESCRIPTOR));
 
         makeViolations(ctx, newPoints);
 
-        double low = 0.0d;
-        double high = 0.0d;
-        if (!dataPoints.isEmpty()) {
-            low = dataPoints.first().getScore();
-            high = dataPoints.last().getScore();
-        }
-
-        ctx.getReport().addMetric(new Metric(rule.getName(), count, total, low, high, getMean(), getStdDev()));
-
-        dataPoints.clear();
-    }
-
-    private double getMean() {
-        return total / count;
-    }
-
-    private double getStdDev() {
-        if (dataPoints.size() < 2) {
-            return Double.NaN;
-        }
-
-        double mean = getMean();
-        double deltaSq = 0.0;
-        double scoreMinusMean;
-
-        for (DataPoint point: dataPoints) {
-            scoreMinusMean = point.getScore() - mean;
-            deltaSq += scoreMinusMean * scoreMinusMean;
-        }
-
-        return Math.sqrt(deltaSq / (dataPoints.size() - 1));
-    }
-
-    private SortedSet<DataPoint> applyMinimumValue(SortedSet<DataPoint> pointSet, double minValue) {
-        SortedSet<DataPoint> rc = new TreeSet<DataPoint>();
-        double threshold = minValue - DELTA;
+        ctx.getReport().addMetric(new Metric(rule.getName(), aggregator.getCount(), aggregator.getTotal(),
+                aggregator.getLowest(), aggregator.getHighest(), aggregator.getMean(), aggregator.getStandardDeviation()));
 
-        for (DataPoint point: pointSet) {
-            if (point.getScore() > threshold) {
-                rc.add(point);
-            }
-        }
-        return rc;
-    }
-
-    private SortedSet<DataPoint> applyTopScore(SortedSet<DataPoint> points, int topScore) {
-        SortedSet<DataPoint> s = new TreeSet<DataPoint>();
-        DataPoint[] arr = points.toArray(new DataPoint[]{});
-        for (int i = arr.length - 1; i >= (arr.length - topScore); i--) {
-            s.add(arr[i]);
-        }
-        return s;
+        aggregator = new DataPointAggregator();
     }
 
-    private void makeViolations(RuleContext ctx, Set<DataPoint> p) {
+    private void makeViolations(RuleContext ctx, List<DataPoint> p) {
         for (DataPoint point: p) {
             rule.addViolationWithMessage(ctx, point.getNode(), point.getMessage(), ((StatisticalRule)rule).getViolationParameters(point));
         }
@@ -27,6 +27,7 @@ public abstract class AbstractStatisticalVmRule extends AbstractVmRule implement
 
     @Override
     public void apply(final List<? extends Node> nodes, final RuleContext ctx) {
+        helper.start();
         super.apply(nodes, ctx);
         helper.apply(ctx);
     }
@@ -0,0 +1,106 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.xml.ast;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import net.sourceforge.pmd.lang.ast.AbstractNode;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.Attribute;
+import net.sourceforge.pmd.util.CompoundIterator;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Text;
+
+/**
+ * The XML AST node, which wraps a DOM node. The tree of these nodes is built
+ * once after parsing by {@link XmlParser}, so that navigating it doesn't need
+ * to go through the DOM.
+ */
+public class XmlNodeImpl extends AbstractNode implements XmlNode {
+
+    private final org.w3c.dom.Node node;
+    private final String name;
+
+    public XmlNodeImpl(org.w3c.dom.Node node) {
+	super(node.getNodeType());
+	this.node = node;
+	String nodeName = node.getNodeName();
+	// "#text", "#comment", "#document", ... are shown without the '#'
+	this.name = nodeName.startsWith("#") ? nodeName.substring(1).intern() : nodeName;
+    }
+
+    /* package private */
+    void setChildren(Node[] children) {
+	this.children = children;
+    }
+
+    /* package private */
+    void setParent(Node parent) {
+	this.parent = parent;
+    }
+
+    /* package private */
+    void setPosition(int beginLine, int beginColumn, int endLine, int endColumn) {
+	this.beginLine = beginLine;
+	this.beginColumn = beginColumn;
+	this.endLine = endLine;
+	this.endColumn = endColumn;
+    }
+
+    public org.w3c.dom.Node getNode() {
+	return node;
+    }
+
+    /**
+     * Text and CDATA nodes have their data as image, all other nodes have none.
+     */
+    @Override
+    public String getImage() {
+	return node instanceof Text ? ((Text) node).getData() : null;
+    }
+
+    /**
+     * The column is not taken from the first child, as {@link AbstractNode} does,
+     * but is -1 if the parser didn't report it.
+     */
+    @Override
+    public int getBeginColumn() {
+	return beginColumn;
+    }
+
+    public Iterator<Attribute> getAttributeIterator() {
+	// Expose DOM Attributes
+	final NamedNodeMap attributes = node.getAttributes();
+	Iterator<Attribute> domAttributes = new Iterator<Attribute>() {
+	    private int index;
+
+	    public boolean hasNext() {
+		return attributes != null && index < attributes.getLength();
+	    }
+
+	    public Attribute next() {
+		org.w3c.dom.Node attributeNode = attributes.item(index++);
+		return new Attribute(XmlNodeImpl.this, attributeNode.getNodeName(), attributeNode.getNodeValue());
+	    }
+
+	    public void remove() {
+		throw new UnsupportedOperationException();
+	    }
+	};
+
+	// Expose Text/CDATA nodes to have an 'Image' attribute like AST Nodes
+	if (node instanceof Text) {
+	    Iterator<Attribute> image = Collections.singletonList(new Attribute(this, "Image", getImage())).iterator();
+	    return new CompoundIterator<Attribute>(domAttributes, image);
+	}
+	return domAttributes;
+    }
+
+    @Override
+    public String toString() {
+	return name;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -54,7 +55,13 @@ import org.xml.sax.ext.DefaultHandler2;
 
 public class XmlParser {
     protected final XmlParserOptions parserOptions;
+    /**
+     * @deprecated only used by {@link #createProxy(Node)}
+     */
+    @Deprecated
     protected Map<Node, XmlNode> nodeCache = new HashMap<Node, XmlNode>();
+    /** The positions of the nodes of the last parsed document. */
+    private Map<Node, int[]> positions = Collections.emptyMap();
     
     public XmlParser(XmlParserOptions parserOptions) {
 	this.parserOptions = parserOptions;
@@ -79,6 +86,7 @@ public class XmlParser {
         xmlReader.setEntityResolver(parserOptions.getEntityResolver());
 
         xmlReader.parse(new InputSource(reader));
+        positions = handler.getPositions();
         return handler.getDocument();
 	} catch (ParserConfigurationException e) {
 	    throw new ParseException(e);
@@ -94,11 +102,13 @@ public class XmlParser {
      * @see http://eyalsch.wordpress.com/2010/11/30/xml-dom-2/
      */
     private static class LineNumberAwareSaxHandler extends DefaultHandler2 {
-        public static final String BEGIN_LINE = "pmd:beginLine";
-        public static final String BEGIN_COLUMN = "pmd:beginColumn";
-        public static final String END_LINE = "pmd:endLine";
-        public static final String END_COLUMN = "pmd:endColumn";
+        private static final int BEGIN_LINE = 0;
+        private static final int BEGIN_COLUMN = 1;
+        private static final int END_LINE = 2;
+        private static final int END_COLUMN = 3;
 
+        /** begin line, begin column, end line, end column of each node; kept aside, as DOM user data is slow */
+        private final Map<Node, int[]> positions = new IdentityHashMap<Node, int[]>();
         private Stack<Node> nodeStack = new Stack<Node>();
         private StringBuilder text = new StringBuilder();
         private int beginLineText = -1;
@@ -130,6 +140,31 @@ public class XmlParser {
             return document;
         }
 
+        public Map<Node, int[]> getPositions() {
+            return positions;
+        }
+
+        private int[] getPosition(Node node) {
+            int[] position = positions.get(node);
+            if (position == null) {
+                position = new int[] { -1, -1, -1, -1 };
+                positions.put(node, position);
+            }
+            return position;
+        }
+
+        private void setBegin(Node node, int line, int column) {
+            int[] position = getPosition(node);
+            position[BEGIN_LINE] = line;
+            position[BEGIN_COLUMN] = column;
+        }
+
+        private void setEnd(Node node, int line, int column) {
+            int[] position = getPosition(node);
+            position[END_LINE] = line;
+            position[END_COLUMN] = column;
+        }
+
         @Override
         public void setDocumentLocator(Locator locator) {
             this.locator = locator;
@@ -161,8 +196,7 @@ public class XmlParser {
                 a.setValue(attValue);
             }
 
-            element.setUserData(BEGIN_LINE, locator.getLineNumber(), null);
-            element.setUserData(BEGIN_COLUMN, locator.getColumnNumber(), null);
+            setBegin(element, locator.getLineNumber(), locator.getColumnNumber());
 
             nodeStack.push(element);
         }
@@ -176,10 +210,8 @@ public class XmlParser {
         private void addTextNode(String s, boolean alwaysAdd) {
             if (alwaysAdd || !ignoringElementContentWhitespace || s.trim().length() > 0) {
                 Text textNode = document.createTextNode(s);
-                textNode.setUserData(BEGIN_LINE, beginLineText, null);
-                textNode.setUserData(BEGIN_COLUMN, beginColumnText, null);
-                textNode.setUserData(END_LINE, locator.getLineNumber(), null);
-                textNode.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+                setBegin(textNode, beginLineText, beginColumnText);
+                setEnd(textNode, locator.getLineNumber(), locator.getColumnNumber());
                 appendChild(textNode);
             }
         }
@@ -199,20 +231,17 @@ public class XmlParser {
         public void endElement(String uri, String localName, String qName) throws SAXException {
             addTextIfNeeded(false);
             Node element = nodeStack.pop();
-            element.setUserData(END_LINE, locator.getLineNumber(), null);
-            element.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+            setEnd(element, locator.getLineNumber(), locator.getColumnNumber());
             appendChild(element);
         }
         @Override
         public void startDocument() throws SAXException {
-            document.setUserData(BEGIN_LINE, locator.getLineNumber(), null);
-            document.setUserData(BEGIN_COLUMN, locator.getColumnNumber(), null);
+            setBegin(document, locator.getLineNumber(), locator.getColumnNumber());
         }
         @Override
         public void endDocument() throws SAXException {
             addTextIfNeeded(false);
-            document.setUserData(END_LINE, locator.getLineNumber(), null);
-            document.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+            setEnd(document, locator.getLineNumber(), locator.getColumnNumber());
         }
         @Override
         public void startCDATA() throws SAXException {
@@ -224,10 +253,8 @@ public class XmlParser {
         public void endCDATA() throws SAXException {
             if (!coalescing) {
                 CDATASection cdataSection = document.createCDATASection(text.toString());
-                cdataSection.setUserData(BEGIN_LINE, beginLineText, null);
-                cdataSection.setUserData(BEGIN_COLUMN, beginColumnText, null);
-                cdataSection.setUserData(END_LINE, locator.getLineNumber(), null);
-                cdataSection.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+                setBegin(cdataSection, beginLineText, beginColumnText);
+                setEnd(cdataSection, locator.getLineNumber(), locator.getColumnNumber());
                 appendChild(cdataSection);
                 text.setLength(0);
                 cdataEnded = true;
@@ -238,10 +265,8 @@ public class XmlParser {
             if (!ignoringComments) {
                 addTextIfNeeded(false);
                 Comment comment = document.createComment(new String(ch, start, length));
-                comment.setUserData(BEGIN_LINE, locator.getLineNumber(), null);
-                comment.setUserData(BEGIN_COLUMN, locator.getColumnNumber(), null);
-                comment.setUserData(END_LINE, locator.getLineNumber(), null);
-                comment.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+                setBegin(comment, locator.getLineNumber(), locator.getColumnNumber());
+                setEnd(comment, locator.getLineNumber(), locator.getColumnNumber());
                 appendChild(comment);
             }
         }
@@ -250,8 +275,7 @@ public class XmlParser {
             DocumentType docType = documentBuilder
                     .getDOMImplementation()
                     .createDocumentType(name, publicId, systemId);
-            docType.setUserData(BEGIN_LINE, locator.getLineNumber(), null);
-            docType.setUserData(BEGIN_COLUMN, locator.getColumnNumber(), null);
+            setBegin(docType, locator.getLineNumber(), locator.getColumnNumber());
             document.appendChild(docType);
         }
         @Override
@@ -264,10 +288,8 @@ public class XmlParser {
         public void endEntity(String name) throws SAXException {
             if (!expandEntityReferences) {
                 EntityReference entity = document.createEntityReference(name);
-                entity.setUserData(BEGIN_LINE, beginLineText, null);
-                entity.setUserData(BEGIN_COLUMN, beginColumnText, null);
-                entity.setUserData(END_LINE, locator.getLineNumber(), null);
-                entity.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+                setBegin(entity, beginLineText, beginColumnText);
+                setEnd(entity, locator.getLineNumber(), locator.getColumnNumber());
                 appendChild(entity);
                 text.setLength(0); // throw the expanded entity text away
             }
@@ -275,8 +297,7 @@ public class XmlParser {
         @Override
         public void endDTD() throws SAXException {
             DocumentType doctype = document.getDoctype();
-            doctype.setUserData(END_LINE, locator.getLineNumber(), null);
-            doctype.setUserData(END_COLUMN, locator.getColumnNumber(), null);
+            setEnd(doctype, locator.getLineNumber(), locator.getColumnNumber());
         }
         @Override
         public void internalEntityDecl(String name, String value) throws SAXException {
@@ -309,9 +330,57 @@ public class XmlParser {
 
     public XmlNode parse(Reader reader) {
 	Document document = parseDocument(reader);
-	return createProxy(document);
+	XmlNodeImpl root = new RootXmlNode(document);
+	buildTree(root, document);
+	return root;
     }
 
+    /**
+     * Creates the AST nodes for the DOM children of the given node, depth first.
+     * As before with the DOM proxies, the children of the document have no parent.
+     */
+    private void buildTree(XmlNodeImpl xmlNode, Node node) {
+	setPosition(xmlNode, node);
+	// siblings are followed instead of using NodeList.item(), which gets slow
+	// on large documents as the DOM keeps only one NodeList cache
+	int length = 0;
+	for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+	    length++;
+	}
+	if (length == 0) {
+	    return;
+	}
+	net.sourceforge.pmd.lang.ast.Node[] children = new net.sourceforge.pmd.lang.ast.Node[length];
+	int i = 0;
+	for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+	    XmlNodeImpl xmlChild = new XmlNodeImpl(child);
+	    if (!(node instanceof Document)) {
+		xmlChild.setParent(xmlNode);
+	    }
+	    buildTree(xmlChild, child);
+	    children[i++] = xmlChild;
+	}
+	xmlNode.setChildren(children);
+    }
+
+    private void setPosition(XmlNodeImpl xmlNode, Node node) {
+	int[] position = positions.get(node);
+	if (position != null) {
+	    xmlNode.setPosition(position[0], position[1], position[2], position[3]);
+	} else {
+	    xmlNode.setPosition(-1, -1, -1, -1);
+	}
+    }
+
+    /**
+     * Wraps a DOM node of the last parsed document in a proxy, which
+     * implements {@link XmlNode} and all the DOM interfaces of the node.
+     *
+     * @deprecated {@link #parse(Reader)} returns {@link XmlNodeImpl} nodes,
+     *             use {@link XmlNode#getNode()} to get their DOM node. The
+     *             proxies are much slower and will be removed.
+     */
+    @Deprecated
     public XmlNode createProxy(Node node) {
 	XmlNode proxy = nodeCache.get(node);
 	if (proxy != null) {
@@ -332,6 +401,10 @@ public class XmlParser {
 	return proxy;
     }
 
+    /**
+     * @deprecated only used by {@link #createProxy(Node)}
+     */
+    @Deprecated
     public void addAllInterfaces(Set<Class<?>> interfaces, Class<?> clazz) {
 	interfaces.addAll(Arrays.asList((Class<?>[]) clazz.getInterfaces()));
 	if (clazz.getSuperclass() != null) {
@@ -339,6 +412,10 @@ public class XmlParser {
 	}
     }
 
+    /**
+     * @deprecated only used by {@link #createProxy(Node)}
+     */
+    @Deprecated
     public class XmlNodeInvocationHandler implements InvocationHandler {
 	private final Node node;
 	private Object userData;
@@ -398,18 +475,15 @@ public class XmlParser {
 					.getData())).iterator());
 		    }
 
-		    // Expose Java Attributes
-		    // iterators.add(new AttributeAxisIterator((net.sourceforge.pmd.lang.ast.Node) p));
-
 		    return new CompoundIterator<Attribute>(iterators.toArray(new Iterator[iterators.size()]));
 		} else if ("getBeginLine".equals(method.getName())) {
-		    return getUserData(LineNumberAwareSaxHandler.BEGIN_LINE);
+		    return getPosition(0);
 		} else if ("getBeginColumn".equals(method.getName())) {
-            return getUserData(LineNumberAwareSaxHandler.BEGIN_COLUMN);
+		    return getPosition(1);
 		} else if ("getEndLine".equals(method.getName())) {
-		    return getUserData(LineNumberAwareSaxHandler.END_LINE);
+		    return getPosition(2);
 		} else if ("getEndColumn".equals(method.getName())) {
-		    return getUserData(LineNumberAwareSaxHandler.END_COLUMN);
+		    return getPosition(3);
 		} else if ("getNode".equals(method.getName())) {
 		    return node;
 		} else if ("getUserData".equals(method.getName())) {
@@ -434,11 +508,18 @@ public class XmlParser {
 	    }
 	}
 
-    private Integer getUserData(String key) {
-        if (node.getUserData(key) != null) {
-            return (Integer)node.getUserData(key);
-        }
-        return Integer.valueOf(-1);
+	private Integer getPosition(int index) {
+	    int[] position = positions.get(node);
+	    return Integer.valueOf(position == null ? -1 : position[index]);
+	}
     }
+
+    /**
+     * The document node.
+     */
+    private static class RootXmlNode extends XmlNodeImpl implements RootNode {
+	RootXmlNode(Document document) {
+	    super(document);
+	}
     }
 }
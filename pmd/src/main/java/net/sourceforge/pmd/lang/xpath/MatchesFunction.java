@@ -4,10 +4,9 @@
 package net.sourceforge.pmd.lang.xpath;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.sourceforge.pmd.lang.ast.xpath.Attribute;
+import net.sourceforge.pmd.util.PatternCache;
 
 import org.jaxen.Context;
 import org.jaxen.Function;
@@ -30,24 +29,17 @@ public class MatchesFunction implements Function {
         List attributes = (List) args.get(0);
         Attribute attr = (Attribute) attributes.get(0);
 
+        String[] patterns = new String[args.size() - 1];
         for(int i = 1; i < args.size(); i++) {
-            Pattern check = Pattern.compile((String) args.get(i));
-            Matcher matcher = check.matcher(attr.getStringValue());
-            if (matcher.find()) {
-                return context.getNodeSet();
-            }
+            patterns[i - 1] = (String) args.get(i);
+        }
+        if (PatternCache.findAny(attr.getStringValue(), patterns)) {
+            return context.getNodeSet();
         }
         return Boolean.FALSE;
     }
 
     public static boolean matches(String s, String... patterns) {
-	for (String pattern: patterns) {
-            Pattern check = Pattern.compile(pattern);
-            Matcher matcher = check.matcher(s);
-            if (matcher.find()) {
-        	return true;
-            }
-        }
-        return false;
+        return PatternCache.findAny(s, patterns);
     }
 }
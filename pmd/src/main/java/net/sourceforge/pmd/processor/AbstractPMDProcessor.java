@@ -5,6 +5,8 @@ package net.sourceforge.pmd.processor;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
@@ -50,6 +52,22 @@ public abstract class AbstractPMDProcessor {
 			 );
 	}
 
+	/**
+	 * Creates the executor applying the rule groups of the large files of a run,
+	 * see {@link PMDConfiguration#getRuleGroups()}. The caller shuts it down at
+	 * the end of the run.
+	 *
+	 * @return the executor, or <code>null</code> if the rules aren't split into groups
+	 */
+	protected ExecutorService createRuleGroupExecutor() {
+		int groups = configuration.getRuleGroups();
+		if (groups <= 1) {
+			return null;
+		}
+		// each processing thread may wait for the other groups of its file at the same time
+		return Executors.newFixedThreadPool((groups - 1) * Math.max(1, configuration.getThreads()));
+	}
+
 	protected RuleSets createRuleSets(RuleSetFactory factory) {
 		
 		try {
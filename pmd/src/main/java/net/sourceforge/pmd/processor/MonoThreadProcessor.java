@@ -7,6 +7,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,7 +41,20 @@ public final class MonoThreadProcessor extends AbstractPMDProcessor {
 
 		RuleSets rs = createRuleSets(ruleSetFactory);
 		SourceCodeProcessor processor = new SourceCodeProcessor(configuration);
-		
+		ExecutorService ruleGroupExecutor = createRuleGroupExecutor();
+		processor.setRuleGroupExecutor(ruleGroupExecutor);
+
+		try {
+			processFiles(files, ctx, renderers, rs, processor);
+		} finally {
+			if (ruleGroupExecutor != null) {
+				ruleGroupExecutor.shutdownNow();
+			}
+		}
+	}
+
+	private void processFiles(List<DataSource> files, RuleContext ctx, List<Renderer> renderers,
+			RuleSets rs, SourceCodeProcessor processor) {
 		for (DataSource dataSource : files) {
 			String niceFileName = filenameFrom(dataSource);
 					
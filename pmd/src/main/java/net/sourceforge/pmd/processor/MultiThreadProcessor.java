@@ -41,19 +41,26 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
 		PmdThreadFactory factory = new PmdThreadFactory(ruleSetFactory, ctx);
 		ExecutorService executor = Executors.newFixedThreadPool(
 				configuration.getThreads(), factory);
+		ExecutorService ruleGroupExecutor = createRuleGroupExecutor();
 		List<Future<Report>> tasks = new LinkedList<Future<Report>>();
 
-		for (DataSource dataSource : files) {
-			String niceFileName = filenameFrom(dataSource);
+		try {
+			for (DataSource dataSource : files) {
+				String niceFileName = filenameFrom(dataSource);
 
-			PmdRunnable r = new PmdRunnable(executor, configuration,
-					dataSource, niceFileName, renderers);
-			Future<Report> future = executor.submit(r);
-			tasks.add(future);
-		}
-		executor.shutdown();
+				PmdRunnable r = new PmdRunnable(executor, ruleGroupExecutor, configuration,
+						dataSource, niceFileName, renderers);
+				Future<Report> future = executor.submit(r);
+				tasks.add(future);
+			}
+			executor.shutdown();
 
-		processReports(renderers, tasks);
+			processReports(renderers, tasks);
+		} finally {
+			if (ruleGroupExecutor != null) {
+				ruleGroupExecutor.shutdownNow();
+			}
+		}
 		
 		rs.end(ctx);
 		super.renderReports(renderers, ctx.getReport());
@@ -27,6 +27,7 @@ public class PmdRunnable extends PMD implements Callable<Report> {
 	private static final Logger LOG = Logger.getLogger(PmdRunnable.class.getName());
 
 	private final ExecutorService executor;
+	private final ExecutorService ruleGroupExecutor;
 	private final DataSource dataSource;
 	private final String fileName;
 	private final List<Renderer> renderers;
@@ -34,8 +35,19 @@ public class PmdRunnable extends PMD implements Callable<Report> {
 	public PmdRunnable(ExecutorService executor,
 			PMDConfiguration configuration, DataSource dataSource,
 			String fileName, List<Renderer> renderers) {
+		this(executor, null, configuration, dataSource, fileName, renderers);
+	}
+
+	/**
+	 * @param ruleGroupExecutor the executor applying the rule groups of large
+	 *            files, shared by the whole run, or <code>null</code>
+	 */
+	public PmdRunnable(ExecutorService executor, ExecutorService ruleGroupExecutor,
+			PMDConfiguration configuration, DataSource dataSource,
+			String fileName, List<Renderer> renderers) {
 		super(configuration);
 		this.executor = executor;
+		this.ruleGroupExecutor = ruleGroupExecutor;
 		this.dataSource = dataSource;
 		this.fileName = fileName;
 		this.renderers = renderers;
@@ -75,6 +87,7 @@ public class PmdRunnable extends PMD implements Callable<Report> {
 			InputStream stream = new BufferedInputStream(
 					dataSource.getInputStream());
 			ctx.setLanguageVersion(null);
+			this.getSourceCodeProcessor().setRuleGroupExecutor(ruleGroupExecutor);
 			this.getSourceCodeProcessor().processSourceCode(stream, rs, ctx);
 		} catch (PMDException pmde) {
 			LOG.log(Level.FINE, "Error while processing file: "+fileName, pmde.getCause());
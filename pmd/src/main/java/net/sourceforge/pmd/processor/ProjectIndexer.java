@@ -0,0 +1,129 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.processor;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
+import net.sourceforge.pmd.util.SystemUtils;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The first pass of a PMD run with a project index: the Java source files
+ * are parsed, on all configured threads, and their type declarations are
+ * collected into a {@link ProjectIndex}.  The rules are applied in the second
+ * pass, with read-only access to the index.
+ *
+ * @see PMDConfiguration#isProjectIndex()
+ */
+public final class ProjectIndexer {
+
+	private static final Logger LOG = Logger.getLogger(ProjectIndexer.class.getName());
+
+	private ProjectIndexer() {
+	}
+
+	/**
+	 * Index the Java source files.
+	 *
+	 * @param configuration the configuration
+	 * @param files the files, the other languages are skipped
+	 * @param base the index of a previous run, whose types are replaced by those of the files, or <code>null</code>
+	 * @return the index
+	 * @throws IllegalStateException if a file couldn't be indexed or the thread was interrupted,
+	 *             a partial index would make the rules report wrong violations
+	 */
+	public static ProjectIndex createIndex(final PMDConfiguration configuration, List<DataSource> files,
+			ProjectIndex base) {
+
+		long start = System.nanoTime();
+		final ProjectIndex.Builder builder = new ProjectIndex.Builder(base, configuration.getClassLoader());
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(files.size());
+		for (final DataSource dataSource : files) {
+			final String fileName = dataSource.getNiceFileName(configuration.isReportShortNames(),
+					configuration.getInputPaths());
+			final LanguageVersion languageVersion = configuration.getLanguageVersionOfFile(fileName);
+			if (languageVersion == null || languageVersion.getLanguage() != Language.JAVA) {
+				continue;
+			}
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					index(configuration, builder, dataSource, fileName, languageVersion);
+					return null;
+				}
+			});
+		}
+
+		if (SystemUtils.MT_SUPPORTED && configuration.getThreads() > 0) {
+			ExecutorService executor = Executors.newFixedThreadPool(configuration.getThreads());
+			try {
+				for (Future<Object> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Indexing interrupted", ie);
+			} catch (ExecutionException ee) {
+				throw new IllegalStateException("Indexing failed", ee.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		} else {
+			for (Callable<Object> task : tasks) {
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new IllegalStateException("Indexing failed", e);
+				}
+			}
+		}
+
+		ProjectIndex index = builder.build();
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("Indexed " + index.getTypes().size() + " types of " + tasks.size() + " files in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+		return index;
+	}
+
+	private static void index(PMDConfiguration configuration, ProjectIndex.Builder builder, DataSource dataSource,
+			String fileName, LanguageVersion languageVersion) {
+
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new BufferedInputStream(dataSource.getInputStream()),
+					configuration.getSourceEncoding());
+			Node rootNode = PMD.parserFor(languageVersion, configuration).parse(fileName, reader);
+			builder.add(fileName, (ASTCompilationUnit) rootNode);
+		} catch (IOException ioe) {
+			LOG.log(Level.FINE, "Unable to index " + fileName, ioe);
+		} catch (ParseException pe) {
+			// reported by the second pass
+			LOG.log(Level.FINE, "Unable to index " + fileName, pe);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.processor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.pmd.util.FileUtil;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A file level dependency map between Java compilation units. The map is
+ * built from the package declaration and the import statements of each file,
+ * the primary type of a file is derived from its file name (as the compiler
+ * requires it for public types).
+ * <p>
+ * The map is deliberately conservative: a file depends on another one if
+ * it imports its primary type (directly, on demand or statically) or if both
+ * live in the same package. This is the set of files whose type resolution
+ * results may change, when the other file changes.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SourceDependencyMap {
+
+	private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w\\.]+)\\s*;");
+	private static final Pattern IMPORT = Pattern.compile("^\\s*import\\s+(?:static\\s+)?([\\w\\.]+)(\\.\\*)?\\s*;");
+	private static final Pattern TYPE_DECLARATION = Pattern
+			.compile("^\\s*(?:(?:public|protected|private|abstract|final|static|strictfp)\\s+)*(?:class|interface|enum|@interface)\\s");
+
+	private final String encoding;
+
+	private final Map<File, String> packageOfFile = new HashMap<File, String>();
+	private final Map<File, Set<String>> referencesOfFile = new HashMap<File, Set<String>>();
+	private final Map<String, Set<File>> filesByPackage = new HashMap<String, Set<File>>();
+	private final Map<String, Set<File>> filesByReference = new HashMap<String, Set<File>>();
+
+	/**
+	 * Creates a new, empty map.
+	 * @param encoding the character encoding of the source files
+	 */
+	public SourceDependencyMap(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * (Re-)reads the package and import declarations of the given file.
+	 * Files which are not Java source files are tracked without any dependencies.
+	 * @param file the file to read
+	 * @throws IOException if the file can't be read
+	 */
+	public void update(File file) throws IOException {
+		remove(file);
+
+		Set<String> references = new HashSet<String>();
+		referencesOfFile.put(file, references);
+		if (!isJavaFile(file)) {
+			return;
+		}
+
+		String packageName;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), encoding));
+		try {
+			packageName = readDeclarations(reader, references);
+		} finally {
+			IOUtils.closeQuietly(reader);
+		}
+
+		packageOfFile.put(file, packageName);
+		index(filesByPackage, packageName, file);
+		for (String reference : references) {
+			index(filesByReference, reference, file);
+		}
+	}
+
+	/**
+	 * Reads the package and import declarations, stops at the first type declaration.
+	 * Every import is recorded under its full name and under its enclosing name,
+	 * so that imports of nested types and static members are attributed to their
+	 * declaring type, too.
+	 */
+	private static String readDeclarations(BufferedReader reader, Set<String> references) throws IOException {
+		String packageName = "";
+		String line;
+		while ((line = reader.readLine()) != null) {
+			Matcher matcher = PACKAGE.matcher(line);
+			if (matcher.find()) {
+				packageName = matcher.group(1);
+				continue;
+			}
+			matcher = IMPORT.matcher(line);
+			if (matcher.find()) {
+				String name = matcher.group(1);
+				if (matcher.group(2) != null) {
+					references.add(name + ".*");
+				}
+				references.add(name);
+				int lastDot = name.lastIndexOf('.');
+				if (lastDot > 0) {
+					references.add(name.substring(0, lastDot));
+				}
+				continue;
+			}
+			if (TYPE_DECLARATION.matcher(line).find()) {
+				break;
+			}
+		}
+		return packageName;
+	}
+
+	/**
+	 * Forgets everything known about the given file.
+	 * @param file the file, which has been deleted or is to be re-read
+	 */
+	public void remove(File file) {
+		String packageName = packageOfFile.remove(file);
+		if (packageName != null) {
+			unindex(filesByPackage, packageName, file);
+		}
+		Set<String> references = referencesOfFile.remove(file);
+		if (references != null) {
+			for (String reference : references) {
+				unindex(filesByReference, reference, file);
+			}
+		}
+	}
+
+	/**
+	 * Determines the files, which directly depend on any of the given files.
+	 * The given files themselves are not part of the result.
+	 * @param files the changed files
+	 * @return the dependent files
+	 */
+	public Set<File> dependentsOf(Collection<File> files) {
+		Set<File> dependents = new HashSet<File>();
+		for (File file : files) {
+			String packageName = packageOfFile.get(file);
+			if (packageName == null) {
+				continue;
+			}
+			String typeName = FileUtil.getFileNameWithoutExtension(file.getName());
+			String qualifiedName = packageName.length() == 0 ? typeName : packageName + "." + typeName;
+
+			addAll(dependents, filesByPackage.get(packageName));
+			addAll(dependents, filesByReference.get(qualifiedName));
+			addAll(dependents, filesByReference.get(packageName + ".*"));
+		}
+		dependents.removeAll(files);
+		return dependents;
+	}
+
+	/**
+	 * @return the number of files tracked by this map
+	 */
+	public int size() {
+		return referencesOfFile.size();
+	}
+
+	private static boolean isJavaFile(File file) {
+		return file.getName().endsWith(".java");
+	}
+
+	private static void addAll(Set<File> target, Set<File> source) {
+		if (source != null) {
+			target.addAll(source);
+		}
+	}
+
+	private static void index(Map<String, Set<File>> index, String key, File file) {
+		Set<File> files = index.get(key);
+		if (files == null) {
+			files = new HashSet<File>();
+			index.put(key, files);
+		}
+		files.add(file);
+	}
+
+	private static void unindex(Map<String, Set<File>> index, String key, File file) {
+		Set<File> files = index.get(key);
+		if (files != null) {
+			files.remove(file);
+			if (files.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * @param file a tracked file
+	 * @return the names referenced by the given file through imports
+	 */
+	public Set<String> referencesOf(File file) {
+		Set<String> references = referencesOfFile.get(file);
+		return references == null ? Collections.<String> emptySet() : Collections.unmodifiableSet(references);
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.processor;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.FileFinder;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+/**
+ * Keeps watching the input paths of a configuration and re-analyzes only the
+ * files, which changed since the last run. If the rules applying to a changed
+ * file use type resolution, the files depending on it (see {@link SourceDependencyMap})
+ * are re-analyzed, too. The reports are pushed to the given renderers as soon as
+ * a file has been processed. The renderers accumulating the report (see
+ * {@link AbstractAccumulatingRenderer}) drop the violations of the deleted files
+ * and the previous violations of the re-analyzed files, the other renderers
+ * have written them already. The renderers are ended, when the watch is interrupted.
+ * <p>
+ * Changes are detected by polling the modification time stamps of the files,
+ * archives in the input paths are not watched.
+ */
+public class WatchProcessor {
+
+	private static final Logger LOG = Logger.getLogger(WatchProcessor.class.getName());
+
+	private final PMDConfiguration configuration;
+	private final RuleSetFactory ruleSetFactory;
+	private final RuleSets ruleSets;
+	private final FilenameFilter fileFilter;
+	private final List<Renderer> renderers;
+
+	private final Map<File, Long> timestamps = new HashMap<File, Long>();
+	private final SourceDependencyMap dependencies;
+
+	public WatchProcessor(PMDConfiguration configuration, RuleSetFactory ruleSetFactory, RuleSets ruleSets,
+			FilenameFilter fileFilter, List<Renderer> renderers) {
+		this.configuration = configuration;
+		this.ruleSetFactory = ruleSetFactory;
+		this.ruleSets = ruleSets;
+		this.fileFilter = fileFilter;
+		this.renderers = renderers;
+		this.dependencies = new SourceDependencyMap(configuration.getSourceEncoding());
+	}
+
+	/**
+	 * Records the current state of all files. Any change after this call
+	 * will be picked up by the next {@link #poll(RuleContext)}.
+	 */
+	public void initialize() {
+		timestamps.clear();
+		for (File file : collectFiles()) {
+			timestamps.put(file, Long.valueOf(file.lastModified()));
+			updateDependencies(file);
+		}
+	}
+
+	/**
+	 * Polls the input paths until the current thread is interrupted, then ends the renderers.
+	 * @param ctx the rule context to use
+	 */
+	public void watch(RuleContext ctx) {
+		initialize();
+		LOG.info("Watching " + timestamps.size() + " files for changes");
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Thread.sleep(configuration.getWatchInterval());
+				poll(ctx);
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} finally {
+			endRenderers();
+		}
+	}
+
+	/**
+	 * Checks the input paths once and re-analyzes the changed files and their dependents.
+	 * @param ctx the rule context to use
+	 * @return the files, which have been analyzed
+	 */
+	public Set<File> poll(RuleContext ctx) {
+		Set<File> changed = new HashSet<File>();
+		Set<File> current = new HashSet<File>(collectFiles());
+
+		for (File file : current) {
+			Long lastModified = Long.valueOf(file.lastModified());
+			if (!lastModified.equals(timestamps.put(file, lastModified))) {
+				changed.add(file);
+			}
+		}
+		for (Iterator<File> i = timestamps.keySet().iterator(); i.hasNext();) {
+			File file = i.next();
+			if (!current.contains(file)) {
+				i.remove();
+				changed.add(file);
+			}
+		}
+		if (changed.isEmpty()) {
+			return changed;
+		}
+
+		// dependents are computed twice: before the update for the old imports
+		// (e.g. a type has been moved) and after the update for the new ones.
+		Set<File> toAnalyze = new HashSet<File>(changed);
+		toAnalyze.addAll(typeResolutionDependents(changed));
+		for (File file : changed) {
+			if (current.contains(file)) {
+				updateDependencies(file);
+			} else {
+				dependencies.remove(file);
+			}
+		}
+		toAnalyze.addAll(typeResolutionDependents(changed));
+		toAnalyze.retainAll(current);
+
+		Set<File> removed = new HashSet<File>(changed);
+		removed.removeAll(current);
+		removed.addAll(toAnalyze);
+		removeFileReports(removed);
+
+		LOG.fine(changed.size() + " files changed, re-analyzing " + toAnalyze.size() + " files");
+		analyze(toAnalyze, ctx);
+		return toAnalyze;
+	}
+
+	private Set<File> typeResolutionDependents(Set<File> changed) {
+		Set<File> sensitive = new HashSet<File>();
+		for (File file : changed) {
+			LanguageVersion languageVersion = configuration.getLanguageVersionOfFile(file.getName());
+			if (languageVersion != null && ruleSets.usesTypeResolution(languageVersion.getLanguage())) {
+				sensitive.add(file);
+			}
+		}
+		return sensitive.isEmpty() ? sensitive : dependencies.dependentsOf(sensitive);
+	}
+
+	private void analyze(Set<File> files, RuleContext ctx) {
+		if (files.isEmpty()) {
+			return;
+		}
+		List<DataSource> dataSources = new ArrayList<DataSource>(files.size());
+		for (File file : files) {
+			dataSources.add(new FileDataSource(file));
+		}
+		PMD.processFiles(configuration, ruleSetFactory, dataSources, ctx, renderers);
+
+		for (Renderer renderer : renderers) {
+			if (renderer.getWriter() == null) {
+				continue;
+			}
+			try {
+				renderer.getWriter().flush();
+			} catch (IOException ioe) {
+				LOG.log(Level.WARNING, "Unable to flush report", ioe);
+			}
+		}
+	}
+
+	private void removeFileReports(Set<File> files) {
+		for (Renderer renderer : renderers) {
+			if (!(renderer instanceof AbstractAccumulatingRenderer)) {
+				continue;
+			}
+			for (File file : files) {
+				String fileName = new FileDataSource(file).getNiceFileName(configuration.isReportShortNames(),
+						configuration.getInputPaths());
+				((AbstractAccumulatingRenderer) renderer).removeFileReport(fileName);
+			}
+		}
+	}
+
+	private void endRenderers() {
+		for (Renderer renderer : renderers) {
+			try {
+				renderer.end();
+				renderer.flush();
+			} catch (IOException ioe) {
+				LOG.log(Level.WARNING, "Unable to end report", ioe);
+			}
+		}
+	}
+
+	private void updateDependencies(File file) {
+		try {
+			dependencies.update(file);
+		} catch (IOException ioe) {
+			LOG.log(Level.FINE, "Unable to read dependencies of " + file, ioe);
+			dependencies.remove(file);
+		}
+	}
+
+	private List<File> collectFiles() {
+		List<File> files = new ArrayList<File>();
+		String inputPaths = configuration.getInputPaths();
+		if (inputPaths == null) {
+			return files;
+		}
+		FileFinder finder = new FileFinder();
+		for (String inputPath : inputPaths.split(",")) {
+			File location = new File(inputPath);
+			if (location.isDirectory()) {
+				files.addAll(finder.findFilesFrom(location.getAbsolutePath(), new DirectoryOrFileFilter(fileFilter), true));
+			} else if (location.isFile() && fileFilter.accept(location.getParentFile(), location.getName())) {
+				files.add(location.getAbsoluteFile());
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Accepts any directory, so that {@link FileFinder} can descend into it,
+	 * and the files accepted by the wrapped filter.
+	 */
+	private static class DirectoryOrFileFilter implements FilenameFilter {
+		private final FilenameFilter filter;
+
+		public DirectoryOrFileFilter(FilenameFilter filter) {
+			this.filter = filter;
+		}
+
+		public boolean accept(File dir, String name) {
+			return new File(dir, name).isDirectory() || filter.accept(dir, name);
+		}
+	}
+}
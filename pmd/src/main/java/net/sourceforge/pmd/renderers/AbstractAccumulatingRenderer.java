@@ -51,6 +51,17 @@ public abstract class AbstractAccumulatingRenderer extends AbstractRenderer {
 	this.report.merge(report);
     }
 
+    /**
+     * Drops the violations and errors of a file from the accumulated report,
+     * e.g. when the file has been deleted in watch mode.
+     *
+     * @param fileName the name of the file as reported by its violations
+     * @see Report#removeFile(String)
+     */
+    public void removeFileReport(String fileName) {
+	report.removeFile(fileName);
+    }
+
     /**
      * Subclasses should output the {@link #report}.
      * 
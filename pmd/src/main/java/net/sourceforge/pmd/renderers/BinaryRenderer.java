@@ -0,0 +1,148 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.renderers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+/**
+ * Renderer to a compact binary format, which can be memory mapped and
+ * compared against a baseline with {@link BinaryReport}.
+ * <p>
+ * The format consists of a header, fixed-width violation records and a string
+ * table, which is written at the end. All numbers are big-endian.
+ * <pre>
+ * header:   int magic, int version
+ * records:  RECORD_SIZE bytes each, see BinaryReport for the layout
+ * strings:  for each string: short length, UTF-8 bytes (as by DataOutput.writeUTF)
+ * trailer:  long string table offset, int record count, int string count, int magic
+ * </pre>
+ * Since the trailer has a fixed size, a reader can locate the string table
+ * and the records without parsing the whole file. Rule, rule set, file,
+ * package and class names as well as the messages are stored only once in
+ * the string table.
+ * <p>
+ * This renderer needs a byte stream and can't write to a {@link java.io.Writer}.
+ * Use {@link #setOutputStream(OutputStream)} instead of {@link #setWriter(java.io.Writer)}.
+ */
+public class BinaryRenderer extends AbstractRenderer {
+
+    public static final String NAME = "binary";
+
+    /** Longer strings are truncated, so that they fit into {@link DataOutputStream#writeUTF(String)}. */
+    private static final int MAX_STRING_LENGTH = 16 * 1024;
+
+    private DataOutputStream out;
+    private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+    private int recordCount;
+
+    public BinaryRenderer() {
+	super(NAME, "Compact binary format, to be compared against a baseline.");
+    }
+
+    public String defaultFileExtension() { return "pmdbin"; }
+
+    /**
+     * Sets the stream to which the binary report is written.
+     * @param outputStream the output stream
+     */
+    public void setOutputStream(OutputStream outputStream) {
+	this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void start() throws IOException {
+	if (out == null) {
+	    throw new IllegalStateException("The binary renderer needs an output stream, not a writer");
+	}
+	stringIndexes.clear();
+	strings.clear();
+	recordCount = 0;
+	out.writeInt(BinaryReport.MAGIC);
+	out.writeInt(BinaryReport.VERSION);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startFileAnalysis(DataSource dataSource) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void renderFileReport(Report report) throws IOException {
+	for (Iterator<RuleViolation> i = report.iterator(); i.hasNext();) {
+	    RuleViolation rv = i.next();
+	    out.writeInt(indexOf(rv.getFilename()));
+	    out.writeInt(indexOf(rv.getRule().getName()));
+	    out.writeInt(indexOf(rv.getRule().getRuleSetName()));
+	    out.writeInt(indexOf(rv.getPackageName()));
+	    out.writeInt(indexOf(rv.getClassName()));
+	    out.writeInt(indexOf(rv.getMethodName()));
+	    out.writeInt(indexOf(rv.getDescription()));
+	    out.writeInt(rv.getBeginLine());
+	    out.writeInt(rv.getEndLine());
+	    out.writeInt(rv.getBeginColumn());
+	    out.writeInt(rv.getEndColumn());
+	    out.writeInt(rv.getRule().getPriority().getPriority());
+	    recordCount++;
+	}
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void end() throws IOException {
+	long stringTableOffset = BinaryReport.HEADER_SIZE + (long) recordCount * BinaryReport.RECORD_SIZE;
+	for (String s : strings) {
+	    out.writeUTF(s);
+	}
+	out.writeLong(stringTableOffset);
+	out.writeInt(recordCount);
+	out.writeInt(strings.size());
+	out.writeInt(BinaryReport.MAGIC);
+	out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+	try {
+	    out.close();
+	} catch (IOException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    private int indexOf(String s) {
+	String value = s == null ? "" : s;
+	if (value.length() > MAX_STRING_LENGTH) {
+	    value = value.substring(0, MAX_STRING_LENGTH);
+	}
+	Integer index = stringIndexes.get(value);
+	if (index == null) {
+	    index = Integer.valueOf(strings.size());
+	    strings.add(value);
+	    stringIndexes.put(value, index);
+	}
+	return index.intValue();
+    }
+}
@@ -0,0 +1,394 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.renderers;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader for reports written by {@link BinaryRenderer}. The report file is
+ * memory mapped, only the string table is decoded when the report is opened.
+ * The violation records are read on demand.
+ * <p>
+ * The layout of a violation record is:
+ * <pre>
+ * int file, int rule, int ruleset, int package, int class, int method, int message   (string table indexes)
+ * int beginline, int endline, int begincolumn, int endcolumn, int priority
+ * </pre>
+ */
+public class BinaryReport {
+
+    static final int MAGIC = 0x504d4442; // "PMDB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 12 * 4;
+    static final int TRAILER_SIZE = 8 + 4 + 4 + 4;
+
+    private static final int FILE = 0;
+    private static final int RULE = 1;
+    private static final int RULESET = 2;
+    private static final int PACKAGE = 3;
+    private static final int CLASS = 4;
+    private static final int METHOD = 5;
+    private static final int MESSAGE = 6;
+    private static final int BEGIN_LINE = 7;
+    private static final int END_LINE = 8;
+    private static final int BEGIN_COLUMN = 9;
+    private static final int END_COLUMN = 10;
+    private static final int PRIORITY = 11;
+
+    /** The string fields, which identify a violation independently of its position. */
+    private static final int KEY_FIELDS = MESSAGE + 1;
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final int recordCount;
+
+    private BinaryReport(ByteBuffer buffer, String[] strings, int recordCount) {
+	this.buffer = buffer;
+	this.strings = strings;
+	this.recordCount = recordCount;
+    }
+
+    /**
+     * Memory maps the given report file.
+     * @param file the report file written by {@link BinaryRenderer}
+     * @return the report
+     * @throws IOException if the file can't be read or is not a binary report
+     */
+    public static BinaryReport open(File file) throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    FileChannel channel = raf.getChannel();
+	    return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.getPath());
+	} finally {
+	    raf.close();
+	}
+    }
+
+    /**
+     * Reads a binary report from the given buffer.
+     * @param buffer the buffer holding the complete report
+     * @param name the name of the report, used in error messages
+     * @return the report
+     * @throws IOException if the buffer doesn't contain a binary report
+     */
+    public static BinaryReport read(ByteBuffer buffer, String name) throws IOException {
+	int size = buffer.limit();
+	if (size < HEADER_SIZE + TRAILER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+	    throw new IOException(name + " is not a binary PMD report");
+	}
+	if (buffer.getInt(4) != VERSION) {
+	    throw new IOException(name + " has the unsupported version " + buffer.getInt(4));
+	}
+	int trailer = size - TRAILER_SIZE;
+	long stringTableOffset = buffer.getLong(trailer);
+	int recordCount = buffer.getInt(trailer + 8);
+	int stringCount = buffer.getInt(trailer + 12);
+	if (stringTableOffset != HEADER_SIZE + (long) recordCount * RECORD_SIZE || stringTableOffset > trailer) {
+	    throw new IOException(name + " is corrupt");
+	}
+
+	ByteBuffer stringTable = buffer.duplicate();
+	stringTable.position((int) stringTableOffset);
+	stringTable.limit(trailer);
+	DataInputStream in = new DataInputStream(new ByteBufferInputStream(stringTable));
+	String[] strings = new String[stringCount];
+	for (int i = 0; i < stringCount; i++) {
+	    strings[i] = in.readUTF();
+	}
+	return new BinaryReport(buffer, strings, recordCount);
+    }
+
+    /**
+     * @return the number of violations in this report
+     */
+    public int size() {
+	return recordCount;
+    }
+
+    private int field(int record, int field) {
+	return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + field * 4);
+    }
+
+    private String string(int record, int field) {
+	return strings[field(record, field)];
+    }
+
+    public String getFilename(int record) {
+	return string(record, FILE);
+    }
+
+    public String getRuleName(int record) {
+	return string(record, RULE);
+    }
+
+    public String getRuleSetName(int record) {
+	return string(record, RULESET);
+    }
+
+    public String getPackageName(int record) {
+	return string(record, PACKAGE);
+    }
+
+    public String getClassName(int record) {
+	return string(record, CLASS);
+    }
+
+    public String getMethodName(int record) {
+	return string(record, METHOD);
+    }
+
+    public String getDescription(int record) {
+	return string(record, MESSAGE);
+    }
+
+    public int getBeginLine(int record) {
+	return field(record, BEGIN_LINE);
+    }
+
+    public int getEndLine(int record) {
+	return field(record, END_LINE);
+    }
+
+    public int getBeginColumn(int record) {
+	return field(record, BEGIN_COLUMN);
+    }
+
+    public int getEndColumn(int record) {
+	return field(record, END_COLUMN);
+    }
+
+    public int getPriority(int record) {
+	return field(record, PRIORITY);
+    }
+
+    /**
+     * Compares this report against a baseline report. Two violations match, if
+     * they have the same file, rule, package, class, method and message. Matching
+     * violations on the same line are paired first, the remaining ones are paired in
+     * the order of their lines, so that violations which only moved because lines
+     * were added or removed above them are considered unchanged.
+     *
+     * @param baseline the baseline report
+     * @return the differences
+     */
+    public Diff diff(BinaryReport baseline) {
+	Map<String, Integer> stringIndexes = new HashMap<String, Integer>(strings.length * 2);
+	for (int i = 0; i < strings.length; i++) {
+	    stringIndexes.put(strings[i], Integer.valueOf(i));
+	}
+	// translate the baseline's string table into ours, -1 means unknown to this report
+	int[] translated = new int[baseline.strings.length];
+	for (int i = 0; i < translated.length; i++) {
+	    Integer index = stringIndexes.get(baseline.strings[i]);
+	    translated[i] = index == null ? -1 : index.intValue();
+	}
+
+	Map<Key, List<Integer>> current = new HashMap<Key, List<Integer>>();
+	for (int record = 0; record < recordCount; record++) {
+	    int[] fields = new int[KEY_FIELDS];
+	    for (int field = 0; field < KEY_FIELDS; field++) {
+		fields[field] = field(record, field);
+	    }
+	    group(current, new Key(fields), record);
+	}
+
+	Diff diff = new Diff();
+	Map<Key, List<Integer>> previous = new HashMap<Key, List<Integer>>();
+	for (int record = 0; record < baseline.recordCount; record++) {
+	    int[] fields = new int[KEY_FIELDS];
+	    boolean known = true;
+	    for (int field = 0; field < KEY_FIELDS && known; field++) {
+		fields[field] = translated[baseline.field(record, field)];
+		known = fields[field] >= 0;
+	    }
+	    if (known) {
+		group(previous, new Key(fields), record);
+	    } else {
+		diff.removed.add(Integer.valueOf(record));
+	    }
+	}
+
+	for (Map.Entry<Key, List<Integer>> entry : current.entrySet()) {
+	    List<Integer> baselineRecords = previous.remove(entry.getKey());
+	    if (baselineRecords == null) {
+		diff.added.addAll(entry.getValue());
+	    } else {
+		match(entry.getValue(), baseline, baselineRecords, diff);
+	    }
+	}
+	for (List<Integer> records : previous.values()) {
+	    diff.removed.addAll(records);
+	}
+	Collections.sort(diff.added);
+	Collections.sort(diff.removed);
+	return diff;
+    }
+
+    private static void group(Map<Key, List<Integer>> groups, Key key, int record) {
+	List<Integer> records = groups.get(key);
+	if (records == null) {
+	    records = new ArrayList<Integer>(1);
+	    groups.put(key, records);
+	}
+	records.add(Integer.valueOf(record));
+    }
+
+    private void match(List<Integer> records, BinaryReport baseline, List<Integer> baselineRecords, Diff diff) {
+	if (records.size() == baselineRecords.size()) {
+	    diff.unchanged += records.size();
+	    return;
+	}
+	Collections.sort(records, new LineComparator(this));
+	Collections.sort(baselineRecords, new LineComparator(baseline));
+
+	// first pass: pair the violations, which didn't move
+	boolean[] matched = new boolean[records.size()];
+	boolean[] baselineMatched = new boolean[baselineRecords.size()];
+	int i = 0;
+	int j = 0;
+	while (i < records.size() && j < baselineRecords.size()) {
+	    int line = getBeginLine(records.get(i).intValue());
+	    int baselineLine = baseline.getBeginLine(baselineRecords.get(j).intValue());
+	    if (line == baselineLine) {
+		matched[i++] = true;
+		baselineMatched[j++] = true;
+		diff.unchanged++;
+	    } else if (line < baselineLine) {
+		i++;
+	    } else {
+		j++;
+	    }
+	}
+
+	// second pass: pair the remaining ones in order, they have been shifted
+	i = 0;
+	j = 0;
+	while (true) {
+	    while (i < matched.length && matched[i]) {
+		i++;
+	    }
+	    while (j < baselineMatched.length && baselineMatched[j]) {
+		j++;
+	    }
+	    if (i == matched.length || j == baselineMatched.length) {
+		break;
+	    }
+	    matched[i++] = true;
+	    baselineMatched[j++] = true;
+	    diff.unchanged++;
+	}
+
+	for (i = 0; i < matched.length; i++) {
+	    if (!matched[i]) {
+		diff.added.add(records.get(i));
+	    }
+	}
+	for (j = 0; j < baselineMatched.length; j++) {
+	    if (!baselineMatched[j]) {
+		diff.removed.add(baselineRecords.get(j));
+	    }
+	}
+    }
+
+    /**
+     * The result of {@link BinaryReport#diff(BinaryReport)}.
+     */
+    public static class Diff {
+	private final List<Integer> added = new ArrayList<Integer>();
+	private final List<Integer> removed = new ArrayList<Integer>();
+	private int unchanged;
+
+	/**
+	 * @return the indexes of the violations in the current report, which are not in the baseline
+	 */
+	public List<Integer> getAdded() {
+	    return added;
+	}
+
+	/**
+	 * @return the indexes of the violations in the baseline, which are not in the current report
+	 */
+	public List<Integer> getRemoved() {
+	    return removed;
+	}
+
+	/**
+	 * @return the number of violations found in both reports
+	 */
+	public int getUnchanged() {
+	    return unchanged;
+	}
+    }
+
+    private static final class Key {
+	private final int[] fields;
+	private final int hashCode;
+
+	Key(int[] fields) {
+	    this.fields = fields;
+	    this.hashCode = Arrays.hashCode(fields);
+	}
+
+	@Override
+	public int hashCode() {
+	    return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    return obj instanceof Key && Arrays.equals(fields, ((Key) obj).fields);
+	}
+    }
+
+    private static final class LineComparator implements Comparator<Integer> {
+	private final BinaryReport report;
+
+	LineComparator(BinaryReport report) {
+	    this.report = report;
+	}
+
+	public int compare(Integer o1, Integer o2) {
+	    int line1 = report.getBeginLine(o1.intValue());
+	    int line2 = report.getBeginLine(o2.intValue());
+	    return line1 < line2 ? -1 : line1 == line2 ? o1.compareTo(o2) : 1;
+	}
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+
+	ByteBufferInputStream(ByteBuffer buffer) {
+	    this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+	    return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+	    if (!buffer.hasRemaining()) {
+		return -1;
+	    }
+	    int count = Math.min(len, buffer.remaining());
+	    buffer.get(b, off, count);
+	    return count;
+	}
+    }
+}
@@ -4,8 +4,10 @@
 package net.sourceforge.pmd.util;
 
 import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 
@@ -28,4 +30,12 @@ public class IOUtil {
     		throw new IllegalArgumentException(e);
     	}
     }
+
+    public static OutputStream createOutputStream(String reportFile) {
+    	try {
+    		return StringUtil.isEmpty(reportFile) ? System.out : new FileOutputStream(reportFile);
+    	} catch (IOException e) {
+    		throw new IllegalArgumentException(e);
+    	}
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A cache of compiled regular expressions, shared by the rules and XPath
+ * functions which get their regular expressions as strings, e.g. from
+ * properties or XPath arguments, so each regular expression is compiled only
+ * once instead of on each use.
+ * <p>
+ * A set of regular expressions which is matched as a whole, see
+ * {@link #findAny(String, String...)}, is combined into a single alternation,
+ * so the subject is scanned only once for all of them.
+ * <p>
+ * The caches are bounded, they are cleared once they hold
+ * {@link #MAX_SIZE} entries.
+ */
+public final class PatternCache {
+
+    /**
+     * The maximum number of entries in each cache.
+     */
+    public static final int MAX_SIZE = 1000;
+
+    private static final ConcurrentMap<String, Pattern> PATTERNS = new ConcurrentHashMap<String, Pattern>();
+    private static final ConcurrentMap<List<String>, Pattern[]> COMBINED_PATTERNS = new ConcurrentHashMap<List<String>, Pattern[]>();
+
+    // back references are numbered by the position of the group in the combined pattern, and
+    // an unterminated quote or comment would swallow the expressions following it
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\(?:[1-9]|k<|Q)|#");
+
+    private PatternCache() {
+    }
+
+    /**
+     * Get the compiled pattern of a regular expression.
+     *
+     * @param regex The regular expression.
+     * @return The pattern.
+     * @throws PatternSyntaxException If the regular expression is invalid.
+     */
+    public static Pattern compile(String regex) {
+        Pattern pattern = PATTERNS.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            if (PATTERNS.size() >= MAX_SIZE) {
+                PATTERNS.clear();
+            }
+            PATTERNS.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * Return whether any of the regular expressions is found in the subject,
+     * see {@link java.util.regex.Matcher#find()}.
+     *
+     * @param subject The subject.
+     * @param regexes The regular expressions.
+     * @return <code>true</code> if any of them is found, <code>false</code> otherwise.
+     * @throws PatternSyntaxException If a regular expression is invalid.
+     */
+    public static boolean findAny(String subject, String... regexes) {
+        if (regexes.length == 0) {
+            return false;
+        }
+        if (regexes.length == 1) {
+            return compile(regexes[0]).matcher(subject).find();
+        }
+        for (Pattern pattern : compileAll(regexes)) {
+            if (pattern.matcher(subject).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compile the regular expressions into a single pattern, or into one
+     * pattern each if they can't be combined.
+     */
+    private static Pattern[] compileAll(String... regexes) {
+        Pattern[] patterns = COMBINED_PATTERNS.get(Arrays.asList(regexes));
+        if (patterns == null) {
+            patterns = new Pattern[regexes.length];
+            boolean combinable = true;
+            StringBuilder combined = new StringBuilder();
+            for (int i = 0; i < regexes.length; i++) {
+                // compiled on their own first, so an invalid expression can't be hidden by the combination
+                patterns[i] = compile(regexes[i]);
+                combinable &= !NOT_COMBINABLE.matcher(regexes[i]).find();
+                combined.append(i == 0 ? "(?:" : "|(?:").append(regexes[i]).append(')');
+            }
+            if (combinable) {
+                try {
+                    patterns = new Pattern[] { Pattern.compile(combined.toString()) };
+                } catch (PatternSyntaxException e) {
+                    // e.g. the same named group in two expressions, match them one by one
+                }
+            }
+            if (COMBINED_PATTERNS.size() >= MAX_SIZE) {
+                COMBINED_PATTERNS.clear();
+            }
+            // the key must not change with the array of the caller
+            COMBINED_PATTERNS.put(Arrays.asList(regexes.clone()), patterns);
+        }
+        return patterns;
+    }
+}
@@ -452,11 +452,16 @@ public class DBMSMetadata
                                );
 
 
+                  /* An optional fourth column is the revision of the source object,
+                   * e.g. its LAST_DDL_TIME, see SourceObjectPrefetcher
+                   */
                   sourceObjectsList.add(new SourceObject(
                                                           sourceCodeObjects.getString("PROCEDURE_SCHEM")
                                                          ,sourceCodeObjects.getString("PROCEDURE_TYPE")
                                                          ,sourceCodeObjects.getString("PROCEDURE_NAME")
-                                                         ,null
+                                                         ,(sourceCodeObjects.getMetaData().getColumnCount() > 3)
+                                                           ? sourceCodeObjects.getString(4)
+                                                           : null
                                                         ) 
                                        );
                 }
@@ -0,0 +1,516 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.util.database;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.util.datasource.DataSource;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
+
+/**
+ * Retrieve the source code of many {@link SourceObject}s in the background.
+ *
+ * <p>{@link #fetch(List)} returns immediately with one {@link PrefetchedSource} per source object,
+ * in the order of the source objects. The source code is retrieved in batches by a small number of
+ * threads, each with its own database connection. Reading a {@link PrefetchedSource} only waits if
+ * its batch has not been retrieved yet, so that PMD and CPD can process the first source objects while
+ * the others are still being retrieved.
+ * </p>
+ *
+ * <p>If a cache directory is set, the source code of every source object with a revision (e.g. the
+ * LAST_DDL_TIME of an Oracle object) is stored there and reused as long as the revision doesn't change.
+ * </p>
+ *
+ * <p>The number of connections and the batch size default to {@link #DEFAULT_CONNECTIONS} and
+ * {@link #DEFAULT_BATCH_SIZE} and may be overridden with the {@link DBType} properties
+ * <code>sourceCodeConnections</code> and <code>sourceCodeBatchSize</code>.
+ * </p>
+ */
+public class SourceObjectPrefetcher
+{
+
+  private final static Logger LOGGER = Logger.getLogger(SourceObjectPrefetcher.class.getName());
+
+  /**
+   * Optional DBType property specifying the number of connections used to retrieve the source code.
+   */
+  private final static String CONNECTIONS_PROPERTY = "sourceCodeConnections" ;
+
+  /**
+   * Optional DBType property specifying the number of source objects retrieved as one batch.
+   */
+  private final static String BATCH_SIZE_PROPERTY = "sourceCodeBatchSize" ;
+
+  public final static int DEFAULT_CONNECTIONS = 4 ;
+
+  public final static int DEFAULT_BATCH_SIZE = 25 ;
+
+  private final static String CACHE_ENCODING = "UTF-8" ;
+
+  private final DBURI dburi;
+
+  private final DBMSMetadata metadata;
+
+  private int connections = DEFAULT_CONNECTIONS;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private File cacheDirectory;
+
+  /**
+   * Create a prefetcher for the source objects of the DBURI.
+   *
+   * @param dburi the DBURI to open additional connections with
+   * @param metadata an open connection to the DBURI, which is used by the first fetching thread and closed
+   *        once all source code has been retrieved
+   */
+  public SourceObjectPrefetcher(DBURI dburi, DBMSMetadata metadata)
+  {
+    this.dburi = dburi;
+    this.metadata = metadata;
+
+    Properties properties = dburi.getDbType().getProperties();
+    connections = Integer.parseInt(properties.getProperty(CONNECTIONS_PROPERTY, String.valueOf(DEFAULT_CONNECTIONS)).trim());
+    batchSize = Integer.parseInt(properties.getProperty(BATCH_SIZE_PROPERTY, String.valueOf(DEFAULT_BATCH_SIZE)).trim());
+  }
+
+  public int getConnections()
+  {
+    return connections;
+  }
+
+  /**
+   * @param connections the maximum number of database connections to retrieve the source code with
+   */
+  public void setConnections(int connections)
+  {
+    this.connections = connections;
+  }
+
+  public int getBatchSize()
+  {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize the number of source objects retrieved at once by one connection
+   */
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  public File getCacheDirectory()
+  {
+    return cacheDirectory;
+  }
+
+  /**
+   * @param cacheDirectory the directory to cache the source code in, or <code>null</code> to disable the cache
+   */
+  public void setCacheDirectory(File cacheDirectory)
+  {
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /**
+   * Start retrieving the source code of the source objects.
+   *
+   * @param sourceObjects the source objects
+   * @return the source code of each source object, in the same order
+   */
+  public List<PrefetchedSource> fetch(List<SourceObject> sourceObjects)
+  {
+    List<PrefetchedSource> sources = new ArrayList<PrefetchedSource>(sourceObjects.size());
+    Queue<List<PrefetchedSource>> batches = new ConcurrentLinkedQueue<List<PrefetchedSource>>();
+    List<PrefetchedSource> batch = null;
+    for (SourceObject sourceObject : sourceObjects)
+    {
+      PrefetchedSource source = new PrefetchedSource(sourceObject);
+      sources.add(source);
+      if (!readCache(source))
+      {
+        if (null == batch || batch.size() == batchSize)
+        {
+          batch = new ArrayList<PrefetchedSource>(batchSize);
+          batches.add(batch);
+        }
+        batch.add(source);
+      }
+    }
+
+    // one fetcher is started anyway, it closes the connection passed in
+    int threads = Math.max(1, Math.min(connections, batches.size()));
+    LOGGER.fine(String.format("Retrieving %d of %d source objects in %d batches with %d connections"
+                             ,countPending(batches)
+                             ,sourceObjects.size()
+                             ,batches.size()
+                             ,threads
+                             ));
+    for (int i = 0; i < threads; i++)
+    {
+      Thread thread = new Thread(new Fetcher(i == 0 ? metadata : null, batches), "PMD source fetcher " + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+    return sources;
+  }
+
+  private static int countPending(Queue<List<PrefetchedSource>> batches)
+  {
+    int pending = 0;
+    for (List<PrefetchedSource> batch : batches)
+    {
+      pending += batch.size();
+    }
+    return pending;
+  }
+
+  /**
+   * Retrieves batches until there are none left, then closes its connection.
+   * If it is stopped by an {@link Error}, the sources it didn't retrieve are completed with the error,
+   * so that nobody waits for them forever.
+   */
+  private class Fetcher implements Runnable
+  {
+    private DBMSMetadata connection;
+    private final Queue<List<PrefetchedSource>> batches;
+
+    Fetcher(DBMSMetadata connection, Queue<List<PrefetchedSource>> batches)
+    {
+      this.connection = connection;
+      this.batches = batches;
+    }
+
+    public void run()
+    {
+      List<PrefetchedSource> batch = null;
+      Error error = null;
+      try
+      {
+        if (null == connection)
+        {
+          try
+          {
+            connection = new DBMSMetadata(dburi);
+          }
+          catch (Exception e)
+          {
+            // the other fetchers take over the batches
+            LOGGER.log(Level.WARNING, "Cannot open additional connection for DBURI " + dburi, e);
+            return;
+          }
+        }
+
+        while (null != (batch = batches.poll()))
+        {
+          for (PrefetchedSource source : batch)
+          {
+            fetch(source);
+          }
+        }
+      }
+      catch (Error e)
+      {
+        error = e;
+        throw e;
+      }
+      finally
+      {
+        close();
+        if (null != error)
+        {
+          // the other fetchers may well be stopped by the same error
+          if (null == batch)
+          {
+            batch = batches.poll();
+          }
+          for (; null != batch; batch = batches.poll())
+          {
+            for (PrefetchedSource source : batch)
+            {
+              if (!source.isDone())
+              {
+                source.complete(null, error);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    private void fetch(PrefetchedSource source)
+    {
+      try
+      {
+        Reader reader = connection.getSourceCode(source.getSourceObject());
+        String content;
+        try
+        {
+          content = IOUtils.toString(reader);
+        }
+        finally
+        {
+          IOUtils.closeQuietly(reader);
+        }
+        writeCache(source.getSourceObject(), content);
+        source.complete(content, null);
+      }
+      catch (SQLException e)
+      {
+        source.complete(null, e);
+      }
+      catch (IOException e)
+      {
+        source.complete(null, e);
+      }
+      catch (RuntimeException e)
+      {
+        source.complete(null, e);
+      }
+    }
+
+    private void close()
+    {
+      if (null != connection)
+      {
+        try
+        {
+          connection.getConnection().close();
+        }
+        catch (SQLException e)
+        {
+          LOGGER.log(Level.FINE, "Cannot close connection", e);
+        }
+      }
+    }
+  }
+
+  private File cacheFile(SourceObject sourceObject)
+  {
+    File directory = new File(new File(cacheDirectory, escape(sourceObject.getSchema())), escape(sourceObject.getType()));
+    return new File(directory, escape(sourceObject.getName()));
+  }
+
+  /**
+   * Make a database identifier usable as file name: anything but letters, digits, '_' and '$' is replaced.
+   */
+  private static String escape(String identifier)
+  {
+    if (null == identifier)
+    {
+      return "_null_";
+    }
+    StringBuilder sb = new StringBuilder(identifier.length());
+    for (int i = 0; i < identifier.length(); i++)
+    {
+      char c = identifier.charAt(i);
+      if (c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '$'))
+      {
+        sb.append(c);
+      }
+      else
+      {
+        sb.append('%').append(Integer.toHexString(c));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The cache file starts with a line containing the revision, followed by the source code.
+   */
+  private boolean readCache(PrefetchedSource source)
+  {
+    String revision = source.getSourceObject().getRevision();
+    if (null == cacheDirectory || null == revision)
+    {
+      return false;
+    }
+    File file = cacheFile(source.getSourceObject());
+    if (!file.isFile())
+    {
+      return false;
+    }
+    BufferedReader reader = null;
+    try
+    {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CACHE_ENCODING));
+      if (!revision.equals(reader.readLine()))
+      {
+        return false;
+      }
+      source.complete(IOUtils.toString(reader), null);
+      return true;
+    }
+    catch (IOException e)
+    {
+      LOGGER.log(Level.FINE, "Cannot read cached source code " + file, e);
+      return false;
+    }
+    finally
+    {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  private void writeCache(SourceObject sourceObject, String content)
+  {
+    String revision = sourceObject.getRevision();
+    if (null == cacheDirectory || null == revision)
+    {
+      return;
+    }
+    File file = cacheFile(sourceObject);
+    File tempFile = null;
+    Writer writer = null;
+    try
+    {
+      if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs())
+      {
+        throw new IOException("Cannot create directory " + file.getParentFile());
+      }
+      // written to a temporary file first, a partially written file never looks like a valid cache entry
+      tempFile = File.createTempFile("source-", ".tmp", file.getParentFile());
+      writer = new OutputStreamWriter(new FileOutputStream(tempFile), CACHE_ENCODING);
+      writer.write(revision);
+      writer.write('\n');
+      writer.write(content);
+      writer.close();
+      writer = null;
+      if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file)))
+      {
+        throw new IOException("Cannot rename " + tempFile + " to " + file);
+      }
+      tempFile = null;
+    }
+    catch (IOException e)
+    {
+      LOGGER.log(Level.WARNING, "Cannot cache source code in " + file, e);
+    }
+    finally
+    {
+      IOUtils.closeQuietly(writer);
+      if (null != tempFile)
+      {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * The source code of a source object, which may still be being retrieved.
+   */
+  public static class PrefetchedSource implements DataSource
+  {
+    private final SourceObject sourceObject;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile String content;
+    private volatile Throwable failure;
+
+    PrefetchedSource(SourceObject sourceObject)
+    {
+      this.sourceObject = sourceObject;
+    }
+
+    void complete(String content, Throwable failure)
+    {
+      this.content = content;
+      this.failure = failure;
+      done.countDown();
+    }
+
+    boolean isDone()
+    {
+      return 0 == done.getCount();
+    }
+
+    public SourceObject getSourceObject()
+    {
+      return sourceObject;
+    }
+
+    /**
+     * Return the source code, waiting for it to be retrieved.
+     *
+     * @return source code
+     * @throws SQLException on failing to retrieve the source code
+     * @throws IOException on failing to read the source code, or if interrupted while waiting
+     */
+    public Reader getReader() throws SQLException, IOException
+    {
+      try
+      {
+        done.await();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while retrieving " + getPseudoFileName());
+      }
+      if (failure instanceof SQLException)
+      {
+        throw (SQLException) failure;
+      }
+      if (null != failure)
+      {
+        IOException ioe = new IOException("Cannot retrieve " + getPseudoFileName());
+        ioe.initCause(failure);
+        throw ioe;
+      }
+      return new StringReader(content);
+    }
+
+    /**
+     * Return the source code as stream, like {@link net.sourceforge.pmd.util.datasource.ReaderDataSource} does.
+     *
+     * <p>If the source code can't be retrieved, a warning is logged and an empty stream is returned,
+     * so that a single source object doesn't stop the processing of all others.
+     * </p>
+     */
+    public InputStream getInputStream() throws IOException
+    {
+      try
+      {
+        return new ReaderInputStream(getReader());
+      }
+      catch (SQLException e)
+      {
+        LOGGER.log(Level.WARNING, "Cannot get SourceCode for " + getPseudoFileName() + "  - skipping ...", e);
+        return new ReaderInputStream(new StringReader(""));
+      }
+    }
+
+    public String getNiceFileName(boolean shortNames, String inputFileName)
+    {
+      return getPseudoFileName();
+    }
+
+    public String getPseudoFileName()
+    {
+      return sourceObject.getPseudoFileName();
+    }
+  }
+}
@@ -24,7 +24,6 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -111,6 +110,7 @@ import net.sourceforge.pmd.lang.symboltable.NameDeclaration;
 import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
 import net.sourceforge.pmd.lang.symboltable.Scope;
 import net.sourceforge.pmd.lang.symboltable.ScopedNode;
+import net.sourceforge.pmd.lang.xml.ast.XmlNode;
 import net.sourceforge.pmd.lang.xpath.Initializer;
 import net.sourceforge.pmd.util.StringUtil;
 
@@ -623,7 +623,7 @@ public class Designer implements ClipboardOwner {
 				Node node = (Node) value;
 				StringBuffer sb = new StringBuffer();
 				String name = node.getClass().getName().substring(node.getClass().getName().lastIndexOf('.') + 1);
-				if (Proxy.isProxyClass(value.getClass())) {
+				if (value instanceof XmlNode) {
 					name = value.toString();
 				}
 				sb.append(name).append(" at line ").append(node.getBeginLine()).append(" column ").append(
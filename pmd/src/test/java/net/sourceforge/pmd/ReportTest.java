@@ -179,6 +179,24 @@ public class ReportTest extends RuleTst implements ReportListener {
             "public class Foo {} // NOPMD";
 
     // Files are grouped together now.
+    @Test
+    public void testRemoveFile() {
+        Report r = new Report();
+        RuleContext ctx = new RuleContext();
+        Rule rule = new MockRule("name", "desc", "msg", "rulesetname");
+        ctx.setSourceCodeFilename("foo");
+        r.addRuleViolation(new JavaRuleViolation(rule, ctx, getNode(10, 5, "foo"), rule.getMessage()));
+        r.addError(new Report.ProcessingError("error", "foo"));
+        ctx.setSourceCodeFilename("bar");
+        r.addRuleViolation(new JavaRuleViolation(rule, ctx, getNode(10, 5, "bar"), rule.getMessage()));
+
+        r.removeFile("foo");
+        assertEquals(1, r.size());
+        assertEquals(1, r.treeSize());
+        assertEquals("bar", r.iterator().next().getFilename());
+        assertFalse(r.hasErrors());
+    }
+
     @Test
     public void testSortedReport_File() throws IOException {
         Report r = new Report();
@@ -241,6 +241,12 @@ public class RuleSetFactoryTest {
 		assertTrue(loadFirstRule(DFA).usesDFA());
 	}
 
+	@Test
+	public void testThreadSafeFlag() throws RuleSetNotFoundException {
+		assertFalse(RuleSets.isThreadSafe(loadFirstRule(DFA)));
+		assertTrue(RuleSets.isThreadSafe(loadFirstRule(THREAD_SAFE)));
+	}
+
 	@Test
 	public void testExternalReferenceOverride() throws RuleSetNotFoundException {
 		Rule r = loadFirstRule(REF_OVERRIDE);
@@ -1373,6 +1379,14 @@ public class RuleSetFactoryTest {
 			+ PMD.EOL + "class=\"net.sourceforge.pmd.lang.rule.MockRule\">"
 			+ "<priority>3</priority>" + PMD.EOL + "</rule></ruleset>";
 
+	private static final String THREAD_SAFE = "<?xml version=\"1.0\"?>" + PMD.EOL
+			+ "<ruleset name=\"test\">" + PMD.EOL
+			+ "<description>testdesc</description>" + PMD.EOL + "<rule "
+			+ PMD.EOL + "name=\"MockRuleName\" " + PMD.EOL
+			+ "message=\"avoid the mock rule\" " + PMD.EOL + "threadSafe=\"true\" "
+			+ PMD.EOL + "class=\"net.sourceforge.pmd.lang.rule.MockRule\">"
+			+ "<priority>3</priority>" + PMD.EOL + "</rule></ruleset>";
+
 	private static final String INCLUDE_EXCLUDE_RULESET = "<?xml version=\"1.0\"?>"
 			+ PMD.EOL
 			+ "<ruleset name=\"test\">"
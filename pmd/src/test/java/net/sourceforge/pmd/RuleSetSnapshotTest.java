@@ -0,0 +1,155 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sourceforge.pmd.lang.rule.RuleReference;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RuleSetSnapshotTest {
+
+    private static final String REFERENCES = "rulesets/java/basic.xml,rulesets/java/codesize.xml,rulesets/java/naming.xml,"
+            + "rulesets/java/migrating_to_15.xml,rulesets/internal/dogfood.xml,"
+            + "rulesets/internal/all-ecmascript.xml";
+
+    private static final String CUSTOM_RULESET =
+            "<?xml version=\"1.0\"?>" + PMD.EOL +
+            "<ruleset name=\"custom\">" + PMD.EOL +
+            "<description>custom rules</description>" + PMD.EOL +
+            "<exclude-pattern>.*/generated/.*</exclude-pattern>" + PMD.EOL +
+            "<rule name=\"NoFoo\" language=\"java\" since=\"5.1\" message=\"MESSAGE\" class=\"net.sourceforge.pmd.lang.rule.XPathRule\">" + PMD.EOL +
+            "<description>no foo</description>" + PMD.EOL +
+            "<priority>2</priority>" + PMD.EOL +
+            "<properties>" + PMD.EOL +
+            "<property name=\"xpath\"><value>//ClassOrInterfaceDeclaration[@Image='Foo']</value></property>" + PMD.EOL +
+            "<property name=\"limit\" type=\"Integer\" description=\"a limit\" min=\"1\" max=\"10\" value=\"3\"/>" + PMD.EOL +
+            "</properties>" + PMD.EOL +
+            "</rule>" + PMD.EOL +
+            "<rule ref=\"rulesets/java/codesize.xml/NPathComplexity\" name=\"Paths\" message=\"too many paths\">" + PMD.EOL +
+            "<priority>1</priority>" + PMD.EOL +
+            "<properties><property name=\"minimum\" value=\"100\"/></properties>" + PMD.EOL +
+            "</rule>" + PMD.EOL +
+            "<rule ref=\"rulesets/java/basic.xml\"><exclude name=\"JumbledIncrementer\"/></rule>" + PMD.EOL +
+            "</ruleset>";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("pmd-ruleset-snapshot", "");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        RuleSets expected = new RuleSetFactory().createRuleSets(REFERENCES);
+        RuleSets actual = writeAndRead(REFERENCES, expected);
+
+        assertNotNull(actual);
+        assertEquals(expected.getAllRuleSets().length, actual.getAllRuleSets().length);
+        for (int i = 0; i < expected.getAllRuleSets().length; i++) {
+            RuleSet expectedRuleSet = expected.getAllRuleSets()[i];
+            RuleSet actualRuleSet = actual.getAllRuleSets()[i];
+            assertEquals(expectedRuleSet.getFileName(), actualRuleSet.getFileName());
+            assertEquals(expectedRuleSet.getRules().size(), actualRuleSet.getRules().size());
+            assertEquals(toXml(expectedRuleSet), toXml(actualRuleSet));
+        }
+    }
+
+    @Test
+    public void testRuleReferences() throws Exception {
+        File ruleSetFile = new File(directory, "custom.xml");
+        FileUtils.writeStringToFile(ruleSetFile, CUSTOM_RULESET);
+        String reference = ruleSetFile.getPath();
+        RuleSets expected = new RuleSetFactory().createRuleSets(reference);
+        RuleSet ruleSet = writeAndRead(reference, expected).getAllRuleSets()[0];
+
+        assertEquals(toXml(expected.getAllRuleSets()[0]), toXml(ruleSet));
+        assertEquals(Arrays.asList(".*/generated/.*"), ruleSet.getExcludePatterns());
+
+        Rule rule = ruleSet.getRuleByName("NoFoo");
+        assertEquals(RulePriority.MEDIUM_HIGH, rule.getPriority());
+        assertEquals(Integer.valueOf(3), rule.getProperty(rule.getPropertyDescriptor("limit")));
+        assertEquals(expected.getAllRuleSets()[0].getRuleByName("NoFoo").getRuleChainVisits(), rule.getRuleChainVisits());
+
+        RuleReference paths = (RuleReference) ruleSet.getRuleByName("Paths");
+        assertEquals("Paths", paths.getOverriddenName());
+        assertEquals("too many paths", paths.getOverriddenMessage());
+        assertEquals(RulePriority.HIGH, paths.getOverriddenPriority());
+        assertEquals(1, paths.getOverriddenPropertiesByPropertyDescriptor().size());
+        assertEquals(Double.valueOf(100), paths.getProperty(paths.getPropertyDescriptor("minimum")));
+        assertTrue(paths.getRule().getRuleClass().endsWith("NPathComplexityRule"));
+
+        assertNull(ruleSet.getRuleByName("JumbledIncrementer"));
+        RuleReference forLoop = (RuleReference) ruleSet.getRuleByName("ForLoopShouldBeWhileLoop");
+        RuleReference locking = (RuleReference) ruleSet.getRuleByName("DoubleCheckedLocking");
+        // the rules of one ruleset reference still share it
+        assertTrue(forLoop.getRuleSetReference() == locking.getRuleSetReference());
+        assertTrue(forLoop.getRuleSetReference().isAllRules());
+        assertEquals(1, forLoop.getRuleSetReference().getExcludes().size());
+    }
+
+    @Test
+    public void testOutdated() throws Exception {
+        File ruleSetFile = new File(directory, "custom.xml");
+        FileUtils.writeStringToFile(ruleSetFile, CUSTOM_RULESET);
+        String reference = ruleSetFile.getPath();
+        RuleSetFactory factory = new RuleSetFactory();
+        factory.setSnapshotDirectory(directory);
+        factory.createRuleSets(reference);
+
+        File snapshotFile = RuleSetSnapshot.fileFor(directory, reference, RulePriority.LOW);
+        ClassLoader classLoader = RuleSetFactory.class.getClassLoader();
+        assertNotNull(RuleSetSnapshot.read(snapshotFile, reference, RulePriority.LOW, classLoader));
+        assertNull(RuleSetSnapshot.read(snapshotFile, reference, RulePriority.HIGH, classLoader));
+        assertNull(RuleSetSnapshot.read(snapshotFile, "rulesets/java/basic.xml", RulePriority.LOW, classLoader));
+
+        // a changed ruleset file is read again
+        FileUtils.writeStringToFile(ruleSetFile, CUSTOM_RULESET.replace("MESSAGE", "CHANGED"));
+        assertNull(RuleSetSnapshot.read(snapshotFile, reference, RulePriority.LOW, classLoader));
+        RuleSets ruleSets = factory.createRuleSets(reference);
+        assertEquals("CHANGED", ruleSets.getAllRuleSets()[0].getRuleByName("NoFoo").getMessage());
+        ruleSets = RuleSetSnapshot.read(snapshotFile, reference, RulePriority.LOW, classLoader);
+        assertEquals("CHANGED", ruleSets.getAllRuleSets()[0].getRuleByName("NoFoo").getMessage());
+    }
+
+    private RuleSets writeAndRead(String reference, RuleSets ruleSets) throws Exception {
+        File snapshotFile = RuleSetSnapshot.fileFor(directory, reference, RulePriority.LOW);
+        ClassLoader classLoader = RuleSetFactory.class.getClassLoader();
+        RuleSetSnapshot.write(snapshotFile, reference, RulePriority.LOW, Arrays.asList(reference.split(",")),
+                ruleSets, classLoader);
+        assertTrue(snapshotFile.isFile());
+        return RuleSetSnapshot.read(snapshotFile, reference, RulePriority.LOW, classLoader);
+    }
+
+    private static String toXml(RuleSet ruleSet) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RuleSetWriter writer = new RuleSetWriter(out);
+        writer.write(ruleSet);
+        writer.close();
+        return out.toString();
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(RuleSetSnapshotTest.class);
+    }
+}
@@ -17,6 +17,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
@@ -351,6 +353,68 @@ public class RuleSetTest extends RuleTst {
 	assertTrue("Matching include", ruleSet.applies(file));
     }
 
+    @Test
+    public void testIncludeExcludeAppliesToSeveralFiles() {
+	File generated = new File("/project/generated/Foo.java");
+	File source = new File("/project/src/Foo.java");
+
+	RuleSet ruleSet = new RuleSet();
+	ruleSet.addExcludePattern(".*/generated/.*");
+	assertFalse("Matching exclude", ruleSet.applies(generated));
+	assertFalse("Matching exclude, again", ruleSet.applies(generated));
+	assertTrue("Non-matching exclude", ruleSet.applies(source));
+	assertFalse("Matching exclude, after another file", ruleSet.applies(generated));
+
+	ruleSet.addIncludePattern(".*/Foo.java");
+	assertTrue("Matching include added later", ruleSet.applies(generated));
+    }
+
+    @Test
+    public void testApplyToSeveralLanguageVersions() throws PMDException {
+	RuleSet ruleSet = new RuleSet();
+	Rule ruleChainRule = findRule("java-empty", "EmptyIfStmt");
+	ruleChainRule.setMinimumLanguageVersion(LanguageVersion.JAVA_15);
+	ruleSet.addRule(ruleChainRule);
+	Rule rule = findRule("java-unusedcode", "UnusedLocalVariable");
+	rule.setMinimumLanguageVersion(LanguageVersion.JAVA_15);
+	ruleSet.addRule(rule);
+	RuleSets ruleSets = new RuleSets(ruleSet);
+
+	assertEquals("Violations", 0, process(ruleSets, LanguageVersion.JAVA_14).size());
+	assertEquals("Violations", 2, process(ruleSets, LanguageVersion.JAVA_15).size());
+	assertEquals("Violations", 0, process(ruleSets, LanguageVersion.JAVA_14).size());
+    }
+
+    @Test
+    public void testRulesChangedAfterAdding() throws PMDException {
+	RuleSet ruleSet = new RuleSet();
+	RuleSets ruleSets = new RuleSets(ruleSet);
+	assertEquals("Violations", 0, process(ruleSets, LanguageVersion.JAVA_15).size());
+	assertFalse("Type resolution", ruleSets.usesTypeResolution(Language.JAVA));
+
+	// the RuleChain and the other rules
+	ruleSet.addRule(findRule("java-empty", "EmptyIfStmt"));
+	ruleSet.addRule(findRule("java-unusedcode", "UnusedLocalVariable"));
+	assertEquals("Violations after addRule", 2, process(ruleSets, LanguageVersion.JAVA_15).size());
+	assertTrue("Type resolution after addRule", ruleSets.usesTypeResolution(Language.JAVA));
+
+	Iterator<Rule> i = ruleSet.getRules().iterator();
+	i.next();
+	i.remove();
+	assertEquals("Violations after removing a rule", 1, process(ruleSets, LanguageVersion.JAVA_15).size());
+    }
+
+    private Report process(RuleSets ruleSets, LanguageVersion languageVersion) throws PMDException {
+	PMD p = new PMD();
+	RuleContext ctx = new RuleContext();
+	Report r = new Report();
+	ctx.setReport(r);
+	ctx.setSourceCodeFilename("Foo.java");
+	ctx.setLanguageVersion(languageVersion);
+	p.getSourceCodeProcessor().processSourceCode(new StringReader(TEST2), ruleSets, ctx);
+	return r;
+    }
+
     @Test
     public void testIncludeExcludeMultipleRuleSetWithRuleChainApplies() throws PMDException {
 	File file = new File("C:\\myworkspace\\project\\some\\random\\package\\RandomClass.java");
@@ -395,6 +459,77 @@ public class RuleSetTest extends RuleTst {
         assertEquals("Violations", 1, r.size());
     }
 
+    @Test
+    public void testRuleGroups() {
+	RuleSets ruleSets = createRuleSetsForGroups();
+	List<RuleSets> groups = ruleSets.getRuleGroups(2);
+	assertEquals(3, groups.size());
+	assertEquals(2, groups.get(0).getAllRules().size());
+	assertTrue(groups.get(0).getAllRules().contains(ruleSets.getRuleByName("EmptyIfStmt")));
+	assertEquals(1, groups.get(1).getAllRules().size());
+	assertTrue(groups.get(1).getAllRules().contains(ruleSets.getRuleByName("EmptyWhileStmt")));
+	// the rules which aren't thread-safe are in the last group
+	assertEquals(1, groups.get(2).getAllRules().size());
+	assertTrue(groups.get(2).getAllRules().contains(ruleSets.getRuleByName("UnusedLocalVariable")));
+	assertEquals("RuleSet1", groups.get(0).getAllRuleSets()[0].getName());
+	assertEquals(".*/generated/.*", groups.get(0).getAllRuleSets()[0].getExcludePatterns().get(0));
+	assertTrue(groups == ruleSets.getRuleGroups(2));
+    }
+
+    @Test
+    public void testApplyRuleGroups() throws PMDException {
+	Report sequential = process(1, null);
+	ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+	Report concurrent;
+	try {
+	    concurrent = process(3, executor);
+	    // the same executor for the next file
+	    process(3, executor);
+	} finally {
+	    executor.shutdown();
+	}
+	// three groups of thread-safe rules per file
+	assertEquals(6, executor.getTaskCount());
+	assertEquals(3, sequential.size());
+	assertEquals(sequential.size(), concurrent.size());
+	assertEquals(1, concurrent.getSuppressedRuleViolations().size());
+	Iterator<RuleViolation> expected = sequential.iterator();
+	for (RuleViolation violation : concurrent) {
+	    RuleViolation expectedViolation = expected.next();
+	    assertEquals(expectedViolation.getRule(), violation.getRule());
+	    assertEquals(expectedViolation.getBeginLine(), violation.getBeginLine());
+	}
+    }
+
+    private Report process(int ruleGroups, ThreadPoolExecutor executor) throws PMDException {
+	PMD p = new PMD();
+	p.getConfiguration().setRuleGroups(ruleGroups);
+	p.getConfiguration().setRuleGroupMinLines(1);
+	p.getSourceCodeProcessor().setRuleGroupExecutor(executor);
+	RuleContext ctx = new RuleContext();
+	Report r = new Report();
+	ctx.setReport(r);
+	ctx.setSourceCodeFilename("Foo.java");
+	p.getSourceCodeProcessor().processSourceCode(new StringReader(TEST2), createRuleSetsForGroups(), ctx);
+	return r;
+    }
+
+    private RuleSets createRuleSetsForGroups() {
+	RuleSet ruleSet1 = new RuleSet();
+	ruleSet1.setName("RuleSet1");
+	ruleSet1.addExcludePattern(".*/generated/.*");
+	ruleSet1.addRule(findRule("java-empty", "EmptyIfStmt"));
+	ruleSet1.addRule(findRule("java-unusedcode", "UnusedLocalVariable"));
+	ruleSet1.addRule(findRule("java-empty", "EmptyWhileStmt"));
+	RuleSet ruleSet2 = new RuleSet();
+	ruleSet2.setName("RuleSet2");
+	ruleSet2.addRule(findRule("java-empty", "EmptyTryBlock"));
+	RuleSets ruleSets = new RuleSets();
+	ruleSets.addRuleSet(ruleSet1);
+	ruleSets.addRuleSet(ruleSet2);
+	return ruleSets;
+    }
+
     protected void verifyRuleSet(RuleSet IUT, int size, Set values) throws Throwable {
 
 	RuleContext context = new RuleContext();
@@ -434,6 +569,15 @@ public class RuleSetTest extends RuleTst {
     	"   }" + PMD.EOL +
 	"}" + PMD.EOL;
 
+    private static final String TEST2 = "public class Foo {" + PMD.EOL +
+    	"   public void foo() {" + PMD.EOL +
+    	"      int x;" + PMD.EOL +
+    	"      if (true) { }" + PMD.EOL +
+    	"      while (true) { }" + PMD.EOL +
+    	"      if (false) { } // NOPMD" + PMD.EOL +
+    	"   }" + PMD.EOL +
+	"}" + PMD.EOL;
+
     public static junit.framework.Test suite() {
 	return new junit.framework.JUnit4TestAdapter(RuleSetTest.class);
     }
@@ -3,17 +3,23 @@
  */
 package net.sourceforge.pmd.ant;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
 
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.renderers.BinaryRenderer;
+import net.sourceforge.pmd.renderers.BinaryReport;
 import net.sourceforge.pmd.renderers.CSVRenderer;
 import net.sourceforge.pmd.renderers.HTMLRenderer;
 import net.sourceforge.pmd.renderers.TextRenderer;
 import net.sourceforge.pmd.renderers.XMLRenderer;
 
+import org.apache.tools.ant.BuildException;
 import org.junit.Test;
 
 public class FormatterTest {
@@ -45,4 +51,28 @@ public class FormatterTest {
         f.setToFile(new File("foo"));
         assertFalse("Formatter toFile should not be null!", f.isNoOutputSupplied());
     }
+
+    @Test
+    public void testBinaryToFile() throws IOException {
+        File file = File.createTempFile("pmd-formatter", ".pmdbin");
+        try {
+            Formatter f = new Formatter();
+            f.setType("binary");
+            f.setToFile(file);
+            f.start(file.getParent());
+            assertTrue(f.getRenderer() instanceof BinaryRenderer);
+            f.end(new Report());
+            assertEquals(0, BinaryReport.open(file).size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = BuildException.class)
+    public void testBinaryToConsole() {
+        Formatter f = new Formatter();
+        f.setType("binary");
+        f.setToConsole(true);
+        f.start(".");
+    }
 }
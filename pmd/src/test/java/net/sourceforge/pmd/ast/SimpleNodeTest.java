@@ -32,6 +32,8 @@ import net.sourceforge.pmd.lang.java.ast.ASTName;
 import net.sourceforge.pmd.lang.java.ast.ASTReturnStatement;
 import net.sourceforge.pmd.lang.java.ast.ASTStatement;
 import net.sourceforge.pmd.lang.java.ast.ASTVariableInitializer;
+import net.sourceforge.pmd.lang.java.ast.FormalComment;
+import net.sourceforge.pmd.lang.java.ast.Token;
 import net.sourceforge.pmd.testframework.ParserTst;
 
 import org.junit.Ignore;
@@ -285,6 +287,34 @@ public class SimpleNodeTest extends ParserTst {
         assertNull(c.getUserData());
     }
 
+    @Test
+    public void testUserDataAndComment() throws Throwable {
+        ASTClassOrInterfaceDeclaration c = getNodes(ASTClassOrInterfaceDeclaration.class, HAS_EXPLICIT_EXTENDS).iterator().next();
+        Token token = new Token();
+        token.image = "/** a comment */";
+        FormalComment comment = new FormalComment(token);
+        c.comment(comment);
+        assertNull(c.getUserData());
+        c.setUserData("foo");
+        assertSame(comment, c.comment());
+        assertEquals("foo", c.getUserData());
+        c.comment(null);
+        assertNull(c.comment());
+        assertEquals("foo", c.getUserData());
+    }
+
+    @Test
+    public void testEqualImagesAreShared() throws Throwable {
+        List<String> images = new ArrayList<String>();
+        for (ASTName name : getNodes(ASTName.class, EQUAL_IMAGES)) {
+            if (name.hasImageEqualTo("x")) {
+                images.add(name.getImage());
+            }
+        }
+        assertEquals(2, images.size());
+        assertSame(images.get(0), images.get(1));
+    }
+
     private void verifyNode(Node node, int beginLine, int beginCol, int endLine, int endCol) {
         assertEquals("Unexpected beginning line: ", beginLine, node.getBeginLine());
         assertEquals("Unexpected beginning column: ", beginCol, node.getBeginColumn());
@@ -357,6 +387,13 @@ public class SimpleNodeTest extends ParserTst {
             "  }" + PMD.EOL +
             "}";
 
+    private static final String EQUAL_IMAGES =
+            "public class Test {" + PMD.EOL +
+            "  void bar(int x) {" + PMD.EOL +
+            "   foo(x, x);" + PMD.EOL +
+            "  }" + PMD.EOL +
+            "}";
+
     private static final String TEST_XPATH =
             "public class Test {" + PMD.EOL +
             "  int x = 2;" + PMD.EOL +
@@ -0,0 +1,193 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import net.sourceforge.pmd.PMD;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CPDIndexTest {
+
+    private static final String METHOD =
+            "  public void foo(int a, int b) {" + PMD.EOL +
+            "    int c = a + b;" + PMD.EOL +
+            "    if (c > 10) { System.out.println(\"large \" + c); } else { System.out.println(\"small \" + c); }" + PMD.EOL +
+            "    for (int i = 0; i < c; i++) { System.out.println(i * a - b); }" + PMD.EOL +
+            "  }" + PMD.EOL;
+
+    private File dir;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pmd-cpd", "");
+        dir.delete();
+        dir.mkdirs();
+        indexFile = new File(dir, "cpd.index");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testRestore() throws IOException {
+        File a = write("A.java", "class A {" + PMD.EOL + METHOD + "}");
+        File b = write("B.java", "class B {" + PMD.EOL + METHOD + "}");
+        File c = write("C.java", "class C { }");
+
+        String expected = findMatches(configuration(null), a, b, c);
+        assertEquals(expected, findMatches(configuration(indexFile.getPath()), a, b, c));
+        assertTrue(indexFile.isFile());
+        // the second run restores all files
+        assertEquals(expected, findMatches(configuration(indexFile.getPath()), a, b, c));
+
+        CPDConfiguration configuration = configuration(indexFile.getPath());
+        TokenEntry.clearImages();
+        CPDIndex index = CPDIndex.open(indexFile, configuration);
+        assertTrue(index.restore(a.getAbsolutePath(), CPDIndex.checksum(a), new Tokens()));
+        assertFalse(index.restore(a.getAbsolutePath(), CPDIndex.checksum(b), new Tokens()));
+        assertFalse(index.restore(new File(dir, "D.java").getAbsolutePath(), CPDIndex.checksum(a), new Tokens()));
+    }
+
+    @Test
+    public void testChangedFile() throws IOException {
+        File a = write("A.java", "class A {" + PMD.EOL + METHOD + "}");
+        File b = write("B.java", "class B {" + PMD.EOL + METHOD + "}");
+        File c = write("C.java", "class C { }");
+        findMatches(configuration(indexFile.getPath()), a, b, c);
+
+        write("C.java", "class C {" + PMD.EOL + PMD.EOL + METHOD + "}");
+        String expected = findMatches(configuration(null), a, b, c);
+        assertEquals(expected, findMatches(configuration(indexFile.getPath()), a, b, c));
+        assertTrue(expected.contains(c.getAbsolutePath()));
+    }
+
+    @Test
+    public void testOtherOptions() throws IOException {
+        File a = write("A.java", "class A {" + PMD.EOL + METHOD + "}");
+        File b = write("B.java", "class B {" + PMD.EOL + METHOD.replace('c', 'd') + "}");
+        findMatches(configuration(indexFile.getPath()), a, b);
+
+        String expected = findMatches(configuration(indexFile.getPath(), true), a, b);
+        assertFalse(expected.length() == 0);
+        assertEquals(expected, findMatches(configuration(null, true), a, b));
+    }
+
+    @Test
+    public void testChangedFiles() throws IOException {
+        File a = write("A.java", "class A {" + PMD.EOL + METHOD + "}");
+        File b = write("B.java", "class B {" + PMD.EOL + METHOD + "}");
+        File c = write("C.java", "class C {" + PMD.EOL + METHOD.replace("foo", "bar").replace('c', 'd')
+                + METHOD.replace("foo", "baz").replace('c', 'd') + "}");
+
+        String all = findMatches(configuration(null), a, b, c);
+        assertTrue(all.contains(a.getAbsolutePath()));
+        assertTrue(all.contains(c.getAbsolutePath()));
+
+        CPDConfiguration configuration = configuration(null);
+        configuration.setChangedFiles(Arrays.asList(b.getPath()));
+        String changed = findMatches(configuration, a, b, c);
+        assertTrue(changed.contains(b.getAbsolutePath()));
+        assertFalse(changed.contains(c.getAbsolutePath()));
+
+        configuration = configuration(null);
+        configuration.setChangedFiles(Arrays.asList(new File(dir, "D.java").getPath()));
+        assertEquals("", findMatches(configuration, a, b, c));
+    }
+
+    @Test
+    public void testShards() throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 10; i++) {
+            files.add(write("A" + i + ".java", "class A" + i + " {" + PMD.EOL + (i % 3 == 0 ? METHOD : "") + "}"));
+        }
+        String expected = findMatches(configuration(null), files.toArray(new File[files.size()]));
+        assertFalse(expected.length() == 0);
+
+        List<File> shards = new ArrayList<File>();
+        for (int i = 1; i <= 3; i++) {
+            File shard = new File(dir, "shard-" + i + ".index");
+            shards.add(shard);
+            CPDConfiguration configuration = configuration(shard.getPath());
+            configuration.setShard(i + "/3");
+            CPD cpd = new CPD(configuration);
+            cpd.add(files);
+            cpd.writeIndex();
+        }
+
+        CPDConfiguration configuration = configuration(null);
+        CPD cpd = new CPD(configuration);
+        cpd.setIndex(CPDIndex.open(indexFile, shards, configuration));
+        cpd.add(files);
+        cpd.go();
+        assertEquals(expected, render(cpd));
+        // the merged index has all files
+        assertEquals(expected, findMatches(configuration(indexFile.getPath()), files.toArray(new File[files.size()])));
+        TokenEntry.clearImages();
+        CPDIndex index = CPDIndex.open(indexFile, configuration);
+        for (File file : files) {
+            assertTrue(index.restore(file.getAbsolutePath(), CPDIndex.checksum(file), new Tokens()));
+        }
+    }
+
+    private static CPDConfiguration configuration(String indexFile) {
+        return configuration(indexFile, false);
+    }
+
+    private static CPDConfiguration configuration(String indexFile, boolean ignoreIdentifiers) {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMinimumTileSize(20);
+        configuration.setIgnoreIdentifiers(ignoreIdentifiers);
+        configuration.setIndexFile(indexFile);
+        configuration.postContruct();
+        CPDConfiguration.setSystemProperties(configuration);
+        return configuration;
+    }
+
+    private static String findMatches(CPDConfiguration configuration, File... files) throws IOException {
+        CPD cpd = new CPD(configuration);
+        cpd.add(Arrays.asList(files));
+        cpd.go();
+        return render(cpd);
+    }
+
+    static String render(CPD cpd) {
+        StringBuilder result = new StringBuilder();
+        for (Iterator<Match> matches = cpd.getMatches(); matches.hasNext();) {
+            Match match = matches.next();
+            result.append(match.getTokenCount());
+            for (TokenEntry mark : match.getMarkSet()) {
+                result.append(' ').append(mark.getTokenSrcID()).append(':').append(mark.getBeginLine());
+            }
+            result.append(PMD.EOL);
+        }
+        return result.toString();
+    }
+
+    private File write(String name, String code) throws IOException {
+        File file = new File(dir, name);
+        FileUtils.writeStringToFile(file, code);
+        return file;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(CPDIndexTest.class);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sourceforge.pmd.PMD;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CPDWorkersTest {
+
+    private static final String METHOD =
+            "  public void foo(int a, int b) {" + PMD.EOL +
+            "    int c = a + b;" + PMD.EOL +
+            "    for (int i = 0; i < c; i++) { System.out.println(i * a - b); }" + PMD.EOL +
+            "  }" + PMD.EOL;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pmd-cpd", "");
+        dir.delete();
+        dir.mkdirs();
+        for (int i = 0; i < 8; i++) {
+            FileUtils.writeStringToFile(new File(dir, "A" + i + ".java"), "class A" + i + " {" + PMD.EOL
+                    + (i % 2 == 0 ? METHOD : "") + "}");
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testWorkers() throws IOException {
+        CPDConfiguration configuration = configuration();
+        CPD cpd = new CPD(configuration);
+        cpd.addRecursively(dir.getPath());
+        cpd.go();
+        String expected = CPDIndexTest.render(cpd);
+        assertFalse(expected.length() == 0);
+
+        configuration = configuration();
+        configuration.setWorkers(2);
+        cpd = new CPD(configuration);
+        CPDIndex index = CPDWorkers.tokenize(configuration, new String[] { "--minimum-tokens", "20", "--workers",
+            "2", "--files", dir.getPath() });
+        cpd.setIndex(index);
+        cpd.addRecursively(dir.getPath());
+        cpd.go();
+        assertEquals(expected, CPDIndexTest.render(cpd));
+
+        // all files were tokenized by the workers
+        for (File file : dir.listFiles()) {
+            assertTrue(file.getName(), index.restore(file.getAbsolutePath(), CPDIndex.checksum(file), new Tokens()));
+        }
+    }
+
+    @Test
+    public void testPreviousIndex() throws IOException {
+        File indexFile = new File(dir, "cpd.index");
+        CPDConfiguration configuration = configuration();
+        configuration.setIndexFile(indexFile.getPath());
+        CPD cpd = new CPD(configuration);
+        cpd.addRecursively(dir.getPath());
+        cpd.writeIndex();
+        byte[] previous = FileUtils.readFileToByteArray(indexFile);
+
+        // a worker restores the files of its shard from the previous index, which it doesn't write
+        File shardFile = new File(dir, "shard.index");
+        configuration = configuration();
+        configuration.setShard("1/1");
+        configuration.setIndexFile(shardFile.getPath());
+        configuration.setPreviousIndexFile(indexFile.getPath());
+        cpd = new CPD(configuration);
+        cpd.addRecursively(dir.getPath());
+        cpd.writeIndex();
+        assertTrue(Arrays.equals(previous, FileUtils.readFileToByteArray(indexFile)));
+
+        CPDIndex shard = CPDIndex.open(shardFile, configuration);
+        for (File file : dir.listFiles()) {
+            if (file.getName().endsWith(".java")) {
+                assertTrue(file.getName(), shard.restore(file.getAbsolutePath(), CPDIndex.checksum(file), new Tokens()));
+            }
+        }
+    }
+
+    @Test
+    public void testShard() {
+        CPDConfiguration configuration = configuration();
+        int found = 0;
+        for (int i = 1; i <= 3; i++) {
+            configuration.setShard(i + "/3");
+            if (configuration.isInShard("/foo/Bar.java")) {
+                found++;
+            }
+        }
+        assertEquals(1, found);
+        configuration.setShard(null);
+        assertTrue(configuration.isInShard("/foo/Bar.java"));
+    }
+
+    @Test
+    public void testWorkerArgs() {
+        assertEquals(Arrays.asList("--minimum-tokens", "20", "--files", "src"),
+                CPDWorkers.workerArgs(new String[] { "--minimum-tokens", "20", "--workers", "2", "--index",
+                    "cpd.index", "--uri", "jdbc:oracle:thin:@//host:1521/db", "--files", "src" }));
+    }
+
+    @Test
+    public void testJvmArgs() {
+        assertEquals(Arrays.asList("-Xmx1g", "-Dfoo=bar"), CPDWorkers.jvmArgs(Arrays.asList("-Xmx1g",
+                "-agentlib:jdwp=transport=dt_socket,server=y,address=8000", "-Dfoo=bar", "-Xdebug")));
+    }
+
+    private static CPDConfiguration configuration() {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMinimumTileSize(20);
+        configuration.postContruct();
+        CPDConfiguration.setSystemProperties(configuration);
+        return configuration;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(CPDWorkersTest.class);
+    }
+}
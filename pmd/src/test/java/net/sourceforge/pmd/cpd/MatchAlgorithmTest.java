@@ -7,9 +7,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import net.sourceforge.pmd.PMD;
 
@@ -91,6 +97,117 @@ public class MatchAlgorithmTest {
         assertFalse(marks.hasNext());
     }
 
+    @Test
+    public void testShardedMatchesAreDeterministic() throws Throwable {
+        StringBuilder code = new StringBuilder();
+        for (int copy = 0; copy < 3; copy++) {
+            for (int i = 0; i < 1000; i++) {
+                code.append("int a").append(i).append(" = ").append(i % (copy + 7)).append(";").append(PMD.EOL);
+            }
+        }
+        JavaTokenizer tokenizer = new JavaTokenizer();
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(code.toString(), "Foo.java"));
+        Tokens tokens = new Tokens();
+        TokenEntry.clearImages();
+        tokenizer.tokenize(sourceCode, tokens);
+        Map<String, SourceCode> codeMap = new HashMap<String, SourceCode>();
+        codeMap.put("Foo.java", sourceCode);
+
+        List<String> expected = describeMatches(codeMap, tokens, 1);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, describeMatches(codeMap, tokens, 4));
+    }
+
+    @Test
+    public void testLargeGroupsReportTheSameMarks() throws Throwable {
+        String[] rows = { "foo(1, 2);", "bar(1, 2);", "x = y + 1;", "x = y + 2;" };
+        Random random = new Random(42);
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            code.append(rows[random.nextInt(rows.length)]).append(PMD.EOL);
+        }
+        Map<String, SourceCode> codeMap = new HashMap<String, SourceCode>();
+        Tokens tokens = tokenize(code.toString(), codeMap);
+
+        // the pairwise collection may split the marks of one length into several matches
+        Map<Integer, Set<Integer>> expected = marksByLength(codeMap, tokens, Integer.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, marksByLength(codeMap, tokens, 1));
+    }
+
+    /**
+     * Generated code with thousands of identical rows, the pairwise collection
+     * of the matches takes minutes for it.
+     */
+    @Test(timeout = 30000)
+    public void testRepetitiveCode() throws Throwable {
+        StringBuilder code = new StringBuilder("Row[] rows = {").append(PMD.EOL);
+        for (int i = 0; i < 20000; i++) {
+            code.append("  new Row(1, 2, 3, 4),").append(PMD.EOL);
+        }
+        code.append("};");
+        Map<String, SourceCode> codeMap = new HashMap<String, SourceCode>();
+        Tokens tokens = tokenize(code.toString(), codeMap);
+
+        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(codeMap, tokens, 100);
+        matchAlgorithm.findMatches();
+        int count = 0;
+        for (Iterator<Match> i = matchAlgorithm.matches(); i.hasNext();) {
+            Match match = i.next();
+            assertEquals(2, match.getMarkCount());
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    private static Tokens tokenize(String code, Map<String, SourceCode> codeMap) {
+        JavaTokenizer tokenizer = new JavaTokenizer();
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(code, "Foo.java"));
+        Tokens tokens = new Tokens();
+        TokenEntry.clearImages();
+        tokenizer.tokenize(sourceCode, tokens);
+        codeMap.put("Foo.java", sourceCode);
+        return tokens;
+    }
+
+    private static Map<Integer, Set<Integer>> marksByLength(Map<String, SourceCode> codeMap, Tokens tokens,
+            int largeGroupSize) {
+        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(codeMap, tokens, 10);
+        matchAlgorithm.setLargeGroupSize(largeGroupSize);
+        matchAlgorithm.findMatches();
+        Map<Integer, Set<Integer>> result = new TreeMap<Integer, Set<Integer>>();
+        for (Iterator<Match> i = matchAlgorithm.matches(); i.hasNext();) {
+            Match match = i.next();
+            Set<Integer> marks = result.get(match.getTokenCount());
+            if (marks == null) {
+                marks = new TreeSet<Integer>();
+                result.put(match.getTokenCount(), marks);
+            }
+            for (Iterator<TokenEntry> j = match.iterator(); j.hasNext();) {
+                marks.add(j.next().getIndex());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> describeMatches(Map<String, SourceCode> codeMap, Tokens tokens, int threads) {
+        MatchAlgorithm matchAlgorithm = new MatchAlgorithm(codeMap, tokens, 10);
+        matchAlgorithm.setThreads(threads);
+        matchAlgorithm.findMatches();
+        List<String> result = new ArrayList<String>();
+        for (Iterator<Match> i = matchAlgorithm.matches(); i.hasNext();) {
+            Match match = i.next();
+            StringBuilder sb = new StringBuilder();
+            sb.append(match.getTokenCount()).append(' ').append(match.getLineCount());
+            for (Iterator<TokenEntry> marks = match.iterator(); marks.hasNext();) {
+                sb.append(' ').append(marks.next().getIndex());
+            }
+            sb.append(' ').append(match.getSourceCodeSlice());
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
     public static junit.framework.Test suite() {
         return new junit.framework.JUnit4TestAdapter(MatchAlgorithmTest.class);
     }
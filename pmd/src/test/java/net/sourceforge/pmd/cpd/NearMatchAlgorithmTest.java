@@ -0,0 +1,152 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import net.sourceforge.pmd.PMD;
+
+import org.junit.Test;
+
+public class NearMatchAlgorithmTest {
+
+    private static final String[] STATEMENTS = {
+        "int total = 0;",
+        "for (int i = 0; i < items.length; i++) { total += items[i].getPrice() * items[i].getCount(); }",
+        "if (total > limit) { throw new IllegalStateException(\"Too expensive: \" + total); }",
+        "String name = customer.getName().trim().toLowerCase();",
+        "Map<String, Integer> discounts = loadDiscounts(name, region);",
+        "Integer discount = discounts.get(category);",
+        "if (discount != null) { total = total - total * discount / 100; }",
+        "log.info(\"Order of \" + name + \" costs \" + total);",
+        "order.setTotal(total);",
+        "order.setCustomer(customer);",
+        "repository.save(order);",
+        "return total;",
+    };
+
+    private static String method(String name, String extraStatement, String logMessage) {
+        StringBuilder code = new StringBuilder();
+        code.append("public class ").append(name).append(" {").append(PMD.EOL);
+        code.append("  public int process(Item[] items, Customer customer, Order order) {").append(PMD.EOL);
+        for (int i = 0; i < STATEMENTS.length; i++) {
+            if (i == STATEMENTS.length / 3 && extraStatement != null) {
+                code.append("    ").append(extraStatement).append(PMD.EOL);
+            }
+            code.append("    ").append(STATEMENTS[i].replace("Order of ", logMessage)).append(PMD.EOL);
+        }
+        code.append("  }").append(PMD.EOL);
+        code.append("}").append(PMD.EOL);
+        return code.toString();
+    }
+
+    private static final String UNRELATED = "public class Baz {" + PMD.EOL
+            + "  private final List<String> names = new ArrayList<String>();" + PMD.EOL
+            + "  public void add(String name) { names.add(name); }" + PMD.EOL
+            + "  public boolean contains(String name) { return names.contains(name); }" + PMD.EOL
+            + "  public int size() { return names.size(); }" + PMD.EOL
+            + "  public String toString() { return \"Baz\" + names; }" + PMD.EOL
+            + "  public void clear() { names.clear(); }" + PMD.EOL
+            + "  public Iterator<String> iterator() { return names.iterator(); }" + PMD.EOL
+            + "  public boolean isEmpty() { return names.isEmpty(); }" + PMD.EOL
+            + "}" + PMD.EOL;
+
+    @Test
+    public void testGappedClone() {
+        Map<String, SourceCode> codeMap = new TreeMap<String, SourceCode>();
+        Tokens tokens = tokenize(codeMap,
+                "Foo.java", method("Foo", null, "Order of "),
+                "Bar.java", method("Bar", "audit.record(customer, items.length);", "Total of "),
+                "Baz.java", UNRELATED);
+
+        // the statement inserted in the copy hides it from the exact duplicates
+        MatchAlgorithm exact = new MatchAlgorithm(codeMap, tokens, 100);
+        exact.findMatches();
+        assertFalse(exact.matches().hasNext());
+
+        NearMatchAlgorithm near = new NearMatchAlgorithm(codeMap, tokens, 100, 0.8);
+        near.findMatches();
+        Iterator<Match> matches = near.matches();
+        assertTrue(matches.hasNext());
+        while (matches.hasNext()) {
+            Match match = matches.next();
+            assertEquals(2, match.getMarkCount());
+            assertTrue(match.getTokenCount() >= near.getWindowSize());
+            Set<String> files = new HashSet<String>();
+            for (Iterator<TokenEntry> marks = match.iterator(); marks.hasNext();) {
+                files.add(marks.next().getTokenSrcID());
+            }
+            assertEquals(2, files.size());
+            assertTrue(match.getSourceCodeSlice().contains("total"));
+        }
+    }
+
+    @Test
+    public void testDissimilarCode() {
+        Map<String, SourceCode> codeMap = new TreeMap<String, SourceCode>();
+        Tokens tokens = tokenize(codeMap,
+                "Foo.java", method("Foo", null, "Order of "),
+                "Baz.java", UNRELATED);
+        NearMatchAlgorithm near = new NearMatchAlgorithm(codeMap, tokens, 50, 0.8);
+        near.findMatches();
+        assertFalse(near.matches().hasNext());
+    }
+
+    @Test
+    public void testChangedFiles() {
+        Map<String, SourceCode> codeMap = new TreeMap<String, SourceCode>();
+        Tokens tokens = tokenize(codeMap,
+                "Foo.java", method("Foo", null, "Order of "),
+                "Bar.java", method("Bar", "audit.record(customer, items.length);", "Total of "));
+        NearMatchAlgorithm near = new NearMatchAlgorithm(codeMap, tokens, 100, 0.8);
+        near.setChangedFiles(Collections.singleton("Baz.java"));
+        near.findMatches();
+        assertFalse(near.matches().hasNext());
+    }
+
+    /**
+     * Thousands of identical rows fall into the same buckets, only a few of
+     * the windows of a bucket are verified.
+     */
+    @Test(timeout = 30000)
+    public void testRepetitiveCode() {
+        StringBuilder code = new StringBuilder("Row[] rows = {").append(PMD.EOL);
+        for (int i = 0; i < 20000; i++) {
+            code.append("  new Row(1, 2, 3, 4),").append(PMD.EOL);
+        }
+        code.append("};");
+        Map<String, SourceCode> codeMap = new TreeMap<String, SourceCode>();
+        Tokens tokens = tokenize(codeMap, "Foo.java", code.toString());
+
+        NearMatchAlgorithm near = new NearMatchAlgorithm(codeMap, tokens, 100, 0.9);
+        near.findMatches();
+        assertTrue(near.matches().hasNext());
+    }
+
+    private static Tokens tokenize(Map<String, SourceCode> codeMap, String... namesAndCode) {
+        JavaTokenizer tokenizer = new JavaTokenizer();
+        Tokens tokens = new Tokens();
+        TokenEntry.clearImages();
+        for (int i = 0; i < namesAndCode.length; i += 2) {
+            SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(namesAndCode[i + 1],
+                    namesAndCode[i]));
+            tokenizer.tokenize(sourceCode, tokens);
+            codeMap.put(namesAndCode[i], sourceCode);
+        }
+        return tokens;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(NearMatchAlgorithmTest.class);
+    }
+}
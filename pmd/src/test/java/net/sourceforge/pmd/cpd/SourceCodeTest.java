@@ -4,6 +4,10 @@
 package net.sourceforge.pmd.cpd;
 
 import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.List;
+
 import net.sourceforge.pmd.PMD;
 
 import org.junit.Test;
@@ -22,6 +26,50 @@ public class SourceCodeTest {
         assertEquals(MatchAlgorithmTest.LINE_1 + PMD.EOL + MatchAlgorithmTest.LINE_2, sourceCode.getSlice(1, 2));
     }
 
+    @Test
+    public void testSliceLineTerminators() {
+        String[] codes = { "", "a", "a\n", "a\r\nb", "a\rb\r", "\n\na\r\n\r\nb\n\n", "a\n\rb\r\r\nc" };
+        for (String code : codes) {
+            SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader(code, "Foo.java"));
+            sourceCode.getCodeBuffer();
+            List<String> lines = sourceCode.getCode();
+            for (int start = 0; start <= lines.size() + 1; start++) {
+                for (int end = start; end <= lines.size() + 1; end++) {
+                    assertEquals(code.replace("\r", "\\r").replace("\n", "\\n") + " " + start + "-" + end,
+                            join(lines, start, end), sourceCode.getSlice(start, end));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCodeBuffer() {
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader("a\r\n\nb\rc", "Foo.java"));
+        assertEquals("a" + PMD.EOL + PMD.EOL + "b" + PMD.EOL + "c" + PMD.EOL, sourceCode.getCodeBuffer().toString());
+        // the slices are read without the buffer
+        assertEquals("b" + PMD.EOL + "c", sourceCode.getSlice(3, 4));
+    }
+
+    @Test
+    public void testReaderCodeLoader() {
+        SourceCode sourceCode = new SourceCode(new SourceCode.ReaderCodeLoader(new StringReader("a\nb\nc"), "Foo.java"));
+        assertEquals("a" + PMD.EOL + "b" + PMD.EOL + "c" + PMD.EOL, sourceCode.getCodeBuffer().toString());
+        assertEquals("b" + PMD.EOL + "c", sourceCode.getSlice(2, 3));
+        assertEquals("a", sourceCode.getSlice(1, 1));
+    }
+
+    private static String join(List<String> lines, int startLine, int endLine) {
+        StringBuilder sb = new StringBuilder();
+        int first = startLine == 0 ? startLine : startLine - 1;
+        for (int i = first; i < endLine && i < lines.size(); i++) {
+            if (i > first) {
+                sb.append(PMD.EOL);
+            }
+            sb.append(lines.get(i));
+        }
+        return sb.toString();
+    }
+
     public static junit.framework.Test suite() {
         return new junit.framework.JUnit4TestAdapter(SourceCodeTest.class);
     }
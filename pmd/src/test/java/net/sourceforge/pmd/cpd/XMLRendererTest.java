@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -115,6 +116,32 @@ public class XMLRendererTest {
         assertTrue(report.contains(espaceChar));
     } 
     
+    @Test
+    public void testCodeFragmentWithCDataEnd() throws Exception {
+        Renderer renderer = new XMLRenderer();
+        List<Match> list = new ArrayList<Match>();
+        Match match = new Match(75, new TokenEntry("public", "/var/Foo.java", 48), new TokenEntry("stuff", "/var/Foo.java", 73));
+        match.setLineCount(6);
+        match.setSourceCodeSlice("int[][] a;]]>String s = \"]]>\";");
+        list.add(match);
+        String report = renderer.render(list.iterator());
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(report.getBytes(ENCODING)));
+        assertEquals("int[][] a;]]>String s = \"]]>\";", doc.getElementsByTagName("codefragment").item(0).getTextContent());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        XMLRenderer renderer = new XMLRenderer();
+        List<Match> list = new ArrayList<Match>();
+        Match match = new Match(75, new TokenEntry("public", "/var/Foo.java", 48), new TokenEntry("stuff", "/var/Foo.java", 73));
+        match.setLineCount(6);
+        match.setSourceCodeSlice("code\nfragment");
+        list.add(match);
+        StringWriter writer = new StringWriter();
+        renderer.render(list.iterator(), writer);
+        assertEquals(renderer.render(list.iterator()), writer.toString());
+    }
+
     public static junit.framework.Test suite() {
         return new junit.framework.JUnit4TestAdapter(XMLRendererTest.class);
     }
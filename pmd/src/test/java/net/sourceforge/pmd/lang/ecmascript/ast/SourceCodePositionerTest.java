@@ -39,4 +39,21 @@ public class SourceCodePositionerTest {
 	assertEquals(5, positioner.lineNumberFromOffset(offset));
 	assertEquals(3, positioner.columnFromOffset(offset));
     }
+
+    /**
+     * Trailing line breaks don't start a new line, the end of the file is on the last line.
+     */
+    @Test
+    public void testTrailingLineBreaks() {
+	String sourceCode = "ab\n\ncd\n\n";
+	SourceCodePositioner positioner = new SourceCodePositioner(sourceCode);
+
+	assertEquals(3, positioner.lineNumberFromOffset(sourceCode.indexOf('c')));
+	assertEquals(3, positioner.lineNumberFromOffset(sourceCode.length()));
+	assertEquals(5, positioner.columnFromOffset(sourceCode.length()));
+
+	positioner = new SourceCodePositioner("");
+	assertEquals(1, positioner.lineNumberFromOffset(0));
+	assertEquals(1, positioner.columnFromOffset(0));
+    }
 }
@@ -0,0 +1,91 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.AbstractParser;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.ParserOptions;
+import net.sourceforge.pmd.lang.ast.ParseException;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+
+import org.junit.Test;
+
+public class AbstractJavaParserTest {
+
+    private static final String SUPPRESSED =
+            "public class Foo {" + PMD.EOL +
+            " // a comment" + PMD.EOL +
+            " int x; //NOPMD because" + PMD.EOL +
+            "}";
+
+    private static final String NOT_SUPPRESSED =
+            "/* another comment */" + PMD.EOL +
+            "public class Bar {" + PMD.EOL +
+            "}";
+
+    @Test
+    public void testReuse() {
+        AbstractParser parser = createParser();
+        assertTrue(parser.isReusable());
+
+        ASTCompilationUnit first = (ASTCompilationUnit) parser.parse("Foo.java", new StringReader(SUPPRESSED));
+        Map<Integer, String> firstSuppressMap = parser.getSuppressMap();
+        ASTCompilationUnit second = (ASTCompilationUnit) parser.parse("Bar.java", new StringReader(NOT_SUPPRESSED));
+
+        // the results of the previous source are not changed by the next one
+        assertEquals(2, first.getComments().size());
+        assertEquals(1, firstSuppressMap.size());
+        assertTrue(firstSuppressMap.containsKey(3));
+        assertEquals(1, second.getComments().size());
+        assertTrue(parser.getSuppressMap().isEmpty());
+        assertEquals(2, second.getBeginLine());
+    }
+
+    @Test
+    public void testASTNotKept() {
+        AbstractParser parser = createParser();
+        WeakReference<Object> ast = new WeakReference<Object>(parser.parse("Foo.java", new StringReader(SUPPRESSED)));
+        for (int i = 0; i < 10 && ast.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(ast.get());
+        assertEquals(1, parser.getSuppressMap().size());
+    }
+
+    @Test
+    public void testReuseAfterParseError() {
+        AbstractParser parser = createParser();
+        try {
+            parser.parse("Broken.java", new StringReader("public class Broken { void"));
+            fail("expected ParseException");
+        } catch (ParseException e) {
+            // expected
+        }
+        ASTCompilationUnit compilationUnit = (ASTCompilationUnit) parser.parse("Foo.java", new StringReader(SUPPRESSED));
+        assertEquals(1, compilationUnit.getBeginLine());
+        assertEquals(2, compilationUnit.getComments().size());
+        assertEquals(1, parser.getSuppressMap().size());
+    }
+
+    private static AbstractParser createParser() {
+        LanguageVersionHandler handler = new Java15Handler();
+        ParserOptions options = handler.getDefaultParserOptions();
+        options.setSuppressMarker(PMD.SUPPRESS_MARKER);
+        return (AbstractParser) handler.getParser(options);
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(AbstractJavaParserTest.class);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.Parser;
+import net.sourceforge.pmd.lang.java.Java15Handler;
+import net.sourceforge.pmd.lang.java.ast.ASTAllocationExpression;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTFormalParameter;
+import net.sourceforge.pmd.lang.java.ast.ASTType;
+import net.sourceforge.pmd.lang.java.typeresolution.TypeHelper;
+
+import org.junit.Test;
+
+public class ProjectIndexTest {
+
+    private static final String BASE =
+            "package foo;" + PMD.EOL +
+            "import java.io.FilterInputStream;" + PMD.EOL +
+            "public class Base extends FilterInputStream implements Runnable {" + PMD.EOL +
+            " protected int count, total;" + PMD.EOL +
+            " public void run() {}" + PMD.EOL +
+            " void read(String name, int[] buffer, Object... args) {}" + PMD.EOL +
+            " public static class Inner {}" + PMD.EOL +
+            " interface Callback {}" + PMD.EOL +
+            "}";
+
+    private static final String SUB =
+            "package foo.bar;" + PMD.EOL +
+            "import foo.*;" + PMD.EOL +
+            "public class Sub extends Base {" + PMD.EOL +
+            " class Nested extends Base.Inner implements Callback {}" + PMD.EOL +
+            " void skip(Sub in) { Runnable r = new Runnable() { class Local {} public void run() {} }; }" + PMD.EOL +
+            "}" + PMD.EOL +
+            "enum Color { RED }" + PMD.EOL +
+            "@interface Marker { String value(); }";
+
+    private static final String OTHER =
+            "package foo.bar;" + PMD.EOL +
+            "public class Other extends Sub {}";
+
+    @Test
+    public void testTypes() {
+        ProjectIndex index = createIndex();
+
+        IndexedType base = index.getType("foo.Base");
+        assertEquals(IndexedType.Kind.CLASS, base.getKind());
+        assertEquals("foo", base.getPackageName());
+        assertNull(base.getEnclosingName());
+        assertEquals("Base.java", base.getFileName());
+        assertEquals(Arrays.asList("java.io.FilterInputStream", "java.lang.Runnable"), base.getSuperTypes());
+        assertEquals(Arrays.asList("count", "total"), base.getFields());
+        assertEquals(Arrays.asList("run()", "read(String,int[],Object[])"), base.getMethods());
+
+        assertEquals("foo.Base", index.getType("foo.Base.Inner").getEnclosingName());
+        assertEquals(IndexedType.Kind.INTERFACE, index.getType("foo.Base.Callback").getKind());
+        assertEquals(IndexedType.Kind.ENUM, index.getType("foo.bar.Color").getKind());
+        assertEquals(IndexedType.Kind.ANNOTATION, index.getType("foo.bar.Marker").getKind());
+        assertEquals(Arrays.asList("value()"), index.getType("foo.bar.Marker").getMethods());
+        assertNull(index.getType("foo.bar.Sub.Local"));
+
+        assertEquals(Arrays.asList("foo.Base"), index.getType("foo.bar.Sub").getSuperTypes());
+        assertEquals(Arrays.asList("foo.Base.Inner", "foo.Base.Callback"), index.getType("foo.bar.Sub.Nested")
+                .getSuperTypes());
+
+        assertEquals(8, index.getTypes().size());
+        assertEquals(2, index.getPackageNames().size());
+        assertEquals(3, index.getTypes("foo").size());
+        assertEquals(5, index.getTypes("foo.bar").size());
+        assertTrue(index.getTypes("baz").isEmpty());
+    }
+
+    @Test
+    public void testIsSubtype() {
+        ProjectIndex index = createIndex();
+
+        assertTrue(index.isSubtype("foo.bar.Other", "foo.bar.Other"));
+        assertTrue(index.isSubtype("foo.bar.Other", "foo.Base"));
+        assertTrue(index.isSubtype("foo.bar.Other", InputStream.class));
+        assertTrue(index.isSubtype("foo.bar.Other", Runnable.class));
+        assertTrue(index.isSubtype("foo.bar.Sub.Nested", "foo.Base.Callback"));
+        assertFalse(index.isSubtype("foo.Base", "foo.bar.Sub"));
+        assertFalse(index.isSubtype("foo.bar.Color", InputStream.class));
+        assertFalse(index.isSubtype("unknown.Type", InputStream.class));
+    }
+
+    @Test
+    public void testResolve() {
+        Parser parser = createParser();
+        ASTCompilationUnit sub = parse(parser, SUB);
+        ProjectIndex.Builder builder = new ProjectIndex.Builder(getClass().getClassLoader());
+        builder.add("Base.java", parse(parser, BASE));
+        builder.add("Sub.java", sub);
+        ProjectIndex index = builder.build();
+
+        ASTFormalParameter parameter = sub.getFirstDescendantOfType(ASTFormalParameter.class);
+        assertEquals("foo.bar.Sub", index.getEnclosingTypeName(parameter));
+        assertEquals("foo.bar.Sub", index.resolve(parameter, "Sub"));
+        assertEquals("foo.Base", index.resolve(parameter, "Base"));
+        assertEquals("foo.bar.Sub.Nested", index.resolve(parameter, "Nested"));
+        assertEquals("foo.Base.Inner", index.resolve(parameter, "Base.Inner"));
+        assertEquals("java.lang.String", index.resolve(parameter, "String"));
+        assertEquals("Unknown", index.resolve(parameter, "Unknown"));
+        ASTClassOrInterfaceDeclaration local = sub.getFirstDescendantOfType(ASTAllocationExpression.class)
+                .getFirstDescendantOfType(ASTClassOrInterfaceDeclaration.class);
+        assertEquals("foo.bar.Sub", index.getEnclosingTypeName(local));
+
+        ASTType type = parameter.getTypeNode();
+        assertTrue(TypeHelper.isA(type, InputStream.class, index));
+        assertTrue(TypeHelper.isA(type, FilterInputStream.class, index));
+        assertFalse(TypeHelper.isA(type, InputStream.class, null));
+        assertFalse(TypeHelper.isA(type, String.class, index));
+    }
+
+    @Test
+    public void testUpdate() {
+        ProjectIndex index = createIndex();
+
+        Parser parser = createParser();
+        ProjectIndex.Builder builder = new ProjectIndex.Builder(index, getClass().getClassLoader());
+        builder.add("Sub.java", parse(parser, "package foo.bar; public class Sub {}"));
+        ProjectIndex updated = builder.build();
+
+        assertEquals(5, updated.getTypes().size());
+        assertNull(updated.getType("foo.bar.Sub.Nested"));
+        assertNull(updated.getType("foo.bar.Color"));
+        assertTrue(updated.getType("foo.bar.Sub").getSuperTypes().isEmpty());
+        assertFalse(updated.isSubtype("foo.bar.Other", "foo.Base"));
+        // the base index is not changed
+        assertTrue(index.isSubtype("foo.bar.Other", "foo.Base"));
+    }
+
+    private ProjectIndex createIndex() {
+        Parser parser = createParser();
+        ProjectIndex.Builder builder = new ProjectIndex.Builder(getClass().getClassLoader());
+        builder.add("Base.java", parse(parser, BASE));
+        builder.add("Sub.java", parse(parser, SUB));
+        builder.add("Other.java", parse(parser, OTHER));
+        return builder.build();
+    }
+
+    private static ASTCompilationUnit parse(Parser parser, String code) {
+        return (ASTCompilationUnit) parser.parse("Test.java", new StringReader(code));
+    }
+
+    private static Parser createParser() {
+        LanguageVersionHandler handler = new Java15Handler();
+        return handler.getParser(handler.getDefaultParserOptions());
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(ProjectIndexTest.class);
+    }
+}
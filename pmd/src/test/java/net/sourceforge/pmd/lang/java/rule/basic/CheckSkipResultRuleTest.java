@@ -0,0 +1,94 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.rule.basic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.Parser;
+import net.sourceforge.pmd.lang.java.Java15Handler;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
+import net.sourceforge.pmd.testframework.RuleTst;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests CheckSkipResult with a project index, see also the XML tests in BasicRulesTest.
+ */
+public class CheckSkipResultRuleTest extends RuleTst {
+
+    private static final String MY_STREAM =
+            "package foo;" + PMD.EOL +
+            "import java.io.FilterInputStream;" + PMD.EOL +
+            "public class MyStream extends FilterInputStream {" + PMD.EOL +
+            " public MyStream() { super(null); }" + PMD.EOL +
+            "}";
+
+    private static final String FOO =
+            "package foo;" + PMD.EOL +
+            "public class Foo {" + PMD.EOL +
+            " void bar(MyStream in) throws Exception {" + PMD.EOL +
+            "  in.skip(10);" + PMD.EOL +
+            " }" + PMD.EOL +
+            "}";
+
+    private Rule rule;
+
+    @Before
+    public void setUp() {
+        rule = findRule("java-basic", "CheckSkipResult");
+    }
+
+    @Test
+    public void testSubclassInOtherFile() throws PMDException {
+        assertEquals(1, process(createIndex()).size());
+    }
+
+    @Test
+    public void testSubclassInOtherFileWithoutIndex() throws PMDException {
+        // MyStream isn't on the auxiliary classpath, so type resolution can't tell
+        assertEquals(0, process(null).size());
+    }
+
+    private Report process(ProjectIndex index) throws PMDException {
+        PMD p = new PMD();
+        RuleContext ctx = new RuleContext();
+        Report report = new Report();
+        ctx.setReport(report);
+        ctx.setSourceCodeFilename("Foo.java");
+        ctx.setLanguageVersion(RuleTst.DEFAULT_LANGUAGE_VERSION);
+        ctx.setIgnoreExceptions(false);
+        if (index != null) {
+            ctx.setAttribute(ProjectIndex.ATTRIBUTE, index);
+        }
+        RuleSet rules = new RuleSet();
+        rules.addRule(rule);
+        p.getSourceCodeProcessor().processSourceCode(new StringReader(FOO), new RuleSets(rules), ctx);
+        return report;
+    }
+
+    private ProjectIndex createIndex() {
+        LanguageVersionHandler handler = new Java15Handler();
+        Parser parser = handler.getParser(handler.getDefaultParserOptions());
+        ProjectIndex.Builder builder = new ProjectIndex.Builder(getClass().getClassLoader());
+        builder.add("MyStream.java", (ASTCompilationUnit) parser.parse("MyStream.java", new StringReader(MY_STREAM)));
+        builder.add("Foo.java", (ASTCompilationUnit) parser.parse("Foo.java", new StringReader(FOO)));
+        return builder.build();
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(CheckSkipResultRuleTest.class);
+    }
+}
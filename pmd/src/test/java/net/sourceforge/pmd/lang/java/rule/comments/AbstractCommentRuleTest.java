@@ -12,8 +12,13 @@ import java.util.List;
 import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.java.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.ast.ASTFieldDeclaration;
 import net.sourceforge.pmd.lang.java.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.lang.java.ast.ASTVariableDeclarator;
+import net.sourceforge.pmd.lang.java.ast.Comment;
+import net.sourceforge.pmd.lang.java.ast.CommentIndex;
 import net.sourceforge.pmd.lang.java.ast.FormalComment;
 import net.sourceforge.pmd.lang.java.ast.MultiLineComment;
 import net.sourceforge.pmd.lang.java.ast.Token;
@@ -61,4 +66,32 @@ public class AbstractCommentRuleTest {
         Assert.assertEquals("/** Comment 1 */", methods.get(0).comment().getImage());
         Assert.assertEquals("/** Comment 3 */", methods.get(1).comment().getImage());
     }
+
+    @Test
+    public void testCommentIndex() {
+        LanguageVersionHandler handler = LanguageVersion.JAVA_18.getLanguageVersionHandler();
+        Reader source = new StringReader("public class Foo {\n" +
+                "    /** Comment 1 */\n" +
+                "    private int field; // field comment\n" +
+                "    /* not formal */\n" +
+                "    public void method() {}\n" +
+                "}");
+        ASTCompilationUnit cUnit = (ASTCompilationUnit) handler.getParser(handler.getDefaultParserOptions()).parse("test", source);
+        CommentIndex index = cUnit.getCommentIndex();
+        Assert.assertSame(index, cUnit.getCommentIndex());
+
+        List<Comment> comments = cUnit.getComments();
+        ASTFieldDeclaration field = cUnit.getFirstDescendantOfType(ASTFieldDeclaration.class);
+        ASTMethodDeclaration method = cUnit.getFirstDescendantOfType(ASTMethodDeclaration.class);
+        Assert.assertSame(field, index.getOwner(comments.get(0)));
+        Assert.assertSame(comments.get(0), field.comment());
+        Assert.assertNull(index.getOwner(comments.get(2)));
+        Assert.assertNull(method.comment());
+
+        Assert.assertSame(comments.get(1), index.getCommentOn(field));
+        Assert.assertSame(comments.get(1), index.getCommentOn(field.getFirstDescendantOfType(ASTVariableDeclarator.class)));
+        Assert.assertNull(index.getCommentOn(method));
+        // the class ends on the last line, it begins on the first line
+        Assert.assertNull(index.getCommentOn(cUnit.getFirstDescendantOfType(ASTClassOrInterfaceDeclaration.class)));
+    }
 }
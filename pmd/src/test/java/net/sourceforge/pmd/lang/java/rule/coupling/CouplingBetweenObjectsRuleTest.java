@@ -0,0 +1,99 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.lang.java.rule.coupling;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDException;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.lang.LanguageVersionHandler;
+import net.sourceforge.pmd.lang.Parser;
+import net.sourceforge.pmd.lang.java.Java15Handler;
+import net.sourceforge.pmd.lang.java.ast.ASTCompilationUnit;
+import net.sourceforge.pmd.lang.java.index.ProjectIndex;
+import net.sourceforge.pmd.lang.rule.properties.IntegerProperty;
+import net.sourceforge.pmd.testframework.RuleTst;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests CouplingBetweenObjects with a project index, see also the XML tests in CouplingRulesTest.
+ */
+public class CouplingBetweenObjectsRuleTest extends RuleTst {
+
+    private static final String BASE =
+            "package foo;" + PMD.EOL +
+            "public class Base {}";
+
+    private static final String FACE =
+            "package foo;" + PMD.EOL +
+            "public interface Face {}";
+
+    private static final String SUB =
+            "package foo.bar;" + PMD.EOL +
+            "import foo.*;" + PMD.EOL +
+            "public class Sub extends Base implements Face {" + PMD.EOL +
+            " Base getParent() { return null; }" + PMD.EOL +
+            " Face getFace() { return null; }" + PMD.EOL +
+            " Other getOther() { return null; }" + PMD.EOL +
+            "}";
+
+    private Rule rule;
+
+    @Before
+    public void setUp() {
+        rule = findRule("java-coupling", "CouplingBetweenObjects");
+        rule.setProperty((IntegerProperty) rule.getPropertyDescriptor("threshold"), 2);
+    }
+
+    @Test
+    public void testSuperTypesNotCounted() throws PMDException {
+        // only Other is counted
+        assertEquals(0, process(createIndex()).size());
+    }
+
+    @Test
+    public void testSuperTypesCountedWithoutIndex() throws PMDException {
+        assertEquals(1, process(null).size());
+    }
+
+    private Report process(ProjectIndex index) throws PMDException {
+        PMD p = new PMD();
+        RuleContext ctx = new RuleContext();
+        Report report = new Report();
+        ctx.setReport(report);
+        ctx.setSourceCodeFilename("Sub.java");
+        ctx.setLanguageVersion(RuleTst.DEFAULT_LANGUAGE_VERSION);
+        ctx.setIgnoreExceptions(false);
+        if (index != null) {
+            ctx.setAttribute(ProjectIndex.ATTRIBUTE, index);
+        }
+        RuleSet rules = new RuleSet();
+        rules.addRule(rule);
+        p.getSourceCodeProcessor().processSourceCode(new StringReader(SUB), new RuleSets(rules), ctx);
+        return report;
+    }
+
+    private ProjectIndex createIndex() {
+        LanguageVersionHandler handler = new Java15Handler();
+        Parser parser = handler.getParser(handler.getDefaultParserOptions());
+        ProjectIndex.Builder builder = new ProjectIndex.Builder(getClass().getClassLoader());
+        builder.add("Base.java", (ASTCompilationUnit) parser.parse("Base.java", new StringReader(BASE)));
+        builder.add("Face.java", (ASTCompilationUnit) parser.parse("Face.java", new StringReader(FACE)));
+        builder.add("Sub.java", (ASTCompilationUnit) parser.parse("Sub.java", new StringReader(SUB)));
+        return builder.build();
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(CouplingBetweenObjectsRuleTest.class);
+    }
+}
@@ -294,6 +294,38 @@ public class XmlParserTest {
         assertTextNode(rootElement.jjtGetChild(6), "\\n");
     }
 
+    /**
+     * The children of an element know their parent.
+     */
+    @Test
+    public void testParentAndChildIndex() {
+        LanguageVersionHandler xmlVersionHandler = Language.XML.getDefaultVersion().getLanguageVersionHandler();
+        Node document = xmlVersionHandler.getParser(xmlVersionHandler.getDefaultParserOptions()).parse(null,
+                new StringReader(XML_TEST));
+        Node rootElement = document.jjtGetChild(1);
+        for (int i = 0; i < rootElement.jjtGetNumChildren(); i++) {
+            Node child = rootElement.jjtGetChild(i);
+            Assert.assertSame(rootElement, child.jjtGetParent());
+            Assert.assertSame(rootElement, child.getFirstParentOfType(rootElement.getClass()));
+        }
+    }
+
+    /**
+     * The deprecated DOM proxies still implement the DOM interfaces and know their position.
+     */
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedProxy() {
+        XmlParser parser = new XmlParser(new XmlParserOptions());
+        XmlNode document = parser.parse(new StringReader(XML_TEST));
+        XmlNode proxy = parser.createProxy(document.getNode());
+        Assert.assertTrue(proxy instanceof org.w3c.dom.Document);
+        Node rootElement = proxy.jjtGetChild(1);
+        Assert.assertEquals("rootElement", ((org.w3c.dom.Element) rootElement).getTagName());
+        assertLineNumbers(rootElement, 12, 14, 19, 15);
+        Assert.assertSame(rootElement, rootElement.jjtGetChild(0).jjtGetParent());
+    }
+
     /**
      * Verifies the default parsing behavior of the XML parser with namespaces but not namespace aware.
      */
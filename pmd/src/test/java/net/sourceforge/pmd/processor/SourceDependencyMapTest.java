@@ -0,0 +1,100 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Set;
+
+import net.sourceforge.pmd.PMD;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceDependencyMapTest {
+
+    private File dir;
+    private SourceDependencyMap map;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pmd-deps", "");
+        dir.delete();
+        dir.mkdirs();
+        map = new SourceDependencyMap("UTF-8");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testDependents() throws IOException {
+        File a = write("A.java", "package a;" + PMD.EOL + "public class A {}");
+        File sameA = write("A2.java", "package a;" + PMD.EOL + "class A2 {}");
+        File b = write("B.java", "package b;" + PMD.EOL + "import a.A;" + PMD.EOL + "public class B {}");
+        File c = write("C.java", "package c;" + PMD.EOL + "import a.*;" + PMD.EOL + "public class C {}");
+        File d = write("D.java", "package d;" + PMD.EOL + "import static a.A.foo;" + PMD.EOL + "public class D {}");
+        File e = write("E.java", "package e;" + PMD.EOL + "import b.B;" + PMD.EOL + "public class E {}");
+        for (File f : new File[] { a, sameA, b, c, d, e }) {
+            map.update(f);
+        }
+
+        Set<File> dependents = map.dependentsOf(Collections.singleton(a));
+        assertEquals(4, dependents.size());
+        assertTrue(dependents.contains(sameA));
+        assertTrue(dependents.contains(b));
+        assertTrue(dependents.contains(c));
+        assertTrue(dependents.contains(d));
+    }
+
+    @Test
+    public void testUpdateAndRemove() throws IOException {
+        File a = write("A.java", "package a;" + PMD.EOL + "public class A {}");
+        File b = write("B.java", "package b;" + PMD.EOL + "import a.A;" + PMD.EOL + "public class B {}");
+        map.update(a);
+        map.update(b);
+        assertEquals(Collections.singleton(b), map.dependentsOf(Collections.singleton(a)));
+
+        write("B.java", "package b;" + PMD.EOL + "public class B {}");
+        map.update(b);
+        assertTrue(map.dependentsOf(Collections.singleton(a)).isEmpty());
+
+        map.remove(b);
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testImportsAfterTypeDeclarationAreIgnored() throws IOException {
+        File a = write("A.java", "package a;" + PMD.EOL + "public class A {" + PMD.EOL + "String s = \"" + PMD.EOL
+                + "import x.Y;\";" + PMD.EOL + "}");
+        map.update(a);
+        assertTrue(map.referencesOf(a).isEmpty());
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(SourceDependencyMapTest.class);
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RuleSetNotFoundException;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageFilenameFilter;
+import net.sourceforge.pmd.renderers.AbstractAccumulatingRenderer;
+import net.sourceforge.pmd.renderers.Renderer;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatchProcessorTest {
+
+    private File dir;
+    private RuleContext ctx;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pmd-watch", "");
+        dir.delete();
+        dir.mkdirs();
+        ctx = new RuleContext();
+        ctx.setReport(new Report());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testModifiedAddedAndDeletedFiles() throws Exception {
+        File a = write("A.java", "package a;" + PMD.EOL + "public class A {}");
+        File b = write("B.java", "package b;" + PMD.EOL + "public class B {}");
+        WatchProcessor processor = createProcessor("rulesets/java/basic.xml");
+        processor.initialize();
+
+        assertTrue(processor.poll(ctx).isEmpty());
+
+        touch(a);
+        assertEquals(Collections.singleton(a), processor.poll(ctx));
+        assertTrue(processor.poll(ctx).isEmpty());
+
+        File c = write("C.java", "package c;" + PMD.EOL + "public class C {}");
+        assertEquals(Collections.singleton(c), processor.poll(ctx));
+
+        assertTrue(b.delete());
+        // a deleted file is not analyzed anymore, nor reported as changed again
+        assertTrue(processor.poll(ctx).isEmpty());
+        assertTrue(processor.poll(ctx).isEmpty());
+
+        touch(c);
+        assertEquals(Collections.singleton(c), processor.poll(ctx));
+    }
+
+    @Test
+    public void testDependents() throws Exception {
+        File a = write("A.java", "package a;" + PMD.EOL + "public class A {}");
+        File b = write("B.java", "package b;" + PMD.EOL + "import a.A;" + PMD.EOL + "public class B {}");
+        File c = write("C.java", "package c;" + PMD.EOL + "public class C {}");
+        WatchProcessor processor = createProcessor("rulesets/java/typeresolution.xml");
+        processor.initialize();
+
+        touch(a);
+        assertEquals(new HashSet<File>(Arrays.asList(a, b)), processor.poll(ctx));
+
+        touch(c);
+        assertEquals(Collections.singleton(c), processor.poll(ctx));
+
+        // b no longer depends on a
+        write("B.java", "package b;" + PMD.EOL + "public class B {}");
+        touch(b);
+        assertEquals(Collections.singleton(b), processor.poll(ctx));
+        touch(a);
+        assertEquals(Collections.singleton(a), processor.poll(ctx));
+    }
+
+    @Test
+    public void testReportOfChangedAndDeletedFiles() throws Exception {
+        File a = write("A.java", "public class A { private int x; }");
+        File b = write("B.java", "public class B { private int y; }");
+        ReportRenderer renderer = new ReportRenderer();
+        renderer.start();
+        WatchProcessor processor = createProcessor("rulesets/java/unusedcode.xml", renderer);
+        processor.initialize();
+
+        touch(a);
+        touch(b);
+        processor.poll(ctx);
+        assertEquals(2, renderer.getReport().size());
+
+        // the previous violation of a is replaced
+        write("A.java", "public class A { private int x; private int z; }");
+        touch(a);
+        processor.poll(ctx);
+        assertEquals(3, renderer.getReport().size());
+
+        assertTrue(b.delete());
+        processor.poll(ctx);
+        assertEquals(2, renderer.getReport().size());
+    }
+
+    @Test
+    public void testWatchEndsRenderers() throws Exception {
+        ReportRenderer renderer = new ReportRenderer();
+        renderer.start();
+        WatchProcessor processor = createProcessor("rulesets/java/basic.xml", renderer);
+
+        Thread.currentThread().interrupt();
+        processor.watch(ctx);
+        assertTrue(Thread.interrupted());
+        assertTrue(renderer.ended);
+    }
+
+    private WatchProcessor createProcessor(String ruleSets) throws RuleSetNotFoundException {
+        return createProcessor(ruleSets, null);
+    }
+
+    private WatchProcessor createProcessor(String ruleSets, Renderer renderer) throws RuleSetNotFoundException {
+        PMDConfiguration configuration = new PMDConfiguration();
+        configuration.setInputPaths(dir.getAbsolutePath());
+        configuration.setRuleSets(ruleSets);
+        configuration.setThreads(0);
+        RuleSetFactory factory = new RuleSetFactory();
+        return new WatchProcessor(configuration, factory, factory.createRuleSets(ruleSets),
+                new LanguageFilenameFilter(Language.JAVA), renderer == null ? Collections.<Renderer> emptyList()
+                        : Collections.singletonList(renderer));
+    }
+
+    private static class ReportRenderer extends AbstractAccumulatingRenderer {
+        private boolean ended;
+
+        public ReportRenderer() {
+            super("report", "Keeps the report");
+            setWriter(new StringWriter());
+        }
+
+        public String defaultFileExtension() {
+            return null;
+        }
+
+        public Report getReport() {
+            return report;
+        }
+
+        @Override
+        public void end() {
+            ended = true;
+        }
+    }
+
+    /**
+     * Moves the time stamp of the file forward, a poll right after
+     * writing it may otherwise see the same time stamp.
+     */
+    private static void touch(File file) {
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name).getAbsoluteFile();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(WatchProcessorTest.class);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.renderers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.lang.ast.AbstractNode;
+import net.sourceforge.pmd.lang.rule.MockRule;
+import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
+
+import org.junit.Test;
+
+public class BinaryRendererTest {
+
+    private static final MockRule FOO = new MockRule("Foo", "desc", "msg", "RuleSet");
+    private static final MockRule BAR = new MockRule("Bar", "desc", "msg", "RuleSet");
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BinaryReport report = render(violation(FOO, "Foo.java", 3, "foo"), violation(BAR, "Foo.java", 7, "bar"));
+
+        assertEquals(2, report.size());
+        assertEquals("Foo.java", report.getFilename(0));
+        assertEquals("Foo", report.getRuleName(0));
+        assertEquals("RuleSet", report.getRuleSetName(0));
+        assertEquals("foo", report.getDescription(0));
+        assertEquals(3, report.getBeginLine(0));
+        assertEquals(4, report.getEndLine(0));
+        assertEquals(1, report.getBeginColumn(0));
+        assertEquals(10, report.getEndColumn(0));
+        assertEquals("Bar", report.getRuleName(1));
+        assertEquals(7, report.getBeginLine(1));
+        assertEquals(FOO.getPriority().getPriority(), report.getPriority(1));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertEquals(0, render().size());
+    }
+
+    @Test
+    public void testNotABinaryReport() {
+        try {
+            BinaryReport.read(ByteBuffer.wrap("<pmd></pmd> and some more text".getBytes()), "text");
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDiff() throws IOException {
+        BinaryReport baseline = render(violation(FOO, "Foo.java", 3, "foo"), violation(FOO, "Foo.java", 9, "foo"),
+                violation(BAR, "Foo.java", 12, "bar"), violation(BAR, "Bar.java", 1, "gone"));
+        // two lines inserted at the top of Foo.java, one new violation in between
+        BinaryReport current = render(violation(FOO, "Foo.java", 5, "foo"), violation(FOO, "Foo.java", 8, "foo"),
+                violation(FOO, "Foo.java", 11, "foo"), violation(BAR, "Foo.java", 14, "bar"),
+                violation(BAR, "Baz.java", 2, "new"));
+
+        BinaryReport.Diff diff = current.diff(baseline);
+        assertEquals(3, diff.getUnchanged());
+        assertEquals(2, diff.getAdded().size());
+        assertEquals("Baz.java", current.getFilename(diff.getAdded().get(0).intValue()));
+        assertEquals(1, diff.getRemoved().size());
+        assertEquals("Bar.java", baseline.getFilename(diff.getRemoved().get(0).intValue()));
+    }
+
+    @Test
+    public void testDiffIdentical() throws IOException {
+        BinaryReport report = render(violation(FOO, "Foo.java", 3, "foo"), violation(BAR, "Foo.java", 7, "bar"));
+        BinaryReport.Diff diff = report.diff(report);
+        assertEquals(2, diff.getUnchanged());
+        assertEquals(0, diff.getAdded().size());
+        assertEquals(0, diff.getRemoved().size());
+    }
+
+    private static ParametricRuleViolation<DummyNode> violation(MockRule rule, String file, int line, String message) {
+        RuleContext ctx = new RuleContext();
+        ctx.setSourceCodeFilename(file);
+        DummyNode node = new DummyNode();
+        node.testingOnly__setBeginLine(line);
+        node.testingOnly__setEndLine(line + 1);
+        node.testingOnly__setBeginColumn(1);
+        node.testingOnly__setEndColumn(10);
+        return new ParametricRuleViolation<DummyNode>(rule, ctx, node, message);
+    }
+
+    private static BinaryReport render(ParametricRuleViolation<?>... violations) throws IOException {
+        Report report = new Report();
+        for (ParametricRuleViolation<?> violation : violations) {
+            report.addRuleViolation(violation);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRenderer renderer = new BinaryRenderer();
+        renderer.setOutputStream(out);
+        renderer.start();
+        renderer.renderFileReport(report);
+        renderer.end();
+        renderer.flush();
+        return BinaryReport.read(ByteBuffer.wrap(out.toByteArray()), "test");
+    }
+
+    private static class DummyNode extends AbstractNode {
+        public DummyNode() {
+            super(0);
+        }
+
+        @Override
+        public String toString() {
+            return "dummy";
+        }
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(BinaryRendererTest.class);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.stat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.sourceforge.pmd.lang.rule.stat.DataPointAggregator;
+
+import org.junit.Test;
+
+public class DataPointAggregatorTest {
+
+    private static final int POINTS = 1000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testStatistics() {
+        DataPointAggregator aggregator = new DataPointAggregator(null, 10.0, 5);
+        double[] scores = new double[POINTS];
+        double total = 0;
+        for (int i = 0; i < POINTS; i++) {
+            scores[i] = random.nextInt(50) + random.nextDouble();
+            total += scores[i];
+            aggregator.add(point(scores[i]));
+        }
+        double mean = total / POINTS;
+        double deltaSq = 0;
+        for (double score : scores) {
+            deltaSq += (score - mean) * (score - mean);
+        }
+
+        assertEquals(POINTS, aggregator.getCount());
+        assertEquals(total, aggregator.getTotal(), 0.000001);
+        assertEquals(mean, aggregator.getMean(), 0.000001);
+        assertEquals(Math.sqrt(deltaSq / (POINTS - 1)), aggregator.getStandardDeviation(), 0.000001);
+    }
+
+    @Test
+    public void testEmpty() {
+        DataPointAggregator aggregator = new DataPointAggregator();
+        assertEquals(0.0, aggregator.getLowest(), 0);
+        assertEquals(0.0, aggregator.getHighest(), 0);
+        assertTrue(Double.isNaN(aggregator.getMean()));
+        assertTrue(Double.isNaN(aggregator.getStandardDeviation()));
+        assertTrue(aggregator.select(null, null, null).isEmpty());
+    }
+
+    @Test
+    public void testSelectSameAsAllPoints() {
+        Double[] sigmas = { null, 0.5, 1.5 };
+        Double[] minimums = { null, 10.0, 45.0 };
+        Integer[] topScores = { null, 0, 1, 7, 2000 };
+        for (Double sigma : sigmas) {
+            for (Double minimum : minimums) {
+                for (Integer topScore : topScores) {
+                    DataPointAggregator all = new DataPointAggregator();
+                    DataPointAggregator bounded = new DataPointAggregator(sigma, minimum, topScore);
+                    for (int i = 0; i < POINTS; i++) {
+                        DataPoint point = point(random.nextInt(50) + random.nextDouble());
+                        all.add(point);
+                        bounded.add(point);
+                    }
+                    assertEquals(all.select(sigma, minimum, topScore), bounded.select(sigma, minimum, topScore));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        DataPointAggregator all = new DataPointAggregator(1.0, null, 10);
+        DataPointAggregator first = new DataPointAggregator(1.0, null, 10);
+        DataPointAggregator second = new DataPointAggregator(1.0, null, 10);
+        for (int i = 0; i < POINTS; i++) {
+            DataPoint point = point(random.nextGaussian() * 10);
+            all.add(point);
+            (i % 3 == 0 ? first : second).add(point);
+        }
+        first.merge(second);
+
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getTotal(), first.getTotal(), 0.000001);
+        assertEquals(all.getLowest(), first.getLowest(), 0);
+        assertEquals(all.getHighest(), first.getHighest(), 0);
+        assertEquals(all.getMean(), first.getMean(), 0.000001);
+        assertEquals(all.getStandardDeviation(), first.getStandardDeviation(), 0.000001);
+        assertEquals(all.select(1.0, null, 10), first.select(1.0, null, 10));
+    }
+
+    private static DataPoint point(double score) {
+        DataPoint point = new DataPoint();
+        point.setScore(score);
+        return point;
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(DataPointAggregatorTest.class);
+    }
+}
@@ -11,6 +11,6 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author Boris Gruschko ( boris at gruschko.org )
  */
 @RunWith(Suite.class)
-@SuiteClasses({MetricTest.class, StatisticalRuleTest.class})
+@SuiteClasses({DataPointAggregatorTest.class, MetricTest.class, StatisticalRuleTest.class})
 public class StatTests {
 }
@@ -0,0 +1,57 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+public class PatternCacheTest {
+
+    @Test
+    public void testCompileOnce() {
+        assertSame(PatternCache.compile("^foo[A-Z]"), PatternCache.compile("^foo[A-Z]"));
+    }
+
+    @Test
+    public void testFindAny() {
+        assertFalse(PatternCache.findAny("inFoo"));
+        assertTrue(PatternCache.findAny("inFoo", "^in[A-Z]"));
+        assertTrue(PatternCache.findAny("inFoo", "^out[A-Z]", "^in[A-Z]", "^in$"));
+        assertTrue(PatternCache.findAny("out", "^out[A-Z]", "^in[A-Z]", "^in$", "^out$"));
+        assertFalse(PatternCache.findAny("input", "^out[A-Z]", "^in[A-Z]", "^in$"));
+    }
+
+    @Test
+    public void testFindAnyKeepsFlagsAndGroups() {
+        // inline flags don't leak into the other expressions
+        assertTrue(PatternCache.findAny("FOO", "(?i)foo", "bar"));
+        assertFalse(PatternCache.findAny("BAR", "(?i)foo", "bar"));
+        // back references, quotes and comments are matched on their own
+        assertTrue(PatternCache.findAny("bb", "(a)x", "(b)\\1"));
+        assertFalse(PatternCache.findAny("xx", "y", "(x)\\2"));
+        assertTrue(PatternCache.findAny("x", "\\Qa.b", "x"));
+        assertTrue(PatternCache.findAny("x", "(?x)a # comment", "x"));
+    }
+
+    @Test
+    public void testFindAnyCallerArray() {
+        String[] patterns = { "a", "b" };
+        assertTrue(PatternCache.findAny("b", patterns));
+        patterns[1] = "c";
+        assertFalse(PatternCache.findAny("b", patterns));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidPattern() {
+        PatternCache.findAny("a", "a", "b)|(c");
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(PatternCacheTest.class);
+    }
+}
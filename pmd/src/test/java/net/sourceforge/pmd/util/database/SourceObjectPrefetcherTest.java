@@ -0,0 +1,189 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+package net.sourceforge.pmd.util.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sourceforge.pmd.util.database.SourceObjectPrefetcher.PrefetchedSource;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceObjectPrefetcherTest {
+
+    /**
+     * URI relying on testdefault.properties, no connection is opened
+     */
+    private static final String TEST_URI = "jdbc:oracle:testdefault://192.168.100.21:1521/ORCL";
+
+    private DBURI dburi;
+    private File cacheDirectory;
+
+    @Before
+    public void setUp() throws URISyntaxException, IOException {
+        dburi = new DBURI(TEST_URI);
+        cacheDirectory = File.createTempFile("pmd-dburi-cache", "");
+        cacheDirectory.delete();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    @Test
+    public void testFetchInOrder() throws Exception {
+        StubMetadata metadata = new StubMetadata();
+        List<SourceObject> sourceObjects = new ArrayList<SourceObject>();
+        for (int i = 0; i < 7; i++) {
+            sourceObjects.add(new SourceObject("SCOTT", "PACKAGE", "PKG_" + i, null));
+        }
+        SourceObjectPrefetcher prefetcher = prefetcher(metadata);
+        List<PrefetchedSource> sources = prefetcher.fetch(sourceObjects);
+
+        assertEquals(7, sources.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals("/Database/SCOTT/PACKAGE/PKG_" + i + ".pks", sources.get(i).getPseudoFileName());
+            assertEquals("source of PKG_" + i, read(sources.get(i)));
+        }
+        assertEquals(7, metadata.fetched);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        StubMetadata metadata = new StubMetadata();
+        metadata.failing = "BROKEN";
+        List<PrefetchedSource> sources = prefetcher(metadata).fetch(Arrays.asList(
+                new SourceObject("SCOTT", "PROCEDURE", "BROKEN", null),
+                new SourceObject("SCOTT", "PROCEDURE", "WORKING", null)));
+        try {
+            sources.get(0).getReader();
+            fail("expected SQLException");
+        } catch (SQLException e) {
+            // expected
+        }
+        // an empty source, the other source objects are still processed
+        assertEquals(-1, sources.get(0).getInputStream().read());
+        assertEquals("source of WORKING", read(sources.get(1)));
+    }
+
+    @Test(timeout = 10000)
+    public void testError() throws Exception {
+        StubMetadata metadata = new StubMetadata();
+        metadata.error = new OutOfMemoryError("test");
+        List<PrefetchedSource> sources = prefetcher(metadata).fetch(Arrays.asList(
+                new SourceObject("SCOTT", "PROCEDURE", "P1", null),
+                new SourceObject("SCOTT", "PROCEDURE", "P2", null),
+                new SourceObject("SCOTT", "PROCEDURE", "P3", null)));
+        // none of the sources waits forever, also not those of the next batch
+        for (PrefetchedSource source : sources) {
+            try {
+                source.getReader();
+                fail("expected IOException");
+            } catch (IOException e) {
+                assertSame(metadata.error, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        List<SourceObject> sourceObjects = Arrays.asList(new SourceObject("SCOTT", "PACKAGE", "PKG", "20130501120000"),
+                new SourceObject("SCOTT", "PACKAGE_BODY", "PKG", "20130501120000"),
+                new SourceObject("SCOTT", "TRIGGER", "NO_REVISION", null));
+        StubMetadata metadata = new StubMetadata();
+        readAll(prefetcher(metadata).fetch(sourceObjects));
+        assertEquals(3, metadata.fetched);
+        // the cache files are written completely or not at all
+        File cached = new File(cacheDirectory, "SCOTT/PACKAGE");
+        assertEquals(Arrays.asList("PKG"), Arrays.asList(cached.list()));
+
+        // unchanged revisions are read from the cache
+        metadata = new StubMetadata();
+        List<PrefetchedSource> sources = prefetcher(metadata).fetch(sourceObjects);
+        assertEquals("source of PKG", read(sources.get(0)));
+        readAll(sources);
+        assertEquals(1, metadata.fetched);
+
+        // a changed revision is retrieved again
+        sourceObjects.get(1).setRevision("20130601120000");
+        metadata = new StubMetadata();
+        readAll(prefetcher(metadata).fetch(sourceObjects));
+        assertEquals(2, metadata.fetched);
+    }
+
+    private SourceObjectPrefetcher prefetcher(StubMetadata metadata) {
+        SourceObjectPrefetcher prefetcher = new SourceObjectPrefetcher(dburi, metadata);
+        // additional connections can't be opened in the test
+        prefetcher.setConnections(1);
+        prefetcher.setBatchSize(2);
+        prefetcher.setCacheDirectory(cacheDirectory);
+        return prefetcher;
+    }
+
+    private static void readAll(List<PrefetchedSource> sources) throws Exception {
+        for (PrefetchedSource source : sources) {
+            read(source);
+        }
+    }
+
+    private static String read(PrefetchedSource source) throws Exception {
+        Reader reader = source.getReader();
+        try {
+            return IOUtils.toString(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static class StubMetadata extends DBMSMetadata {
+        private volatile int fetched;
+        private String failing;
+        private Error error;
+
+        StubMetadata() throws SQLException {
+            super((Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return null;
+                        }
+                    }));
+        }
+
+        @Override
+        public Reader getSourceCode(String objectType, String name, String schema) throws SQLException {
+            fetched++;
+            if (null != error) {
+                throw error;
+            }
+            if (name.equals(failing)) {
+                throw new SQLException("ORA-31603: object \"" + name + "\" not found");
+            }
+            return new StringReader("source of " + name);
+        }
+    }
+
+    public static junit.framework.Test suite() {
+        return new junit.framework.JUnit4TestAdapter(SourceObjectPrefetcherTest.class);
+    }
+}